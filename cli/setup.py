@@ -186,6 +186,8 @@ def setup_configuration():
             "connection_timeout": 60,
             "max_retry_attempts": 5,
             "batch_size": 1000,
+            "content_storage": "plain",
+            "read_pool": True,
         },
         "storage": {
             "data_dir": f"{INSTALL_DIR}/data",
@@ -200,6 +202,31 @@ def setup_configuration():
             "tokenizer_max_length": 256,
             "max_tokens": 240,
             "overlap_tokens": 30,
+            "model_variant": "fp32",
+            "inference_batch_size": 32,
+            "embedding_cache": True,
+            "embedding_cache_max_entries": 200000,
+            "ann_index": True,
+            "ann_min_vectors": 50000,
+            "ann_nprobe": 16,
+            "vector_storage": "float",
+            "rerank_factor": 8,
+            "inference_sessions": 1,
+            "intra_op_threads": 0,
+            "inter_op_threads": 0,
+            "graph_optimization_level": "all",
+            "cpu_mem_arena": True,
+            "execution_mode": "sequential",
+        },
+        "indexing": {
+            "parse_workers": 0,
+            "parse_queue_size": 256,
+            "scan_workers": 0,
+            "paranoid_hashing": False,
+            "fast_load": False,
+            "extraction_format": "ndjson",
+            "pipeline": True,
+            "pipeline_queue_size": 64,
         },
         "web_search": {"api_key": "", "requests_per_minute": 60, "timeout": 30},
         "web_scrap": {
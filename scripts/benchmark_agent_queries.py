@@ -0,0 +1,121 @@
+#!/usr/bin/env python3
+"""
+Benchmark the SQL behind the agent database queries across result row types.
+
+Loads a synthetic extraction (see benchmark_graph_load.py, default 20k code
+blocks) into a temporary database and runs the statement behind each query in
+DATABASE_QUERY_CONFIG through:
+  - execute_query  (list of dicts)
+  - fetch_records  (list of namedtuples)
+  - fetch_rows     (list of tuples)
+  - iter_rows      (lazy tuples)
+reporting mean latency and Python allocations per call.
+
+Requires an installed configuration (sutrakit-setup); only the database path is
+overridden, so the configured databases are not touched.
+
+Usage:
+    python scripts/benchmark_agent_queries.py [--blocks 20000] [--calls 2000]
+"""
+
+import argparse
+import sys
+import tempfile
+import time
+import tracemalloc
+from pathlib import Path
+from typing import Callable, Dict, Tuple
+
+sys.path.insert(0, str(Path(__file__).resolve().parent.parent))
+sys.path.insert(0, str(Path(__file__).resolve().parent.parent / "src"))
+
+from benchmark_graph_load import build_extraction, fresh_connection  # noqa: E402
+from graph.graph_operations import GraphOperations  # noqa: E402
+from queries.agent_queries import (  # noqa: E402
+    GET_CODE_BLOCK_BY_ID,
+    GET_DEPENDENCY_CHAIN,
+    GET_FILE_BLOCK_SUMMARY,
+    GET_FILE_BY_ID,
+)
+from tools.utils.constants import DATABASE_QUERY_CONFIG  # noqa: E402
+
+# Agent query -> (statement it runs, parameters for the n-th call)
+STATEMENTS: Dict[str, Tuple[str, Callable[[int, int, int], tuple]]] = {
+    "GET_FILE_BY_PATH": (
+        GET_FILE_BY_ID,
+        lambda n, files, blocks: (n % files + 1,),
+    ),
+    "GET_FILE_BLOCK_SUMMARY": (
+        GET_FILE_BLOCK_SUMMARY,
+        lambda n, files, blocks: (n % files + 1,),
+    ),
+    "GET_BLOCK_DETAILS": (
+        GET_CODE_BLOCK_BY_ID,
+        lambda n, files, blocks: (n % blocks + 1,),
+    ),
+    "GET_DEPENDENCY_CHAIN": (
+        GET_DEPENDENCY_CHAIN,
+        lambda n, files, blocks: (n % files + 1, 5),
+    ),
+}
+
+
+def measure(run: Callable[[int], object], calls: int) -> Tuple[float, float]:
+    """Mean microseconds and mean peak KiB allocated per call."""
+    start = time.perf_counter()
+    for n in range(calls):
+        run(n)
+    elapsed = time.perf_counter() - start
+
+    # Allocations are measured in a separate pass, tracing slows execution
+    peaks = 0
+    tracemalloc.start()
+    for n in range(calls):
+        tracemalloc.reset_peak()
+        base, _ = tracemalloc.get_traced_memory()
+        run(n)
+        peaks += tracemalloc.get_traced_memory()[1] - base
+    tracemalloc.stop()
+    return elapsed / calls * 1e6, peaks / calls / 1024
+
+
+def main() -> None:
+    parser = argparse.ArgumentParser(description=__doc__.splitlines()[1])
+    parser.add_argument("--blocks", type=int, default=20_000)
+    parser.add_argument("--blocks-per-file", type=int, default=50)
+    parser.add_argument("--calls", type=int, default=2000)
+    args = parser.parse_args()
+
+    extraction = build_extraction(args.blocks, args.blocks_per_file)
+
+    with tempfile.TemporaryDirectory() as tmp_dir:
+        connection = fresh_connection(Path(tmp_dir) / "agent_queries.db")
+        GraphOperations().insert_extraction_data(extraction, 1)
+        files = len(extraction.files)
+        blocks = connection.fetch_rows("SELECT COUNT(*) FROM code_blocks")[0][0]
+        print(f"Loaded {files} files, {blocks} code blocks")
+
+        paths = {
+            "execute_query": connection.execute_query,
+            "fetch_records": connection.fetch_records,
+            "fetch_rows": connection.fetch_rows,
+            "iter_rows": lambda sql, params: list(connection.iter_rows(sql, params)),
+        }
+
+        for query_name in DATABASE_QUERY_CONFIG:
+            sql, params_for = STATEMENTS[query_name]
+            print(query_name)
+            for path_name, fetch in paths.items():
+                mean_us, peak_kib = measure(
+                    lambda n: fetch(sql, params_for(n, files, blocks)), args.calls
+                )
+                print(
+                    f"{path_name:>16}: {mean_us:8.1f}us/call  "
+                    f"{peak_kib:7.2f} KiB allocated/call"
+                )
+
+        connection.close()
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,160 @@
+#!/usr/bin/env python3
+"""
+Benchmark TextChunker.chunk_text against line-by-line re-tokenization.
+
+Generates synthetic source files (default 5,000 lines) and chunks them with:
+  - incremental: the previous algorithm, which re-tokenizes the growing chunk
+                 text for every added line (quadratic in chunk size)
+  - offsets:     TextChunker.chunk_text, which tokenizes each file once and
+                 derives chunk and overlap boundaries from token offsets
+
+Both must produce identical chunks; the script exits non-zero if they differ.
+
+Requires an installed configuration and embedding model (sutrakit-setup).
+
+Usage:
+    python scripts/benchmark_chunker.py [--lines 5000] [--files 3] [--metadata]
+"""
+
+import argparse
+import sys
+import time
+from pathlib import Path
+from typing import Any, Dict, List
+
+sys.path.insert(0, str(Path(__file__).resolve().parent.parent))
+sys.path.insert(0, str(Path(__file__).resolve().parent.parent / "src"))
+
+from config import config  # noqa: E402
+from embeddings.vector_store import EmbeddingModel, TextChunker  # noqa: E402
+
+
+def build_source(line_count: int, seed: int) -> str:
+    """Build a Python-like file with a mix of short, long and blank lines."""
+    lines = []
+    for i in range(line_count):
+        n = (i * 7919 + seed) % 13
+        if n == 0:
+            lines.append("")
+        elif n < 4:
+            lines.append(f"def function_{i}(argument_{n}, value=None):")
+        elif n < 10:
+            lines.append(f"    result_{i} = compute(value, index={i}, scale={n}.5)")
+        else:
+            lines.append(
+                f"    # {n} Processes the intermediate representation for item {i} "
+                "before handing it to the downstream serializer and cache layer"
+            )
+    return "\n".join(lines) + "\n"
+
+
+def chunk_incremental(
+    chunker: TextChunker,
+    text: str,
+    max_tokens: int,
+    overlap_tokens: int,
+    metadata: str = "",
+) -> List[Dict[str, Any]]:
+    """The previous chunker: count tokens of the whole chunk after every line."""
+    count = chunker._count_tokens
+    lines = text.splitlines(keepends=True)
+    chunks: List[Dict[str, Any]] = []
+    metadata_prefix = (metadata + "\n\n") if metadata else ""
+    first_budget = (
+        max_tokens - count(metadata_prefix) if metadata_prefix else max_tokens
+    )
+
+    line_index = 0
+    overlap_text = ""
+    while line_index < len(lines):
+        start_line = line_index + 1
+        chunk_lines: List[str] = []
+        current = overlap_text
+        if not chunks and metadata_prefix:
+            current = metadata_prefix + current
+            budget = first_budget
+        else:
+            budget = max_tokens
+
+        while line_index < len(lines):
+            potential = current + lines[line_index]
+            if count(potential) > budget and chunk_lines:
+                break
+            chunk_lines.append(lines[line_index])
+            current = potential
+            line_index += 1
+
+        chunk_end_line = start_line + len(chunk_lines) - 1
+        char_start = len("".join(lines[: start_line - 1]))
+        if overlap_text:
+            char_start -= len(overlap_text.rstrip("\n"))
+
+        chunks.append(
+            {
+                "text": current,
+                "start": char_start,
+                "end": len("".join(lines[:chunk_end_line])),
+                "start_line": start_line,
+                "end_line": chunk_end_line,
+                "token_count": count(current),
+            }
+        )
+
+        overlap_text = ""
+        if overlap_tokens > 0 and line_index < len(lines):
+            words = "".join(chunk_lines).split()
+            for word_count in range(min(len(words), overlap_tokens * 2), 0, -1):
+                candidate = " ".join(words[-word_count:])
+                if count(candidate) <= overlap_tokens:
+                    overlap_text = candidate + "\n"
+                    break
+
+    return chunks
+
+
+def main() -> None:
+    parser = argparse.ArgumentParser(description=__doc__.splitlines()[1])
+    parser.add_argument("--lines", type=int, default=5000)
+    parser.add_argument("--files", type=int, default=3)
+    parser.add_argument("--metadata", action="store_true")
+    args = parser.parse_args()
+
+    chunker = TextChunker(EmbeddingModel(config.embedding.model_path))
+    max_tokens = config.embedding.max_tokens
+    overlap_tokens = config.embedding.overlap_tokens
+    metadata = "File: benchmark.py\nLanguage: python" if args.metadata else ""
+
+    sources = [build_source(args.lines, seed) for seed in range(args.files)]
+    print(
+        f"{args.files} files x {args.lines} lines, "
+        f"max_tokens={max_tokens}, overlap_tokens={overlap_tokens}"
+    )
+
+    runs = {
+        "incremental": lambda source: chunk_incremental(
+            chunker, source, max_tokens, overlap_tokens, metadata
+        ),
+        "offsets": lambda source: chunker.chunk_text(
+            source, max_tokens, overlap_tokens, metadata
+        ),
+    }
+
+    results = {}
+    for name, chunk in runs.items():
+        start = time.perf_counter()
+        results[name] = [chunk(source) for source in sources]
+        elapsed = time.perf_counter() - start
+        chunk_count = sum(len(chunks) for chunks in results[name])
+        print(
+            f"{name:>12}: {elapsed:8.3f}s "
+            f"({args.files * args.lines / elapsed:,.0f} lines/s, {chunk_count} chunks)"
+        )
+
+    if results["incremental"] != results["offsets"]:
+        print("❌ Chunk boundaries differ between implementations")
+        sys.exit(1)
+    print("✅ Chunks identical")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,149 @@
+#!/usr/bin/env python3
+"""
+Benchmark plain vs compressed content storage of the knowledge graph.
+
+Parses a source tree (default: this repository's src/) and loads it into
+fresh temporary databases with database.content_storage "plain" and
+"compressed", then reports:
+  - load time and database size
+  - p50/p95 latency of resolving code blocks (GET_CODE_BLOCK_BY_ID), whole
+    files (GET_FILE_BY_ID) and 40-line ranges (read_file_lines) by id
+
+Requires an installed configuration (sutrakit-setup); only the database path
+and content storage mode are overridden, so the configured databases are not
+touched.
+
+Usage:
+    python scripts/benchmark_content_storage.py [--source path/to/repo]
+        [--lookups 2000]
+"""
+
+import argparse
+import random
+import statistics
+import sys
+import tempfile
+import time
+from pathlib import Path
+from typing import Callable, List, Tuple
+
+sys.path.insert(0, str(Path(__file__).resolve().parent.parent))
+sys.path.insert(0, str(Path(__file__).resolve().parent.parent / "src"))
+
+from config import config  # noqa: E402
+from graph.graph_operations import GraphOperations  # noqa: E402
+from graph.sqlite_client import SQLiteConnection  # noqa: E402
+from indexer.ast_parser import ASTParser  # noqa: E402
+from models import FileData, Project  # noqa: E402
+from queries.agent_queries import GET_CODE_BLOCK_BY_ID, GET_FILE_BY_ID  # noqa: E402
+from utils.json_serializer import make_json_serializable  # noqa: E402
+
+
+def parse_source(source: Path) -> List[Tuple[str, FileData]]:
+    """Parse a tree into (file path, FileData) records, as the index pipeline does."""
+    return [
+        (
+            file_path,
+            FileData(**make_json_serializable({**result, "relationships": []})),
+        )
+        for file_path, result in ASTParser().iter_parsed_files(source)
+    ]
+
+
+def fresh_connection(db_path: Path, content_storage: str) -> SQLiteConnection:
+    """Create a new SQLiteConnection singleton pointing at db_path."""
+    SQLiteConnection._instance = None
+    config.sqlite.knowledge_graph_db = str(db_path)
+    config.sqlite.content_storage = content_storage
+    connection = SQLiteConnection()
+    connection.insert_project(
+        Project(
+            id=1,
+            name="benchmark",
+            path="/bench",
+            description="",
+            created_at="",
+            updated_at="",
+        )
+    )
+    return connection
+
+
+def database_size(connection: SQLiteConnection) -> int:
+    connection.connection.execute("PRAGMA wal_checkpoint(TRUNCATE)")
+    page_count = connection.connection.execute("PRAGMA page_count").fetchone()[0]
+    page_size = connection.connection.execute("PRAGMA page_size").fetchone()[0]
+    return page_count * page_size
+
+
+def timed(lookup: Callable[[int], object], ids: List[int]) -> str:
+    latencies = []
+    for item_id in ids:
+        start = time.perf_counter()
+        lookup(item_id)
+        latencies.append((time.perf_counter() - start) * 1000)
+    p95 = statistics.quantiles(latencies, n=20)[-1] if len(latencies) > 1 else 0.0
+    return f"p50 {statistics.median(latencies):6.3f}ms  p95 {p95:6.3f}ms"
+
+
+def main() -> None:
+    parser = argparse.ArgumentParser(description=__doc__.splitlines()[1])
+    parser.add_argument(
+        "--source",
+        type=Path,
+        default=Path(__file__).resolve().parent.parent / "src",
+    )
+    parser.add_argument("--lookups", type=int, default=2000)
+    args = parser.parse_args()
+
+    records = parse_source(args.source)
+    print(f"Parsed {args.source}: {len(records)} files")
+
+    with tempfile.TemporaryDirectory() as tmp_dir:
+        for mode in ["plain", "compressed"]:
+            # Same lookups for both modes
+            rng = random.Random(0)
+            connection = fresh_connection(Path(tmp_dir) / f"{mode}.db", mode)
+
+            start = time.perf_counter()
+            GraphOperations().insert_file_records(records, 1)
+            load_seconds = time.perf_counter() - start
+
+            block_ids = [
+                row["id"]
+                for row in connection.execute_query("SELECT id FROM code_blocks")
+            ]
+            file_ids = [
+                row["id"] for row in connection.execute_query("SELECT id FROM files")
+            ]
+            block_sample = [rng.choice(block_ids) for _ in range(args.lookups)]
+            file_sample = [rng.choice(file_ids) for _ in range(args.lookups)]
+
+            def read_range(file_id: int) -> object:
+                start_line = rng.randint(1, 200)
+                return connection.read_file_lines(file_id, start_line, start_line + 39)
+
+            print(
+                f"{mode}: {len(block_ids)} blocks loaded in {load_seconds:.2f}s, "
+                f"{database_size(connection) / 1024 / 1024:.1f} MiB"
+            )
+            print(
+                f"{'block':>12}:  "
+                + timed(
+                    lambda i: connection.execute_query(GET_CODE_BLOCK_BY_ID, (i,)),
+                    block_sample,
+                )
+            )
+            print(
+                f"{'file':>12}:  "
+                + timed(
+                    lambda i: connection.execute_query(GET_FILE_BY_ID, (i,)),
+                    file_sample,
+                )
+            )
+            print(f"{'line range':>12}:  " + timed(read_range, file_sample))
+            connection.close()
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,154 @@
+#!/usr/bin/env python3
+"""
+Benchmark directory discovery against the previous os.walk traversal.
+
+Scans a project (or a generated tree, default 200,000 entries) with:
+  - walk:     the previous discovery, os.walk with one fnmatch call per
+              ignore pattern and a Path.stat() per file for hashing
+  - scan-N:   utils.directory_scanner.iter_scan with the compiled ignore
+              matcher, DirEntry stats and N scanning threads
+
+Both must find the same files in the same order; the script exits non-zero
+if they differ. With --drop-caches (Linux, root) the page cache is dropped
+before every run, which is where parallel scanning pays off.
+
+Usage:
+    python scripts/benchmark_directory_scan.py [--path DIR] [--entries 200000]
+        [--workers 1,4,16] [--drop-caches]
+"""
+
+import argparse
+import fnmatch
+import os
+import random
+import shutil
+import subprocess
+import sys
+import tempfile
+import time
+from pathlib import Path
+from typing import List
+
+sys.path.insert(0, str(Path(__file__).resolve().parent.parent))
+sys.path.insert(0, str(Path(__file__).resolve().parent.parent / "src"))
+
+from utils.directory_scanner import iter_scan  # noqa: E402
+from utils.ignore_matcher import IgnoreMatcher  # noqa: E402
+from utils.ignore_patterns import (  # noqa: E402
+    IGNORE_DIRECTORY_PATTERNS,
+    IGNORE_FILE_PATTERNS,
+)
+
+DIRECTORY_NAMES = ["src", "lib", "core", "api", "utils", "models", "tests"]
+IGNORED_DIRECTORY_NAMES = ["node_modules", "build", "__pycache__", ".git"]
+EXTENSIONS = [".py", ".ts", ".js", ".go", ".md", ".json", ".pyc", ".log", ".png"]
+
+
+def build_tree(root: Path, entries: int, seed: int) -> None:
+    """Create directories (about one in fifteen entries) and small files."""
+    rng = random.Random(seed)
+    directories = [root]
+    for i in range(entries):
+        parent = rng.choice(directories)
+        if rng.random() < 1 / 15:
+            names = (
+                IGNORED_DIRECTORY_NAMES if rng.random() < 0.1 else DIRECTORY_NAMES
+            )
+            directory = parent / f"{rng.choice(names)}_{i}"
+            directory.mkdir()
+            directories.append(directory)
+        else:
+            (parent / f"file_{i}{rng.choice(EXTENSIONS)}").write_text(f"# {i}\n")
+
+
+def walk_previous(root: Path) -> List[str]:
+    """os.walk discovery with the previous per-pattern fnmatch filters."""
+    found = []
+    for current, dirs, files in os.walk(root):
+        current_path = Path(current)
+        dirs[:] = [
+            d
+            for d in dirs
+            if not any(
+                fnmatch.fnmatch((current_path / d).name, pattern)
+                for pattern in IGNORE_DIRECTORY_PATTERNS
+            )
+        ]
+        for file in files:
+            file_path = current_path / file
+            if any(
+                fnmatch.fnmatch(file_path.name, pattern)
+                for pattern in IGNORE_FILE_PATTERNS
+            ):
+                continue
+            try:
+                file_path.stat()
+            except OSError:
+                continue
+            found.append(os.path.relpath(file_path, root))
+    return found
+
+
+def scan(root: Path, workers: int) -> List[str]:
+    """iter_scan discovery with the default patterns and DirEntry stats."""
+    return [
+        entry.relative_path
+        for entry in iter_scan(
+            root, IgnoreMatcher(), with_stats=True, scan_workers=workers
+        )
+    ]
+
+
+def drop_caches() -> None:
+    subprocess.run(["sync"], check=False)
+    with open("/proc/sys/vm/drop_caches", "w") as f:
+        f.write("3\n")
+
+
+def main() -> int:
+    parser = argparse.ArgumentParser(description=__doc__.split("\n\n")[0])
+    parser.add_argument("--path", type=Path, help="Directory to scan")
+    parser.add_argument("--entries", type=int, default=200_000)
+    parser.add_argument("--workers", default="1,4,16")
+    parser.add_argument("--drop-caches", action="store_true")
+    parser.add_argument("--seed", type=int, default=7)
+    args = parser.parse_args()
+
+    temp_dir = None
+    root = args.path
+    if root is None:
+        temp_dir = Path(tempfile.mkdtemp(prefix="sutra-scan-"))
+        root = temp_dir
+        start = time.perf_counter()
+        build_tree(root, args.entries, args.seed)
+        print(
+            f"Generated {args.entries} entries in {time.perf_counter() - start:.1f}s"
+        )
+
+    try:
+        runs = [("walk", walk_previous)] + [
+            (f"scan-{workers}", lambda r, w=int(workers): scan(r, w))
+            for workers in args.workers.split(",")
+        ]
+        reference = None
+        for name, run in runs:
+            if args.drop_caches:
+                drop_caches()
+            start = time.perf_counter()
+            found = run(root)
+            elapsed = time.perf_counter() - start
+            print(f"{name:>8}: {len(found)} files in {elapsed:.2f}s")
+
+            if reference is None:
+                reference = found
+            elif found != reference:
+                print(f"❌ {name} found different files than walk")
+                return 1
+        return 0
+    finally:
+        if temp_dir is not None:
+            shutil.rmtree(temp_dir, ignore_errors=True)
+
+
+if __name__ == "__main__":
+    sys.exit(main())
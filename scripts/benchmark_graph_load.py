@@ -0,0 +1,188 @@
+#!/usr/bin/env python3
+"""
+Benchmark graph loading: per-row commits vs batched bulk load.
+
+Generates a synthetic extraction (default 100k code blocks) and loads it into
+fresh temporary databases with:
+  - per-row:   SQLiteConnection.insert_file / insert_code_block /
+               insert_relationship (one commit per row)
+  - bulk:      GraphOperations.insert_extraction_data
+  - fast-load: GraphOperations.insert_extraction_data(fast_load=True)
+
+Requires an installed configuration (sutrakit-setup); only the database path is
+overridden, so the configured databases are not touched.
+
+Usage:
+    python scripts/benchmark_graph_load.py [--blocks 100000] [--blocks-per-file 50]
+"""
+
+import argparse
+import sys
+import tempfile
+import time
+from pathlib import Path
+
+sys.path.insert(0, str(Path(__file__).resolve().parent.parent))
+sys.path.insert(0, str(Path(__file__).resolve().parent.parent / "src"))
+
+from config import config  # noqa: E402
+from graph.graph_operations import GraphOperations  # noqa: E402
+from graph.sqlite_client import SQLiteConnection  # noqa: E402
+from models import (  # noqa: E402
+    BlockType,
+    CodeBlock,
+    ExtractionData,
+    File,
+    FileData,
+    Project,
+    Relationship,
+)
+
+
+def build_extraction(total_blocks: int, blocks_per_file: int) -> ExtractionData:
+    """Build a synthetic extraction with one nested method per class block."""
+    files = {}
+    file_count = max(1, total_blocks // blocks_per_file)
+    block_id = 1
+
+    for file_index in range(file_count):
+        file_id = file_index + 1
+        blocks = []
+        while len(blocks) * 2 < blocks_per_file:
+            method = CodeBlock(
+                id=block_id + 1,
+                type=BlockType.FUNCTION,
+                name=f"method_{block_id}",
+                content="    def method(self):\n        return 1\n",
+                start_line=2,
+                end_line=3,
+                start_col=4,
+                end_col=16,
+            )
+            blocks.append(
+                CodeBlock(
+                    id=block_id,
+                    type=BlockType.CLASS,
+                    name=f"Class_{block_id}",
+                    content="class Example:\n    def method(self):\n        return 1\n",
+                    start_line=1,
+                    end_line=3,
+                    start_col=0,
+                    end_col=16,
+                    children=[method],
+                )
+            )
+            block_id += 2
+
+        relationships = []
+        if file_index > 0:
+            relationships.append(
+                Relationship(
+                    source_id=file_id,
+                    target_id=file_id - 1,
+                    import_content=f"from module_{file_id - 1} import Example",
+                    symbols=["Example"],
+                )
+            )
+
+        file_path = f"/bench/module_{file_id}.py"
+        files[file_path] = FileData(
+            id=file_id,
+            file_path=file_path,
+            language="python",
+            content="class Example:\n    def method(self):\n        return 1\n",
+            content_hash=f"{file_id:064x}",
+            blocks=blocks,
+            relationships=relationships,
+        )
+
+    return ExtractionData(metadata={"benchmark": True}, files=files)
+
+
+def fresh_connection(db_path: Path) -> SQLiteConnection:
+    """Create a new SQLiteConnection singleton pointing at db_path."""
+    SQLiteConnection._instance = None
+    config.sqlite.knowledge_graph_db = str(db_path)
+    connection = SQLiteConnection()
+    connection.insert_project(
+        Project(
+            id=1,
+            name="benchmark",
+            path="/bench",
+            description="",
+            created_at="",
+            updated_at="",
+        )
+    )
+    return connection
+
+
+def insert_blocks_per_row(connection, blocks, file_id, parent_block_id) -> None:
+    """The per-row path: one committed insert per block."""
+    for block in blocks:
+        block.file_id = file_id
+        block.parent_block_id = parent_block_id
+        connection.insert_code_block(block)
+        insert_blocks_per_row(connection, block.children, file_id, block.id)
+
+
+def load_per_row(connection: SQLiteConnection, extraction: ExtractionData) -> None:
+    for file_path, file_data in extraction.files.items():
+        connection.insert_file(
+            File(
+                id=file_data.id,
+                project_id=1,
+                file_path=file_path,
+                language=file_data.language,
+                content=file_data.content,
+                content_hash=file_data.content_hash,
+            )
+        )
+        insert_blocks_per_row(connection, file_data.blocks, file_data.id, None)
+        for rel in file_data.relationships:
+            connection.insert_relationship(rel)
+
+
+def main() -> None:
+    parser = argparse.ArgumentParser(description=__doc__.splitlines()[1])
+    parser.add_argument("--blocks", type=int, default=100_000)
+    parser.add_argument("--blocks-per-file", type=int, default=50)
+    args = parser.parse_args()
+
+    extraction = build_extraction(args.blocks, args.blocks_per_file)
+    block_count = sum(
+        len(f.blocks) + sum(len(b.children) for b in f.blocks)
+        for f in extraction.files.values()
+    )
+    print(f"Synthetic extraction: {len(extraction.files)} files, {block_count} blocks")
+
+    with tempfile.TemporaryDirectory() as tmp_dir:
+        runs = [
+            ("per-row", lambda conn: load_per_row(conn, extraction)),
+            (
+                "bulk",
+                lambda conn: GraphOperations().insert_extraction_data(extraction, 1),
+            ),
+            (
+                "fast-load",
+                lambda conn: GraphOperations().insert_extraction_data(
+                    extraction, 1, fast_load=True
+                ),
+            ),
+        ]
+
+        for name, load in runs:
+            connection = fresh_connection(Path(tmp_dir) / f"{name}.db")
+            start = time.perf_counter()
+            load(connection)
+            elapsed = time.perf_counter() - start
+            stored = connection.execute_query("SELECT COUNT(*) AS c FROM code_blocks")
+            print(
+                f"{name:>10}: {elapsed:8.2f}s "
+                f"({stored[0]['c'] / elapsed:,.0f} blocks/s)"
+            )
+            connection.close()
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,189 @@
+#!/usr/bin/env python3
+"""
+Benchmark exact vec0 search against the IVF ANN index and quantized storage.
+
+Fills a temporary embeddings database with synthetic clustered unit vectors
+(default 200k) and reports recall@k against the exact float `embedding MATCH ?`
+results plus p50/p95 query latency for:
+  - the IVF index, for each nprobe setting
+  - binary and int8 first-pass tables reranked against float32 vectors, for
+    each rerank factor
+ANN latency includes the rowid lookups VectorStore does to fetch chunk
+metadata.
+
+Does not need the embedding model or an installed configuration.
+
+Usage:
+    python scripts/benchmark_vector_search.py [--vectors 200000] [--queries 200]
+        [--top-k 30] [--nprobe 4 8 16 32] [--rerank-factor 4 8 16]
+"""
+
+import argparse
+import statistics
+import sys
+import tempfile
+import time
+from pathlib import Path
+from typing import Callable, List, Tuple
+
+import numpy as np
+import sqlite_vec
+
+try:
+    import pysqlite3 as sqlite3
+except ImportError:
+    import sqlite3
+
+sys.path.insert(0, str(Path(__file__).resolve().parent.parent / "src"))
+
+from embeddings.ann_index import VECTOR_DIMENSION, IVFIndex  # noqa: E402
+from embeddings.quantized_vectors import QuantizedVectorIndex  # noqa: E402
+
+# Bytes per vector in the table each first pass scans
+SCAN_BYTES = {"float": VECTOR_DIMENSION * 4, "int8": VECTOR_DIMENSION, "binary": 48}
+
+
+def synthetic_vectors(count: int, clusters: int, rng) -> np.ndarray:
+    """Unit vectors scattered around random cluster centres, like chunk embeddings."""
+    centres = rng.standard_normal((clusters, VECTOR_DIMENSION)).astype(np.float32)
+    labels = rng.integers(0, clusters, count)
+    vectors = centres[labels] + 0.6 * rng.standard_normal(
+        (count, VECTOR_DIMENSION)
+    ).astype(np.float32)
+    return vectors / np.linalg.norm(vectors, axis=1, keepdims=True)
+
+
+def open_database(db_path: Path):
+    connection = sqlite3.connect(str(db_path))
+    connection.enable_load_extension(True)
+    sqlite_vec.load(connection)
+    connection.execute(
+        """CREATE VIRTUAL TABLE embeddings USING vec0(
+            project_id INTEGER PARTITION KEY,
+            node_id TEXT,
+            chunk_index INTEGER,
+            chunk_start_line INTEGER,
+            chunk_end_line INTEGER,
+            embedding FLOAT[384]
+        )"""
+    )
+    return connection
+
+
+def load_vectors(connection, vectors: np.ndarray) -> None:
+    for start in range(0, len(vectors), 10000):
+        connection.executemany(
+            """INSERT INTO embeddings (node_id, project_id, chunk_index,
+               chunk_start_line, chunk_end_line, embedding)
+               VALUES (?, 1, 0, 1, 10, ?)""",
+            [
+                (f"block_{start + i}", vector)
+                for i, vector in enumerate(vectors[start : start + 10000])
+            ],
+        )
+    connection.commit()
+
+
+def timed(search: Callable[[np.ndarray], List[int]], queries) -> Tuple[list, list]:
+    results, latencies = [], []
+    for query in queries:
+        start = time.perf_counter()
+        results.append(search(query))
+        latencies.append((time.perf_counter() - start) * 1000)
+    return results, latencies
+
+
+def recall(found: List[List[int]], truth: List[List[int]]) -> float:
+    """Mean share of the exact top-k that a search also returned."""
+    return sum(
+        len(set(hits) & set(expected)) / len(expected)
+        for hits, expected in zip(found, truth)
+        if expected
+    ) / len(truth)
+
+
+def describe(latencies: List[float]) -> str:
+    p95 = statistics.quantiles(latencies, n=20)[-1] if len(latencies) > 1 else 0.0
+    return f"p50 {statistics.median(latencies):7.2f}ms  p95 {p95:7.2f}ms"
+
+
+def main() -> None:
+    parser = argparse.ArgumentParser(description=__doc__.splitlines()[1])
+    parser.add_argument("--vectors", type=int, default=200_000)
+    parser.add_argument("--clusters", type=int, default=2000)
+    parser.add_argument("--queries", type=int, default=200)
+    parser.add_argument("--top-k", type=int, default=30)
+    parser.add_argument("--nprobe", type=int, nargs="+", default=[4, 8, 16, 32])
+    parser.add_argument("--rerank-factor", type=int, nargs="+", default=[4, 8, 16])
+    args = parser.parse_args()
+
+    rng = np.random.default_rng(0)
+    vectors = synthetic_vectors(args.vectors, args.clusters, rng)
+    queries = synthetic_vectors(args.queries, args.clusters, rng)
+
+    with tempfile.TemporaryDirectory() as tmp_dir:
+        connection = open_database(Path(tmp_dir) / "embeddings.db")
+
+        start = time.perf_counter()
+        load_vectors(connection, vectors)
+        print(f"Loaded {args.vectors} vectors in {time.perf_counter() - start:.1f}s")
+
+        index = IVFIndex(connection)
+        start = time.perf_counter()
+        index.train()
+        print(
+            f"Trained {len(index.centroids)} lists in "
+            f"{time.perf_counter() - start:.1f}s"
+        )
+
+        def exact(query: np.ndarray) -> List[int]:
+            rows = connection.execute(
+                """SELECT rowid FROM embeddings WHERE project_id = ?
+                   AND embedding MATCH ? ORDER BY distance LIMIT ?""",
+                (1, query, args.top_k),
+            ).fetchall()
+            return [row[0] for row in rows]
+
+        truth, latencies = timed(exact, queries)
+        print(f"{'exact':>12}:  recall 100.0%  {describe(latencies)}")
+
+        for nprobe in args.nprobe:
+
+            def ann(query: np.ndarray, nprobe: int = nprobe) -> List[int]:
+                hits = index.search(query, args.top_k, nprobe, project_id=1)
+                for rowid, _ in hits:
+                    connection.execute(
+                        "SELECT node_id FROM embeddings WHERE rowid = ?", (rowid,)
+                    ).fetchone()
+                return [rowid for rowid, _ in hits]
+
+            found, latencies = timed(ann, queries)
+            print(
+                f"{f'nprobe={nprobe}':>12}:  recall {recall(found, truth):6.1%}  "
+                f"{describe(latencies)}"
+            )
+
+        for mode in ["binary", "int8"]:
+            quantized = QuantizedVectorIndex(connection, mode)
+            print(
+                f"{mode}: {SCAN_BYTES[mode]} scanned bytes/vector "
+                f"(float: {SCAN_BYTES['float']})"
+            )
+
+            for factor in args.rerank_factor:
+
+                def rerank(query: np.ndarray, factor: int = factor) -> List[int]:
+                    hits = quantized.search(query, args.top_k, factor, project_id=1)
+                    return [rowid for rowid, _ in hits]
+
+                found, latencies = timed(rerank, queries)
+                print(
+                    f"{f'rerank x{factor}':>12}:  recall {recall(found, truth):6.1%}  "
+                    f"{describe(latencies)}"
+                )
+
+        connection.close()
+
+
+if __name__ == "__main__":
+    main()
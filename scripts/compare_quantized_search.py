@@ -0,0 +1,207 @@
+#!/usr/bin/env python3
+"""
+Quality regression check for the INT8 embedding model against fp32.
+
+Chunks and embeds a source tree once per model variant into temporary
+embedding databases, runs a fixed query set through
+VectorStore.search_similar_chunks on each, and reports:
+  - top-k overlap: share of the fp32 top-k chunks the INT8 model also returns
+  - vector agreement: mean cosine similarity of fp32 and INT8 chunk vectors
+  - embedding throughput of each variant
+
+Requires an installed configuration and embedding model (sutrakit-setup) and,
+to create the INT8 model, the `onnx` package. The configured databases are not
+touched.
+
+Usage:
+    python scripts/compare_quantized_search.py [--source src] [--top-k 10]
+        [--queries queries.txt] [--min-overlap 0.8]
+"""
+
+import argparse
+import sys
+import tempfile
+import time
+from pathlib import Path
+from typing import Dict, List, Set, Tuple
+
+import numpy as np
+
+sys.path.insert(0, str(Path(__file__).resolve().parent.parent))
+sys.path.insert(0, str(Path(__file__).resolve().parent.parent / "src"))
+
+from config import config  # noqa: E402
+from embeddings.vector_store import VectorStore  # noqa: E402
+
+DEFAULT_QUERIES = [
+    "parse source files into an abstract syntax tree",
+    "insert code blocks into the sqlite database",
+    "compute sha256 hash of file content",
+    "detect which files changed since the last index",
+    "split text into chunks with token overlap",
+    "generate embeddings with onnx runtime",
+    "search for similar code by vector distance",
+    "load configuration from a json file",
+    "extract import relationships between files",
+    "handle errors and roll back the transaction",
+    "command line argument parsing",
+    "web search and fetch a url",
+]
+
+SOURCE_SUFFIXES = {".py", ".ts", ".js", ".java", ".go", ".rs", ".md"}
+
+
+def collect_files(source: Path, max_files: int) -> List[Path]:
+    files = [
+        path
+        for path in sorted(source.rglob("*"))
+        if path.suffix in SOURCE_SUFFIXES and "__pycache__" not in path.parts
+    ]
+    return [path for path in files if path.is_file()][:max_files]
+
+
+def open_store(variant: str, db_path: Path) -> VectorStore:
+    """Create a fresh VectorStore singleton for one model variant."""
+    if VectorStore._instance is not None:
+        VectorStore._instance.close()
+    VectorStore._instance = None
+
+    config.embedding.model_variant = variant
+    # Measure the model itself, not cache hits
+    config.embedding.embedding_cache = False
+    return VectorStore(db_path=str(db_path))
+
+
+def index_files(store: VectorStore, files: List[Path]) -> Tuple[float, int]:
+    """Embed every chunk of every file; returns (seconds, chunk count)."""
+    elapsed = 0.0
+    chunk_count = 0
+
+    for file_index, path in enumerate(files):
+        text = path.read_text(encoding="utf-8", errors="ignore")
+        chunks = store.chunk_text(
+            text, config.embedding.max_tokens, config.embedding.overlap_tokens
+        )
+        if not chunks:
+            continue
+
+        start = time.perf_counter()
+        embeddings = store.embedding_model.get_embeddings_batch(
+            [chunk["text"] for chunk in chunks]
+        )
+        elapsed += time.perf_counter() - start
+
+        store.store_embeddings_batch(
+            [
+                {
+                    "node_id": f"file_{file_index}",
+                    "project_id": 1,
+                    "chunk_index": chunk_index,
+                    "chunk_start_line": chunk["start_line"],
+                    "chunk_end_line": chunk["end_line"],
+                    "embedding": embedding,
+                }
+                for chunk_index, (chunk, embedding) in enumerate(
+                    zip(chunks, embeddings)
+                )
+            ]
+        )
+        chunk_count += len(chunks)
+
+    return elapsed, chunk_count
+
+
+def search(store: VectorStore, queries: List[str], top_k: int) -> List[Set[str]]:
+    return [
+        {
+            f"{hit['node_id']}#{hit['chunk_index']}"
+            for hit in store.search_similar_chunks(query, limit=top_k, project_id=1)
+        }
+        for query in queries
+    ]
+
+
+def load_vectors(store: VectorStore) -> Dict[Tuple[str, int], np.ndarray]:
+    assert store.connection is not None
+    rows = store.connection.execute(
+        "SELECT node_id, chunk_index, embedding FROM embeddings"
+    ).fetchall()
+    return {
+        (node_id, chunk_index): np.frombuffer(blob, dtype=np.float32)
+        for node_id, chunk_index, blob in rows
+    }
+
+
+def cosine(a: np.ndarray, b: np.ndarray) -> float:
+    denominator = float(np.linalg.norm(a) * np.linalg.norm(b))
+    return float(np.dot(a, b)) / denominator if denominator else 0.0
+
+
+def main() -> None:
+    parser = argparse.ArgumentParser(description=__doc__.splitlines()[1])
+    parser.add_argument("--source", type=Path, default=Path("src"))
+    parser.add_argument("--max-files", type=int, default=200)
+    parser.add_argument("--top-k", type=int, default=10)
+    parser.add_argument("--queries", type=Path, help="One query per line")
+    parser.add_argument(
+        "--min-overlap",
+        type=float,
+        default=0.0,
+        help="Exit non-zero if the mean top-k overlap is below this",
+    )
+    args = parser.parse_args()
+
+    queries = DEFAULT_QUERIES
+    if args.queries:
+        queries = [
+            line.strip()
+            for line in args.queries.read_text(encoding="utf-8").splitlines()
+            if line.strip()
+        ]
+
+    files = collect_files(args.source, args.max_files)
+    print(f"Corpus: {len(files)} files from {args.source}, {len(queries)} queries")
+
+    results = {}
+    vectors = {}
+    with tempfile.TemporaryDirectory() as tmp_dir:
+        for variant in ["fp32", "int8"]:
+            store = open_store(variant, Path(tmp_dir) / f"{variant}.db")
+            elapsed, chunk_count = index_files(store, files)
+            print(
+                f"{variant:>5}: {store.embedding_model.model_file.name}, "
+                f"{chunk_count} chunks in {elapsed:.2f}s "
+                f"({chunk_count / elapsed if elapsed else 0:,.1f} chunks/s)"
+            )
+            results[variant] = search(store, queries, args.top_k)
+            vectors[variant] = load_vectors(store)
+            store.close()
+        VectorStore._instance = None
+
+    overlaps = []
+    for query, fp32_hits, int8_hits in zip(
+        queries, results["fp32"], results["int8"]
+    ):
+        overlap = len(fp32_hits & int8_hits) / len(fp32_hits) if fp32_hits else 1.0
+        overlaps.append(overlap)
+        print(f"  {overlap:5.0%}  {query}")
+
+    shared = vectors["fp32"].keys() & vectors["int8"].keys()
+    agreement = (
+        sum(cosine(vectors["fp32"][key], vectors["int8"][key]) for key in shared)
+        / len(shared)
+        if shared
+        else 0.0
+    )
+
+    mean_overlap = sum(overlaps) / len(overlaps) if overlaps else 0.0
+    print(f"Mean top-{args.top_k} overlap: {mean_overlap:.1%}")
+    print(f"Mean fp32/int8 cosine similarity: {agreement:.4f}")
+
+    if mean_overlap < args.min_overlap:
+        print(f"❌ Overlap below {args.min_overlap:.0%}")
+        sys.exit(1)
+
+
+if __name__ == "__main__":
+    main()
@@ -38,9 +38,12 @@ class IndexingPrerequisitesHandler:
 
             # Query database for file content directly
             query = """
-                SELECT content FROM files
-                WHERE project_id = ? AND file_path = ?
-                ORDER BY id DESC
+                SELECT stored_content(f.content, f.content_key, cs.data, NULL, NULL)
+                       AS content
+                FROM files f
+                LEFT JOIN content_store cs ON cs.content_key = f.content_key
+                WHERE f.project_id = ? AND f.file_path = ?
+                ORDER BY f.id DESC
                 LIMIT 1
             """
 
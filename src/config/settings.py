@@ -107,6 +107,15 @@ class DatabaseConfig:
     max_retry_attempts: int
     batch_size: int
 
+    # File and code block text storage: "plain" stores it inline; "compressed"
+    # stores each distinct file text once, zlib-compressed, and code blocks as
+    # byte ranges into it (see graph.content_store)
+    content_storage: str = "plain"
+
+    # Give each thread its own read-only connection so reads run concurrently
+    # with each other and with writes (WAL); off = all queries share the writer
+    read_pool: bool = True
+
 
 @dataclass
 class AWSConfig:
@@ -257,6 +266,82 @@ class EmbeddingConfig:
     max_tokens: int
     overlap_tokens: int
 
+    # Model weights: "fp32" (model.onnx) or "int8" (dynamically quantized
+    # model_int8.onnx, created on first use; faster on CPU, slightly less exact)
+    model_variant: str = "fp32"
+
+    # Inference settings: texts per model call, each call padded only to its
+    # longest text (texts are grouped by token length first)
+    inference_batch_size: int = 32
+
+    # Reuse embeddings of unchanged chunk text across re-indexes; the least
+    # recently used entries beyond embedding_cache_max_entries are evicted
+    embedding_cache: bool = True
+    embedding_cache_max_entries: int = 200000
+
+    # Approximate nearest-neighbour (IVF) search, trained in the background
+    # once the embeddings table holds ann_min_vectors vectors; smaller tables,
+    # and projects with fewer vectors, use exact search
+    ann_index: bool = True
+    ann_min_vectors: int = 50000
+    # IVF lists scanned per query (more = better recall, slower)
+    ann_nprobe: int = 16
+
+    # Vector storage for exact search: "float" scans float32 vectors; "binary"
+    # (bit) or "int8" scan a compact copy for limit * rerank_factor candidates
+    # and rerank them against the float32 vectors
+    vector_storage: str = "float"
+    rerank_factor: int = 8
+
+    # ONNX Runtime sessions; batches are spread across them in parallel
+    inference_sessions: int = 1
+
+    # Session threading (0 = ONNX Runtime default, or cores / sessions when
+    # running several sessions)
+    intra_op_threads: int = 0
+    inter_op_threads: int = 0
+
+    # Graph optimization level: "disable", "basic", "extended" or "all"
+    graph_optimization_level: str = "all"
+
+    # Use ONNX Runtime's CPU memory arena allocator
+    cpu_mem_arena: bool = True
+
+    # Operator execution mode: "sequential" or "parallel"
+    execution_mode: str = "sequential"
+
+
+@dataclass
+class IndexingConfig:
+    """Indexing pipeline configuration."""
+
+    # Parallel parsing (0 = one worker per CPU core, 1 = parse in-process)
+    parse_workers: int = 0
+
+    # Maximum number of discovered files queued ahead of the parse workers
+    parse_queue_size: int = 256
+
+    # Directory scanning threads (0 = automatic, 1 = scan in the calling thread)
+    scan_workers: int = 0
+
+    # Re-hash every file during change detection instead of trusting unchanged
+    # (size, mtime_ns, inode) stats
+    paranoid_hashing: bool = False
+
+    # Full index loads run with synchronous=OFF, journal_mode=MEMORY and graph
+    # indexes rebuilt after the load (faster, but not crash safe while loading)
+    fast_load: bool = False
+
+    # Parser results format: "ndjson" (streamed one file per line) or "json"
+    # (single document)
+    extraction_format: str = "ndjson"
+
+    # Run full indexing as a parse -> store -> embed pipeline instead of phases
+    pipeline: bool = True
+
+    # Maximum number of files buffered between two pipeline stages
+    pipeline_queue_size: int = 64
+
 
 @dataclass
 class WebSearchConfig:
@@ -346,6 +431,10 @@ class Config:
             embedding_config = config_data.get("embedding", {})
             self.embedding = EmbeddingConfig(**embedding_config)
 
+            # Initialize indexing config (optional section, defaults apply)
+            indexing_config = config_data.get("indexing", {})
+            self.indexing = IndexingConfig(**indexing_config)
+
             # Initialize logging config
             logging_config = config_data.get("logging", {})
             self.logging = LoggingConfig(**logging_config)
@@ -0,0 +1,533 @@
+"""
+Approximate nearest-neighbour (IVF) index over the vec0 embeddings table.
+
+The vec0 table answers `embedding MATCH ?` by scanning every vector. This
+index partitions vectors into k-means clusters ("lists"); a search scores the
+query against the centroids and only scans the vectors of the nprobe closest
+lists. Distances are exact L2 over those candidates, the same metric vec0
+uses, so results are directly comparable with exact search.
+
+The index lives in the embeddings database next to the vec0 table and holds
+no copy of the vectors; candidates are read back from vec0 by rowid:
+
+    ann_centroids(list_id, centroid)                one row per list
+    ann_vectors(vector_rowid, list_id, project_id)  one row per vec0 vector
+
+It is trained once enough vectors exist, then kept up to date inside the same
+transactions that insert into and delete from the vec0 table.
+
+Training builds the next index in ann_vectors_next, reading the vectors
+through a separate connection and writing in short batches, and swaps it in
+at the end. Searches keep using the previous index (or exact search) while it
+runs, and writes made meanwhile are replayed into the new index.
+"""
+
+import math
+import threading
+from typing import (
+    TYPE_CHECKING,
+    Callable,
+    Dict,
+    Iterable,
+    List,
+    Optional,
+    Sequence,
+    Set,
+    Tuple,
+)
+
+# This block is only read by type checkers, not at runtime
+if TYPE_CHECKING:
+    import sqlite3
+
+import numpy as np
+from loguru import logger
+
+VECTOR_DIMENSION = 384
+
+CREATE_ANN_TABLES = [
+    """CREATE TABLE IF NOT EXISTS ann_centroids (
+        list_id INTEGER PRIMARY KEY,
+        centroid BLOB NOT NULL
+    )""",
+    """CREATE TABLE IF NOT EXISTS ann_vectors (
+        vector_rowid INTEGER PRIMARY KEY,
+        list_id INTEGER NOT NULL,
+        project_id INTEGER NOT NULL
+    )""",
+    """CREATE INDEX IF NOT EXISTS idx_ann_vectors_list
+        ON ann_vectors(list_id, project_id)""",
+]
+
+CREATE_ANN_STAGING_TABLE = """CREATE TABLE ann_vectors_next (
+    vector_rowid INTEGER PRIMARY KEY,
+    list_id INTEGER NOT NULL,
+    project_id INTEGER NOT NULL
+)"""
+
+INSERT_ANN_VECTOR = """INSERT OR REPLACE INTO {}
+    (vector_rowid, list_id, project_id) VALUES (?, ?, ?)"""
+
+SELECT_VECTOR = "SELECT embedding FROM embeddings WHERE rowid = ?"
+
+SELECT_VECTOR_ROWIDS_FOR_NODES = """SELECT rowid FROM embeddings
+    WHERE node_id IN ({}) AND project_id = ?"""
+
+COUNT_ANN_VECTORS_BY_PROJECT = """SELECT project_id, COUNT(*) FROM ann_vectors
+    GROUP BY project_id"""
+
+# Rows read per step when assigning every vector to a list
+_ASSIGN_BATCH_SIZE = 10000
+
+
+def _to_matrix(blobs: Iterable[bytes]) -> np.ndarray:
+    return np.frombuffer(b"".join(blobs), dtype=np.float32).reshape(
+        -1, VECTOR_DIMENSION
+    )
+
+
+def _squared_distances(vectors: np.ndarray, centroids: np.ndarray) -> np.ndarray:
+    """Squared L2 distance of every vector to every centroid."""
+    return (
+        np.sum(vectors * vectors, axis=1, keepdims=True)
+        - 2.0 * vectors @ centroids.T
+        + np.sum(centroids * centroids, axis=1)
+    )
+
+
+def _nearest(vectors: np.ndarray, centroids: np.ndarray) -> np.ndarray:
+    """Index of the nearest centroid for each vector."""
+    return np.argmin(_squared_distances(vectors, centroids), axis=1)
+
+
+def kmeans(
+    vectors: np.ndarray, clusters: int, iterations: int = 10, seed: int = 0
+) -> np.ndarray:
+    """Lloyd's k-means; empty clusters are re-seeded from random vectors."""
+    rng = np.random.default_rng(seed)
+    centroids = vectors[rng.choice(len(vectors), clusters, replace=False)].copy()
+
+    for _ in range(iterations):
+        assignments = np.concatenate(
+            [
+                _nearest(vectors[start : start + 4096], centroids)
+                for start in range(0, len(vectors), 4096)
+            ]
+        )
+        sums = np.zeros_like(centroids)
+        np.add.at(sums, assignments, vectors)
+        counts = np.bincount(assignments, minlength=clusters)
+
+        empty = counts == 0
+        counts[empty] = 1
+        centroids = sums / counts[:, None]
+        if empty.any():
+            centroids[empty] = vectors[rng.choice(len(vectors), int(empty.sum()))]
+
+    return centroids.astype(np.float32)
+
+
+class _IndexBuild:
+    """Writes made while the next index is being built, replayed at the swap."""
+
+    def __init__(self) -> None:
+        # rowid -> (project_id, vector) for vectors added during the build
+        self.added: Dict[int, Tuple[int, np.ndarray]] = {}
+        # rowids deleted during the build
+        self.deleted: Set[int] = set()
+
+
+class IVFIndex:
+    """Inverted-file ANN index persisted in the embeddings database."""
+
+    def __init__(
+        self,
+        connection: "sqlite3.Connection",
+        lock: Optional[threading.RLock] = None,
+        connect: Optional[Callable[[], "sqlite3.Connection"]] = None,
+    ):
+        self.connection = connection
+        # Shared with the vector store's writes on the same connection
+        self.lock = lock or threading.RLock()
+        # Opens a second connection for reading vectors while training; without
+        # one, training holds the lock throughout
+        self.connect = connect
+        self.centroids: Optional[np.ndarray] = None
+        # Vectors in the vec0 table, as tracked since startup
+        self.vector_count = 0
+        # Indexed vectors per project, tracked while the index is trained
+        self.project_counts: Dict[int, int] = {}
+        self._build: Optional[_IndexBuild] = None
+        self._training_thread: Optional[threading.Thread] = None
+
+        with self.lock:
+            self._drop_vector_copies()
+            for statement in CREATE_ANN_TABLES:
+                self.connection.execute(statement)
+            # Left behind by a build that did not finish
+            self.connection.execute("DROP TABLE IF EXISTS ann_vectors_next")
+            self.connection.commit()
+            self._load()
+
+    def _drop_vector_copies(self) -> None:
+        """Drop an index whose ann_vectors rows still carry a copy of each vector.
+
+        The index is retrained in the background; searches use exact search
+        until then.
+        """
+        columns = [
+            row[1]
+            for row in self.connection.execute("PRAGMA table_info(ann_vectors)")
+        ]
+        if "embedding" in columns:
+            logger.info("🧭 Dropping ANN index with copied vectors, it will be retrained")
+            self.connection.execute("DROP TABLE ann_vectors")
+            self.connection.execute("DELETE FROM ann_centroids")
+
+    @property
+    def is_trained(self) -> bool:
+        return self.centroids is not None
+
+    def should_train(self, min_vectors: int) -> bool:
+        """Whether the index is missing or has outgrown its lists.
+
+        Lists are sized for about sqrt(N) vectors each; once the table has
+        grown to four times the size the index was trained for, retrain.
+        """
+        if self.centroids is None:
+            return self.vector_count >= min_vectors
+        lists = len(self.centroids)
+        return lists < 4096 and self.vector_count > 4 * lists * lists
+
+    def _load(self) -> None:
+        rows = self.connection.execute(
+            "SELECT centroid FROM ann_centroids ORDER BY list_id"
+        ).fetchall()
+        self.centroids = _to_matrix(row[0] for row in rows) if rows else None
+
+        table = "ann_vectors" if self.centroids is not None else "embeddings"
+        cursor = self.connection.execute(f"SELECT COUNT(*) FROM {table}")
+        self.vector_count = int(cursor.fetchone()[0])
+        self._load_project_counts()
+
+    def _load_project_counts(self) -> None:
+        if self.centroids is None:
+            self.project_counts = {}
+            return
+        self.project_counts = {
+            int(project_id): int(count)
+            for project_id, count in self.connection.execute(
+                COUNT_ANN_VECTORS_BY_PROJECT
+            )
+        }
+
+    def start_training(self) -> bool:
+        """
+        Train the index on a background thread unless a build is running.
+
+        Returns:
+            True if a training thread was started
+        """
+        with self.lock:
+            if self._build is not None or (
+                self._training_thread is not None and self._training_thread.is_alive()
+            ):
+                return False
+            self._training_thread = threading.Thread(
+                target=self._train_in_background, name="ann-train", daemon=True
+            )
+            self._training_thread.start()
+            return True
+
+    def _train_in_background(self) -> None:
+        try:
+            self.train()
+        except Exception as e:
+            logger.error(f"Failed to train ANN index, using exact search: {e}")
+
+    def train(self, sample_size: int = 50000, iterations: int = 10) -> None:
+        """
+        Build the index from every vector in the vec0 table.
+
+        Picks about sqrt(N) lists, runs k-means on a random sample and assigns
+        every vector to its nearest centroid, replacing any previous index.
+        Vectors are read through a separate connection and written to
+        ann_vectors_next in short locked batches, so searches and stores on
+        the shared connection carry on until the new index is swapped in.
+        """
+        build = _IndexBuild()
+        with self.lock:
+            if self._build is not None:
+                return
+            self._build = build
+            self.connection.execute("DROP TABLE IF EXISTS ann_vectors_next")
+            self.connection.execute(CREATE_ANN_STAGING_TABLE)
+            self.connection.commit()
+
+        reader = None
+        try:
+            if self.connect is not None:
+                reader = self.connect()
+            if reader is None:
+                with self.lock:
+                    self._build_next(self.connection, build, sample_size, iterations)
+            else:
+                self._build_next(reader, build, sample_size, iterations)
+        finally:
+            if reader is not None:
+                reader.close()
+            with self.lock:
+                self._build = None
+                self.connection.execute("DROP TABLE IF EXISTS ann_vectors_next")
+                self.connection.commit()
+
+    def _build_next(
+        self,
+        source: "sqlite3.Connection",
+        build: _IndexBuild,
+        sample_size: int,
+        iterations: int,
+    ) -> None:
+        """Fill ann_vectors_next from one snapshot of source, then swap it in."""
+        separate = source is not self.connection
+        if separate:
+            # One read transaction keeps the count, sample and scan consistent
+            source.execute("BEGIN")
+        try:
+            total = int(source.execute("SELECT COUNT(*) FROM embeddings").fetchone()[0])
+            if total == 0:
+                return
+
+            lists = min(4096, max(1, int(math.sqrt(total))), total)
+            sample_rows = source.execute(
+                "SELECT embedding FROM embeddings ORDER BY random() LIMIT ?",
+                (max(sample_size, lists),),
+            ).fetchall()
+            logger.info(
+                f"🧭 Training ANN index: {lists} lists from "
+                f"{len(sample_rows)} of {total} vectors"
+            )
+            centroids = kmeans(
+                _to_matrix(row[0] for row in sample_rows), lists, iterations
+            )
+            del sample_rows
+
+            cursor = source.execute(
+                "SELECT rowid, project_id, embedding FROM embeddings"
+            )
+            while True:
+                rows = cursor.fetchmany(_ASSIGN_BATCH_SIZE)
+                if not rows:
+                    break
+                with self.lock:
+                    self._insert(
+                        [(row[0], row[1]) for row in rows],
+                        _to_matrix(row[2] for row in rows),
+                        centroids,
+                        "ann_vectors_next",
+                    )
+                    self.connection.commit()
+        finally:
+            if separate:
+                source.execute("COMMIT")
+
+        with self.lock:
+            self._swap(build, centroids)
+
+    def _swap(self, build: _IndexBuild, centroids: np.ndarray) -> None:
+        """Replay the writes made during the build and replace the index."""
+        try:
+            self.connection.execute("BEGIN")
+            if build.deleted:
+                deleted = list(build.deleted)
+                for start in range(0, len(deleted), 500):
+                    chunk = deleted[start : start + 500]
+                    self.connection.execute(
+                        "DELETE FROM ann_vectors_next WHERE vector_rowid IN "
+                        f"({','.join('?' * len(chunk))})",
+                        chunk,
+                    )
+            if build.added:
+                self._insert(
+                    [(rowid, project_id) for rowid, (project_id, _) in build.added.items()],
+                    np.stack([vector for _, vector in build.added.values()]),
+                    centroids,
+                    "ann_vectors_next",
+                )
+
+            self.connection.execute("DELETE FROM ann_centroids")
+            self.connection.executemany(
+                "INSERT INTO ann_centroids (list_id, centroid) VALUES (?, ?)",
+                [(i, c.tobytes()) for i, c in enumerate(centroids)],
+            )
+            self.connection.execute("DROP TABLE ann_vectors")
+            self.connection.execute("ALTER TABLE ann_vectors_next RENAME TO ann_vectors")
+            self.connection.execute(CREATE_ANN_TABLES[2])
+            self.connection.execute("COMMIT")
+        except Exception:
+            self.connection.execute("ROLLBACK")
+            raise
+
+        self.centroids = centroids
+        cursor = self.connection.execute("SELECT COUNT(*) FROM ann_vectors")
+        self.vector_count = int(cursor.fetchone()[0])
+        self._load_project_counts()
+        logger.info(f"✅ ANN index trained over {self.vector_count} vectors")
+
+    def add(self, rows: Sequence[Tuple[int, int, np.ndarray]]) -> None:
+        """
+        Index (vec0 rowid, project_id, vector) rows.
+
+        Runs inside the caller's transaction; only counts the rows until the
+        index is trained, and records them for the next index while one is
+        being built.
+        """
+        self.vector_count += len(rows)
+        if not rows:
+            return
+
+        if self._build is not None:
+            for rowid, project_id, vector in rows:
+                self._build.deleted.discard(rowid)
+                self._build.added[rowid] = (
+                    project_id,
+                    np.asarray(vector, dtype=np.float32),
+                )
+
+        if self.centroids is None:
+            return
+
+        self._insert(
+            [(rowid, project_id) for rowid, project_id, _ in rows],
+            np.stack([np.asarray(vector, dtype=np.float32) for _, _, vector in rows]),
+            self.centroids,
+        )
+        for _, project_id, _ in rows:
+            self.project_counts[project_id] = (
+                self.project_counts.get(project_id, 0) + 1
+            )
+
+    def _insert(
+        self,
+        keys: List[Tuple[int, int]],
+        vectors: np.ndarray,
+        centroids: np.ndarray,
+        table: str = "ann_vectors",
+    ) -> None:
+        assignments = _nearest(vectors, centroids)
+        self.connection.executemany(
+            INSERT_ANN_VECTOR.format(table),
+            [
+                (rowid, int(list_id), project_id)
+                for (rowid, project_id), list_id in zip(keys, assignments)
+            ],
+        )
+
+    def remove_nodes(self, node_ids: List[str], project_id: int) -> None:
+        """
+        Drop the vectors of nodes about to be deleted from the vec0 table.
+
+        Runs inside the caller's transaction, before the vec0 delete.
+        """
+        if (self.centroids is None and self._build is None) or not node_ids:
+            return
+
+        rowids = [
+            row[0]
+            for row in self.connection.execute(
+                SELECT_VECTOR_ROWIDS_FOR_NODES.format(",".join("?" * len(node_ids))),
+                (*node_ids, project_id),
+            )
+        ]
+        if not rowids:
+            return
+
+        if self._build is not None:
+            for rowid in rowids:
+                self._build.added.pop(rowid, None)
+                self._build.deleted.add(rowid)
+        if self.centroids is None:
+            self.vector_count -= len(rowids)
+            return
+
+        cursor = self.connection.execute(
+            "DELETE FROM ann_vectors WHERE vector_rowid IN "
+            f"({','.join('?' * len(rowids))})",
+            rowids,
+        )
+        removed = max(cursor.rowcount, 0)
+        self.vector_count -= removed
+        self.project_counts[project_id] = max(
+            self.project_counts.get(project_id, 0) - removed, 0
+        )
+
+    def search(
+        self,
+        query: np.ndarray,
+        limit: int,
+        nprobe: int,
+        project_id: Optional[int] = None,
+    ) -> List[Tuple[int, float]]:
+        """
+        Find the approximate nearest vectors to a query.
+
+        Probes the nprobe lists closest to the query. A project's vectors
+        cover only some of the lists, so a project-scoped search keeps
+        probing the next closest lists (doubling each round) until it has
+        at least limit candidates or every list has been scanned.
+
+        Returns:
+            (vec0 rowid, L2 distance) pairs, nearest first
+        """
+        centroids = self.centroids
+        if centroids is None:
+            return []
+
+        query = np.asarray(query, dtype=np.float32).reshape(1, -1)
+        order = np.argsort(_squared_distances(query, centroids)[0])
+        nprobe = min(max(1, nprobe), len(centroids))
+
+        rowids: List[int] = []
+        probed = 0
+        while True:
+            probe = [int(list_id) for list_id in order[probed:nprobe]]
+            sql = (
+                "SELECT vector_rowid FROM ann_vectors "
+                f"WHERE list_id IN ({','.join('?' * len(probe))})"
+            )
+            params: List[int] = list(probe)
+            if project_id is not None:
+                sql += " AND project_id = ?"
+                params.append(project_id)
+
+            with self.lock:
+                rowids.extend(
+                    row[0] for row in self.connection.execute(sql, params)
+                )
+
+            probed = nprobe
+            if project_id is None or len(rowids) >= limit or probed >= len(order):
+                break
+            nprobe = min(probed * 2, len(order))
+
+        # Point lookups by rowid avoid a vec0 table scan
+        found: List[int] = []
+        blobs: List[bytes] = []
+        with self.lock:
+            for rowid in rowids:
+                row = self.connection.execute(SELECT_VECTOR, (rowid,)).fetchone()
+                if row is not None:
+                    found.append(rowid)
+                    blobs.append(row[0])
+        if not found:
+            return []
+
+        candidates = _to_matrix(blobs)
+        distances = np.sqrt(
+            np.maximum(_squared_distances(query, candidates)[0], 0.0)
+        )
+
+        limit = min(limit, len(found))
+        nearest = np.argpartition(distances, limit - 1)[:limit]
+        nearest = nearest[np.argsort(distances[nearest])]
+        return [(int(found[i]), float(distances[i])) for i in nearest]
@@ -0,0 +1,245 @@
+"""
+Content-addressed embedding cache.
+
+Embeddings are keyed by a hash of the normalized chunk text and the model id,
+so re-indexing a file only runs the model for chunks whose text changed. The
+cache lives in the embeddings database next to the vector table and is shared
+by every project. Entries of other models are dropped at startup, and the
+least recently used entries are evicted once the cache outgrows its cap.
+"""
+
+import hashlib
+import threading
+import time
+from pathlib import Path
+from typing import TYPE_CHECKING, Dict, Iterable, List, Optional
+
+# This block is only read by type checkers, not at runtime
+if TYPE_CHECKING:
+    import sqlite3
+
+import numpy as np
+from loguru import logger
+
+CREATE_EMBEDDING_CACHE_TABLE = """
+CREATE TABLE IF NOT EXISTS embedding_cache (
+    text_hash TEXT PRIMARY KEY,
+    model_id TEXT NOT NULL,
+    embedding BLOB NOT NULL,
+    last_used INTEGER NOT NULL
+) WITHOUT ROWID
+"""
+
+CREATE_EMBEDDING_CACHE_LAST_USED_INDEX = """
+CREATE INDEX IF NOT EXISTS idx_embedding_cache_last_used
+ON embedding_cache(last_used)
+"""
+
+GET_EMBEDDING_CACHE_COLUMNS = "PRAGMA table_info(embedding_cache)"
+
+DROP_EMBEDDING_CACHE_TABLE = "DROP TABLE IF EXISTS embedding_cache"
+
+SELECT_CACHED_EMBEDDINGS = (
+    "SELECT text_hash, embedding FROM embedding_cache WHERE text_hash IN ({})"
+)
+
+TOUCH_CACHED_EMBEDDINGS = (
+    "UPDATE embedding_cache SET last_used = ? WHERE text_hash IN ({})"
+)
+
+INSERT_CACHED_EMBEDDING = """
+INSERT OR IGNORE INTO embedding_cache (text_hash, model_id, embedding, last_used)
+VALUES (?, ?, ?, ?)
+"""
+
+COUNT_CACHED_EMBEDDINGS = "SELECT COUNT(*) FROM embedding_cache"
+
+DELETE_OTHER_MODEL_EMBEDDINGS = "DELETE FROM embedding_cache WHERE model_id != ?"
+
+# Keeps the `keep` most recently used entries
+EVICT_CACHED_EMBEDDINGS = """
+DELETE FROM embedding_cache WHERE text_hash IN (
+    SELECT text_hash FROM embedding_cache
+    ORDER BY last_used DESC
+    LIMIT -1 OFFSET ?
+)
+"""
+
+# Stay below SQLite's default limit on bound parameters
+_LOOKUP_BATCH_SIZE = 500
+
+# Evict down to this share of max_entries, so eviction runs once per many
+# writes rather than on every write past the cap
+_EVICT_TO_FRACTION = 0.9
+
+
+def normalize_chunk_text(text: str) -> str:
+    """Normalize chunk text so equivalent chunks share a cache key."""
+    return text.replace("\r\n", "\n").strip()
+
+
+class EmbeddingCache:
+    """Maps hash(normalized text + model id) to a float32 embedding."""
+
+    def __init__(
+        self,
+        connection: "sqlite3.Connection",
+        model_id: str,
+        lock: Optional[threading.RLock] = None,
+        max_entries: int = 0,
+    ):
+        self.connection = connection
+        self.model_id = model_id
+        # 0 = unbounded
+        self.max_entries = max_entries
+        # Shared with the vector store's writes on the same connection
+        self.lock = lock or threading.RLock()
+        self.hits = 0
+        self.misses = 0
+
+        with self.lock:
+            self._setup_table()
+            self.entries = self._count_entries()
+            self._evict_if_full()
+
+    def _setup_table(self) -> None:
+        """Create the cache table and drop entries no longer reachable."""
+        columns = {
+            row[1]
+            for row in self.connection.execute(GET_EMBEDDING_CACHE_COLUMNS)
+        }
+        if columns and "model_id" not in columns:
+            # Entries from before the cache tracked model ids and last use
+            # cannot be attributed to a model, so start over
+            logger.info("🧹 Rebuilding embedding cache table")
+            self.connection.execute(DROP_EMBEDDING_CACHE_TABLE)
+
+        self.connection.execute(CREATE_EMBEDDING_CACHE_TABLE)
+        self.connection.execute(CREATE_EMBEDDING_CACHE_LAST_USED_INDEX)
+        # Keys hash the model id, so a model or tokenizer change leaves every
+        # older entry unreachable
+        cursor = self.connection.execute(
+            DELETE_OTHER_MODEL_EMBEDDINGS, (self.model_id,)
+        )
+        if cursor.rowcount > 0:
+            logger.info(
+                f"🧹 Dropped {cursor.rowcount} cached embeddings of other models"
+            )
+        self.connection.commit()
+
+    def _count_entries(self) -> int:
+        cursor = self.connection.execute(COUNT_CACHED_EMBEDDINGS)
+        return int(cursor.fetchone()[0])
+
+    def _evict_if_full(self) -> None:
+        """Evict least recently used entries once the cache exceeds its cap."""
+        if self.max_entries <= 0 or self.entries <= self.max_entries:
+            return
+
+        keep = int(self.max_entries * _EVICT_TO_FRACTION)
+        try:
+            cursor = self.connection.execute(EVICT_CACHED_EMBEDDINGS, (keep,))
+            self.connection.commit()
+        except Exception as e:
+            self.connection.rollback()
+            logger.error(f"Failed to evict embedding cache entries: {e}")
+            return
+
+        logger.debug(f"🧹 Evicted {cursor.rowcount} cached embeddings")
+        self.entries = self._count_entries()
+
+    def key(self, text: str) -> str:
+        """Cache key for a chunk text under the current model."""
+        payload = f"{self.model_id}\0{normalize_chunk_text(text)}"
+        return hashlib.sha256(payload.encode("utf-8")).hexdigest()
+
+    def get_many(self, keys: Iterable[str]) -> Dict[str, np.ndarray]:
+        """Look up cached embeddings, counting hits and misses."""
+        unique_keys = list(dict.fromkeys(keys))
+        found: Dict[str, np.ndarray] = {}
+
+        try:
+            with self.lock:
+                for start in range(0, len(unique_keys), _LOOKUP_BATCH_SIZE):
+                    batch = unique_keys[start : start + _LOOKUP_BATCH_SIZE]
+                    placeholders = ",".join("?" * len(batch))
+                    cursor = self.connection.execute(
+                        SELECT_CACHED_EMBEDDINGS.format(placeholders), batch
+                    )
+                    for text_hash, blob in cursor.fetchall():
+                        found[text_hash] = np.frombuffer(blob, dtype=np.float32)
+        except Exception as e:
+            logger.error(f"Failed to read embedding cache: {e}")
+            found = {}
+
+        with self.lock:
+            try:
+                self._touch(list(found))
+            except Exception as e:
+                self.connection.rollback()
+                logger.error(f"Failed to update embedding cache usage: {e}")
+
+        with self.lock:
+            self.hits += len(found)
+            self.misses += len(unique_keys) - len(found)
+        return found
+
+    def _touch(self, keys: List[str]) -> None:
+        """Mark entries as used now, so eviction keeps them."""
+        if not keys:
+            return
+
+        now = int(time.time())
+        for start in range(0, len(keys), _LOOKUP_BATCH_SIZE):
+            batch = keys[start : start + _LOOKUP_BATCH_SIZE]
+            placeholders = ",".join("?" * len(batch))
+            self.connection.execute(
+                TOUCH_CACHED_EMBEDDINGS.format(placeholders), [now, *batch]
+            )
+        self.connection.commit()
+
+    def put_many(self, entries: Dict[str, np.ndarray]) -> None:
+        """Store embeddings under their cache keys in one transaction."""
+        if not entries:
+            return
+
+        now = int(time.time())
+        rows = [
+            (
+                text_hash,
+                self.model_id,
+                np.asarray(embedding, dtype=np.float32).tobytes(),
+                now,
+            )
+            for text_hash, embedding in entries.items()
+        ]
+
+        with self.lock:
+            try:
+                cursor = self.connection.executemany(INSERT_CACHED_EMBEDDING, rows)
+                self.connection.commit()
+            except Exception as e:
+                self.connection.rollback()
+                logger.error(f"Failed to write embedding cache: {e}")
+                return
+
+            self.entries += max(cursor.rowcount, 0)
+            self._evict_if_full()
+
+    def get_stats(self) -> Dict[str, int]:
+        """Cache size and hit/miss counters since startup."""
+        with self.lock:
+            entries = self._count_entries()
+
+        return {"entries": entries, "hits": self.hits, "misses": self.misses}
+
+
+def make_model_id(model_file: Path, tokenizer_max_length: int) -> str:
+    """Identify a model by its name, weights file and truncation length."""
+    try:
+        size = model_file.stat().st_size
+    except OSError:
+        size = 0
+    model_name = f"{model_file.parent.name}/{model_file.name}"
+    return f"{model_name}:{size}:{tokenizer_max_length}"
+
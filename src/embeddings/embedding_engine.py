@@ -3,9 +3,11 @@ Code block embedding engine for generating strategic embeddings for FileData and
 Moved from processors/ to embeddings/ for better organization.
 """
 
+from itertools import islice
 from pathlib import Path
-from typing import Dict, List, Optional
+from typing import Any, Dict, Iterable, List, Optional, Tuple
 
+import numpy as np
 from loguru import logger
 from rich.progress import (
     BarColumn,
@@ -104,109 +106,6 @@ class EmbeddingEngine:
 
         return "\n".join(text_parts)
 
-    def _store_embeddings_batch_for_blocks(
-        self, blocks: List[CodeBlock], file_data: FileData, project_id: int
-    ) -> Dict[str, int]:
-        """
-        Generate and store embeddings for multiple blocks in a single batch.
-        This provides massive performance improvement by processing all blocks together.
-
-        Args:
-            blocks: List of code blocks to embed
-            file_data: File data for context
-            project_id: Project ID
-
-        Returns:
-            Dictionary with embedding statistics
-        """
-        if not blocks:
-            return {"total_embeddings": 0}
-
-        # logger.debug(f"Batch processing {len(blocks)} blocks for {file_data.file_path}")
-
-        # Collect all text chunks from all blocks (without generating embeddings yet)
-        all_chunk_texts = []
-        block_chunk_mapping = []  # Track which chunks belong to which block
-
-        for block in blocks:
-            # First, chunk the raw block content to get proper 20-line boundaries
-            content_chunks = self.vector_store.chunk_text(
-                block.content or "",
-                max_tokens=self.max_tokens,
-                overlap_tokens=self.overlap_tokens,
-            )
-
-            # Generate metadata template for this block
-            metadata_template = self._generate_block_metadata_template(block, file_data)
-
-            # Track which chunks belong to this block
-            for chunk_idx, chunk_metadata in enumerate(content_chunks):
-                # Create embedding text by adding metadata to this specific chunk
-                chunk_embedding_text = (
-                    f"{metadata_template}\nCode:\n{chunk_metadata['text']}"
-                )
-                all_chunk_texts.append(chunk_embedding_text)
-
-                # Calculate actual source line numbers using chunk boundaries
-                chunk_start_line = chunk_metadata["start_line"] + block.start_line - 1
-                chunk_end_line = chunk_metadata["end_line"] + block.start_line - 1
-
-                block_chunk_mapping.append(
-                    {
-                        "block": block,
-                        "chunk_index": chunk_idx,
-                        "embedding_text": chunk_embedding_text,
-                        "chunk_start_line": chunk_start_line,
-                        "chunk_end_line": chunk_end_line,
-                    }
-                )
-
-        # Generate ALL embeddings in one batch - this is the key performance improvement!
-        if not all_chunk_texts:
-            # logger.debug("No chunk texts to embed")
-            return {"total_embeddings": 0, "blocks_processed": 0}
-
-        # logger.debug(
-        #     f"Generating embeddings for {len(all_chunk_texts)} chunks in one batch"
-        # )
-        all_embeddings = self.vector_store.embedding_model.get_embeddings_batch(
-            all_chunk_texts
-        )
-
-        if all_embeddings is None:
-            logger.error("Embedding generation returned None")
-            return {"total_embeddings": 0, "blocks_processed": 0}
-
-        # Prepare all embedding data for batch database insertion
-        batch_embedding_data = []
-        for i, embedding in enumerate(all_embeddings):
-            mapping = block_chunk_mapping[i]
-            block = mapping["block"]
-            chunk_index = mapping["chunk_index"]
-            chunk_start_line = mapping["chunk_start_line"]
-            chunk_end_line = mapping["chunk_end_line"]
-
-            batch_embedding_data.append(
-                {
-                    "node_id": f"block_{block.id}",
-                    "project_id": project_id,
-                    "embedding": embedding,
-                    "chunk_index": chunk_index,
-                    "chunk_start_line": chunk_start_line,
-                    "chunk_end_line": chunk_end_line,
-                }
-            )
-
-        # Store ALL embeddings in a single database transaction - MASSIVE speedup!
-        embedding_ids = self.vector_store.store_embeddings_batch(batch_embedding_data)
-
-        total_embeddings = len(embedding_ids)
-
-        # logger.debug(
-        #     f"Batch processed {len(blocks)} blocks, generated {total_embeddings} embeddings"
-        # )
-        return {"total_embeddings": total_embeddings}
-
     def _get_block_hierarchy_path(
         self, target_block: CodeBlock, file_data: FileData
     ) -> str:
@@ -238,119 +137,6 @@ class EmbeddingEngine:
 
         return " > ".join(hierarchy) if hierarchy else ""
 
-    def _store_embeddings_with_metadata(
-        self,
-        entity_id: str,
-        project_id: int,
-        content: str,
-        metadata: str,
-        is_file: bool = False,
-        source_content: Optional[str] = None,
-        source_start_line: int = 1,
-    ) -> List[int]:
-        """
-        Generate and store chunked embeddings with metadata added only to first chunk.
-
-        Args:
-            entity_id: Unique identifier (file ID or block ID)
-            project_id: Project ID
-            content: Raw content to be chunked
-            metadata: Metadata to add to first chunk only
-            is_file: True if this is a file embedding, False if it's a block embedding
-
-        Returns:
-            List of embedding IDs that were stored
-        """
-        if not content.strip():
-            # logger.debug(f"No content to embed for entity {entity_id}")
-            return []
-
-        # Add prefix to distinguish file vs block IDs during retrieval
-        prefix = "file" if is_file else "block"
-        prefixed_entity_id = f"{prefix}_{entity_id}"
-
-        try:
-            # Generate embeddings using content with metadata added to first chunk only
-            embeddings_with_metadata = (
-                self.vector_store.get_chunked_embeddings_with_metadata(
-                    content,
-                    metadata=metadata,
-                    max_tokens=self.max_tokens,
-                    overlap_tokens=self.overlap_tokens,
-                )
-            )
-
-            if not embeddings_with_metadata:
-                logger.warning(f"No embeddings generated for entity {entity_id}")
-                return []
-
-            # For line number calculation, use source content if provided (for blocks),
-            # otherwise use the full content (for files)
-            line_calc_content = (
-                source_content if source_content is not None else content
-            )
-            content_chunks = self.vector_store.chunk_text(
-                line_calc_content,
-                max_tokens=self.max_tokens,
-                overlap_tokens=self.overlap_tokens,
-            )
-
-            embedding_ids = []
-
-            for chunk_index, (embedding, chunk_metadata) in enumerate(
-                embeddings_with_metadata
-            ):
-                try:
-                    # Calculate line numbers
-                    if chunk_index < len(content_chunks):
-                        content_chunk = content_chunks[chunk_index]
-                        # Add source start line offset for blocks
-                        chunk_start_line = (
-                            content_chunk["start_line"] + source_start_line - 1
-                        )
-                        chunk_end_line = (
-                            content_chunk["end_line"] + source_start_line - 1
-                        )
-                    else:
-                        # Fallback calculation using source content for line numbers
-                        char_start = chunk_metadata.get("start", 0)
-                        text_up_to_start = line_calc_content[:char_start]
-                        lines_before_chunk = text_up_to_start.count("\n")
-                        chunk_text = chunk_metadata.get("text", "")
-                        chunk_line_count = len(chunk_text.split("\n"))
-                        chunk_start_line = (
-                            lines_before_chunk + 1 + source_start_line - 1
-                        )
-                        chunk_end_line = chunk_start_line + chunk_line_count - 1
-
-                    # Store embedding in vector database
-                    embedding_id = self.vector_store.store_embedding(
-                        node_id=prefixed_entity_id,
-                        project_id=project_id,
-                        chunk_index=chunk_index,
-                        chunk_start_line=chunk_start_line,
-                        chunk_end_line=chunk_end_line,
-                        embedding=embedding,
-                    )
-
-                    if embedding_id:
-                        embedding_ids.append(embedding_id)
-                        # logger.debug(
-                        #     f"Stored embedding {embedding_id} for {prefixed_entity_id} chunk {chunk_index} (lines {chunk_start_line}-{chunk_end_line})"
-                        # )
-
-                except Exception as e:
-                    logger.error(
-                        f"Failed to store embedding for {prefixed_entity_id} chunk {chunk_index}: {e}"
-                    )
-                    continue
-
-            return embedding_ids
-
-        except Exception as e:
-            logger.error(f"Failed to generate embeddings for entity {entity_id}: {e}")
-            return []
-
     def _store_embeddings(
         self,
         entity_id: str,
@@ -472,6 +258,233 @@ class EmbeddingEngine:
 
         return blocks_to_embed
 
+    def _prepare_block_chunks(
+        self, blocks: List[CodeBlock], file_data: FileData, project_id: int
+    ) -> Tuple[List[str], List[Dict[str, Any]]]:
+        """
+        Chunk code blocks into embedding texts with hierarchical metadata.
+
+        Args:
+            blocks: List of code blocks to embed
+            file_data: File data for context
+            project_id: Project ID
+
+        Returns:
+            Tuple of (embedding texts, matching embedding rows without vectors)
+        """
+        texts = []
+        rows = []
+
+        for block in blocks:
+            # First, chunk the raw block content to get proper 20-line boundaries
+            content_chunks = self.vector_store.chunk_text(
+                block.content or "",
+                max_tokens=self.max_tokens,
+                overlap_tokens=self.overlap_tokens,
+            )
+
+            # Generate metadata template for this block
+            metadata_template = self._generate_block_metadata_template(block, file_data)
+
+            for chunk_idx, chunk_metadata in enumerate(content_chunks):
+                # Create embedding text by adding metadata to this specific chunk
+                texts.append(f"{metadata_template}\nCode:\n{chunk_metadata['text']}")
+
+                # Calculate actual source line numbers using chunk boundaries
+                rows.append(
+                    {
+                        "node_id": f"block_{block.id}",
+                        "project_id": project_id,
+                        "chunk_index": chunk_idx,
+                        "chunk_start_line": chunk_metadata["start_line"]
+                        + block.start_line
+                        - 1,
+                        "chunk_end_line": chunk_metadata["end_line"]
+                        + block.start_line
+                        - 1,
+                    }
+                )
+
+        return texts, rows
+
+    def _prepare_file_chunks_with_metadata(
+        self, file_data: FileData, project_id: int
+    ) -> Tuple[List[str], List[Dict[str, Any]]]:
+        """
+        Chunk a whole file into embedding texts with metadata added to the first chunk only.
+
+        Args:
+            file_data: File data to chunk
+            project_id: Project ID
+
+        Returns:
+            Tuple of (embedding texts, matching embedding rows without vectors)
+        """
+        content = self._generate_file_embedding_text(file_data)
+        if not content.strip():
+            return [], []
+
+        metadata = self._generate_file_metadata(file_data)
+        chunks = self.vector_store.chunk_text(
+            content,
+            max_tokens=self.max_tokens,
+            overlap_tokens=self.overlap_tokens,
+            metadata=metadata,
+        )
+
+        # Chunk the raw content as well to get line numbers without the metadata
+        content_chunks = self.vector_store.chunk_text(
+            content,
+            max_tokens=self.max_tokens,
+            overlap_tokens=self.overlap_tokens,
+        )
+
+        texts = []
+        rows = []
+        for chunk_index, chunk_metadata in enumerate(chunks):
+            if chunk_index < len(content_chunks):
+                chunk_start_line = content_chunks[chunk_index]["start_line"]
+                chunk_end_line = content_chunks[chunk_index]["end_line"]
+            else:
+                # Fallback calculation using character offsets
+                char_start = chunk_metadata.get("start", 0)
+                lines_before_chunk = content[:char_start].count("\n")
+                chunk_line_count = len(chunk_metadata.get("text", "").split("\n"))
+                chunk_start_line = lines_before_chunk + 1
+                chunk_end_line = chunk_start_line + chunk_line_count - 1
+
+            texts.append(chunk_metadata["text"])
+            rows.append(
+                {
+                    "node_id": f"file_{file_data.id}",
+                    "project_id": project_id,
+                    "chunk_index": chunk_index,
+                    "chunk_start_line": chunk_start_line,
+                    "chunk_end_line": chunk_end_line,
+                }
+            )
+
+        return texts, rows
+
+    def prepare_file_chunks(
+        self, file_data: FileData, project_id: int
+    ) -> Dict[str, Any]:
+        """
+        Chunk a FileData object into the texts that need embedding (chunk stage).
+
+        Args:
+            file_data: FileData object to process
+            project_id: Project ID
+
+        Returns:
+            Dictionary with "texts", matching embedding "rows" (without vectors)
+            and the number of "blocks_processed"
+        """
+        texts: List[str] = []
+        rows: List[Dict[str, Any]] = []
+
+        # Collect blocks to embed first
+        blocks_to_embed = self._collect_blocks_to_embed(file_data.blocks)
+
+        if getattr(file_data, "unsupported", False):
+            # Only embed entire file for unsupported file types
+            file_texts, file_rows = self._prepare_file_chunks_with_metadata(
+                file_data, project_id
+            )
+            texts.extend(file_texts)
+            rows.extend(file_rows)
+
+        # All blocks of a file are embedded in a single batch
+        if blocks_to_embed:
+            block_texts, block_rows = self._prepare_block_chunks(
+                blocks_to_embed, file_data, project_id
+            )
+            texts.extend(block_texts)
+            rows.extend(block_rows)
+
+        return {"texts": texts, "rows": rows, "blocks_processed": len(blocks_to_embed)}
+
+    def embed_chunk_texts(self, texts: List[str]) -> List[Optional[np.ndarray]]:
+        """
+        Generate embeddings for prepared chunk texts (embed stage).
+
+        Falls back to one text at a time if the batch fails; texts that still
+        fail get None and are skipped when storing.
+        """
+        if not texts:
+            return []
+
+        try:
+            return list(self.vector_store.embedding_model.get_embeddings_batch(texts))
+        except Exception as e:
+            logger.error(f"Failed to generate batch embeddings, falling back: {e}")
+
+        embeddings: List[Optional[np.ndarray]] = []
+        for text in texts:
+            try:
+                embeddings.append(self.vector_store.embedding_model.get_embedding(text))
+            except Exception as e:
+                logger.error(f"Failed to generate embedding for chunk: {e}")
+                embeddings.append(None)
+        return embeddings
+
+    def embed_prepared_files(
+        self, prepared_files: List[Dict[str, Any]]
+    ) -> List[List[Optional[np.ndarray]]]:
+        """
+        Embed the chunks of several prepared files in one model call.
+
+        Pooling chunks across files gives the length-bucketed batcher more
+        similar-length texts to group together.
+
+        Returns:
+            One embedding list per prepared file, in input order
+        """
+        texts = [text for prepared in prepared_files for text in prepared["texts"]]
+        embeddings = self.embed_chunk_texts(texts)
+
+        per_file = []
+        offset = 0
+        for prepared in prepared_files:
+            count = len(prepared["texts"])
+            per_file.append(embeddings[offset : offset + count])
+            offset += count
+        return per_file
+
+    def store_chunk_embeddings(
+        self, prepared: Dict[str, Any], embeddings: List[Optional[np.ndarray]]
+    ) -> Dict[str, int]:
+        """
+        Store embeddings for prepared chunks in one transaction (vector insert stage).
+
+        Args:
+            prepared: Result of prepare_file_chunks
+            embeddings: Result of embed_chunk_texts for prepared["texts"]
+
+        Returns:
+            Dictionary with embedding statistics
+        """
+        batch_embedding_data = [
+            {**row, "embedding": embedding}
+            for row, embedding in zip(prepared["rows"], embeddings)
+            if embedding is not None
+        ]
+
+        # Store ALL embeddings in a single database transaction
+        self.vector_store.store_embeddings_batch(batch_embedding_data)
+
+        file_embeddings = sum(
+            1 for data in batch_embedding_data if data["node_id"].startswith("file_")
+        )
+        block_embeddings = len(batch_embedding_data) - file_embeddings
+
+        return {
+            "file_embeddings": file_embeddings,
+            "block_embeddings": block_embeddings,
+            "total_chunks": len(batch_embedding_data),
+            "blocks_processed": prepared["blocks_processed"],
+        }
+
     def process_file_data(self, file_data: FileData, project_id: int) -> Dict[str, int]:
         """
         Process a FileData object and generate embeddings for the file and its strategic blocks.
@@ -491,65 +504,29 @@ class EmbeddingEngine:
         }
 
         try:
-            # Collect blocks to embed first
-            blocks_to_embed = self._collect_blocks_to_embed(file_data.blocks)
-            # logger.debug(
-            #     f"Found {len(blocks_to_embed)} blocks to embed in {file_data.file_path}"
-            # )
-
-            # if blocks_to_embed:
-            # If we have extracted blocks, embed them with hierarchical context
-            # Skip file-level chunking to avoid redundancy
-            # logger.debug(
-            #     f"Embedding {len(blocks_to_embed)} hierarchical blocks for {file_data.file_path}"
-            # )
-            if getattr(file_data, "unsupported", False):
-                # Only embed entire file for unsupported file types
-                # logger.debug(
-                #     f"Unsupported file type, embedding entire file: {file_data.file_path}"
-                # )
-                file_content = self._generate_file_embedding_text(file_data)
-                file_metadata = self._generate_file_metadata(file_data)
-                file_embedding_ids = self._store_embeddings_with_metadata(
-                    entity_id=str(file_data.id),
-                    project_id=project_id,
-                    content=file_content,
-                    metadata=file_metadata,
-                    is_file=True,
-                )
-                stats["file_embeddings"] = len(file_embedding_ids)
-                stats["total_chunks"] += len(file_embedding_ids)
-            # else:
-            # Supported file type but no blocks extracted - skip embedding
-            # logger.debug(
-            #     f"Supported file with no extractable blocks, skipping: {file_data.file_path}"
-            # )
-
-            # Process all blocks in a single batch for massive performance improvement
-            if blocks_to_embed:
-                block_embedding_stats = self._store_embeddings_batch_for_blocks(
-                    blocks_to_embed, file_data, project_id
-                )
-                stats["block_embeddings"] += block_embedding_stats["total_embeddings"]
-                stats["total_chunks"] += block_embedding_stats["total_embeddings"]
-                stats["blocks_processed"] += len(blocks_to_embed)
-
-            return stats
+            prepared = self.prepare_file_chunks(file_data, project_id)
+            embeddings = self.embed_chunk_texts(prepared["texts"])
+            return self.store_chunk_embeddings(prepared, embeddings)
 
         except Exception as e:
             logger.error(f"Error processing file {file_data.file_path}: {e}")
             return stats
 
     def process_multiple_files(
-        self, file_data_list: List[FileData], project_id: int, batch_size: int = 50
+        self,
+        file_data_list: Iterable[FileData],
+        project_id: int,
+        batch_size: int = 50,
+        total_files: Optional[int] = None,
     ) -> Dict[str, int]:
         """
         Process multiple FileData objects in batches.
 
         Args:
-            file_data_list: List of FileData objects to process
+            file_data_list: FileData objects to process; may be a lazy iterator
             project_id: Project ID
             batch_size: Number of files to process in each batch
+            total_files: Number of files for the progress bar (defaults to len())
 
         Returns:
             Dictionary with total embedding statistics
@@ -573,14 +550,44 @@ class EmbeddingEngine:
             TextColumn("{task.fields[stats]}"),
             refresh_per_second=4,
         ) as progress:
-            task_id = progress.add_task(
-                "Embedding files", total=len(file_data_list), stats=""
-            )
-            for i in range(0, len(file_data_list), batch_size):
-                batch_files = file_data_list[i : i + batch_size]
+            if total_files is None:
+                total_files = len(file_data_list)
+            task_id = progress.add_task("Embedding files", total=total_files, stats="")
 
+            files_iter = iter(file_data_list)
+            while True:
+                batch_files = list(islice(files_iter, batch_size))
+                if not batch_files:
+                    break
+
+                prepared_files = []
                 for file_data in batch_files:
-                    file_stats = self.process_file_data(file_data, project_id)
+                    try:
+                        prepared_files.append(
+                            self.prepare_file_chunks(file_data, project_id)
+                        )
+                    except Exception as e:
+                        logger.error(
+                            f"Error processing file {file_data.file_path}: {e}"
+                        )
+                        prepared_files.append(
+                            {"texts": [], "rows": [], "blocks_processed": 0}
+                        )
+
+                # One embedding call for the whole batch of files
+                batch_embeddings = self.embed_prepared_files(prepared_files)
+
+                for prepared, embeddings in zip(prepared_files, batch_embeddings):
+                    try:
+                        file_stats = self.store_chunk_embeddings(prepared, embeddings)
+                    except Exception as e:
+                        logger.error(f"Error storing file embeddings: {e}")
+                        file_stats = {
+                            "file_embeddings": 0,
+                            "block_embeddings": 0,
+                            "total_chunks": 0,
+                            "blocks_processed": 0,
+                        }
 
                     # Accumulate stats
                     total_stats["files_processed"] += 1
@@ -616,18 +623,8 @@ class EmbeddingEngine:
                 )
                 return
 
-            # Create placeholders for the SQL query
-            placeholders = ",".join(["?" for _ in node_ids])
-            params = tuple(node_ids + [project_id])
-
-            # Execute deletion
-            vector_store.connection.execute(
-                f"""DELETE FROM embeddings
-                   WHERE node_id IN ({placeholders})
-                   AND project_id = ?""",
-                params,
-            )
-            vector_store.connection.commit()
+            # Removes the nodes from the ANN index in the same transaction
+            vector_store.delete_embeddings(node_ids, project_id)
 
             # logger.debug(
             #     f"Deleted {len(node_ids)} embeddings from database (file: 1, blocks: {len(node_ids)-1})"
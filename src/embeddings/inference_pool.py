@@ -0,0 +1,208 @@
+"""
+ONNX inference session pool.
+
+Holds one or more InferenceSessions built from the configured SessionOptions.
+With several sessions, worker threads drain a shared batch queue, one thread
+per session; ONNX Runtime releases the GIL while running, so batches run in
+parallel across cores.
+"""
+
+import os
+import queue
+import threading
+import time
+from concurrent.futures import Future
+from pathlib import Path
+from typing import Any, Dict, List
+
+import numpy as np
+import onnxruntime as ort
+from loguru import logger
+
+GRAPH_OPTIMIZATION_LEVELS = {
+    "disable": ort.GraphOptimizationLevel.ORT_DISABLE_ALL,
+    "basic": ort.GraphOptimizationLevel.ORT_ENABLE_BASIC,
+    "extended": ort.GraphOptimizationLevel.ORT_ENABLE_EXTENDED,
+    "all": ort.GraphOptimizationLevel.ORT_ENABLE_ALL,
+}
+
+EXECUTION_MODES = {
+    "sequential": ort.ExecutionMode.ORT_SEQUENTIAL,
+    "parallel": ort.ExecutionMode.ORT_PARALLEL,
+}
+
+# Stops a session worker
+_STOP = object()
+
+
+def build_session_options(
+    intra_op_threads: int = 0,
+    inter_op_threads: int = 0,
+    graph_optimization_level: str = "all",
+    cpu_mem_arena: bool = True,
+    execution_mode: str = "sequential",
+) -> ort.SessionOptions:
+    """Build SessionOptions; thread counts of 0 keep ONNX Runtime's defaults."""
+    if graph_optimization_level not in GRAPH_OPTIMIZATION_LEVELS:
+        raise ValueError(
+            f"Unknown graph_optimization_level '{graph_optimization_level}', "
+            f"expected one of {list(GRAPH_OPTIMIZATION_LEVELS)}"
+        )
+    if execution_mode not in EXECUTION_MODES:
+        raise ValueError(
+            f"Unknown execution_mode '{execution_mode}', "
+            f"expected one of {list(EXECUTION_MODES)}"
+        )
+
+    options = ort.SessionOptions()
+    if intra_op_threads > 0:
+        options.intra_op_num_threads = intra_op_threads
+    if inter_op_threads > 0:
+        options.inter_op_num_threads = inter_op_threads
+    options.graph_optimization_level = GRAPH_OPTIMIZATION_LEVELS[
+        graph_optimization_level
+    ]
+    options.enable_cpu_mem_arena = cpu_mem_arena
+    options.execution_mode = EXECUTION_MODES[execution_mode]
+    return options
+
+
+class InferencePool:
+    """Runs model inputs on a pool of InferenceSessions."""
+
+    def __init__(
+        self,
+        model_file: Path,
+        sessions: int = 1,
+        intra_op_threads: int = 0,
+        inter_op_threads: int = 0,
+        graph_optimization_level: str = "all",
+        cpu_mem_arena: bool = True,
+        execution_mode: str = "sequential",
+    ):
+        self.size = max(1, sessions)
+
+        # Sessions would otherwise each start one intra-op thread per core
+        if self.size > 1 and intra_op_threads <= 0:
+            intra_op_threads = max(1, (os.cpu_count() or 1) // self.size)
+
+        options = build_session_options(
+            intra_op_threads,
+            inter_op_threads,
+            graph_optimization_level,
+            cpu_mem_arena,
+            execution_mode,
+        )
+        providers = ["CPUExecutionProvider"]
+        self.sessions = [
+            ort.InferenceSession(str(model_file), options, providers=providers)
+            for _ in range(self.size)
+        ]
+
+        self._queue: queue.Queue = queue.Queue()
+        self._stats_lock = threading.Lock()
+        self._batches = 0
+        self._busy_seconds = 0.0
+        self._max_queue_depth = 0
+
+        self._workers: List[threading.Thread] = []
+        if self.size > 1:
+            for index, session in enumerate(self.sessions):
+                worker = threading.Thread(
+                    target=self._work,
+                    args=(session,),
+                    name=f"onnx-session-{index}",
+                    daemon=True,
+                )
+                worker.start()
+                self._workers.append(worker)
+
+        logger.debug(
+            f"🧠 Inference pool ready: {self.size} session(s), "
+            f"intra_op_threads={intra_op_threads or 'default'}"
+        )
+
+    @property
+    def session(self) -> ort.InferenceSession:
+        """The first session, for model metadata such as input names."""
+        return self.sessions[0]
+
+    def run(self, inputs: Dict[str, np.ndarray]) -> List[Any]:
+        """Run one batch and return the model outputs."""
+        return self.run_many([inputs])[0]
+
+    def run_many(self, batches: List[Dict[str, np.ndarray]]) -> List[List[Any]]:
+        """Run batches across the pool and return their outputs in order."""
+        if not self._workers:
+            return [self._run(self.sessions[0], inputs) for inputs in batches]
+
+        futures: List[Future] = []
+        for inputs in batches:
+            future: Future = Future()
+            self._queue.put((inputs, future))
+            futures.append(future)
+
+        with self._stats_lock:
+            self._max_queue_depth = max(self._max_queue_depth, self._queue.qsize())
+
+        return [future.result() for future in futures]
+
+    def _work(self, session: ort.InferenceSession) -> None:
+        while True:
+            job = self._queue.get()
+            if job is _STOP:
+                break
+
+            inputs, future = job
+            if not future.set_running_or_notify_cancel():
+                continue
+            try:
+                future.set_result(self._run(session, inputs))
+            except Exception as e:
+                future.set_exception(e)
+
+    def _run(self, session: ort.InferenceSession, inputs: Dict[str, np.ndarray]):
+        start = time.perf_counter()
+        outputs = session.run(None, inputs)
+        elapsed = time.perf_counter() - start
+
+        with self._stats_lock:
+            self._batches += 1
+            self._busy_seconds += elapsed
+        return outputs
+
+    def get_stats(self) -> Dict[str, Any]:
+        """Pool size, queue depth and per-batch latency."""
+        with self._stats_lock:
+            average_ms = (
+                self._busy_seconds / self._batches * 1000 if self._batches else 0.0
+            )
+            return {
+                "sessions": self.size,
+                "queue_depth": self._queue.qsize(),
+                "max_queue_depth": self._max_queue_depth,
+                "batches": self._batches,
+                "average_batch_ms": round(average_ms, 2),
+            }
+
+    def close(self) -> None:
+        """Stop the session workers."""
+        for _ in self._workers:
+            self._queue.put(_STOP)
+        for worker in self._workers:
+            worker.join()
+        self._workers = []
+
+    @classmethod
+    def from_config(cls, model_file: Path, embedding_config: Any) -> "InferencePool":
+        """Build a pool from an EmbeddingConfig."""
+        return cls(
+            model_file,
+            sessions=embedding_config.inference_sessions,
+            intra_op_threads=embedding_config.intra_op_threads,
+            inter_op_threads=embedding_config.inter_op_threads,
+            graph_optimization_level=embedding_config.graph_optimization_level,
+            cpu_mem_arena=embedding_config.cpu_mem_arena,
+            execution_mode=embedding_config.execution_mode,
+        )
+
@@ -0,0 +1,82 @@
+"""
+Embedding model variants.
+
+"fp32" is the model as downloaded (model.onnx). "int8" is a dynamically
+quantized copy (model_int8.onnx) with INT8 weights for the MatMul/Gemm
+operators; activations are quantized at run time, so no calibration data is
+needed. The quantized file is created next to the fp32 model on first use.
+Quantizing requires the `onnx` package (pip install sutrakit[quantization]).
+"""
+
+import os
+import tempfile
+from pathlib import Path
+
+from loguru import logger
+
+MODEL_VARIANTS = {
+    "fp32": "model.onnx",
+    "int8": "model_int8.onnx",
+}
+
+
+def quantize_model(source_file: Path, target_file: Path) -> Path:
+    """
+    Write a dynamically INT8-quantized copy of an ONNX model.
+
+    The copy is written to a temporary file next to target_file and renamed
+    into place, so an interrupted run never leaves a truncated target_file.
+    """
+    from onnxruntime.quantization import QuantType, quantize_dynamic
+
+    logger.info(f"⚙️ Quantizing {source_file.name} to INT8: {target_file}")
+    fd, temp_name = tempfile.mkstemp(
+        prefix=f".{target_file.stem}-", suffix=".onnx", dir=target_file.parent
+    )
+    os.close(fd)
+    try:
+        quantize_dynamic(
+            str(source_file),
+            temp_name,
+            weight_type=QuantType.QInt8,
+            op_types_to_quantize=["MatMul", "Gemm"],
+        )
+        os.replace(temp_name, target_file)
+    finally:
+        Path(temp_name).unlink(missing_ok=True)
+    return target_file
+
+
+def resolve_model_file(model_path: Path, variant: str) -> Path:
+    """
+    Resolve the ONNX file for a model variant, quantizing it if needed.
+
+    Falls back to the fp32 model if the INT8 file is missing and cannot be
+    created.
+
+    Raises:
+        ValueError: If the variant is unknown
+        FileNotFoundError: If the fp32 model is missing
+    """
+    if variant not in MODEL_VARIANTS:
+        raise ValueError(
+            f"Unknown model_variant '{variant}', expected one of "
+            f"{list(MODEL_VARIANTS)}"
+        )
+
+    fp32_file = model_path / MODEL_VARIANTS["fp32"]
+    model_file = model_path / MODEL_VARIANTS[variant]
+    if model_file.exists():
+        return model_file
+
+    if not fp32_file.exists():
+        raise FileNotFoundError(f"Model file not found: {fp32_file}")
+
+    try:
+        return quantize_model(fp32_file, model_file)
+    except Exception as e:
+        logger.warning(
+            f"Failed to create {variant} model, using fp32 instead "
+            f"(quantizing needs the 'onnx' package): {e}"
+        )
+        return fp32_file
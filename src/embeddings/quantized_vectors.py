@@ -0,0 +1,183 @@
+"""
+Quantized first-pass vector search with full-precision rerank.
+
+A compact copy of every vector lives in its own vec0 table, keyed by the
+embeddings rowid and partitioned by project:
+
+    "binary": bit[384] (48 bytes, one sign bit per dimension, hamming distance)
+    "int8":   int8[384] (384 bytes, values in [-1, 1] scaled to int8, L2)
+
+A search scans the compact table for limit * rerank_factor candidates, then
+computes exact L2 distances against the float32 vectors of only those
+candidates, looked up by rowid. Scans read 32x (binary) or 4x (int8) less
+data than scanning the float table.
+"""
+
+import threading
+from typing import TYPE_CHECKING, List, Optional, Sequence, Tuple
+
+# This block is only read by type checkers, not at runtime
+if TYPE_CHECKING:
+    import sqlite3
+
+import numpy as np
+from loguru import logger
+
+# Storage mode -> (vector column type, SQL quantizing a float32 vector)
+QUANTIZED_STORAGE = {
+    "binary": ("bit[384]", "vec_quantize_binary({})"),
+    "int8": ("int8[384]", "vec_quantize_int8({}, 'unit')"),
+}
+
+VECTOR_STORAGE_MODES = ["float", *QUANTIZED_STORAGE]
+
+
+def quantized_table_name(mode: str) -> str:
+    return f"embeddings_{mode}"
+
+
+class QuantizedVectorIndex:
+    """Compact vec0 copy of the embeddings table for first-pass search."""
+
+    def __init__(
+        self,
+        connection: "sqlite3.Connection",
+        mode: str,
+        lock: Optional[threading.RLock] = None,
+    ):
+        if mode not in QUANTIZED_STORAGE:
+            raise ValueError(
+                f"Unknown vector_storage '{mode}', expected one of "
+                f"{VECTOR_STORAGE_MODES}"
+            )
+
+        self.connection = connection
+        self.mode = mode
+        self.table = quantized_table_name(mode)
+        self.column_type, self.quantize_template = QUANTIZED_STORAGE[mode]
+        self.quantize_sql = self.quantize_template.format("?")
+        # Shared with the vector store's writes on the same connection
+        self.lock = lock or threading.RLock()
+
+        with self.lock:
+            self._setup()
+
+    def _setup(self) -> None:
+        """Create the table, backfilling it from the embeddings table if new."""
+        # Tables of other modes stopped receiving writes; rebuild them if the
+        # mode is switched back
+        for other_mode in QUANTIZED_STORAGE:
+            if other_mode != self.mode:
+                self.connection.execute(
+                    f"DROP TABLE IF EXISTS {quantized_table_name(other_mode)}"
+                )
+
+        exists = self.connection.execute(
+            "SELECT 1 FROM sqlite_master WHERE name = ?", (self.table,)
+        ).fetchone()
+        if exists:
+            self.connection.commit()
+            return
+
+        logger.info(f"🗜️ Building {self.mode} vector table {self.table}...")
+        try:
+            self.connection.execute("BEGIN")
+            self.connection.execute(
+                f"""CREATE VIRTUAL TABLE {self.table} USING vec0(
+                    project_id INTEGER PARTITION KEY,
+                    embedding {self.column_type}
+                )"""
+            )
+            quantized = self.quantize_template.format("embedding")
+            self.connection.execute(
+                f"""INSERT INTO {self.table} (rowid, project_id, embedding)
+                    SELECT rowid, project_id, {quantized} FROM embeddings"""
+            )
+            self.connection.execute("COMMIT")
+        except Exception:
+            self.connection.execute("ROLLBACK")
+            raise
+
+    def add(self, rows: Sequence[Tuple[int, int, np.ndarray]]) -> None:
+        """
+        Add (embeddings rowid, project_id, float32 vector) rows.
+
+        Runs inside the caller's transaction.
+        """
+        if not rows:
+            return
+
+        self.connection.executemany(
+            f"""INSERT INTO {self.table} (rowid, project_id, embedding)
+                VALUES (?, ?, {self.quantize_sql})""",
+            [
+                (rowid, project_id, np.asarray(vector, dtype=np.float32))
+                for rowid, project_id, vector in rows
+            ],
+        )
+
+    def remove_nodes(self, node_ids: List[str], project_id: int) -> None:
+        """
+        Drop the vectors of nodes about to be deleted from the embeddings table.
+
+        Runs inside the caller's transaction, before the embeddings delete.
+        """
+        if not node_ids:
+            return
+
+        placeholders = ",".join("?" * len(node_ids))
+        rowids = self.connection.execute(
+            f"""SELECT rowid FROM embeddings
+                WHERE node_id IN ({placeholders}) AND project_id = ?""",
+            (*node_ids, project_id),
+        ).fetchall()
+        self.connection.executemany(
+            f"DELETE FROM {self.table} WHERE rowid = ?", rowids
+        )
+
+    def search(
+        self,
+        query: np.ndarray,
+        limit: int,
+        rerank_factor: int,
+        project_id: Optional[int] = None,
+    ) -> List[Tuple[int, float]]:
+        """
+        Find the nearest vectors: quantized candidates, reranked by exact L2.
+
+        Returns:
+            (embeddings rowid, L2 distance) pairs, nearest first
+        """
+        query = np.asarray(query, dtype=np.float32)
+        candidates = max(limit, limit * rerank_factor)
+
+        sql = (
+            f"SELECT rowid FROM {self.table} "
+            f"WHERE embedding MATCH {self.quantize_sql}"
+        )
+        params: Tuple = (query,)
+        if project_id is not None:
+            sql += " AND project_id = ?"
+            params += (project_id,)
+        sql += " ORDER BY distance LIMIT ?"
+        params += (candidates,)
+
+        with self.lock:
+            rowids = [row[0] for row in self.connection.execute(sql, params)]
+            vectors = [
+                self.connection.execute(
+                    "SELECT embedding FROM embeddings WHERE rowid = ?", (rowid,)
+                ).fetchone()
+                for rowid in rowids
+            ]
+
+        scored = [
+            (
+                rowid,
+                float(np.linalg.norm(np.frombuffer(row[0], dtype=np.float32) - query)),
+            )
+            for rowid, row in zip(rowids, vectors)
+            if row is not None
+        ]
+        scored.sort(key=lambda item: item[1])
+        return scored[:limit]
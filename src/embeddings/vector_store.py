@@ -3,7 +3,9 @@ Unified vector store that combines embedding generation and vector storage.
 Merges the functionality of simple_processor.py and vector_db.py into a clean interface.
 """
 
+import re
 import threading
+from bisect import bisect_left, bisect_right
 from pathlib import Path
 from typing import TYPE_CHECKING, Any, Dict, List, Optional, Tuple
 
@@ -21,6 +23,32 @@ from loguru import logger
 from tokenizers import Tokenizer
 
 from config import config
+from embeddings.ann_index import IVFIndex
+from embeddings.embedding_cache import EmbeddingCache, make_model_id
+from embeddings.inference_pool import InferencePool
+from embeddings.quantization import resolve_model_file
+from embeddings.quantized_vectors import (
+    QUANTIZED_STORAGE,
+    QuantizedVectorIndex,
+    quantized_table_name,
+)
+
+# Vectors are partitioned by project, so a project-scoped MATCH only scans
+# that project's vectors
+CREATE_EMBEDDINGS_TABLE = """
+    CREATE VIRTUAL TABLE IF NOT EXISTS embeddings USING vec0(
+        project_id INTEGER PARTITION KEY,
+        node_id TEXT,
+        chunk_index INTEGER,
+        chunk_start_line INTEGER,
+        chunk_end_line INTEGER,
+        embedding FLOAT[384]
+    )
+"""
+
+EMBEDDINGS_COLUMNS = (
+    "project_id, node_id, chunk_index, chunk_start_line, chunk_end_line, embedding"
+)
 
 
 class EmbeddingModel:
@@ -28,66 +56,59 @@ class EmbeddingModel:
 
     def __init__(self, model_path: str = "models/all-MiniLM-L6-v2"):
         self.model_path = Path(model_path)
+        self.model_file = self.model_path / "model.onnx"
         self.session: Optional[ort.InferenceSession] = None
+        self.pool: Optional[InferencePool] = None
         self.tokenizer: Optional[Tokenizer] = None
+        # Untruncated copy of the tokenizer for offset-based chunking
+        self.offset_tokenizer: Optional[Tokenizer] = None
+        self.special_token_count = 0
         self.input_names: List[str] = []
+        # Attached by VectorStore once its database is open
+        self.cache: Optional[EmbeddingCache] = None
         self._load_model()
 
     def _load_model(self) -> None:
         """Load the ONNX model and tokenizer."""
         try:
-            model_file = self.model_path / "model.onnx"
-            if not model_file.exists():
-                raise FileNotFoundError(f"Model file not found: {model_file}")
+            model_file = resolve_model_file(
+                self.model_path, config.embedding.model_variant
+            )
+            self.model_file = model_file
 
-            providers = ["CPUExecutionProvider"]
-            self.session = ort.InferenceSession(str(model_file), providers=providers)
+            self.pool = InferencePool.from_config(model_file, config.embedding)
+            self.session = self.pool.session
             self.input_names = [inp.name for inp in self.session.get_inputs()]
 
             tokenizer_file = self.model_path / "tokenizer.json"
             if tokenizer_file.exists():
                 self.tokenizer = Tokenizer.from_file(str(tokenizer_file))
-                # Override tokenizer's default max_length to use model's full capacity
+                # Override tokenizer's default max_length to use model's full capacity.
+                # Padding is applied per batch, only up to its longest input.
                 if self.tokenizer is not None:
                     self.tokenizer.enable_truncation(
                         max_length=config.embedding.tokenizer_max_length
                     )
-                    self.tokenizer.enable_padding(
-                        length=config.embedding.tokenizer_max_length
-                    )
+                    self.tokenizer.no_padding()
+
+                self.offset_tokenizer = Tokenizer.from_file(str(tokenizer_file))
+                self.offset_tokenizer.no_truncation()
+                self.offset_tokenizer.no_padding()
+                self.special_token_count = len(self.offset_tokenizer.encode("").ids)
             else:
                 logger.warning("Tokenizer file not found, using basic tokenization")
                 self.tokenizer = None
 
-            logger.debug(f"Loaded embedding model from {self.model_path}")
+            logger.debug(f"Loaded embedding model from {self.model_file}")
 
         except Exception as e:
             logger.error(f"Failed to load embedding model: {e}")
             raise
 
-    def _tokenize(
-        self, text: str, max_length: Optional[int] = None
-    ) -> Dict[str, np.ndarray]:
-        """Tokenize text for the model."""
-        if max_length is None:
-            max_length = config.embedding.tokenizer_max_length
-
-        # Type assertion to help type checker
-        assert max_length is not None, "max_length must be set"
-
+    def _encode(self, text: str, max_length: int) -> List[int]:
+        """Encode text to unpadded token ids, truncated to max_length."""
         if self.tokenizer:
-            encoding = self.tokenizer.encode(text)
-            tokens = encoding.ids
-            attention_mask = encoding.attention_mask
-
-            # Truncate or pad to max_length
-            if len(tokens) > max_length:
-                tokens = tokens[:max_length]
-                attention_mask = attention_mask[:max_length]
-            else:
-                padding_length = max_length - len(tokens)
-                tokens.extend([0] * padding_length)
-                attention_mask.extend([0] * padding_length)
+            tokens = self.tokenizer.encode(text).ids
         else:
             # Basic fallback tokenization
             tokens = (
@@ -95,24 +116,68 @@ class EmbeddingModel:
                 + [hash(word) % 30000 for word in text.split()][: max_length - 2]
                 + [2]
             )
-            tokens = tokens[:max_length]
-            attention_mask = [1] * len(tokens)
 
-            # Pad if necessary
-            if len(tokens) < max_length:
-                padding_length = max_length - len(tokens)
-                tokens.extend([0] * padding_length)
-                attention_mask.extend([0] * padding_length)
+        return tokens[:max_length]
 
-        # Create token_type_ids (all zeros for single sentence)
-        token_type_ids = [0] * len(tokens)
+    def _build_inputs(self, token_lists: List[List[int]]) -> Dict[str, np.ndarray]:
+        """Build model inputs padded only to the longest token list."""
+        seq_len = max((len(tokens) for tokens in token_lists), default=0)
+        seq_len = max(seq_len, 1)
+
+        input_ids = np.zeros((len(token_lists), seq_len), dtype=np.int64)
+        attention_mask = np.zeros((len(token_lists), seq_len), dtype=np.int64)
+        for i, tokens in enumerate(token_lists):
+            input_ids[i, : len(tokens)] = tokens
+            attention_mask[i, : len(tokens)] = 1
 
         return {
-            "input_ids": np.array([tokens], dtype=np.int64),
-            "attention_mask": np.array([attention_mask], dtype=np.int64),
-            "token_type_ids": np.array([token_type_ids], dtype=np.int64),
+            "input_ids": input_ids,
+            "attention_mask": attention_mask,
+            # token_type_ids are all zeros for single sentences
+            "token_type_ids": np.zeros_like(input_ids),
         }
 
+    def _tokenize(
+        self, text: str, max_length: Optional[int] = None
+    ) -> Dict[str, np.ndarray]:
+        """Tokenize text for the model, without padding."""
+        if max_length is None:
+            max_length = config.embedding.tokenizer_max_length
+
+        # Type assertion to help type checker
+        assert max_length is not None, "max_length must be set"
+
+        return self._build_inputs([self._encode(text, max_length)])
+
+    def _run_and_pool(self, inputs: Dict[str, np.ndarray]) -> np.ndarray:
+        """Run the model and mean-pool token embeddings over the attention mask."""
+        return self._run_and_pool_many([inputs])[0]
+
+    def _run_and_pool_many(
+        self, batches: List[Dict[str, np.ndarray]]
+    ) -> List[np.ndarray]:
+        """Run batches across the inference pool and mean-pool each one."""
+        pool = self.pool
+        if pool is None:
+            raise RuntimeError("Embedding model session is not initialized")
+
+        return [
+            self._mean_pool(outputs[0], inputs["attention_mask"])
+            for inputs, outputs in zip(batches, pool.run_many(batches))
+        ]
+
+    @staticmethod
+    def _mean_pool(token_embeddings: Any, attention_mask: np.ndarray) -> np.ndarray:
+        """Average token embeddings over the attention mask."""
+        embeddings = np.array(token_embeddings, dtype=np.float32)
+
+        attention_mask = attention_mask.astype(np.float32)
+        masked_embeddings = embeddings * np.expand_dims(attention_mask, -1)
+        summed = np.sum(masked_embeddings, axis=1)
+        counts = np.sum(attention_mask, axis=1, keepdims=True)
+        counts = np.maximum(counts, 1e-8)
+        return summed / counts
+
     def count_tokens(self, text: str) -> int:
         """Count the number of tokens using the actual tokenizer with detailed logging."""
         if not self.tokenizer:
@@ -122,15 +187,9 @@ class EmbeddingModel:
 
         try:
             # Align counting with the embedding model's tokenization and max length
-            inputs = self._tokenize(
-                text, max_length=config.embedding.tokenizer_max_length
+            token_count = len(
+                self._encode(text, config.embedding.tokenizer_max_length)
             )
-            attention_mask = inputs["attention_mask"]
-            if isinstance(attention_mask, np.ndarray):
-                # attention_mask shape is (1, seq_len)
-                token_count = int(attention_mask[0].sum().item())
-            else:
-                token_count = int(sum(attention_mask))
 
             return token_count
         except Exception as e:
@@ -139,82 +198,108 @@ class EmbeddingModel:
             logger.error(f"❌ Text preview: '{text[:200]}...'")
             raise RuntimeError(f"Tokenizer failed: {e}")
 
+    def token_offsets(self, text: str) -> List[Tuple[int, int]]:
+        """Character spans of the text's tokens, untruncated and without special tokens."""
+        if not self.offset_tokenizer:
+            raise RuntimeError(
+                "Tokenizer not available - cannot count tokens accurately"
+            )
+
+        return self.offset_tokenizer.encode(text, add_special_tokens=False).offsets
+
     def get_embedding(self, text: str) -> np.ndarray:
         """Generate embedding for text."""
         if not text or not text.strip():
             return np.zeros(384, dtype=np.float32)
 
         try:
-            inputs = self._tokenize(text)
-            session = self.session
-            if session is None:
-                raise RuntimeError("Embedding model session is not initialized")
-            outputs = session.run(None, inputs)
-            embeddings = np.array(outputs[0], dtype=np.float32)
-
-            # Mean pooling
-            attention_mask = inputs["attention_mask"].astype(np.float32)
-            masked_embeddings = embeddings * np.expand_dims(attention_mask, -1)
-            summed = np.sum(masked_embeddings, axis=1)
-            counts = np.sum(attention_mask, axis=1, keepdims=True)
-            counts = np.maximum(counts, 1e-8)
-            mean_pooled = summed / counts
-
-            return mean_pooled[0]
+            return self._run_and_pool(self._tokenize(text))[0]
 
         except Exception as e:
             logger.error(f"Failed to generate embedding: {e}")
             return np.zeros(384, dtype=np.float32)
 
     def get_embeddings_batch(self, texts: List[str]) -> List[np.ndarray]:
-        """Generate embeddings for multiple texts in batch for better performance."""
+        """Generate embeddings for multiple texts, running the model only on cache misses.
+
+        Texts whose normalized content was embedded before by this model are
+        served from the embedding cache; each distinct missing text runs once.
+        """
+        cache = self.cache
+        if cache is None or not texts:
+            return self._run_batch(texts)
+
+        keys = [
+            cache.key(text) if text and text.strip() else None for text in texts
+        ]
+        cached = cache.get_many(key for key in keys if key is not None)
+
+        # One model input per distinct missing text
+        missing: Dict[str, int] = {}
+        for i, key in enumerate(keys):
+            if key is not None and key not in cached and key not in missing:
+                missing[key] = i
+
+        if missing:
+            computed = self._run_batch([texts[i] for i in missing.values()])
+            fresh = dict(zip(missing.keys(), computed))
+            # Zero vectors are failures, never cache them
+            cache.put_many(
+                {key: vector for key, vector in fresh.items() if np.any(vector)}
+            )
+            cached.update(fresh)
+
+        return [
+            cached[key] if key is not None else np.zeros(384, dtype=np.float32)
+            for key in keys
+        ]
+
+    def _run_batch(self, texts: List[str]) -> List[np.ndarray]:
+        """Generate embeddings for multiple texts in batch for better performance.
+
+        Texts are sorted by token count and run in sub-batches of
+        embedding.inference_batch_size, each padded only to its longest member,
+        so short texts do not pay for the longest text in the input. Results are
+        returned in input order.
+        """
         if not texts:
             return []
 
         try:
-            # Pre-allocate batch tensors for better performance
-            batch_size = len(texts)
             max_length = config.embedding.tokenizer_max_length
+            batch_size = max(1, config.embedding.inference_batch_size)
+
+            # Empty texts embed to zeros without running the model
+            results: List[np.ndarray] = [
+                np.zeros(384, dtype=np.float32) for _ in texts
+            ]
+            indices = [i for i, text in enumerate(texts) if text and text.strip()]
+            if not indices:
+                return results
+
+            if self.tokenizer:
+                encodings = self.tokenizer.encode_batch([texts[i] for i in indices])
+                token_lists = [encoding.ids[:max_length] for encoding in encodings]
+            else:
+                token_lists = [self._encode(texts[i], max_length) for i in indices]
+
+            # Length buckets: neighbours in sorted order have similar lengths
+            order = sorted(range(len(indices)), key=lambda j: len(token_lists[j]))
+
+            buckets = [
+                order[start : start + batch_size]
+                for start in range(0, len(order), batch_size)
+            ]
+            # Buckets run concurrently when the pool has several sessions
+            pooled = self._run_and_pool_many(
+                [self._build_inputs([token_lists[j] for j in b]) for b in buckets]
+            )
 
-            batch_input_ids = np.zeros((batch_size, max_length), dtype=np.int64)
-            batch_attention_mask = np.zeros((batch_size, max_length), dtype=np.int64)
-            batch_token_type_ids = np.zeros((batch_size, max_length), dtype=np.int64)
-
-            # Batch tokenization with direct tensor insertion
-            for i, text in enumerate(texts):
-                if text and text.strip():
-                    tokens = self._tokenize(text)
-                    batch_input_ids[i] = tokens["input_ids"].reshape(-1)[:max_length]
-                    batch_attention_mask[i] = tokens["attention_mask"].reshape(-1)[
-                        :max_length
-                    ]
-                    batch_token_type_ids[i] = tokens["token_type_ids"].reshape(-1)[
-                        :max_length
-                    ]
-                # Empty texts remain as zeros (already pre-allocated)
-
-            batch_inputs = {
-                "input_ids": batch_input_ids,
-                "attention_mask": batch_attention_mask,
-                "token_type_ids": batch_token_type_ids,
-            }
-
-            # Run inference on entire batch
-            session = self.session
-            if session is None:
-                raise RuntimeError("Embedding model session is not initialized")
-            outputs = session.run(None, batch_inputs)
-            embeddings = np.array(outputs[0], dtype=np.float32)
-
-            # Mean pooling for each item in batch
-            attention_mask = batch_attention_mask.astype(np.float32)
-            masked_embeddings = embeddings * np.expand_dims(attention_mask, -1)
-            summed = np.sum(masked_embeddings, axis=1)
-            counts = np.sum(attention_mask, axis=1, keepdims=True)
-            counts = np.maximum(counts, 1e-8)
-            mean_pooled = summed / counts
+            for bucket, mean_pooled in zip(buckets, pooled):
+                for row, j in enumerate(bucket):
+                    results[indices[j]] = mean_pooled[row]
 
-            return [mean_pooled[i] for i in range(len(texts))]
+            return results
 
         except Exception as e:
             logger.error(f"Failed to generate batch embeddings: {e}")
@@ -234,6 +319,29 @@ class TextChunker:
         # Use the embedding model's tokenizer for accurate token counting
         return self.embedding_model.count_tokens(text)
 
+    def _count_content_tokens(self, content_tokens: int) -> int:
+        """Token count of text with content_tokens tokens, as _count_tokens reports it.
+
+        Matches the embedding tokenizer: special tokens are added and the total
+        is truncated to tokenizer_max_length.
+        """
+        return min(
+            self.embedding_model.special_token_count + content_tokens,
+            config.embedding.tokenizer_max_length,
+        )
+
+    @staticmethod
+    def _tokens_per_span(
+        token_offsets: List[Tuple[int, int]], span_starts: List[int]
+    ) -> List[int]:
+        """Count tokens starting in each span, given sorted span start offsets."""
+        counts = [0] * len(span_starts)
+        for token_start, _ in token_offsets:
+            index = bisect_right(span_starts, token_start) - 1
+            if index >= 0:
+                counts[index] += 1
+        return counts
+
     def chunk_text(
         self,
         text: str,
@@ -241,7 +349,12 @@ class TextChunker:
         overlap_tokens: int = 30,
         metadata: str = "",
     ) -> List[Dict[str, Any]]:
-        """Split text into token-based adaptive chunks. First chunk includes metadata prefix once."""
+        """Split text into token-based adaptive chunks. First chunk includes metadata prefix once.
+
+        The text is tokenized once; chunk and overlap boundaries come from
+        per-line and per-word token counts. Tokens never span whitespace, so the
+        count of any run of lines or words is the sum of its parts.
+        """
         if not text or not text.strip():
             return []
 
@@ -249,144 +362,125 @@ class TextChunker:
         if not lines:
             return []
 
+        # Character offset of each line start, plus the end of the text
+        line_starts = [0]
+        for line in lines:
+            line_starts.append(line_starts[-1] + len(line))
+
+        token_offsets = self.embedding_model.token_offsets(text)
+        line_tokens = self._tokens_per_span(token_offsets, line_starts[:-1])
+
+        # Overlap is built from whitespace-separated words, as str.split() does
+        words = [match.span() for match in re.finditer(r"\S+", text)]
+        word_starts = [start for start, _ in words]
+        word_tokens = self._tokens_per_span(token_offsets, word_starts)
+
         chunks: List[Dict[str, Any]] = []
         metadata_prefix = (metadata + "\n\n") if metadata else ""
+        metadata_tokens = (
+            len(self.embedding_model.token_offsets(metadata_prefix))
+            if metadata_prefix
+            else 0
+        )
 
         # Reserve tokens for metadata in first chunk
         first_chunk_token_budget = (
-            max_tokens - self._count_tokens(metadata_prefix)
+            max_tokens - self._count_content_tokens(metadata_tokens)
             if metadata_prefix
             else max_tokens
         )
 
         line_index = 0
         overlap_text = ""
+        overlap_token_count = 0
 
         while line_index < len(lines):
-            start_line = line_index + 1
-            chunk_lines = []
-            current_chunk_text = overlap_text
+            start_index = line_index
 
             # Add metadata to first chunk only
             if len(chunks) == 0 and metadata_prefix:
-                current_chunk_text = metadata_prefix + current_chunk_text
+                prefix_text = metadata_prefix + overlap_text
+                chunk_tokens = metadata_tokens + overlap_token_count
                 token_budget = first_chunk_token_budget
             else:
+                prefix_text = overlap_text
+                chunk_tokens = overlap_token_count
                 token_budget = max_tokens
 
-            # Build chunk line by line until we hit token limit
+            # Take lines until the token limit, always at least one line
             while line_index < len(lines):
-                line_to_add = lines[line_index]
-                potential_text = current_chunk_text + line_to_add
-
-                if self._count_tokens(potential_text) > token_budget and chunk_lines:
-                    # We've hit the token limit and have at least one line
+                potential_tokens = chunk_tokens + line_tokens[line_index]
+                if (
+                    self._count_content_tokens(potential_tokens) > token_budget
+                    and line_index > start_index
+                ):
                     break
 
-                chunk_lines.append(line_to_add)
-                current_chunk_text = potential_text
+                chunk_tokens = potential_tokens
                 line_index += 1
 
-            # If no lines fit, take at least one line (truncated if necessary)
-            if not chunk_lines and line_index < len(lines):
-                line_to_add = lines[line_index]
-                potential_text = current_chunk_text + line_to_add
-
-                if self._count_tokens(potential_text) > token_budget:
-                    # Truncate the line to fit
-                    truncated_line = self._trim_to_max_tokens(
-                        current_chunk_text + line_to_add, token_budget
-                    )
-                    # Remove the prefix to get just the truncated line part
-                    prefix_len = len(current_chunk_text)
-                    if len(truncated_line) > prefix_len:
-                        line_to_add = truncated_line[prefix_len:]
-                    else:
-                        line_to_add = ""
-
-                chunk_lines.append(line_to_add)
-                current_chunk_text = current_chunk_text + line_to_add
-                line_index += 1
-
-            if not chunk_lines:
-                break
-
-            # Calculate line numbers and character offsets
-            chunk_start_line = start_line
-            chunk_end_line = start_line + len(chunk_lines) - 1
-
-            # Remove overlap text from the beginning for character offset calculation
-            chunk_text_for_offset = "".join(chunk_lines)
-            if overlap_text and current_chunk_text.startswith(overlap_text):
-                char_start = len("".join(lines[: start_line - 1])) - len(
-                    overlap_text.rstrip("\n")
-                )
-            else:
-                char_start = len("".join(lines[: start_line - 1]))
-
-            char_end = len("".join(lines[:chunk_end_line]))
+            char_start = line_starts[start_index]
+            char_end = line_starts[line_index]
+            if overlap_text:
+                # Overlap words are counted back from the chunk's first line
+                char_start -= len(overlap_text.rstrip("\n"))
 
             chunks.append(
                 {
-                    "text": current_chunk_text,
+                    "text": prefix_text + text[line_starts[start_index] : char_end],
                     "start": char_start,
                     "end": char_end,
-                    "start_line": chunk_start_line,
-                    "end_line": chunk_end_line,
-                    "token_count": self._count_tokens(current_chunk_text),
+                    "start_line": start_index + 1,
+                    "end_line": line_index,
+                    "token_count": self._count_content_tokens(chunk_tokens),
                 }
             )
 
             # Prepare overlap for next chunk
             if overlap_tokens > 0 and line_index < len(lines):
-                overlap_text = self._get_overlap_text(
-                    chunk_text_for_offset, overlap_tokens
+                first_word = bisect_left(word_starts, line_starts[start_index])
+                last_word = bisect_left(word_starts, char_end)
+                overlap_text, overlap_token_count = self._get_overlap_words(
+                    text,
+                    words[first_word:last_word],
+                    word_tokens[first_word:last_word],
+                    overlap_tokens,
                 )
                 if overlap_text:
                     overlap_text += "\n"
             else:
                 overlap_text = ""
+                overlap_token_count = 0
 
         return chunks
 
-    def _trim_to_max_tokens(self, text: str, max_tokens: int) -> str:
-        """Trim text to fit within max_tokens."""
-        if self._count_tokens(text) <= max_tokens:
-            return text
-
-        # Binary search to find the right length
-        left, right = 0, len(text)
-        best_text = ""
-
-        while left <= right:
-            mid = (left + right) // 2
-            candidate = text[:mid]
-
-            if self._count_tokens(candidate) <= max_tokens:
-                best_text = candidate
-                left = mid + 1
-            else:
-                right = mid - 1
-
-        return best_text
+    def _get_overlap_words(
+        self,
+        text: str,
+        words: List[Tuple[int, int]],
+        word_tokens: List[int],
+        overlap_tokens: int,
+    ) -> Tuple[str, int]:
+        """Get the most trailing words that fit in overlap_tokens, and their token count.
 
-    def _get_overlap_text(self, text: str, overlap_tokens: int) -> str:
-        """Get the last overlap_tokens worth of text for overlap."""
-        if overlap_tokens <= 0:
-            return ""
+        At most overlap_tokens * 2 words are considered.
+        """
+        word_count = 0
+        token_count = 0
+        limit = min(len(words), overlap_tokens * 2)
 
-        # Start from the end and work backwards
-        words = text.split()
-        if not words:
-            return ""
+        while word_count < limit:
+            next_count = token_count + word_tokens[len(words) - word_count - 1]
+            if self._count_content_tokens(next_count) > overlap_tokens:
+                break
+            token_count = next_count
+            word_count += 1
 
-        # Try different word counts to get close to overlap_tokens
-        for word_count in range(min(len(words), overlap_tokens * 2), 0, -1):
-            candidate = " ".join(words[-word_count:])
-            if self._count_tokens(candidate) <= overlap_tokens:
-                return candidate
+        if word_count == 0:
+            return "", 0
 
-        return ""
+        overlap_words = [text[start:end] for start, end in words[-word_count:]]
+        return " ".join(overlap_words), token_count
 
     def get_chunked_embeddings(
         self, text: str, max_tokens: int = 240, overlap_tokens: int = 30
@@ -438,6 +532,8 @@ class VectorStore:
     # Attributes for type checkers
     embedding_model: EmbeddingModel
     text_chunker: TextChunker
+    ann_index: Optional[IVFIndex]
+    quantized_index: Optional[QuantizedVectorIndex]
     db_path: Path
     connection: Optional[sqlite3.Connection]
 
@@ -465,6 +561,10 @@ class VectorStore:
         self.db_path = Path(resolved_db_path)
         self.db_path.parent.mkdir(parents=True, exist_ok=True)
         self.connection: Optional[sqlite3.Connection] = None
+        # Serializes transactions on the shared connection across threads
+        self._db_lock = threading.RLock()
+        self.ann_index = None
+        self.quantized_index = None
 
         # Initialize embedding components
         if model_path is None:
@@ -488,8 +588,14 @@ class VectorStore:
     def _connect(self) -> None:
         """Connect to vector database and setup tables."""
         try:
-            self.connection = sqlite3.connect(str(self.db_path))
+            # Pipelined indexing stores vectors from a worker thread
+            self.connection = sqlite3.connect(
+                str(self.db_path), check_same_thread=False
+            )
             self.connection.execute("PRAGMA foreign_keys = ON")
+            # WAL lets ANN training read a snapshot on its own connection
+            # while this one keeps storing vectors
+            self.connection.execute("PRAGMA journal_mode = WAL")
             self.connection.enable_load_extension(True)
             sqlite_vec.load(self.connection)
             self._setup_vector_tables()
@@ -498,28 +604,101 @@ class VectorStore:
             logger.error(f"Failed to connect to vector store: {e}")
             raise
 
+    def _open_reader(self) -> sqlite3.Connection:
+        """Open a second connection to the vector database, used by ANN training."""
+        connection = sqlite3.connect(str(self.db_path), check_same_thread=False)
+        connection.enable_load_extension(True)
+        sqlite_vec.load(connection)
+        return connection
+
     def _setup_vector_tables(self) -> None:
         """Setup vector tables using sqlite-vec."""
         try:
             assert self.connection is not None
-            self.connection.execute(
-                """
-                CREATE VIRTUAL TABLE IF NOT EXISTS embeddings USING vec0(
-                    node_id TEXT,
-                    project_id INTEGER,
-                    chunk_index INTEGER,
-                    chunk_start_line INTEGER,
-                    chunk_end_line INTEGER,
-                    embedding FLOAT[384]
+            if self._embeddings_table_needs_partitioning():
+                self._migrate_to_partitioned_table()
+
+            self.connection.execute(CREATE_EMBEDDINGS_TABLE)
+            self.connection.commit()
+
+            if config.embedding.embedding_cache:
+                self.embedding_model.cache = EmbeddingCache(
+                    self.connection,
+                    make_model_id(
+                        self.embedding_model.model_file,
+                        config.embedding.tokenizer_max_length,
+                    ),
+                    self._db_lock,
+                    max_entries=config.embedding.embedding_cache_max_entries,
                 )
-            """
+
+            self.ann_index = IVFIndex(
+                self.connection, self._db_lock, connect=self._open_reader
             )
-            self.connection.commit()
+            self._setup_quantized_index()
             logger.debug("Vector tables setup complete")
         except Exception as e:
             logger.error(f"Failed to setup vector tables: {e}")
             raise
 
+    def _setup_quantized_index(self) -> None:
+        """Attach the compact first-pass vector table for quantized storage."""
+        assert self.connection is not None
+        mode = config.embedding.vector_storage
+        if mode == "float":
+            # Drop compact tables left over from a quantized mode
+            with self._db_lock:
+                for quantized_mode in QUANTIZED_STORAGE:
+                    table = quantized_table_name(quantized_mode)
+                    self.connection.execute(f"DROP TABLE IF EXISTS {table}")
+                self.connection.commit()
+            return
+
+        self.quantized_index = QuantizedVectorIndex(
+            self.connection, mode, self._db_lock
+        )
+
+    def _embeddings_table_needs_partitioning(self) -> bool:
+        """Whether embeddings is a flat vec0 table from before partitioning."""
+        assert self.connection is not None
+        row = self.connection.execute(
+            "SELECT sql FROM sqlite_master WHERE name = 'embeddings'"
+        ).fetchone()
+        return row is not None and "partition key" not in row[0].lower()
+
+    def _migrate_to_partitioned_table(self) -> None:
+        """
+        Rebuild a flat embeddings table partitioned by project_id.
+
+        Rows are staged in a plain table and copied back with their rowids, so
+        anything referencing embedding rowids stays valid.
+        """
+        assert self.connection is not None
+        logger.info("🔄 Migrating embeddings table to per-project partitions...")
+
+        try:
+            self.connection.execute("BEGIN")
+            self.connection.execute(
+                f"""CREATE TABLE embeddings_migration AS
+                    SELECT rowid AS id, {EMBEDDINGS_COLUMNS} FROM embeddings"""
+            )
+            self.connection.execute("DROP TABLE embeddings")
+            self.connection.execute(CREATE_EMBEDDINGS_TABLE)
+            self.connection.execute(
+                f"""INSERT INTO embeddings (rowid, {EMBEDDINGS_COLUMNS})
+                    SELECT id, {EMBEDDINGS_COLUMNS}
+                    FROM embeddings_migration ORDER BY id"""
+            )
+            self.connection.execute("DROP TABLE embeddings_migration")
+            self.connection.execute("COMMIT")
+        except Exception:
+            self.connection.execute("ROLLBACK")
+            raise
+
+        # Reclaim the space of the dropped flat table
+        self.connection.execute("VACUUM")
+        logger.info("✅ Embeddings table migrated")
+
     # Embedding generation methods
     def get_embedding(self, text: str) -> np.ndarray:
         """Generate embedding for text."""
@@ -615,23 +794,28 @@ class VectorStore:
 
             # Store in vector database using sqlite-vec
             assert self.connection is not None
-            cursor = self.connection.execute(
-                """INSERT INTO embeddings (node_id, project_id, chunk_index, chunk_start_line, chunk_end_line, embedding)
-                   VALUES (?, ?, ?, ?, ?, ?)""",
-                (
-                    str(node_id),  # Convert to string for sqlite-vec
-                    project_id,
-                    chunk_index,
-                    chunk_start_line,
-                    chunk_end_line,
-                    embedding_array,
-                ),
-            )
+            # ANN training commits its batches on this connection from another thread
+            with self._db_lock:
+                cursor = self.connection.execute(
+                    """INSERT INTO embeddings (node_id, project_id, chunk_index, chunk_start_line, chunk_end_line, embedding)
+                       VALUES (?, ?, ?, ?, ?, ?)""",
+                    (
+                        str(node_id),  # Convert to string for sqlite-vec
+                        project_id,
+                        chunk_index,
+                        chunk_start_line,
+                        chunk_end_line,
+                        embedding_array,
+                    ),
+                )
 
-            embedding_id = cursor.lastrowid
-            self.connection.commit()
-            if embedding_id is None:
-                raise RuntimeError("Failed to retrieve lastrowid after insert")
+                embedding_id = cursor.lastrowid
+                if embedding_id is None:
+                    raise RuntimeError("Failed to retrieve lastrowid after insert")
+                self._index_new_vectors(
+                    [(int(embedding_id), project_id, embedding_array)]
+                )
+                self.connection.commit()
             return int(embedding_id)
 
         except Exception as e:
@@ -640,6 +824,16 @@ class VectorStore:
 
     def store_embeddings_batch(
         self, embedding_data_list: List[Dict[str, Any]]
+    ) -> List[int]:
+        """Store multiple embeddings in a single database transaction."""
+        # Cache writes from other threads share this connection
+        with self._db_lock:
+            embedding_ids = self._store_embeddings_batch(embedding_data_list)
+        self._schedule_ann_training()
+        return embedding_ids
+
+    def _store_embeddings_batch(
+        self, embedding_data_list: List[Dict[str, Any]]
     ) -> List[int]:
         """
         Store multiple embeddings in a single database transaction for massive performance improvement.
@@ -654,6 +848,8 @@ class VectorStore:
             return []
 
         embedding_ids: List[int] = []
+        # (rowid, project_id, vector) rows for the derived indexes
+        ann_rows: List[Tuple[int, int, np.ndarray]] = []
 
         cursor = None
         try:
@@ -694,6 +890,10 @@ class VectorStore:
                 if rowid is None:
                     raise RuntimeError("Failed to retrieve lastrowid for batch insert")
                 embedding_ids.append(int(rowid))
+                ann_rows.append((int(rowid), data["project_id"], embedding_array))
+
+            # Keep the derived indexes in the same transaction
+            self._index_new_vectors(ann_rows)
 
             # Commit all inserts at once
             cursor.execute("COMMIT")
@@ -712,14 +912,28 @@ class VectorStore:
             logger.error(f"Failed to batch store embeddings: {e}")
             raise
 
+    def _index_new_vectors(self, rows: List[Tuple[int, int, np.ndarray]]) -> None:
+        """Add newly inserted vectors to the ANN and quantized indexes."""
+        if self.ann_index is not None:
+            self.ann_index.add(rows)
+        if self.quantized_index is not None:
+            self.quantized_index.add(rows)
+
     def search_similar(
         self,
         query_embedding: np.ndarray,
         limit: int = 30,
         threshold: float = 0.0,
         project_id: Optional[int] = None,
+        exact: bool = False,
     ) -> List[Dict[str, Any]]:
-        """Search for similar embeddings."""
+        """Search for similar embeddings.
+
+        Uses the ANN index once it is trained, then the quantized first pass
+        with rerank when embedding.vector_storage is "binary" or "int8", and
+        otherwise scans the float vectors. exact=True always scans the float
+        vectors.
+        """
         try:
             query_vector = (
                 query_embedding.astype(np.float32)
@@ -732,31 +946,23 @@ class VectorStore:
                     f"Expected 384-dimensional query vector, got shape {query_vector.shape}"
                 )
 
-            # Build query with optional project filtering
-            if project_id is not None:
-                query_sql = """
-                    SELECT rowid, node_id, project_id, chunk_index, chunk_start_line, chunk_end_line, distance
-                    FROM embeddings
-                    WHERE project_id = ? AND embedding MATCH ?
-                    ORDER BY distance
-                    LIMIT ?
-                """
-                query_params: Tuple[Any, ...] = (project_id, query_vector, limit)
+            if not exact and self._ann_ready(project_id):
+                rows = self._search_ann(query_vector, limit, project_id)
+            elif not exact and self.quantized_index is not None:
+                rows = self._fetch_hit_rows(
+                    self.quantized_index.search(
+                        query_vector,
+                        limit,
+                        config.embedding.rerank_factor,
+                        project_id,
+                    )
+                )
             else:
-                query_sql = """
-                    SELECT rowid, node_id, project_id, chunk_index, chunk_start_line, chunk_end_line, distance
-                    FROM embeddings
-                    WHERE embedding MATCH ?
-                    ORDER BY distance
-                    LIMIT ?
-                """
-                query_params = (query_vector, limit)
+                rows = self._search_exact(query_vector, limit, project_id)
 
-            assert self.connection is not None
-            cursor = self.connection.execute(query_sql, query_params)
             results: List[Dict[str, Any]] = []
 
-            for row in cursor.fetchall():
+            for row in rows:
                 (
                     embedding_id,
                     node_id,
@@ -790,17 +996,135 @@ class VectorStore:
             logger.error(f"Vector similarity search failed: {e}")
             return []
 
+    def _search_exact(
+        self, query_vector: np.ndarray, limit: int, project_id: Optional[int]
+    ) -> List[Tuple[Any, ...]]:
+        """Brute-force KNN over the vec0 table."""
+        # Build query with optional project filtering
+        if project_id is not None:
+            query_sql = """
+                SELECT rowid, node_id, project_id, chunk_index, chunk_start_line, chunk_end_line, distance
+                FROM embeddings
+                WHERE project_id = ? AND embedding MATCH ?
+                ORDER BY distance
+                LIMIT ?
+            """
+            query_params: Tuple[Any, ...] = (project_id, query_vector, limit)
+        else:
+            query_sql = """
+                SELECT rowid, node_id, project_id, chunk_index, chunk_start_line, chunk_end_line, distance
+                FROM embeddings
+                WHERE embedding MATCH ?
+                ORDER BY distance
+                LIMIT ?
+            """
+            query_params = (query_vector, limit)
+
+        assert self.connection is not None
+        with self._db_lock:
+            return self.connection.execute(query_sql, query_params).fetchall()
+
+    def _schedule_ann_training(self) -> None:
+        """Start training the ANN index in the background once it is due."""
+        ann_index = self.ann_index
+        if (
+            ann_index is not None
+            and config.embedding.ann_index
+            and ann_index.should_train(config.embedding.ann_min_vectors)
+            and ann_index.start_training()
+        ):
+            logger.debug("🧭 ANN index training started in the background")
+
+    def _ann_ready(self, project_id: Optional[int] = None) -> bool:
+        """Whether a search should use the ANN index.
+
+        Never trains inline: a due training is started in the background and
+        searches use the previous index, or exact search before the first one
+        is trained. Projects with fewer than ann_min_vectors indexed vectors
+        use the partitioned exact search, which is already cheap for them.
+        """
+        ann_index = self.ann_index
+        if ann_index is None or not config.embedding.ann_index:
+            return False
+
+        self._schedule_ann_training()
+
+        min_vectors = config.embedding.ann_min_vectors
+        if not ann_index.is_trained:
+            return False
+        if project_id is not None:
+            return ann_index.project_counts.get(project_id, 0) >= min_vectors
+        return ann_index.vector_count >= min_vectors
+
+    def _search_ann(
+        self, query_vector: np.ndarray, limit: int, project_id: Optional[int]
+    ) -> List[Tuple[Any, ...]]:
+        """Approximate KNN through the IVF index, in vec0 row format."""
+        assert self.ann_index is not None
+        hits = self.ann_index.search(
+            query_vector, limit, config.embedding.ann_nprobe, project_id
+        )
+        return self._fetch_hit_rows(hits)
+
+    def _fetch_hit_rows(self, hits: List[Tuple[int, float]]) -> List[Tuple[Any, ...]]:
+        """Fetch chunk metadata for (rowid, distance) hits, in vec0 row format."""
+        assert self.connection is not None
+        rows: List[Tuple[Any, ...]] = []
+        with self._db_lock:
+            for rowid, distance in hits:
+                # Point lookups by rowid avoid a vec0 table scan
+                row = self.connection.execute(
+                    """SELECT rowid, node_id, project_id, chunk_index, chunk_start_line, chunk_end_line
+                       FROM embeddings WHERE rowid = ?""",
+                    (rowid,),
+                ).fetchone()
+                if row is not None:
+                    rows.append((*row, distance))
+        return rows
+
+    def delete_embeddings(self, node_ids: List[str], project_id: int) -> None:
+        """Delete the embeddings of nodes in a project from every vector table."""
+        if not node_ids:
+            return
+
+        assert self.connection is not None
+        placeholders = ",".join(["?" for _ in node_ids])
+        with self._db_lock:
+            try:
+                if self.ann_index is not None:
+                    self.ann_index.remove_nodes(node_ids, project_id)
+                if self.quantized_index is not None:
+                    self.quantized_index.remove_nodes(node_ids, project_id)
+                self.connection.execute(
+                    f"""DELETE FROM embeddings
+                       WHERE node_id IN ({placeholders})
+                       AND project_id = ?""",
+                    (*node_ids, project_id),
+                )
+                self.connection.commit()
+            except Exception:
+                self.connection.rollback()
+                raise
+
+    def rebuild_ann_index(self) -> None:
+        """Retrain the ANN index from every stored vector, waiting for it."""
+        if self.ann_index is not None:
+            self.ann_index.train()
+
     def search_similar_chunks(
         self,
         query_text: str,
         limit: int = 30,
         threshold: float = 0.0,
         project_id: Optional[int] = None,
+        exact: bool = False,
     ) -> List[Dict[str, Any]]:
         """Search for similar chunks using text query."""
         try:
             query_embedding = self.get_embedding(query_text)
-            return self.search_similar(query_embedding, limit, threshold, project_id)
+            return self.search_similar(
+                query_embedding, limit, threshold, project_id, exact
+            )
         except Exception as e:
             logger.error(f"Failed to search similar chunks: {e}")
             return []
@@ -829,6 +1153,28 @@ class VectorStore:
             else:
                 stats["average_chunks_per_node"] = 0
 
+            if self.embedding_model.cache is not None:
+                cache_stats = self.embedding_model.cache.get_stats()
+                stats["cache_entries"] = cache_stats["entries"]
+                stats["cache_hits"] = cache_stats["hits"]
+                stats["cache_misses"] = cache_stats["misses"]
+
+            if self.ann_index is not None:
+                stats["ann_trained"] = self.ann_index.is_trained
+                stats["ann_lists"] = (
+                    len(self.ann_index.centroids) if self.ann_index.is_trained else 0
+                )
+                stats["ann_vectors"] = self.ann_index.vector_count
+
+            if self.embedding_model.pool is not None:
+                pool_stats = self.embedding_model.pool.get_stats()
+                stats["inference_sessions"] = pool_stats["sessions"]
+                stats["inference_queue_depth"] = pool_stats["queue_depth"]
+                stats["inference_max_queue_depth"] = pool_stats["max_queue_depth"]
+                stats["inference_batches"] = pool_stats["batches"]
+                stats["inference_average_batch_ms"] = pool_stats["average_batch_ms"]
+
+            stats["vector_storage"] = config.embedding.vector_storage
             stats["storage_method"] = "sqlite-vec"
             stats["vector_dimension"] = 384
             stats["database_size_mb"] = round(
@@ -849,6 +1195,8 @@ class VectorStore:
 
     def close(self) -> None:
         """Close the database connection."""
+        if self.embedding_model.pool is not None:
+            self.embedding_model.pool.close()
         if self.connection:
             self.connection.close()
             self.connection = None
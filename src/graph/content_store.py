@@ -0,0 +1,171 @@
+"""
+Compressed, deduplicated storage of file and code block content.
+
+With database.content_storage = "compressed":
+  - a file's text is zlib-compressed into content_store, keyed by the SHA256
+    of the text, so identical files share one row; files.content is empty and
+    files.content_key points at the row
+  - a code block whose text is exactly a slice of its file is stored as
+    (content_key, start_byte, end_byte) into the file's text, with an empty
+    code_blocks.content; other blocks (e.g. functions with nested functions
+    replaced by references) keep their text inline
+
+Readers get the text back through the stored_content() SQL function, which
+every SQLiteConnection registers:
+
+    stored_content(inline content, content_key, content_store.data,
+                   start_byte, end_byte)
+
+It returns the inline content when content_key is NULL, so queries work the
+same for rows written in either mode.
+"""
+
+import hashlib
+import zlib
+from array import array
+from collections import OrderedDict
+from typing import TYPE_CHECKING, Dict, List, Optional, Tuple
+
+# This block is only read by type checkers, not at runtime
+if TYPE_CHECKING:
+    import sqlite3
+
+from utils.line_index import unpack_line_offsets
+
+CONTENT_STORAGE_MODES = ["plain", "compressed"]
+
+INSERT_CONTENT = (
+    "INSERT OR IGNORE INTO content_store (content_key, data) VALUES (?, ?)"
+)
+
+# Decompressed texts kept per connection, so a file's blocks decompress it once
+_CACHED_TEXTS = 32
+
+
+def make_content_key(data: bytes) -> str:
+    return hashlib.sha256(data).hexdigest()
+
+
+def register_content_functions(connection: "sqlite3.Connection") -> None:
+    """Register stored_content() on a connection."""
+    cache: "OrderedDict[str, bytes]" = OrderedDict()
+
+    def stored_content(
+        inline: Optional[str],
+        content_key: Optional[str],
+        data: Optional[bytes],
+        start_byte: Optional[int],
+        end_byte: Optional[int],
+    ) -> Optional[str]:
+        if content_key is None:
+            return inline
+
+        text = cache.get(content_key)
+        if text is None:
+            if data is None:
+                return inline
+            text = zlib.decompress(data)
+            cache[content_key] = text
+            if len(cache) > _CACHED_TEXTS:
+                cache.popitem(last=False)
+        else:
+            cache.move_to_end(content_key)
+
+        if start_byte is not None and end_byte is not None:
+            text = text[start_byte:end_byte]
+        return text.decode("utf-8")
+
+    # Not deterministic: without data, the result depends on the cache
+    connection.create_function("stored_content", 5, stored_content)
+
+
+def compact_rows(
+    connection: "sqlite3.Connection",
+    file_rows: List[Tuple],
+    block_rows: List[Tuple],
+    line_rows: List[Tuple],
+    compression_level: int = 6,
+) -> Tuple[List[Tuple], List[Tuple]]:
+    """
+    Move file and block content into content_store.
+
+    Takes insert rows in the plain column order of INSERT_FILE and
+    INSERT_CODE_BLOCK, plus the files' INSERT_FILE_LINES rows, and returns
+    them with empty content and content references appended. Blocks of files
+    not in file_rows keep their text.
+    Writes to content_store run in the caller's transaction.
+    """
+    line_offsets = dict(line_rows)
+    # file_id -> (content_key, text bytes, line offsets)
+    stored: Dict[int, Tuple[str, bytes, array]] = {}
+    compact_files = []
+    new_content = {}
+
+    for row in file_rows:
+        data = row[4].encode("utf-8")
+        content_key = make_content_key(data)
+        stored[row[0]] = (
+            content_key,
+            data,
+            unpack_line_offsets(line_offsets[row[0]]),
+        )
+        new_content[content_key] = data
+        compact_files.append((*row[:4], "", *row[5:], content_key))
+
+    if new_content:
+        # Only compress texts the store does not already hold
+        keys = list(new_content)
+        placeholders = ",".join("?" * len(keys))
+        existing = connection.execute(
+            f"SELECT content_key FROM content_store WHERE content_key IN ({placeholders})",
+            keys,
+        ).fetchall()
+        for (content_key,) in existing:
+            del new_content[content_key]
+        connection.executemany(
+            INSERT_CONTENT,
+            [
+                (content_key, zlib.compress(data, compression_level))
+                for content_key, data in new_content.items()
+            ],
+        )
+
+    compact_blocks = []
+    for row in block_rows:
+        content, start_line, end_line, start_col, end_col, file_id = row[3:9]
+        reference = None
+        if content and file_id in stored:
+            content_key, data, offsets = stored[file_id]
+            reference = _block_slice(
+                content, data, offsets, start_line, start_col, end_line, end_col
+            )
+            if reference is not None:
+                reference = (content_key, *reference)
+
+        if reference is None:
+            compact_blocks.append((*row, None, None, None))
+        else:
+            compact_blocks.append((*row[:3], "", *row[4:], *reference))
+
+    return compact_files, compact_blocks
+
+
+def _block_slice(
+    content: str,
+    data: bytes,
+    offsets: array,
+    start_line: int,
+    start_col: int,
+    end_line: int,
+    end_col: int,
+) -> Optional[Tuple[int, int]]:
+    """Byte range of a block in its file's text, if it is exactly that slice."""
+    if not (1 <= start_line <= end_line < len(offsets)):
+        return None
+
+    # Tree-sitter columns are byte offsets within the line
+    start_byte = offsets[start_line - 1] + start_col
+    end_byte = offsets[end_line - 1] + end_col
+    if data[start_byte:end_byte] != content.encode("utf-8"):
+        return None
+    return start_byte, end_byte
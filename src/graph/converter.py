@@ -7,11 +7,12 @@ from typing import Dict, Optional
 
 from loguru import logger
 
+from config import config
 from graph.graph_operations import GraphOperations
 from graph.sqlite_client import SQLiteConnection
-from models.schema import ExtractionData, Project
+from indexer.extraction_stream import iter_extraction_files
+from models.schema import Project
 from src.utils.console import console
-from utils import load_json_file
 
 
 class ASTToSqliteConverter:
@@ -31,10 +32,10 @@ class ASTToSqliteConverter:
         clear_existing: bool = False,
     ) -> Dict[str, str | int | float]:
         """
-        Convert code extraction JSON file to SQLite knowledge graph.
+        Convert a code extraction file to SQLite knowledge graph.
 
         Args:
-            json_file_path: Path to the extraction JSON file
+            json_file_path: Path to the extraction file (".ndjson" stream or ".json")
             project_path: Absolute path to the project directory
             project_name: Name of the project/codebase (auto-derived if not provided)
             clear_existing: Whether to clear existing data in the database
@@ -53,41 +54,34 @@ class ASTToSqliteConverter:
                 project_name = Path(json_file_path).stem
                 console.print(f"📁 Project name: {project_name}")
 
-            # Load and parse JSON data
-            console.print("📦 Loading JSON data...")
-            json_data = load_json_file(json_file_path)
-
-            # Convert to ExtractionData model
-            extraction_data = ExtractionData(**json_data)
+            if not Path(json_file_path).exists():
+                raise FileNotFoundError(f"File not found: {json_file_path}")
 
             # Clear database if requested
             if clear_existing:
                 console.print("🧹 Clearing existing database...")
                 self.connection.clear_database()
 
-            # Create project with all required fields
-            from datetime import datetime
-
-            current_time = datetime.now().isoformat()
-
-            project = Project(
-                id=1,  # Will be auto-assigned by database
-                name=project_name,
-                path=str(
-                    project_path.absolute()
-                ),  # Use the actual project directory path
-                description="",
-                created_at=current_time,
-                updated_at=current_time,
-            )
-
-            # Insert project and get its ID
-            project_id = self.connection.insert_project(project)
-            logger.debug(f"📁 Created project '{project_name}' with ID: {project_id}")
+            project_id = self.create_project(project_name, project_path)
 
-            # Insert extraction data into SQLite
+            # Stream extraction data into SQLite one file at a time
             logger.debug("🗃️ Inserting extraction data into SQLite...")
-            self.graph_ops.insert_extraction_data(extraction_data, project_id)
+            console.print("📦 Loading extraction data...")
+            totals = {"files": 0, "blocks": 0, "relationships": 0}
+
+            def counted_file_records():
+                for file_path, file_data in iter_extraction_files(json_file_path):
+                    totals["files"] += 1
+                    totals["blocks"] += len(file_data.blocks)
+                    totals["relationships"] += len(file_data.relationships)
+                    yield file_path, file_data
+
+            self.graph_ops.insert_file_records(
+                counted_file_records(),
+                project_id,
+                fast_load=config.indexing.fast_load,
+            )
+            console.print(f"📁 Processed {totals['files']} files")
 
             # Get final statistics
             stats = self.graph_ops.get_extraction_stats()
@@ -96,14 +90,9 @@ class ASTToSqliteConverter:
             console.print(f"📊 Final statistics: {stats}")
 
             # Count total items processed
-            total_files = len(extraction_data.files)
-            total_blocks = sum(
-                len(file_data.blocks) for file_data in extraction_data.files.values()
-            )
-            total_relationships = sum(
-                len(file_data.relationships)
-                for file_data in extraction_data.files.values()
-            )
+            total_files = totals["files"]
+            total_blocks = totals["blocks"]
+            total_relationships = totals["relationships"]
 
             # Return simple stats dictionary
             return {
@@ -123,6 +112,26 @@ class ASTToSqliteConverter:
             # Let the exception propagate instead of wrapping it
             raise
 
+    def create_project(self, project_name: str, project_path: Path) -> int:
+        """Insert the project row for a new index and return its ID."""
+        from datetime import datetime
+
+        current_time = datetime.now().isoformat()
+
+        project = Project(
+            id=1,  # Will be auto-assigned by database
+            name=project_name,
+            path=str(project_path.absolute()),  # Use the actual project directory path
+            description="",
+            created_at=current_time,
+            updated_at=current_time,
+        )
+
+        # Insert project and get its ID
+        project_id = self.connection.insert_project(project)
+        logger.debug(f"📁 Created project '{project_name}' with ID: {project_id}")
+        return project_id
+
     def close(self):
         """Close the database connection."""
         if self.connection:
@@ -7,10 +7,12 @@ It handles insertion of extraction data from JSON exports and provides various
 query methods for retrieving code structure, relationships, and connections.
 """
 
+import json
 import os
+import re
 import time
 from pathlib import Path
-from typing import TYPE_CHECKING, Any, Dict, List, Optional, Tuple
+from typing import TYPE_CHECKING, Any, Dict, Iterable, List, Optional, Tuple
 
 # This block is only read by type checkers, not at runtime
 if TYPE_CHECKING:
@@ -21,21 +23,34 @@ else:
 
 from loguru import logger
 
-from models import CodeBlock, ExtractionData, File
+from config import config
+from models import CodeBlock, ExtractionData, FileData, Relationship
 from queries.agent_queries import (
+    CONNECTION_IMPACT_MIN_CONFIDENCE,
     GET_CHILD_BLOCKS,
+    GET_CHILD_BLOCKS_BY_PARENT_IDS,
     GET_CODE_BLOCK_BY_ID,
+    GET_CODE_BLOCKS_BY_IDS,
     GET_CONNECTION_IMPACT,
+    GET_CONNECTION_MAPPINGS_FOR_FILES,
     GET_DEPENDENCY_CHAIN,
     GET_FILE_BLOCK_SUMMARY,
     GET_FILE_BY_ID,
     GET_FILE_IMPACT_SCOPE,
     GET_FILE_IMPORTS,
+    GET_FILE_METADATA_BY_IDS,
+    GET_FILES_BY_IDS,
     GET_IMPLEMENTATION_CONTEXT,
     GET_INCOMING_CONNECTIONS,
+    GET_INCOMING_CONNECTIONS_FOR_FILES,
+    GET_MAPPED_INCOMING_FOR_OUTGOING_IDS,
+    GET_MAPPED_OUTGOING_FOR_INCOMING_IDS,
     GET_OUTGOING_CONNECTIONS,
+    GET_OUTGOING_CONNECTIONS_FOR_FILES,
     GET_PARENT_BLOCK,
     GET_PROJECT_EXTERNAL_CONNECTIONS,
+    SEARCH_CODE_BLOCKS_FTS,
+    SEARCH_FILES_FTS,
 )
 from queries.graph_queries import (
     GET_CONNECTIONS_BY_IDS,
@@ -49,8 +64,19 @@ from queries.graph_queries import (
 )
 from src.utils.console import console
 
+from .import_graph import get_import_graph
 from .sqlite_client import SQLiteConnection
 
+# Rows returned for a dependency chain, as GET_DEPENDENCY_CHAIN's LIMIT
+DEPENDENCY_CHAIN_LIMIT = 25
+
+# Impact analysis defaults: neighbours followed per file, files returned, and
+# the connection mapping confidence to exceed, the floor GET_CONNECTION_IMPACT
+# applies, so the walk follows every link connection_impacts lists
+IMPACT_MAX_FANOUT = 50
+IMPACT_LIMIT = 200
+IMPACT_MIN_CONFIDENCE = CONNECTION_IMPACT_MIN_CONFIDENCE
+
 
 class GraphOperations:
     """High-level operations for inserting code extraction data."""
@@ -69,44 +95,119 @@ class GraphOperations:
         self.insert_extraction_data(extraction_model, project_id)
 
     def insert_extraction_data(
-        self, extraction_data: ExtractionData, project_id: int
+        self,
+        extraction_data: ExtractionData,
+        project_id: int,
+        fast_load: bool = False,
     ) -> None:
-        """Insert complete extraction data (files, blocks, relationships) from JSON export."""
+        """Insert complete extraction data (files, blocks, relationships) from JSON export.
+
+        Rows are flattened and written with executemany, one transaction per
+        database.batch_size files. With fast_load, durability pragmas are relaxed
+        and graph indexes are rebuilt once after the load.
+        """
         logger.debug(f"🏗️ Inserting extraction data for project ID: {project_id}")
 
         files_data = extraction_data.files
         console.print(f"📁 Processing {len(files_data)} files...")
 
-        for file_path, file_data in files_data.items():
-            # Create File object for database
-            file_record = File(
-                id=file_data.id,
-                project_id=project_id,
-                file_path=file_path,
-                language=file_data.language,
-                content=file_data.content,
-                content_hash=file_data.content_hash,
-            )
-            self.connection.insert_file(file_record)
+        self.insert_file_records(files_data.items(), project_id, fast_load)
 
-            blocks = file_data.blocks
-            logger.debug(f"📦 Inserting {len(blocks)} code blocks for {file_path}")
+    def insert_file_records(
+        self,
+        file_records: Iterable[Tuple[str, FileData]],
+        project_id: int,
+        fast_load: bool = False,
+    ) -> None:
+        """Insert (file path, FileData) records, consuming them one file at a time."""
+        if fast_load:
+            with self.connection.fast_load():
+                self._bulk_insert_files(file_records, project_id)
+        else:
+            self._bulk_insert_files(file_records, project_id)
+
+    def _bulk_insert_files(
+        self, file_records: Iterable[Tuple[str, FileData]], project_id: int
+    ) -> None:
+        """Flatten files into rows and insert them in chunked transactions."""
+        files_per_batch = max(1, config.sqlite.batch_size)
+        file_rows: List[Tuple] = []
+        block_rows: List[Tuple] = []
+        relationship_rows: List[Tuple] = []
+
+        for file_path, file_data in file_records:
+            file_rows.append(
+                (
+                    file_data.id,
+                    project_id,
+                    file_path,
+                    file_data.language,
+                    file_data.content,
+                    file_data.content_hash,
+                )
+            )
 
-            # Insert blocks with proper file_id and parent_block_id relationships
-            self._insert_blocks_recursively(blocks, file_data.id, None)
+            # Flatten blocks with proper file_id and parent_block_id relationships
+            self._flatten_blocks(file_data.blocks, file_data.id, None, block_rows)
 
-            relationships = file_data.relationships
-            logger.debug(
-                f"🔗 Inserting {len(relationships)} relationships for {file_path}"
+            relationship_rows.extend(
+                self._relationship_row(rel) for rel in file_data.relationships
             )
 
-            for rel in relationships:
-                self.connection.insert_relationship(rel)
+            if len(file_rows) >= files_per_batch:
+                self._flush_graph_batch(file_rows, block_rows, relationship_rows)
+
+        if file_rows:
+            self._flush_graph_batch(file_rows, block_rows, relationship_rows)
+
+    def insert_relationships(self, relationships: Iterable[Relationship]) -> None:
+        """Insert relationships in a single transaction."""
+        relationship_rows = [self._relationship_row(rel) for rel in relationships]
+        self.connection.insert_graph_batch([], [], relationship_rows)
 
-    def _insert_blocks_recursively(
-        self, blocks: List[CodeBlock], file_id: int, parent_block_id: Optional[int]
+    def replace_file_relationships(
+        self, relationships: Dict[int, List[Relationship]]
     ) -> None:
-        """Insert code blocks recursively, handling nested structure properly."""
+        """Replace the outgoing relationships of files, keyed by source file id."""
+        self.connection.replace_relationships(
+            list(relationships),
+            [self._relationship_row(rel) for rels in relationships.values() for rel in rels],
+        )
+
+    def _relationship_row(self, rel: Relationship) -> Tuple:
+        """Build an insert row for a relationship."""
+        return (
+            rel.source_id,
+            rel.target_id,
+            rel.import_content,
+            json.dumps(rel.symbols),
+            rel.type,
+        )
+
+    def _flush_graph_batch(
+        self,
+        file_rows: List[Tuple],
+        block_rows: List[Tuple],
+        relationship_rows: List[Tuple],
+    ) -> None:
+        """Write pending rows in one transaction and clear the buffers."""
+        logger.debug(
+            f"📦 Inserting {len(file_rows)} files, {len(block_rows)} code blocks, "
+            f"{len(relationship_rows)} relationships"
+        )
+        self.connection.insert_graph_batch(file_rows, block_rows, relationship_rows)
+        file_rows.clear()
+        block_rows.clear()
+        relationship_rows.clear()
+
+    def _flatten_blocks(
+        self,
+        blocks: List[CodeBlock],
+        file_id: int,
+        parent_block_id: Optional[int],
+        block_rows: List[Tuple],
+    ) -> None:
+        """Flatten nested code blocks into rows, parents before children."""
         for block in blocks:
             # Set the file_id if not already set (should already be set from JSON)
             if block.file_id is None:
@@ -115,12 +216,24 @@ class GraphOperations:
             # Set parent_block_id for nested blocks
             block.parent_block_id = parent_block_id
 
-            # Insert the current block
-            self.connection.insert_code_block(block)
+            block_rows.append(
+                (
+                    block.id,
+                    block.type.value,
+                    block.name,
+                    block.content,
+                    block.start_line,
+                    block.end_line,
+                    block.start_col,
+                    block.end_col,
+                    block.file_id,
+                    block.parent_block_id,
+                )
+            )
 
-            # Recursively insert children with this block as parent
+            # Recursively flatten children with this block as parent
             if block.children:
-                self._insert_blocks_recursively(block.children, file_id, block.id)
+                self._flatten_blocks(block.children, file_id, block.id, block_rows)
 
     def get_file_count(self) -> int:
         """Get total number of files in the database."""
@@ -240,37 +353,37 @@ class GraphOperations:
                 absolute_file_path = file_path
 
             # Try with absolute path first
-            result = self.connection.execute_query(
+            result = self.connection.fetch_rows(
                 "SELECT id FROM files WHERE file_path = ?",
                 (absolute_file_path,),
             )
 
             if result:
-                file_id = result[0]["id"]
+                file_id = result[0][0]
                 logger.debug(f"Found file_id {file_id} for {absolute_file_path}")
                 return file_id
 
             if absolute_file_path != file_path:
-                result = self.connection.execute_query(
+                result = self.connection.fetch_rows(
                     "SELECT id FROM files WHERE file_path = ?",
                     (file_path,),
                 )
 
                 if result:
-                    file_id = result[0]["id"]
+                    file_id = result[0][0]
                     logger.debug(
                         f"Found file_id {file_id} for {file_path} (original path)"
                     )
                     return file_id
 
             if file_path:
-                result = self.connection.execute_query(
-                    "SELECT id, file_path FROM files WHERE file_path LIKE ?",
+                result = self.connection.fetch_rows(
+                    "SELECT id FROM files WHERE file_path LIKE ?",
                     (f"%{file_path}",),
                 )
 
                 if result:
-                    file_id = result[0]["id"]
+                    file_id = result[0][0]
                     logger.debug(f"Found file_id {file_id} by filepath")
                     return file_id
 
@@ -588,39 +701,48 @@ class GraphOperations:
             results = self.connection.execute_query(query, (file_id, file_id))
 
             # Filter by line range if specified
-            if start_line is not None and end_line is not None:
-                filtered_results = []
-                for result in results:
-                    # Check if either sender or receiver overlaps with the line range
-                    sender_start = result.get("sender_start_line")
-                    sender_end = result.get("sender_end_line")
-                    receiver_start = result.get("receiver_start_line")
-                    receiver_end = result.get("receiver_end_line")
-
-                    # Include if either sender or receiver overlaps with the requested range
-                    sender_overlaps = False
-                    if sender_start is not None and sender_end is not None:
-                        sender_overlaps = self._lines_overlap_range(
-                            sender_start, sender_end, start_line, end_line
-                        )
-
-                    receiver_overlaps = False
-                    if receiver_start is not None and receiver_end is not None:
-                        receiver_overlaps = self._lines_overlap_range(
-                            receiver_start, receiver_end, start_line, end_line
-                        )
-
-                    if sender_overlaps or receiver_overlaps:
-                        filtered_results.append(result)
-
-                return filtered_results
-            else:
-                return results
+            return self._filter_mappings_by_lines(results, start_line, end_line)
 
         except Exception as e:
             logger.error(f"Error getting connection mappings for display: {e}")
             return []
 
+    def _filter_mappings_by_lines(
+        self,
+        results: List[Dict[str, Any]],
+        start_line: Optional[int],
+        end_line: Optional[int],
+    ) -> List[Dict[str, Any]]:
+        """Keep mappings whose sender or receiver overlaps the line range, if any."""
+        if start_line is None or end_line is None:
+            return results
+
+        filtered_results = []
+        for result in results:
+            # Check if either sender or receiver overlaps with the line range
+            sender_start = result.get("sender_start_line")
+            sender_end = result.get("sender_end_line")
+            receiver_start = result.get("receiver_start_line")
+            receiver_end = result.get("receiver_end_line")
+
+            # Include if either sender or receiver overlaps with the requested range
+            sender_overlaps = False
+            if sender_start is not None and sender_end is not None:
+                sender_overlaps = self._lines_overlap_range(
+                    sender_start, sender_end, start_line, end_line
+                )
+
+            receiver_overlaps = False
+            if receiver_start is not None and receiver_end is not None:
+                receiver_overlaps = self._lines_overlap_range(
+                    receiver_start, receiver_end, start_line, end_line
+                )
+
+            if sender_overlaps or receiver_overlaps:
+                filtered_results.append(result)
+
+        return filtered_results
+
     def get_enriched_block_context(self, block_id: int) -> Optional[Dict[str, Any]]:
         """
         Get comprehensive context for a code block including file info and connections.
@@ -794,6 +916,196 @@ class GraphOperations:
             logger.error(f"Error getting enriched file context for {file_id}: {e}")
             return None
 
+    def get_enriched_contexts(
+        self, node_ids: List[str], file_content: bool = True
+    ) -> Dict[str, Dict[str, Any]]:
+        """
+        Enriched context for many `block_#` / `file_#` nodes at once.
+
+        Returns the same dictionaries as get_enriched_block_context and
+        get_enriched_file_context, keyed by node id; nodes that are not found
+        are missing. With file_content=False, file contexts carry an empty
+        "content" so large files are not loaded; read line ranges with
+        SQLiteConnection.read_file_lines instead. Blocks, parents, children,
+        files, connections and mappings are each fetched with one set-based
+        query for all nodes, in one read transaction. If the database is busy,
+        falls back to enriching one node at a time, which retries.
+        """
+        # Node id -> "block_#"/"file_#" key of its context
+        keys: Dict[str, str] = {}
+        block_ids: List[int] = []
+        file_ids: List[int] = []
+        for node_id in node_ids:
+            try:
+                if node_id.startswith("block_"):
+                    block_ids.append(int(node_id.split("_")[1]))
+                    keys[node_id] = f"block_{block_ids[-1]}"
+                elif node_id.startswith("file_"):
+                    file_ids.append(int(node_id.split("_")[1]))
+                    keys[node_id] = f"file_{file_ids[-1]}"
+                else:
+                    logger.warning(f"Unknown node_id format: {node_id}")
+            except (ValueError, IndexError) as e:
+                logger.error(f"Error parsing node_id {node_id}: {e}")
+
+        block_ids = list(dict.fromkeys(block_ids))
+        file_ids = list(dict.fromkeys(file_ids))
+        try:
+            with self.connection.read_transaction():
+                contexts = self._batch_enriched_contexts(
+                    block_ids, file_ids, file_content
+                )
+        except (sqlite3.OperationalError, sqlite3.DatabaseError) as e:
+            logger.warning(
+                f"Batched enrichment failed, enriching nodes one at a time: {e}"
+            )
+            contexts = {}
+            for block_id in block_ids:
+                context = self.get_enriched_block_context(block_id)
+                if context:
+                    contexts[f"block_{block_id}"] = context
+            for file_id in file_ids:
+                context = self.get_enriched_file_context(file_id)
+                if context:
+                    contexts[f"file_{file_id}"] = context
+
+        return {
+            node_id: contexts[key]
+            for node_id, key in keys.items()
+            if key in contexts
+        }
+
+    def _query_by_ids(self, query: str, ids: Iterable[int]) -> List[Dict[str, Any]]:
+        """Run a query whose {ids} placeholders each take the whole id list."""
+        ids = list(ids)
+        if not ids:
+            return []
+        sql = query.format(ids=",".join("?" * len(ids)))
+        return self.connection.execute_query(sql, tuple(ids) * query.count("{ids}"))
+
+    def _batch_enriched_contexts(
+        self, block_ids: List[int], file_ids: List[int], file_content: bool
+    ) -> Dict[str, Dict[str, Any]]:
+        blocks = {
+            row["id"]: row
+            for row in self._query_by_ids(GET_CODE_BLOCKS_BY_IDS, block_ids)
+        }
+        parent_ids = {
+            block["parent_block_id"]
+            for block in blocks.values()
+            if block["parent_block_id"]
+        }
+        parents = {
+            row["id"]: row
+            for row in self._query_by_ids(
+                GET_CODE_BLOCKS_BY_IDS, parent_ids - blocks.keys()
+            )
+        }
+        parents.update(blocks)
+
+        children: Dict[int, List[Dict[str, Any]]] = {}
+        for row in self._query_by_ids(GET_CHILD_BLOCKS_BY_PARENT_IDS, blocks):
+            children.setdefault(row.pop("parent_block_id"), []).append(row)
+
+        files_query = GET_FILES_BY_IDS if file_content else GET_FILE_METADATA_BY_IDS
+        files = {
+            row["id"]: row for row in self._query_by_ids(files_query, file_ids)
+        }
+
+        # Mappings of every file involved, grouped by file
+        mappings: Dict[int, List[Dict[str, Any]]] = {}
+        mapping_file_ids = {block["file_id"] for block in blocks.values()} | set(files)
+        for row in self._query_by_ids(
+            GET_CONNECTION_MAPPINGS_FOR_FILES, mapping_file_ids
+        ):
+            for file_id in {row.pop("sender_file_id"), row.pop("receiver_file_id")}:
+                mappings.setdefault(file_id, []).append(row)
+
+        contexts = {}
+        for block_id, block in blocks.items():
+            # Unmapped connections are not shown for blocks, see
+            # get_enriched_block_context
+            connections = {}
+            connection_mappings = self._filter_mappings_by_lines(
+                mappings.get(block["file_id"], []),
+                block["start_line"],
+                block["end_line"],
+            )
+            if connection_mappings:
+                connections["mappings"] = connection_mappings
+
+            parent_id = block["parent_block_id"]
+            contexts[f"block_{block_id}"] = {
+                "block": block,
+                "connections": connections,
+                "parent_block": parents.get(parent_id) if parent_id else None,
+                "child_blocks": children.get(block_id, []),
+                "file_context": {
+                    "file_path": block["file_path"],
+                    "language": block["language"],
+                    "project_name": block["project_name"],
+                },
+            }
+
+        basic_connections = self._batch_file_connections(list(files))
+        for file_id, file_data in files.items():
+            connection_mappings = mappings.get(file_id, [])
+            filtered_connections = self._filter_unmapped_connections(
+                basic_connections.get(file_id, {"incoming": [], "outgoing": []}),
+                connection_mappings,
+                file_data["file_path"],
+            )
+
+            connections = {}
+            if connection_mappings:
+                connections["mappings"] = connection_mappings
+            if filtered_connections.get("incoming"):
+                connections["incoming"] = filtered_connections["incoming"]
+            if filtered_connections.get("outgoing"):
+                connections["outgoing"] = filtered_connections["outgoing"]
+
+            context = {"file": file_data, "connections": connections}
+            if connection_mappings:
+                context["connection_mappings"] = connection_mappings
+            contexts[f"file_{file_id}"] = context
+
+        logger.debug(
+            f"Enriched {len(contexts)} nodes "
+            f"({len(blocks)} blocks, {len(files)} files) in batch"
+        )
+        return contexts
+
+    def _batch_file_connections(
+        self, file_ids: List[int]
+    ) -> Dict[int, Dict[str, List[Dict[str, Any]]]]:
+        """Incoming/outgoing connections of each file, with mapped connections."""
+        connections: Dict[int, Dict[str, List[Dict[str, Any]]]] = {
+            file_id: {"incoming": [], "outgoing": []} for file_id in file_ids
+        }
+        for direction, query, mapped_query in [
+            (
+                "incoming",
+                GET_INCOMING_CONNECTIONS_FOR_FILES,
+                GET_MAPPED_OUTGOING_FOR_INCOMING_IDS,
+            ),
+            (
+                "outgoing",
+                GET_OUTGOING_CONNECTIONS_FOR_FILES,
+                GET_MAPPED_INCOMING_FOR_OUTGOING_IDS,
+            ),
+        ]:
+            rows = self._query_by_ids(query, file_ids)
+
+            mapped: Dict[int, List[Dict[str, Any]]] = {}
+            for row in self._query_by_ids(mapped_query, {row["id"] for row in rows}):
+                mapped.setdefault(row.pop("anchor_connection_id"), []).append(row)
+
+            for row in rows:
+                row["mapped_connections"] = mapped.get(row["id"], [])
+                connections[row.pop("anchor_file_id")][direction].append(row)
+
+        return connections
+
     # ============================================================================
     # ROADMAP AGENT QUERY METHODS
     # ============================================================================
@@ -805,30 +1117,16 @@ class GraphOperations:
 
         for attempt in range(max_retries):
             try:
-                results = self.connection.execute_query(
+                results = self.connection.fetch_records(
                     GET_CODE_BLOCK_BY_ID, (block_id,)
                 )
                 if not results:
                     logger.warning(f"Block {block_id} not found in database")
                     return None
 
-                result = results[0]
-                return {
-                    "id": result["id"],
-                    "type": result["type"],
-                    "name": result["name"],
-                    "content": result["content"],
-                    "start_line": result["start_line"],
-                    "end_line": result["end_line"],
-                    "start_col": result["start_col"],
-                    "end_col": result["end_col"],
-                    "parent_block_id": result["parent_block_id"],
-                    "file_id": result["file_id"],
-                    "file_path": result["file_path"],
-                    "language": result["language"],
-                    "project_name": result["project_name"],
-                    "project_id": result["project_id"],
-                }
+                # id, type, name, content, lines/cols, parent_block_id,
+                # file_path, language, file_id, project_name, project_id
+                return results[0]._asdict()
             except (sqlite3.OperationalError, sqlite3.DatabaseError) as e:
                 if attempt < max_retries - 1:
                     delay = base_delay * (2**attempt)  # Exponential backoff
@@ -853,21 +1151,13 @@ class GraphOperations:
     def resolve_file(self, file_id: int) -> Optional[Dict[str, Any]]:
         """Convert a file reference to file metadata and block count."""
         try:
-            results = self.connection.execute_query(GET_FILE_BY_ID, (file_id,))
+            results = self.connection.fetch_records(GET_FILE_BY_ID, (file_id,))
             if not results:
                 return None
 
-            result = results[0]
-            return {
-                "id": result["id"],
-                "file_path": result["file_path"],
-                "language": result["language"],
-                "content": result["content"],
-                "content_hash": result["content_hash"],
-                "project_name": result["project_name"],
-                "project_id": result["project_id"],
-                "block_count": result["block_count"],
-            }
+            # id, file_path, language, content, content_hash, project_name,
+            # project_id, block_count
+            return results[0]._asdict()
         except Exception as e:
             logger.error(f"Error resolving file {file_id}: {e}")
             return None
@@ -901,27 +1191,16 @@ class GraphOperations:
     def get_file_block_summary(self, file_id: int) -> List[Dict[str, Any]]:
         """Overview of classes/functions in a file (no content)."""
         try:
-            results = self.connection.execute_query(GET_FILE_BLOCK_SUMMARY, (file_id,))
-            summary_results = []
-
-            for result in results:
-                hierarchy_path = self.get_block_hierarchy_path(result["id"])
-                summary_results.append(
-                    {
-                        "id": result["id"],
-                        "type": result["type"],
-                        "name": result["name"],
-                        "start_line": result["start_line"],
-                        "end_line": result["end_line"],
-                        "parent_block_id": result["parent_block_id"],
-                        "file_path": result["file_path"],
-                        "project_name": result["project_name"],
-                        "project_id": result["project_id"],
-                        "hierarchy_path": hierarchy_path,
-                    }
-                )
-
-            return summary_results
+            results = self.connection.fetch_records(
+                GET_FILE_BLOCK_SUMMARY, (file_id,)
+            )
+            return [
+                {
+                    **result._asdict(),
+                    "hierarchy_path": self.get_block_hierarchy_path(result.id),
+                }
+                for result in results
+            ]
         except Exception as e:
             logger.error(f"Error getting file block summary for file {file_id}: {e}")
             return []
@@ -929,17 +1208,8 @@ class GraphOperations:
     def get_block_children(self, block_id: int) -> List[Dict[str, Any]]:
         """Methods/nested blocks of a parent."""
         try:
-            results = self.connection.execute_query(GET_CHILD_BLOCKS, (block_id,))
-            return [
-                {
-                    "id": result["id"],
-                    "type": result["type"],
-                    "name": result["name"],
-                    "start_line": result["start_line"],
-                    "end_line": result["end_line"],
-                }
-                for result in results
-            ]
+            results = self.connection.fetch_records(GET_CHILD_BLOCKS, (block_id,))
+            return [result._asdict() for result in results]
         except Exception as e:
             logger.error(f"Error getting block children for block {block_id}: {e}")
             return []
@@ -1068,7 +1338,19 @@ class GraphOperations:
     def get_dependency_chain(
         self, file_id: int, depth: int = 5
     ) -> List[Dict[str, Any]]:
-        """Multi-hop dependency path."""
+        """Multi-hop dependency path.
+
+        Walks the in-memory import graph, so each dependency is listed once
+        with its shortest path; falls back to GET_DEPENDENCY_CHAIN if the
+        graph cannot be loaded.
+        """
+        try:
+            return get_import_graph(self.connection).dependency_chain(
+                file_id, depth, DEPENDENCY_CHAIN_LIMIT
+            )
+        except Exception as e:
+            logger.warning(f"Import graph unavailable, using SQL dependency chain: {e}")
+
         try:
             results = self.connection.execute_query(
                 GET_DEPENDENCY_CHAIN, (file_id, depth)
@@ -1088,6 +1370,73 @@ class GraphOperations:
             logger.error(f"Error getting dependency chain for file {file_id}: {e}")
             return []
 
+    def get_impact_analysis(
+        self,
+        file_id: int,
+        max_depth: int = 4,
+        max_fanout: int = IMPACT_MAX_FANOUT,
+        limit: int = IMPACT_LIMIT,
+        min_confidence: float = IMPACT_MIN_CONFIDENCE,
+    ) -> Dict[str, Any]:
+        """
+        Everything transitively affected by changing a file.
+
+        Walks the in-memory import graph from the file to its importers and
+        across mapped connections to the files calling it or called by it,
+        in any project, up to max_depth hops.
+
+        Args:
+            file_id: ID of the changed file
+            max_depth: Maximum number of hops from the file
+            max_fanout: Maximum neighbours followed from any one file
+            limit: Maximum number of impacted files returned
+            min_confidence: Connection mappings are followed above this match_confidence
+
+        Returns:
+            Dictionary with:
+            - anchor_file_path: Path of the changed file
+            - impacted: Files ranked by distance, then path confidence, each with
+              file_id, file_path, project_id, project_name, depth, via
+              ("imports", "calls" or "called_by" the file before it),
+              confidence and path
+            - truncated: Files whose neighbours were cut at max_fanout
+            - reached: Number of files reached before the cut at limit
+            - projects: Impacted file count per project name
+        """
+        empty = {
+            "anchor_file_path": None,
+            "impacted": [],
+            "truncated": [],
+            "reached": 0,
+            "projects": {},
+        }
+        try:
+            graph = get_import_graph(self.connection)
+            node = graph.index.get(file_id)
+            if node is None:
+                return empty
+
+            result = graph.impact(
+                file_id, max_depth, max_fanout, limit, min_confidence
+            )
+            project_names = dict(
+                self.connection.fetch_rows("SELECT id, name FROM projects")
+            )
+            projects: Dict[str, int] = {}
+            for row in result["impacted"]:
+                project_name = project_names.get(row["project_id"])
+                row["project_name"] = project_name
+                projects[project_name] = projects.get(project_name, 0) + 1
+
+            return {
+                "anchor_file_path": graph.file_paths[node],
+                **result,
+                "projects": projects,
+            }
+        except Exception as e:
+            logger.error(f"Error getting impact analysis for file {file_id}: {e}")
+            return empty
+
     def get_search_scope_by_import_graph(
         self, anchor_file_id: int, direction: str = "both", max_depth: int = 2
     ) -> Dict[str, Any]:
@@ -1106,6 +1455,7 @@ class GraphOperations:
             - importers: List of files that import this file with import content
             - dependency_chain: List of path rows including full path string
             - connection_impacts: List of connection impact details (incl. code and snippet lines)
+            - impact: Transitive impact analysis (see get_impact_analysis), for depth > 1
             - max_depth: The max traversal depth used
         """
         try:
@@ -1117,6 +1467,7 @@ class GraphOperations:
                     "importers": [],
                     "dependency_chain": [],
                     "connection_impacts": [],
+                    "impact": {},
                     "max_depth": max_depth,
                 }
 
@@ -1135,12 +1486,19 @@ class GraphOperations:
             if max_depth > 1:
                 dependency_chain = self.get_dependency_chain(anchor_file_id, max_depth)
 
+            impact: Dict[str, Any] = {}
+            if max_depth > 1 and direction in ["both", "importers"]:
+                impact = self.get_impact_analysis(
+                    anchor_file_id, max_depth, limit=DEPENDENCY_CHAIN_LIMIT
+                )
+
             return {
                 "anchor_file_path": anchor_file["file_path"],
                 "imports": imports,
                 "importers": importers,
                 "dependency_chain": dependency_chain,
                 "connection_impacts": connection_impacts,
+                "impact": impact,
                 "max_depth": max_depth,
             }
         except Exception as e:
@@ -1151,6 +1509,7 @@ class GraphOperations:
                 "importers": [],
                 "dependency_chain": [],
                 "connection_impacts": [],
+                "impact": {},
                 "max_depth": max_depth,
             }
 
@@ -1287,6 +1646,115 @@ class GraphOperations:
             logger.error(f"Error getting database file hashes: {e}")
             return {}
 
+    def get_file_stat_manifest(
+        self, project_id: int
+    ) -> Dict[Path, Tuple[Tuple[int, int, int], str]]:
+        """Get the recorded (size, mtime_ns, inode) and hash of each file in a project."""
+        try:
+            results = self.connection.execute_query(
+                """SELECT file_path, size, mtime_ns, inode, content_hash
+                   FROM file_stats
+                   WHERE project_id = ?""",
+                (project_id,),
+            )
+
+            manifest = {}
+            for row in results:
+                file_stat = (row["size"], row["mtime_ns"], row["inode"])
+                manifest[Path(row["file_path"])] = (file_stat, row["content_hash"])
+
+            return manifest
+
+        except Exception as e:
+            logger.error(f"Error getting file stat manifest: {e}")
+            return {}
+
+    def replace_file_stat_manifest(
+        self,
+        project_id: int,
+        manifest: Dict[Path, Tuple[Tuple[int, int, int], str]],
+    ) -> None:
+        """Replace the recorded file stats of a project in a single transaction."""
+        rows = [
+            (project_id, str(file_path), size, mtime_ns, inode, content_hash)
+            for file_path, ((size, mtime_ns, inode), content_hash) in manifest.items()
+        ]
+
+        try:
+            cursor = self.connection.connection.cursor()
+            cursor.execute("DELETE FROM file_stats WHERE project_id = ?", (project_id,))
+            cursor.executemany(
+                """INSERT INTO file_stats
+                   (project_id, file_path, size, mtime_ns, inode, content_hash)
+                   VALUES (?, ?, ?, ?, ?, ?)""",
+                rows,
+            )
+            self.connection.connection.commit()
+            logger.debug(
+                f"📇 Stored stat manifest for {len(rows)} files of project {project_id}"
+            )
+
+        except Exception as e:
+            self.connection.connection.rollback()
+            logger.error(f"Failed to store file stat manifest: {e}")
+
+    def _fts_match_expression(self, query: str) -> Optional[str]:
+        """Build an FTS5 MATCH expression from free text.
+
+        Every word is an OR term, so partial matches still rank; a multi-word
+        query is also added as a phrase so exact sequences rank higher.
+        """
+        words = list(dict.fromkeys(re.findall(r"\w+", query)))
+        if not words:
+            return None
+
+        terms = [f'"{word}"' for word in words]
+        if len(words) > 1:
+            terms.append(f'"{" ".join(words)}"')
+        return " OR ".join(terms)
+
+    def search_lexical(
+        self, query: str, limit: int, project_id: Optional[int] = None
+    ) -> List[List[Dict[str, Any]]]:
+        """
+        BM25 search over block names/content and file paths.
+
+        bm25() scores from the two FTS indexes are not on a common scale, so
+        the hits come back as two ranked lists, [block hits, file hits], each
+        best match first and up to limit long, for rank fusion by the caller.
+        Results are node references shaped like vector search results; block
+        hits carry the block's line range, file hits carry none.
+        """
+        match = self._fts_match_expression(query)
+        if not match:
+            return []
+
+        try:
+            params = (match, project_id, project_id, limit)
+            block_hits = [
+                {
+                    "node_id": f"block_{row['id']}",
+                    "chunk_start_line": row["start_line"],
+                    "chunk_end_line": row["end_line"],
+                }
+                for row in self.connection.execute_query(
+                    SEARCH_CODE_BLOCKS_FTS, params
+                )
+            ]
+            file_hits = [
+                {
+                    "node_id": f"file_{row['id']}",
+                    "chunk_start_line": None,
+                    "chunk_end_line": None,
+                }
+                for row in self.connection.execute_query(SEARCH_FILES_FTS, params)
+            ]
+            return [block_hits, file_hits]
+
+        except Exception as e:
+            logger.error(f"Error in lexical search for '{query}': {e}")
+            return []
+
     def resolve_embedding_nodes(
         self, embedding_results: List[str]
     ) -> List[Dict[str, Any]]:
@@ -1710,17 +2178,17 @@ class GraphOperations:
         try:
             created_mappings = []
 
-            for match in matches:
-                mapping_id = self.insert_connection_mapping(
-                    match.get("sender_id", ""),
-                    match.get("receiver_id", ""),
-                    match.get("description", "Auto-detected connection"),
-                    match.get("match_confidence", 0.0),
-                )
-                created_mappings.append(mapping_id)
-
-            # Commit all mappings
-            self.connection.connection.commit()
+            # Commit all mappings together
+            with self.connection.write_transaction():
+                for match in matches:
+                    mapping_id = self.insert_connection_mapping(
+                        match.get("sender_id", ""),
+                        match.get("receiver_id", ""),
+                        match.get("description", "Auto-detected connection"),
+                        match.get("match_confidence", 0.0),
+                    )
+                    created_mappings.append(mapping_id)
+            self.connection.invalidate_graph()
 
             return {
                 "success": True,
@@ -1730,11 +2198,6 @@ class GraphOperations:
 
         except Exception as e:
             logger.error(f"Error creating connection mappings: {e}")
-            # Rollback on error
-            try:
-                self.connection.connection.rollback()
-            except BaseException:
-                pass
             return {
                 "success": False,
                 "error": str(e),
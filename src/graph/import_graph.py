@@ -0,0 +1,402 @@
+"""
+In-memory import graph over the relationships table.
+
+Files are numbered 0..n-1 in file id order and each direction of the graph is
+held in CSR form: offsets[i]..offsets[i + 1] is the slice of targets holding
+node i's neighbours. Traversals are breadth-first with a visited bitmap, so
+every file is reached once, at its shortest distance, and import cycles end
+the walk instead of multiplying paths.
+
+Mapped cross-project connections (connection_mappings) are held alongside as
+file-level links, so impact analysis can cross from the file receiving a call
+to the files making it, and the other way.
+
+The graph is loaded on first use and reloaded once its version changes: the
+connection's graph_generation, which writes through the tracked helpers bump;
+the writer's PRAGMA data_version, which changes when another connection or
+process commits; and a MAX(rowid)/COUNT(*) fingerprint of the files,
+relationships and connection_mappings tables, which catches raw writes on the
+connection itself.
+"""
+
+import threading
+import time
+from array import array
+from typing import (
+    TYPE_CHECKING,
+    Any,
+    Dict,
+    Iterator,
+    List,
+    Optional,
+    Sequence,
+    Tuple,
+)
+
+from loguru import logger
+
+from queries.agent_queries import (
+    GET_IMPORT_GRAPH_EDGES,
+    GET_IMPORT_GRAPH_FILES,
+    GET_IMPORT_GRAPH_FINGERPRINT,
+    GET_IMPORT_GRAPH_LINKS,
+)
+
+# This block is only read by type checkers, not at runtime
+if TYPE_CHECKING:
+    from graph.sqlite_client import SQLiteConnection
+
+
+# Hop kinds of an impact walk, as a file relates to the next one reached
+IMPORTED_BY = 0
+SENDS_TO = 1
+RECEIVES_FROM = 2
+# The same hops named from the reached file's side: it imports the file
+# before it, is called by it, or calls it
+IMPACT_KINDS = ["imports", "called_by", "calls"]
+
+
+class ImportGraph:
+    """CSR adjacency of file imports, forward (imports) and reverse (importers)."""
+
+    def __init__(
+        self,
+        file_ids: array,
+        file_paths: List[str],
+        project_ids: array,
+        edges: List[Tuple[int, int]],
+        links: Sequence[Tuple[int, int, float]] = (),
+        version: Tuple[Any, ...] = (),
+        source: Optional["SQLiteConnection"] = None,
+    ):
+        self.file_ids = file_ids
+        self.file_paths = file_paths
+        self.project_ids = project_ids
+        # File id -> dense node index
+        self.index: Dict[int, int] = {
+            file_id: i for i, file_id in enumerate(file_ids)
+        }
+        # Connection and graph_version the graph was loaded at
+        self.source = source
+        self.version = version
+
+        dense_edges = [
+            (self.index[source], self.index[target])
+            for source, target in edges
+            if source in self.index and target in self.index
+        ]
+        self.import_offsets, self.import_targets = self._csr(dense_edges, False)
+        self.importer_offsets, self.importer_targets = self._csr(dense_edges, True)
+        self._link_csr(links)
+
+    def _csr(
+        self, edges: List[Tuple[int, int]], reverse: bool
+    ) -> Tuple[array, array]:
+        node_count = len(self.file_ids)
+        offsets = array("I", bytes(4 * (node_count + 1)))
+        for source, target in edges:
+            offsets[(target if reverse else source) + 1] += 1
+        for i in range(node_count):
+            offsets[i + 1] += offsets[i]
+
+        targets = array("I", bytes(4 * len(edges)))
+        cursor = offsets[:-1]
+        for source, target in edges:
+            node, neighbour = (target, source) if reverse else (source, target)
+            targets[cursor[node]] = neighbour
+            cursor[node] += 1
+        return offsets, targets
+
+    def _link_csr(self, links: Sequence[Tuple[int, int, float]]) -> None:
+        """
+        Connection links in CSR form, both ends listing the other.
+
+        link_kinds[j] is SENDS_TO when the node calls link_targets[j] and
+        RECEIVES_FROM when it is called by it. A node's links are ordered by
+        confidence, best first, so fan-out limits keep the strongest.
+        """
+        adjacency: Dict[int, List[Tuple[float, int, int]]] = {}
+        for sender, receiver, confidence in links:
+            if sender in self.index and receiver in self.index:
+                sender, receiver = self.index[sender], self.index[receiver]
+                adjacency.setdefault(sender, []).append(
+                    (-confidence, receiver, SENDS_TO)
+                )
+                adjacency.setdefault(receiver, []).append(
+                    (-confidence, sender, RECEIVES_FROM)
+                )
+
+        node_count = len(self.file_ids)
+        self.link_offsets = array("I", bytes(4 * (node_count + 1)))
+        self.link_targets = array("I")
+        self.link_confidence = array("d")
+        self.link_kinds = bytearray()
+        for node in range(node_count):
+            for negative_confidence, other, kind in sorted(adjacency.get(node, ())):
+                self.link_targets.append(other)
+                self.link_confidence.append(-negative_confidence)
+                self.link_kinds.append(kind)
+            self.link_offsets[node + 1] = len(self.link_targets)
+
+    @property
+    def edge_count(self) -> int:
+        return len(self.import_targets)
+
+    @property
+    def link_count(self) -> int:
+        return len(self.link_targets) // 2
+
+    def neighbours(self, node: int, reverse: bool = False) -> array:
+        """Dense indexes of the files node imports (or, reversed, its importers)."""
+        if reverse:
+            return self.importer_targets[
+                self.importer_offsets[node] : self.importer_offsets[node + 1]
+            ]
+        return self.import_targets[
+            self.import_offsets[node] : self.import_offsets[node + 1]
+        ]
+
+    def walk(
+        self, file_id: int, max_depth: int, reverse: bool = False
+    ) -> Iterator[Tuple[int, int, int]]:
+        """
+        Breadth-first walk from a file along imports (or importers).
+
+        Yields (node, depth, parent node) for every file within max_depth
+        hops, nearest first; within a depth, in order of discovery.
+        """
+        start = self.index.get(file_id)
+        if start is None:
+            return
+
+        visited = bytearray(len(self.file_ids))
+        visited[start] = 1
+        frontier = [start]
+        for depth in range(1, max_depth + 1):
+            next_frontier = []
+            for node in frontier:
+                for neighbour in self.neighbours(node, reverse):
+                    if not visited[neighbour]:
+                        visited[neighbour] = 1
+                        next_frontier.append(neighbour)
+                        yield neighbour, depth, node
+            if not next_frontier:
+                return
+            frontier = next_frontier
+
+    def dependency_chain(
+        self, file_id: int, max_depth: int, limit: int
+    ) -> List[Dict[str, object]]:
+        """
+        Files reachable through imports, as GET_DEPENDENCY_CHAIN rows.
+
+        Each file appears once, with its shortest import path. Rows are
+        ordered by depth, then target path, and cut at limit.
+        """
+        start = self.index.get(file_id)
+        if start is None:
+            return []
+
+        parents: Dict[int, int] = {}
+        reached: List[Tuple[int, str, int]] = []
+        for node, depth, parent in self.walk(file_id, max_depth):
+            parents[node] = parent
+            reached.append((depth, self.file_paths[node], node))
+            # Whole depths are kept so the cut at limit is ordered by path
+            if len(reached) > limit and depth > reached[limit - 1][0]:
+                break
+        reached.sort()
+
+        anchor_path = self.file_paths[start]
+        rows = []
+        for depth, target_path, node in reached[:limit]:
+            hops = [node]
+            while hops[-1] != start:
+                hops.append(parents[hops[-1]])
+            rows.append(
+                {
+                    "file_id": file_id,
+                    "file_path": anchor_path,
+                    "target_id": self.file_ids[node],
+                    "target_path": target_path,
+                    "depth": depth,
+                    "path": " → ".join(
+                        self.file_paths[hop] for hop in reversed(hops)
+                    ),
+                }
+            )
+        return rows
+
+    def impact(
+        self,
+        file_id: int,
+        max_depth: int,
+        max_fanout: int,
+        limit: int,
+        min_confidence: float,
+    ) -> Dict[str, object]:
+        """
+        Files transitively affected by a change to file_id.
+
+        Walks breadth-first from the file to its importers and, through
+        connection links above min_confidence, to the files calling
+        it or called by it. Every file is reached once, at its shortest
+        distance; at most max_fanout neighbours of any file are followed
+        (strongest links first, then importers).
+
+        Returns the reached files ranked by distance, then by the weakest
+        link confidence on their path (import hops count as 1.0), then by
+        path, cut at limit, along with the files whose fan-out was cut.
+        """
+        start = self.index.get(file_id)
+        if start is None:
+            return {"impacted": [], "truncated": [], "reached": 0}
+
+        visited = bytearray(len(self.file_ids))
+        visited[start] = 1
+        # node -> (parent node, hop kind, path confidence)
+        parents: Dict[int, Tuple[int, int, float]] = {
+            start: (start, IMPORTED_BY, 1.0)
+        }
+        reached: List[Tuple[int, float, str, int]] = []
+        truncated: List[Tuple[int, int]] = []
+        frontier = [start]
+        for depth in range(1, max_depth + 1):
+            # Whole depths are kept so the cut at limit follows the ranking
+            if len(reached) >= limit:
+                break
+            next_frontier = []
+            for node in frontier:
+                path_confidence = parents[node][2]
+                followed = 0
+                skipped = 0
+                for neighbour, kind, confidence in self._impact_neighbours(
+                    node, min_confidence
+                ):
+                    if visited[neighbour]:
+                        continue
+                    if followed >= max_fanout:
+                        skipped += 1
+                        continue
+                    followed += 1
+                    visited[neighbour] = 1
+                    confidence = min(path_confidence, confidence)
+                    parents[neighbour] = (node, kind, confidence)
+                    next_frontier.append(neighbour)
+                    reached.append(
+                        (depth, -confidence, self.file_paths[neighbour], neighbour)
+                    )
+                if skipped:
+                    truncated.append((node, skipped))
+            if not next_frontier:
+                break
+            frontier = next_frontier
+        reached.sort()
+
+        impacted = []
+        for depth, negative_confidence, file_path, node in reached[:limit]:
+            hops = [node]
+            while hops[-1] != start:
+                hops.append(parents[hops[-1]][0])
+            _, kind, _ = parents[node]
+            impacted.append(
+                {
+                    "file_id": self.file_ids[node],
+                    "file_path": file_path,
+                    "project_id": self.project_ids[node],
+                    "depth": depth,
+                    "via": IMPACT_KINDS[kind],
+                    "confidence": -negative_confidence,
+                    "path": " ← ".join(
+                        self.file_paths[hop] for hop in reversed(hops)
+                    ),
+                }
+            )
+        return {
+            "impacted": impacted,
+            "truncated": [
+                {
+                    "file_id": self.file_ids[node],
+                    "file_path": self.file_paths[node],
+                    "skipped": skipped,
+                }
+                for node, skipped in truncated
+            ],
+            "reached": len(reached),
+        }
+
+    def _impact_neighbours(
+        self, node: int, min_confidence: float
+    ) -> Iterator[Tuple[int, int, float]]:
+        """(neighbour, hop kind, confidence) of a node's links, then importers."""
+        for j in range(self.link_offsets[node], self.link_offsets[node + 1]):
+            confidence = self.link_confidence[j]
+            if confidence <= min_confidence:
+                # Links are ordered by confidence, the rest are weaker
+                break
+            yield self.link_targets[j], self.link_kinds[j], confidence
+        for importer in self.neighbours(node, reverse=True):
+            yield importer, IMPORTED_BY, 1.0
+
+
+_cache_lock = threading.Lock()
+_cached_graph: Optional[ImportGraph] = None
+
+
+def graph_version(connection: "SQLiteConnection") -> Tuple[Any, ...]:
+    """Version of the data an import graph is built from (see module docstring)."""
+    fingerprint = connection.fetch_rows(GET_IMPORT_GRAPH_FINGERPRINT)[0]
+    return (connection.graph_generation, connection.data_version(), *fingerprint)
+
+
+def load_import_graph(
+    connection: "SQLiteConnection", version: Optional[Tuple[Any, ...]] = None
+) -> ImportGraph:
+    """Read every file, relationship and mapped connection into an ImportGraph."""
+    start = time.perf_counter()
+    # Taken before reading, so a write in between makes the graph stale
+    if version is None:
+        version = graph_version(connection)
+    file_ids = array("q")
+    file_paths: List[str] = []
+    project_ids = array("q")
+    with connection.read_transaction():
+        for file_id, file_path, project_id in connection.iter_rows(
+            GET_IMPORT_GRAPH_FILES
+        ):
+            file_ids.append(file_id)
+            file_paths.append(file_path)
+            project_ids.append(project_id)
+
+        edges = connection.fetch_rows(GET_IMPORT_GRAPH_EDGES)
+        links = connection.fetch_rows(GET_IMPORT_GRAPH_LINKS)
+    graph = ImportGraph(
+        file_ids, file_paths, project_ids, edges, links, version, connection
+    )
+    logger.debug(
+        f"🕸️ Loaded import graph: {len(file_ids)} files, {graph.edge_count} imports, "
+        f"{graph.link_count} connection links "
+        f"in {(time.perf_counter() - start) * 1000:.0f}ms"
+    )
+    return graph
+
+
+def get_import_graph(connection: "SQLiteConnection") -> ImportGraph:
+    """The cached import graph of the connection's database, reloaded if stale."""
+    global _cached_graph
+
+    version = graph_version(connection)
+    graph = _cached_graph
+    if graph is not None and graph.source is connection and graph.version == version:
+        return graph
+
+    with _cache_lock:
+        graph = _cached_graph
+        if (
+            graph is None
+            or graph.source is not connection
+            or graph.version != version
+        ):
+            graph = load_import_graph(connection, version)
+            _cached_graph = graph
+        return graph
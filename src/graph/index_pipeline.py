@@ -0,0 +1,451 @@
+"""
+Pipelined full-project indexing.
+
+Runs the indexing stages concurrently with bounded queues between them:
+
+    parse -> graph insert -> chunk -> embed -> vector insert
+
+Parsing runs in the calling thread (optionally fanning out to parse worker
+processes); every other stage has its own thread. A full queue blocks the stage
+feeding it, so a slow embedder throttles parsing instead of buffering the whole
+project. Relationships need every file, so they are extracted and inserted once
+parsing finishes, while the embedding stages keep draining.
+
+Parsing keeps only each file's id, language, content hash and parsed imports.
+Full records are streamed to a spool file as they are parsed and copied to
+the extraction file with their relationships at the end.
+"""
+
+import queue
+import threading
+import time
+from dataclasses import dataclass
+from pathlib import Path
+from typing import Any, Callable, Dict, List, Optional, Tuple
+
+from loguru import logger
+
+from config import config
+from src.embeddings import get_embedding_engine
+from src.graph.graph_operations import GraphOperations
+from src.graph.module_registry import SQLiteModuleRegistry
+from src.indexer.ast_parser import ASTParser
+from src.indexer.extraction_stream import (
+    ExtractionStreamWriter,
+    is_extraction_stream,
+    iter_extraction_records,
+)
+from src.models.schema import FileData, Relationship
+from src.utils.console import console
+from utils.directory_scanner import DirectoryListing
+from utils.json_serializer import make_json_serializable
+
+# Marks the end of a stage's input
+_DONE = object()
+
+PIPELINE_STAGES = ["parse", "graph_insert", "chunk", "embed", "vector_insert"]
+
+
+@dataclass
+class StageStats:
+    """Throughput counters for one pipeline stage."""
+
+    name: str
+    items: int = 0
+    busy_seconds: float = 0.0
+
+    @property
+    def items_per_second(self) -> float:
+        return self.items / self.busy_seconds if self.busy_seconds else 0.0
+
+    def to_dict(self) -> Dict[str, Any]:
+        return {
+            "items": self.items,
+            "busy_seconds": round(self.busy_seconds, 3),
+            "items_per_second": round(self.items_per_second, 1),
+        }
+
+
+class IndexPipeline:
+    """Bounded producer/consumer pipeline for indexing a project from scratch."""
+
+    def __init__(self, project_id: int, queue_size: Optional[int] = None):
+        self.project_id = project_id
+        self.queue_size = max(1, queue_size or config.indexing.pipeline_queue_size)
+        self.parser = ASTParser()
+        self.graph_ops = GraphOperations()
+        self.embedding_engine = get_embedding_engine()
+        self.stats = {name: StageStats(name) for name in PIPELINE_STAGES}
+        self.embedding_stats = {
+            "files_processed": 0,
+            "file_embeddings": 0,
+            "block_embeddings": 0,
+            "total_chunks": 0,
+            "blocks_processed": 0,
+        }
+        self._error: Optional[BaseException] = None
+        self._error_lock = threading.Lock()
+
+    def run(self, project_path: Path, output_file: Path) -> Dict[str, Any]:
+        """
+        Index a project through the pipeline.
+
+        Args:
+            project_path: Path to the project directory
+            output_file: Extraction results file to write for incremental indexing
+
+        Returns:
+            Dictionary with per-stage counters and embedding statistics
+
+        Raises:
+            Exception: The first error raised by any stage
+        """
+        graph_queue: queue.Queue = queue.Queue(self.queue_size)
+        chunk_queue: queue.Queue = queue.Queue(self.queue_size)
+        embed_queue: queue.Queue = queue.Queue(self.queue_size)
+        store_queue: queue.Queue = queue.Queue(self.queue_size)
+
+        graph_thread = self._start_stage(
+            "graph_insert", graph_queue, chunk_queue, self._insert_file
+        )
+        # Embedding failures skip the file, as process_file_data does
+        embed_threads = [
+            self._start_stage(
+                "chunk", chunk_queue, embed_queue, self._chunk_file, fatal=False
+            ),
+            # Embed every file already waiting in one model call
+            self._start_stage(
+                "embed",
+                embed_queue,
+                store_queue,
+                self._embed_chunks,
+                fatal=False,
+                batch=True,
+            ),
+            self._start_stage(
+                "vector_insert",
+                store_queue,
+                None,
+                self._store_chunks,
+                fatal=False,
+                batch=True,
+            ),
+        ]
+
+        # Scanned once; the stat manifest reuses the scan's file stats
+        listing = DirectoryListing(project_path)
+        spool_file = output_file.with_name(output_file.name + ".partial.ndjson")
+        stage = "parse"
+        try:
+            try:
+                with ExtractionStreamWriter(spool_file) as spool:
+                    results = self._parse(project_path, graph_queue, spool, listing)
+            finally:
+                # Always release downstream stages, even if parsing failed
+                graph_queue.put(_DONE)
+
+            # Relationships reference other files, so they wait for every file row
+            stage = "graph_insert"
+            graph_thread.join()
+            self._raise_if_failed()
+            self._insert_relationships(results)
+            self._store_stat_manifest(project_path, listing, results)
+
+            stage = "export"
+            if not self._write_extraction_file(spool_file, output_file, results):
+                self._fail("export", RuntimeError(f"Failed to write {output_file}"))
+        except BaseException as e:
+            # Stops the other stages before the error leaves run()
+            self._fail(stage, e)
+            raise
+        finally:
+            spool_file.unlink(missing_ok=True)
+            for thread in [graph_thread, *embed_threads]:
+                thread.join()
+
+        self._raise_if_failed()
+
+        self._log_stats()
+        return {
+            "files": len(results),
+            "stages": {name: stats.to_dict() for name, stats in self.stats.items()},
+            "embeddings": self.embedding_stats,
+        }
+
+    def _parse(
+        self,
+        project_path: Path,
+        graph_queue: queue.Queue,
+        spool: ExtractionStreamWriter,
+        listing: Optional[DirectoryListing] = None,
+    ) -> Dict[str, Dict[str, Any]]:
+        """
+        Parse files and feed them to the graph insert stage (parse stage).
+
+        Each file's record is appended to spool as it is parsed.
+
+        Returns:
+            Per file, only what relationship extraction and the stat manifest
+            need: id, language, content_hash and parsed imports
+        """
+        stats = self.stats["parse"]
+        extractor = self.parser._relationship_extractor
+        results = {}
+
+        start = time.perf_counter()
+        for file_path_str, result in self.parser.iter_parsed_files(
+            project_path, listing=listing
+        ):
+            result.pop("ast", None)
+            # Parse workers already parsed the imports; in-process parsing did not
+            imports = result.pop("imports", None)
+            if imports is None:
+                imports = extractor.parse_imports(result)
+            results[file_path_str] = {
+                "id": result.get("id"),
+                "language": result.get("language"),
+                "content_hash": result.get("content_hash"),
+                "imports": imports,
+            }
+
+            record = make_json_serializable(result)
+            spool.write(file_path_str, record)
+            file_data = FileData(**{**record, "relationships": []})
+            stats.items += 1
+            stats.busy_seconds += time.perf_counter() - start
+
+            if self._error is not None:
+                break
+            graph_queue.put((file_path_str, file_data))
+            start = time.perf_counter()
+
+        return results
+
+    def _store_stat_manifest(
+        self,
+        project_path: Path,
+        listing: DirectoryListing,
+        results: Dict[str, Dict[str, Any]],
+    ) -> None:
+        """
+        Record the scanned stat of every parsed file with its content hash.
+
+        The first incremental index then trusts unchanged files' stats instead
+        of reading the whole project again. Stats were taken before the files
+        were read, so a file edited in between is re-hashed next time.
+        """
+        if not listing.complete:
+            return
+
+        base = str(project_path)
+        manifest = {}
+        for entry in listing.files:
+            result = results.get(listing.path(entry, base))
+            if result and result.get("content_hash"):
+                manifest[listing.resolved_path(entry)] = (
+                    entry.stat,
+                    result["content_hash"],
+                )
+        self.graph_ops.replace_file_stat_manifest(self.project_id, manifest)
+
+    def _write_extraction_file(
+        self,
+        spool_file: Path,
+        output_file: Path,
+        results: Dict[str, Dict[str, Any]],
+    ) -> bool:
+        """Copy the spooled records to the extraction file with their relationships."""
+
+        def records():
+            for file_path_str, data in iter_extraction_records(spool_file):
+                result = results.get(file_path_str)
+                data["relationships"] = (
+                    result.get("relationships", []) if result else []
+                )
+                yield file_path_str, data
+
+        from indexer import export_results
+
+        try:
+            if is_extraction_stream(output_file):
+                with ExtractionStreamWriter(output_file) as writer:
+                    for file_path_str, data in records():
+                        writer.write(file_path_str, data)
+                return True
+            # The monolithic JSON format needs every record at once
+            return export_results(dict(records()), output_file)
+        except (OSError, ValueError, TypeError) as e:
+            logger.error(f"Failed to write extraction file {output_file}: {e}")
+            return False
+
+    def _insert_relationships(self, results: Dict[str, Dict[str, Any]]) -> None:
+        """Extract relationships across all parsed files and insert them."""
+        id_to_path = {}
+        for file_path_str, result in results.items():
+            file_id = result.get("id")
+            if file_id:
+                id_to_path[file_id] = file_path_str
+
+        # Read before relationship extraction drops the parsed imports
+        extractor = self.parser._relationship_extractor
+        import_keys = [
+            (result["id"], file_path_str, extractor.import_name_keys(result))
+            for file_path_str, result in results.items()
+            if result.get("id")
+        ]
+
+        self.parser.process_relationships(results, id_to_path)
+
+        # Persist the module registry, so incremental indexing can resolve
+        # changed files' imports without every file's extraction results
+        module_registry = SQLiteModuleRegistry(
+            self.graph_ops.connection, self.project_id, extractor
+        )
+        module_registry.replace(
+            (result["id"], file_path_str, result.get("language"))
+            for file_path_str, result in results.items()
+            if result.get("id")
+        )
+        module_registry.replace_import_keys(import_keys)
+
+        # Insert in file order, matching the order of a per-file load
+        relationships = [
+            Relationship(**rel)
+            for result in results.values()
+            for rel in result.get("relationships", [])
+        ]
+        self.graph_ops.insert_relationships(relationships)
+        logger.debug(f"🔗 Inserted {len(relationships)} relationships")
+
+    def _insert_file(self, item):
+        """Insert a file and its blocks (graph insert stage)."""
+        file_path_str, file_data = item
+        self.graph_ops.insert_file_records(
+            [(file_path_str, file_data)], self.project_id
+        )
+        return file_data
+
+    def _chunk_file(self, file_data: FileData):
+        """Chunk a file into embedding texts (chunk stage)."""
+        return self.embedding_engine.prepare_file_chunks(file_data, self.project_id)
+
+    def _embed_chunks(self, prepared_files: List[Dict[str, Any]]):
+        """Run the embedding model over several files' chunks (embed stage)."""
+        embeddings = self.embedding_engine.embed_prepared_files(prepared_files)
+        return list(zip(prepared_files, embeddings))
+
+    def _store_chunks(self, batches) -> None:
+        """Store embeddings for batches of files (vector insert stage)."""
+        for prepared, embeddings in (item for batch in batches for item in batch):
+            file_stats = self.embedding_engine.store_chunk_embeddings(
+                prepared, embeddings
+            )
+
+            self.embedding_stats["files_processed"] += 1
+            for key, value in file_stats.items():
+                self.embedding_stats[key] += value
+
+    def _start_stage(
+        self,
+        name: str,
+        inbox: queue.Queue,
+        outbox: Optional[queue.Queue],
+        handler: Callable[[Any], Any],
+        fatal: bool = True,
+        batch: bool = False,
+    ) -> threading.Thread:
+        """Start a stage thread that maps inbox items to outbox items.
+
+        An error in a fatal stage fails the whole pipeline; other stages log it
+        and drop the item. A batch stage's handler receives a list of every item
+        waiting in the inbox (up to the queue size) instead of a single item.
+        """
+        thread = threading.Thread(
+            target=self._run_stage,
+            args=(name, inbox, outbox, handler, fatal, batch),
+            name=f"index-{name}",
+            daemon=True,
+        )
+        thread.start()
+        return thread
+
+    def _run_stage(
+        self,
+        name: str,
+        inbox: queue.Queue,
+        outbox: Optional[queue.Queue],
+        handler: Callable[[Any], Any],
+        fatal: bool,
+        batch: bool = False,
+    ) -> None:
+        stats = self.stats[name]
+        done = False
+
+        while not done:
+            item = inbox.get()
+            if item is _DONE:
+                break
+
+            if batch:
+                item, done = self._drain(inbox, [item])
+
+            # Keep draining after a failure so upstream stages never block
+            if self._error is not None:
+                continue
+
+            start = time.perf_counter()
+            try:
+                output = handler(item)
+            except Exception as e:
+                if fatal:
+                    self._fail(name, e)
+                else:
+                    logger.error(
+                        f"Indexing pipeline stage '{name}' skipped an item: {e}"
+                    )
+                continue
+            stats.busy_seconds += time.perf_counter() - start
+            stats.items += self._count_files(item) if batch else 1
+
+            if outbox is not None:
+                outbox.put(output)
+
+        if outbox is not None:
+            outbox.put(_DONE)
+
+    def _drain(self, inbox: queue.Queue, items: List[Any]) -> Tuple[List[Any], bool]:
+        """Take items already waiting in the inbox without blocking.
+
+        Returns the items and whether the end-of-input marker was reached.
+        """
+        while len(items) < self.queue_size:
+            try:
+                item = inbox.get_nowait()
+            except queue.Empty:
+                break
+            if item is _DONE:
+                return items, True
+            items.append(item)
+        return items, False
+
+    @staticmethod
+    def _count_files(items: List[Any]) -> int:
+        """Count files in a batch, which may hold per-file lists of files."""
+        return sum(len(item) if isinstance(item, list) else 1 for item in items)
+
+    def _fail(self, stage: str, error: BaseException) -> None:
+        with self._error_lock:
+            if self._error is None:
+                logger.error(f"Indexing pipeline stage '{stage}' failed: {error}")
+                self._error = error
+
+    def _raise_if_failed(self) -> None:
+        if self._error is not None:
+            raise self._error
+
+    def _log_stats(self) -> None:
+        for stats in self.stats.values():
+            console.dim(
+                f"   • {stats.name}: {stats.items} files, "
+                f"{stats.items_per_second:.1f} files/s ({stats.busy_seconds:.1f}s busy)"
+            )
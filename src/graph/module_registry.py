@@ -0,0 +1,240 @@
+"""
+Persisted module registry of a project.
+
+Stores, per file, the module names the relationship extractors would register
+for it (see indexer.relationship_extractors.module_registry) in the
+module_registry table, so incremental indexing resolves a changed file's
+imports with indexed lookups instead of rebuilding the registry from every
+file of the project.
+
+The import_name_keys table keeps, per file, the last components of the module
+names its imports resolve through (see name_key), so the files whose imports
+a new file may now satisfy are found by key instead of re-reading every
+import of the project.
+"""
+
+from itertools import groupby
+from typing import TYPE_CHECKING, Iterable, List, Optional, Sequence, Set, Tuple
+
+from loguru import logger
+
+from indexer.relationship_extractors import ModuleRegistry, RelationshipExtractor
+from indexer.relationship_extractors.module_registry import (
+    name_key,
+    name_suffixes,
+    prefix_range,
+    reversed_name,
+)
+from queries.graph_queries import (
+    DELETE_IMPORT_NAME_KEYS_FILE,
+    DELETE_MODULE_REGISTRY_FILE,
+    DELETE_PROJECT_IMPORT_NAME_KEYS,
+    DELETE_PROJECT_MODULE_REGISTRY,
+    GET_IMPORTERS_OF_NAME_KEYS,
+    GET_IMPORTERS_OF_PATHS,
+    GET_PROJECT_IMPORT_BLOCKS,
+    GET_PROJECT_REGISTRY_FILES,
+    HAS_MODULE_REGISTRY,
+    INSERT_IMPORT_NAME_KEY,
+    INSERT_MODULE_NAME,
+    RESOLVE_MODULE_NAMES,
+    RESOLVE_MODULE_SUFFIX,
+)
+
+# Placeholders per IN (...) lookup
+_LOOKUP_CHUNK_SIZE = 500
+
+# This block is only read by type checkers, not at runtime
+if TYPE_CHECKING:
+    from graph.sqlite_client import SQLiteConnection
+
+
+class SQLiteModuleRegistry(ModuleRegistry):
+    """A project's module registry in the module_registry table."""
+
+    def __init__(
+        self,
+        connection: "SQLiteConnection",
+        project_id: int,
+        relationship_extractor: RelationshipExtractor,
+    ):
+        self.connection = connection
+        self.project_id = project_id
+        self.relationship_extractor = relationship_extractor
+
+    def _rows(self, files: Iterable[Tuple[int, str, str]]) -> List[Tuple]:
+        """INSERT_MODULE_NAME rows for (file id, file path, language) records."""
+        rows = []
+        for file_id, file_path, language in files:
+            for module_name in self.relationship_extractor.get_module_names(
+                language, file_path
+            ):
+                rows.append(
+                    (
+                        self.project_id,
+                        language,
+                        module_name,
+                        reversed_name(module_name),
+                        file_id,
+                        file_path,
+                    )
+                )
+        return rows
+
+    def replace(self, files: Iterable[Tuple[int, str, str]]) -> None:
+        """Replace the registry with the given (file id, file path, language) files."""
+        rows = self._rows(files)
+        with self.connection.write_transaction() as connection:
+            connection.execute(DELETE_PROJECT_MODULE_REGISTRY, (self.project_id,))
+            connection.executemany(INSERT_MODULE_NAME, rows)
+        logger.debug(
+            f"📇 Stored {len(rows)} module names for project {self.project_id}"
+        )
+
+    def update(
+        self, removed_paths: Iterable[str], files: Iterable[Tuple[int, str, str]]
+    ) -> None:
+        """Drop removed files and (re)register the given files."""
+        files = list(files)
+        paths = {str(path) for path in removed_paths}
+        paths.update(file_path for _, file_path, _ in files)
+        rows = self._rows(files)
+        with self.connection.write_transaction() as connection:
+            connection.executemany(
+                DELETE_MODULE_REGISTRY_FILE,
+                [(self.project_id, file_path) for file_path in paths],
+            )
+            connection.executemany(INSERT_MODULE_NAME, rows)
+        logger.debug(
+            f"📇 Updated module registry of project {self.project_id}: "
+            f"{len(paths)} files replaced, {len(rows)} module names"
+        )
+
+    def _key_rows(self, files: Iterable[Tuple[int, str, Iterable[str]]]) -> List[Tuple]:
+        """INSERT_IMPORT_NAME_KEY rows for (file id, file path, name keys) records."""
+        return [
+            (self.project_id, key, file_id, file_path)
+            for file_id, file_path, keys in files
+            for key in keys
+        ]
+
+    def replace_import_keys(self, files: Iterable[Tuple[int, str, Iterable[str]]]) -> None:
+        """Replace the project's import name keys with the given (file id, file path, keys)."""
+        rows = self._key_rows(files)
+        with self.connection.write_transaction() as connection:
+            connection.execute(DELETE_PROJECT_IMPORT_NAME_KEYS, (self.project_id,))
+            connection.executemany(INSERT_IMPORT_NAME_KEY, rows)
+
+    def update_import_keys(
+        self,
+        removed_paths: Iterable[str],
+        files: Iterable[Tuple[int, str, Iterable[str]]],
+    ) -> None:
+        """Drop removed files' import name keys and store the given files' keys."""
+        files = list(files)
+        paths = {str(path) for path in removed_paths}
+        paths.update(file_path for _, file_path, _ in files)
+        rows = self._key_rows(files)
+        with self.connection.write_transaction() as connection:
+            connection.executemany(
+                DELETE_IMPORT_NAME_KEYS_FILE,
+                [(self.project_id, file_path) for file_path in paths],
+            )
+            connection.executemany(INSERT_IMPORT_NAME_KEY, rows)
+
+    def registered_keys(self, language: Optional[str], file_path: str) -> Set[str]:
+        """Name keys of the module names a file registers."""
+        return {
+            name_key(module_name)
+            for module_name in self.relationship_extractor.get_module_names(
+                language, file_path
+            )
+        } - {""}
+
+    def importers(self, name_keys: Iterable[str]) -> Set[Tuple[int, str, str]]:
+        """(file id, file path, language) of files importing through name_keys."""
+        return self._lookup(GET_IMPORTERS_OF_NAME_KEYS, "keys", name_keys)
+
+    def importers_of(self, file_paths: Iterable[str]) -> Set[Tuple[int, str, str]]:
+        """(file id, file path, language) of files with relationships into file_paths."""
+        return self._lookup(GET_IMPORTERS_OF_PATHS, "paths", file_paths)
+
+    def _lookup(
+        self, query: str, placeholder: str, values: Iterable[str]
+    ) -> Set[Tuple[int, str, str]]:
+        values = [str(value) for value in values]
+        found: Set[Tuple[int, str, str]] = set()
+        for start in range(0, len(values), _LOOKUP_CHUNK_SIZE):
+            chunk = values[start : start + _LOOKUP_CHUNK_SIZE]
+            found.update(
+                tuple(row)
+                for row in self.connection.fetch_rows(
+                    query.format(**{placeholder: ",".join("?" * len(chunk))}),
+                    (self.project_id, *chunk),
+                )
+            )
+        return found
+
+    def ensure_populated(self) -> None:
+        """
+        Build the registry from the project's indexed files if it has none yet.
+
+        The import name keys are built with it, parsing every stored import
+        statement of the project once.
+        """
+        if self.connection.fetch_rows(HAS_MODULE_REGISTRY, (self.project_id,)):
+            return
+        files = self.connection.fetch_rows(
+            GET_PROJECT_REGISTRY_FILES, (self.project_id,)
+        )
+        self.replace(files)
+
+        rows = self.connection.iter_rows(GET_PROJECT_IMPORT_BLOCKS, (self.project_id,))
+        self.replace_import_keys(
+            (
+                file_id,
+                file_path,
+                self.relationship_extractor.import_name_keys(
+                    {
+                        "language": language,
+                        "imports": self.relationship_extractor.parse_import_contents(
+                            language, [row[3] for row in file_rows if row[3]]
+                        ),
+                    }
+                ),
+            )
+            for (file_id, file_path, language), file_rows in groupby(
+                rows, key=lambda row: tuple(row[:3])
+            )
+        )
+
+    def resolve(self, language: str, names: Sequence[str]) -> Optional[int]:
+        names = list(dict.fromkeys(names))
+        if not names:
+            return None
+
+        rows = self.connection.fetch_rows(
+            RESOLVE_MODULE_NAMES.format(names=",".join("?" * len(names))),
+            (self.project_id, language, *names),
+        )
+        # First row per name is its shortest path
+        found = {}
+        for module_name, file_id in rows:
+            found.setdefault(module_name, file_id)
+        for module_name in names:
+            if module_name in found:
+                return found[module_name]
+        return None
+
+    def resolve_partial(self, language: str, module_name: str) -> Optional[int]:
+        if not module_name:
+            return None
+
+        low, high = prefix_range(reversed_name(module_name))
+        rows = self.connection.fetch_rows(
+            RESOLVE_MODULE_SUFFIX, (self.project_id, language, low, high)
+        )
+        if rows:
+            return rows[0][0]
+
+        return self.resolve(language, name_suffixes(module_name))
@@ -1,25 +1,39 @@
 """Incremental indexing for efficient database updates when code changes."""
 
 import json
+from itertools import groupby
 from pathlib import Path
-from typing import Any, Dict, List, Optional, Set
+from typing import Any, Dict, Iterable, List, Optional, Set, Tuple
 
 from loguru import logger
 
+from config import config
+from queries.graph_queries import GET_IMPORT_BLOCKS_FOR_FILES
 from src.embeddings import get_embedding_engine
 from src.graph.converter import ASTToSqliteConverter
 from src.graph.graph_operations import GraphOperations
+from src.graph.module_registry import SQLiteModuleRegistry
 from src.graph.sqlite_client import SQLiteConnection
 from src.indexer.ast_parser import ASTParser
-from src.models.schema import ExtractionData, FileData
+from src.indexer.extraction_stream import (
+    count_extraction_files,
+    is_extraction_stream,
+    iter_extraction_files,
+    iter_extraction_records,
+    write_extraction_stream,
+)
+from src.models.schema import ExtractionData, FileData, Relationship
 from src.utils.console import console
 from src.utils.file_utils import (
     get_extraction_file_path,
+    get_extraction_file_suffix,
     get_last_extraction_file_path,
-    read_file_content,
 )
-from src.utils.hash_utils import compute_directory_hashes
-from src.utils.helpers import load_json_file
+from src.utils.hash_utils import (
+    compute_directory_hashes,
+    compute_directory_hashes_with_manifest,
+    iter_directory_files,
+)
 from utils.json_serializer import make_json_serializable
 
 
@@ -57,6 +71,9 @@ class ProjectIndexer:
         2. Storing all data to SQL tables
         3. Generating embeddings for all files and blocks
 
+        With indexing.pipeline enabled the three steps run concurrently, file by
+        file, through IndexPipeline.
+
         Args:
             project_name: Name of the project
             project_path: Path to the project directory
@@ -69,13 +86,25 @@ class ProjectIndexer:
             )
             console.print("   Please wait while the project is being indexed...\n")
 
-            parser_output_path = self._parse_repository(project_name, project_path)
+            if config.indexing.pipeline:
+                # Parse, store and embed concurrently
+                self._index_with_pipeline(project_name, project_path)
+            else:
+                parser_output_path = self._parse_repository(
+                    project_name, project_path
+                )
 
-            self._store_to_database(parser_output_path, project_name, project_path)
+                self._store_to_database(
+                    parser_output_path, project_name, project_path
+                )
 
-            # Step 2: Generate embeddings for the stored data
-            console.print("   Step 2: Generating embeddings for semantic search...")
-            self._generate_embeddings_for_project(parser_output_path, project_name)
+                # Step 2: Generate embeddings for the stored data
+                console.print(
+                    "   Step 2: Generating embeddings for semantic search..."
+                )
+                self._generate_embeddings_for_project(
+                    parser_output_path, project_name
+                )
 
             console.print("\n✅ Project indexing completed successfully!")
             console.print(
@@ -128,7 +157,9 @@ class ProjectIndexer:
 
             # Step 1: Compute current file content hashes for the project directory
             logger.debug(f"📊 Computing current file hashes for: {project_dir}")
-            current_file_hashes = self._compute_current_file_hashes(project_dir)
+            current_file_hashes = self._compute_current_file_hashes(
+                project_dir, project_id
+            )
             logger.debug(
                 f"📊 Found {len(current_file_hashes)} files in project directory"
             )
@@ -171,21 +202,34 @@ class ProjectIndexer:
 
             # Step 4: Parse changed files and update extraction results
             logger.debug(f"🔄 Parsing changed files and updating extraction results")
-            updated_extraction_file = self._parse_and_update_extraction_results(
-                changes, project_name
+            updated_extraction_file, reresolved_importers = (
+                self._parse_and_update_extraction_results(
+                    changes, project_name, project_id
+                )
             )
 
-            # Step 5: Load the updated extraction data and convert to database format
+            # Step 5: Load the changed/new files from the updated extraction data
             logger.debug(
                 f"📦 Loading updated extraction data from: {updated_extraction_file}"
             )
-            json_data = load_json_file(updated_extraction_file)
-            extraction_data = ExtractionData(**json_data)
+            files_to_add = changes["changed_files"].union(changes["new_files"])
+            extraction_data = ExtractionData(
+                metadata={},
+                files={
+                    file_path_str: data
+                    for file_path_str, data in iter_extraction_records(
+                        updated_extraction_file
+                    )
+                    if Path(file_path_str) in files_to_add
+                },
+            )
 
             # Step 6: Process changes in database (delete old, insert new)
             stats = self._process_database_changes(
                 changes, extraction_data, project_id, project_name
             )
+            # After the deletes, whose cascade drops relationships into changed files
+            self._store_reresolved_importers(reresolved_importers)
 
             # Step 7: Update Sutra memory for file changes
             memory_updates = self._update_sutra_memory_for_changes(changes, project_id)
@@ -220,20 +264,49 @@ class ProjectIndexer:
             logger.error(f"Error getting project ID: {e}")
             return None
 
-    def _compute_current_file_hashes(self, project_dir: Path) -> Dict[Path, str]:
+    def _compute_current_file_hashes(
+        self, project_dir: Path, project_id: Optional[int] = None
+    ) -> Dict[Path, str]:
         """
         Compute current file content hashes for all files in the project directory.
-        Uses the indexer's compute_directory_hashes function.
+
+        When a project_id is given, files whose (size, mtime_ns, inode) match the
+        stat manifest stored for the project reuse their recorded hash instead of
+        being read, and the manifest is refreshed afterwards. Setting
+        indexing.paranoid_hashing re-hashes every file regardless.
 
         Args:
             project_dir: Path to the project directory
+            project_id: Project whose stat manifest should be used and refreshed
 
         Returns:
             Dictionary mapping absolute file Path objects to their content hashes
         """
         try:
-            file_hashes = compute_directory_hashes(project_dir)
-            logger.debug(f"📊 Computed hashes for {len(file_hashes)} files")
+            if project_id is None:
+                file_hashes = compute_directory_hashes(project_dir)
+                logger.debug(f"📊 Computed hashes for {len(file_hashes)} files")
+                return file_hashes
+
+            manifest = {}
+            if not config.indexing.paranoid_hashing:
+                manifest = self.graph_ops.get_file_stat_manifest(project_id)
+
+            file_hashes, updated_manifest = compute_directory_hashes_with_manifest(
+                project_dir, manifest
+            )
+            # Binary files are in the manifest but not in file_hashes
+            reused = sum(
+                1
+                for file_path in file_hashes
+                if manifest.get(file_path) == updated_manifest[file_path]
+            )
+            logger.debug(
+                f"📊 Computed hashes for {len(file_hashes)} files "
+                f"({reused} unchanged by stat, {len(file_hashes) - reused} hashed)"
+            )
+
+            self.graph_ops.replace_file_stat_manifest(project_id, updated_manifest)
             return file_hashes
 
         except Exception as e:
@@ -287,9 +360,6 @@ class ProjectIndexer:
             Dictionary with sets of changed_files, new_files, and deleted_files
         """
         try:
-            # Get current file hashes for the project
-            current_hashes = self._compute_current_file_hashes(project_path)
-
             # Get project from database
             project = self.connection.get_project(project_name)
             if not project:
@@ -300,6 +370,11 @@ class ProjectIndexer:
                     "deleted_files": set(),
                 }
 
+            # Get current file hashes for the project
+            current_hashes = self._compute_current_file_hashes(
+                project_path, project.id
+            )
+
             # Get database hashes for the project
             db_hashes = self._get_db_file_hashes(project.id)
 
@@ -318,74 +393,64 @@ class ProjectIndexer:
             }
 
     def _parse_and_update_extraction_results(
-        self, changes: Dict[str, Set[Path]], project_name: str
-    ) -> Path:
+        self, changes: Dict[str, Set[Path]], project_name: str, project_id: int
+    ) -> Tuple[Path, Dict[str, Dict[str, Any]]]:
         """
         Parse changed files and update extraction results.
 
         This function:
         1. Loads previous extraction results
         2. Parses only changed/new files
-        3. Replaces changed files in previous results
-        4. Saves updated results to a new file with timestamp
+        3. Updates the project's module registry and resolves the parsed files'
+           imports against it
+        4. Re-resolves unchanged files that may import a module name of a
+           new, deleted or changed file (see _resolve_affected_importers)
+        5. Replaces changed files in previous results
+        6. Saves updated results to a new file with timestamp
 
         Args:
             changes: Dictionary containing changed_files, new_files, deleted_files
-            project_dir: Path to the project directory
             project_name: Name of the project
+            project_id: ID of the project
 
         Returns:
-            Path to the updated extraction file
+            Tuple of (path to the updated extraction file, re-resolved
+            unchanged files by path, with their new relationships)
         """
         from datetime import datetime
 
         try:
             # Get the most recent extraction file
             previous_extraction_file = get_last_extraction_file_path(project_name)
-
-            # Load previous results if available
-            previous_extraction_data = None
             if previous_extraction_file and previous_extraction_file.exists():
                 logger.debug(
-                    f"📦 Loading previous extraction results from: {previous_extraction_file}"
-                )
-                json_data = load_json_file(previous_extraction_file)
-                previous_extraction_data = ExtractionData(**json_data)
-                logger.debug(
-                    f"📦 Loaded {len(previous_extraction_data.files)} files from previous results"
+                    f"📦 Streaming previous extraction results from: {previous_extraction_file}"
                 )
             else:
                 logger.debug("📦 No previous extraction results found, starting fresh")
-                # Create empty extraction data
-                previous_extraction_data = ExtractionData(
-                    metadata={
-                        "export_timestamp": datetime.now().isoformat(),
-                        "total_files": 0,
-                        "extractor_version": "1.0.0",
-                    },
-                    files={},
-                )
-
-            # Start with previous files as base
-            updated_files = previous_extraction_data.files.copy()
-
-            # Remove deleted files from results
-            for deleted_file in changes["deleted_files"]:
-                deleted_file_str = str(deleted_file)
-                if deleted_file_str in updated_files:
-                    del updated_files[deleted_file_str]
-                    logger.debug(
-                        f"🗑️  Removed deleted file from results: {deleted_file}"
-                    )
+                previous_extraction_file = None
 
             # Get all changed and new files that need parsing
             files_to_parse = list(changes["changed_files"].union(changes["new_files"]))
+            parsed_files: Dict[str, FileData] = {}
+
+            parser = ASTParser()
+            # Module names of every file of the project, kept in step with it
+            module_registry = SQLiteModuleRegistry(
+                self.connection, project_id, parser._relationship_extractor
+            )
+            module_registry.ensure_populated()
+
+            # Files importing deleted or changed files, read before the
+            # database changes drop those relationships
+            affected_importers = module_registry.importers_of(
+                str(p) for p in changes["deleted_files"].union(changes["changed_files"])
+            )
 
             if files_to_parse:
                 logger.debug(f"🔄 Parsing {len(files_to_parse)} changed/new files")
 
                 # Parse each changed file individually using the existing parse_and_extract method
-                parser = ASTParser()
                 parsed_results = {}
 
                 for file_path in files_to_parse:
@@ -397,12 +462,52 @@ class ProjectIndexer:
                         if result.get("ast") or result.get("error"):
                             # Use string representation for results dict (consistent with existing format)
                             file_path_str = str(file_path)
+                            # Parsed once for the name keys and the relationships
+                            result["imports"] = (
+                                parser._relationship_extractor.parse_imports(result)
+                            )
                             parsed_results[file_path_str] = result
                             # logger.debug(f"✅ Parsed file: {file_path}")
                     except Exception as e:
                         logger.error(f"Error parsing file {file_path}: {e}")
                         continue
 
+                # Register new files (and drop deleted ones) before resolving,
+                # so imports between the changed files resolve too
+                module_registry.update(
+                    changes["deleted_files"],
+                    [
+                        (result["id"], file_path_str, result.get("language"))
+                        for file_path_str, result in parsed_results.items()
+                        if result.get("id")
+                    ],
+                )
+                module_registry.update_import_keys(
+                    changes["deleted_files"],
+                    [
+                        (
+                            result["id"],
+                            file_path_str,
+                            parser._relationship_extractor.import_name_keys(result),
+                        )
+                        for file_path_str, result in parsed_results.items()
+                        if result.get("id")
+                    ],
+                )
+
+                # Files whose imports a new file may now satisfy, or take over
+                # with a shorter path
+                new_keys = set()
+                for file_path in changes["new_files"]:
+                    result = parsed_results.get(str(file_path))
+                    if result is not None:
+                        new_keys.update(
+                            module_registry.registered_keys(
+                                result.get("language"), str(file_path)
+                            )
+                        )
+                affected_importers.update(module_registry.importers(new_keys))
+
                 # Extract relationships for the changed files
                 if parsed_results:
                     logger.debug(
@@ -416,8 +521,11 @@ class ProjectIndexer:
                         if file_id:
                             id_to_path[file_id] = file_path_str
 
-                    # Process relationships only for the changed files
-                    parser.process_relationships(parsed_results, id_to_path)
+                    # Resolve only the changed files' imports, against every
+                    # file of the project through the registry
+                    parser.process_relationships(
+                        parsed_results, id_to_path, module_registry
+                    )
 
                 # Helper function to serialize CodeBlock objects with proper enum handling
                 def serialize_block(block):
@@ -434,9 +542,9 @@ class ProjectIndexer:
                     else:
                         return block
 
-                # Convert parsed results to FileData objects and update the files dict
+                # Convert parsed results to FileData objects
                 for file_path_str, result in parsed_results.items():
-                    file_data = FileData(
+                    parsed_files[file_path_str] = FileData(
                         id=result["id"],
                         file_path=file_path_str,
                         language=result["language"],
@@ -446,37 +554,147 @@ class ProjectIndexer:
                         relationships=result.get("relationships", []),
                         unsupported=result.get("unsupported", False),
                     )
-                    updated_files[file_path_str] = file_data
-                    # logger.debug(f"✅ Updated FileData for: {file_path_str}")
-
-            # Create updated extraction data
-            updated_extraction_data = ExtractionData(
-                metadata={
-                    "export_timestamp": datetime.now().isoformat(),
-                    "total_files": len(updated_files),
-                    "extractor_version": "1.0.0",
-                },
-                files=updated_files,
+            elif changes["deleted_files"]:
+                module_registry.update(changes["deleted_files"], [])
+                module_registry.update_import_keys(changes["deleted_files"], [])
+
+            # Files whose previous records must not be carried over
+            replaced_files = {str(p) for p in changes["deleted_files"]}
+            replaced_files.update(str(p) for p in files_to_parse)
+
+            reresolved = self._resolve_affected_importers(
+                parser,
+                module_registry,
+                [
+                    importer
+                    for importer in affected_importers
+                    if importer[1] not in replaced_files
+                ],
             )
 
-            # Save the complete updated results to a new file
+            def updated_records():
+                """Unchanged previous records followed by the freshly parsed files."""
+                if previous_extraction_file:
+                    for file_path_str, data in iter_extraction_records(
+                        previous_extraction_file
+                    ):
+                        if file_path_str in replaced_files:
+                            continue
+                        if file_path_str in reresolved:
+                            data["relationships"] = reresolved[file_path_str].get(
+                                "relationships", []
+                            )
+                        yield file_path_str, data
+                yield from parsed_files.items()
+
+            # Save the complete updated results to a new file, one file at a time
             output_file = get_extraction_file_path(project_name)
             logger.debug(f"💾 Saving updated extraction results to: {output_file}")
 
-            serializable_data = make_json_serializable(updated_extraction_data.dict())
+            if is_extraction_stream(output_file):
+                file_count = write_extraction_stream(updated_records(), output_file)
+            else:
+                updated_files = {
+                    file_path_str: (
+                        data.model_dump(mode="json")
+                        if isinstance(data, FileData)
+                        else data
+                    )
+                    for file_path_str, data in updated_records()
+                }
+                file_count = len(updated_files)
+                serializable_data = make_json_serializable(
+                    {
+                        "metadata": {
+                            "export_timestamp": datetime.now().isoformat(),
+                            "total_files": file_count,
+                            "extractor_version": "1.0.0",
+                        },
+                        "files": updated_files,
+                    }
+                )
 
-            with open(output_file, "w", encoding="utf-8") as f:
-                json.dump(serializable_data, f, indent=2, ensure_ascii=False)
+                with open(output_file, "w", encoding="utf-8") as f:
+                    json.dump(serializable_data, f, indent=2, ensure_ascii=False)
 
             logger.debug(
-                f"✅ Successfully saved {len(updated_files)} files to extraction results"
+                f"✅ Successfully saved {file_count} files to extraction results"
             )
-            return output_file
+            return output_file, reresolved
 
         except Exception as e:
             logger.error(f"Error parsing and updating extraction results: {e}")
             raise
 
+    def _resolve_affected_importers(
+        self,
+        parser: ASTParser,
+        module_registry: SQLiteModuleRegistry,
+        importers: Iterable[Tuple[int, str, str]],
+    ) -> Dict[str, Dict[str, Any]]:
+        """
+        Resolve again the imports of unchanged files against the updated registry.
+
+        A new file can satisfy an import that did not resolve before, or win a
+        name with a shorter path; a deleted file hands its names to the next
+        file; deleting a changed file drops the relationships pointing at it.
+        The importers are found by indexed lookups (see
+        SQLiteModuleRegistry.importers and importers_of), and only their
+        import statements are read.
+
+        Args:
+            importers: (file id, file path, language) of the unchanged files
+
+        Returns:
+            File path -> result with id, language and the new relationships
+        """
+        file_ids = sorted({file_id for file_id, _, _ in importers})
+        if not file_ids:
+            return {}
+
+        extractor = parser._relationship_extractor
+        results: Dict[str, Dict[str, Any]] = {}
+        for start in range(0, len(file_ids), 500):
+            chunk = file_ids[start : start + 500]
+            rows = self.connection.iter_rows(
+                GET_IMPORT_BLOCKS_FOR_FILES.format(ids=",".join("?" * len(chunk))),
+                chunk,
+            )
+            for (file_id, file_path, language), file_rows in groupby(
+                rows, key=lambda row: tuple(row[:3])
+            ):
+                results[file_path] = {
+                    "id": file_id,
+                    "language": language,
+                    "imports": extractor.parse_import_contents(
+                        language, [row[3] for row in file_rows if row[3]]
+                    ),
+                }
+
+        if results:
+            parser.process_relationships(
+                results,
+                {result["id"]: file_path for file_path, result in results.items()},
+                module_registry,
+            )
+            logger.debug(f"🔗 Re-resolved imports of {len(results)} unchanged files")
+        return results
+
+    def _store_reresolved_importers(
+        self, reresolved: Dict[str, Dict[str, Any]]
+    ) -> None:
+        """Replace the relationships of re-resolved unchanged files in the database."""
+        if not reresolved:
+            return
+        self.graph_ops.replace_file_relationships(
+            {
+                result["id"]: [
+                    Relationship(**rel) for rel in result.get("relationships", [])
+                ]
+                for result in reresolved.values()
+            }
+        )
+
     def _get_db_file_hashes(self, project_id: int) -> Dict[Path, str]:
         """Get all file hashes from the database for a project."""
         try:
@@ -568,6 +786,11 @@ class ProjectIndexer:
                 logger.debug("Restoring preserved connections for deleted files")
                 self._restore_preserved_connections(preserved_connections_list)
 
+        # Files were deleted directly; reload the import graph on next use
+        self.connection.invalidate_graph()
+        # Drop stored content only the deleted or replaced files referenced
+        self.connection.collect_content_garbage()
+
         logger.debug(
             f"📊 Processed changes: {nodes_deleted} nodes deleted, {relationships_deleted} relationships deleted"
         )
@@ -814,22 +1037,48 @@ class ProjectIndexer:
         except Exception as e:
             logger.error(f"Error generating embeddings for changed files: {e}")
 
+    def _new_parser_output_path(self, project_name: str) -> Path:
+        """Get a new timestamped parser results path for a full index."""
+        import time
+
+        output_dir = Path(config.storage.parser_results_dir)
+        output_dir.mkdir(parents=True, exist_ok=True)
+
+        timestamp = time.strftime("%Y%m%d_%H%M%S")
+        return Path(
+            output_dir / f"{project_name}_{timestamp}{get_extraction_file_suffix()}"
+        ).absolute()
+
+    def _index_with_pipeline(self, project_name: str, project_path: Path) -> None:
+        """Parse, store and embed a project concurrently through IndexPipeline."""
+        from graph.converter import ASTToSqliteConverter
+        from src.graph.index_pipeline import IndexPipeline
+
+        console.print(f"🔄 Indexing directory: {project_path}")
+
+        project_id = ASTToSqliteConverter().create_project(project_name, project_path)
+        parser_output_path = self._new_parser_output_path(project_name)
+
+        pipeline = IndexPipeline(project_id)
+        if config.indexing.fast_load:
+            with pipeline.graph_ops.connection.fast_load():
+                pipeline_stats = pipeline.run(project_path, parser_output_path)
+        else:
+            pipeline_stats = pipeline.run(project_path, parser_output_path)
+
+        embedding_stats = pipeline_stats["embeddings"]
+        logger.debug(f"   Output file: {parser_output_path}")
+        console.print(f"   ✅ Indexed {pipeline_stats['files']} files")
+        console.print(f"      Files embedded: {embedding_stats['files_processed']}")
+        console.print(f"      Total chunks: {embedding_stats['total_chunks']}")
+        console.print(f"      Blocks embedded: {embedding_stats['blocks_processed']}")
+
     def _parse_repository(self, project_name: str, project_path: Path) -> Path:
         """Parse the entire repository and return path to extraction file."""
         try:
             console.print(f"🔄 Parsing directory: {project_path}")
 
-            from config import config
-
-            output_dir = Path(config.storage.parser_results_dir)
-            output_dir.mkdir(parents=True, exist_ok=True)
-
-            import time
-
-            timestamp = time.strftime("%Y%m%d_%H%M%S")
-            parser_output_path = Path(
-                output_dir / f"{project_name}_{timestamp}.json"
-            ).absolute()
+            parser_output_path = self._new_parser_output_path(project_name)
 
             # Use the indexer to extract and export directory data
             from indexer import extract_and_export_directory
@@ -882,19 +1131,14 @@ class ProjectIndexer:
             )
         project_id = project.id
 
-        # Load the parsed data for embedding generation
-        from src.utils import load_json_file
-
-        json_data = load_json_file(parser_output_path)
-        # ExtractionData already imported at top
-
-        extraction_data = ExtractionData(**json_data)
-
-        # Generate embeddings using the embedding engine
-        # Convert dictionary to list of FileData objects
-        file_data_list = list(extraction_data.files.values())
+        # Stream the parsed data into the embedding engine one file at a time
+        file_data_iter = (
+            file_data for _, file_data in iter_extraction_files(parser_output_path)
+        )
         embedding_stats = self.embedding_engine.process_multiple_files(
-            file_data_list, project_id
+            file_data_iter,
+            project_id,
+            total_files=count_extraction_files(parser_output_path),
         )
 
         console.print(f"   ✅ Embeddings generated successfully!")
@@ -921,25 +1165,24 @@ class ProjectIndexer:
                     console.dim(f"   • Skipping missing project: {project_name}")
                     continue
 
-                # Use existing method to compute hashes
-                project_hashes = self._compute_current_file_hashes(project_path)
-                console.dim(
-                    f"   • Project '{project_name}': {len(project_hashes)} files"
-                )
-
-                # Convert to relative paths and also read content
-                for abs_path, file_hash in project_hashes.items():
+                # Hash and decode each file from a single read
+                project_file_count = 0
+                for file_content in iter_directory_files(project_path):
+                    project_file_count += 1
                     try:
-                        relative_path = str(abs_path.relative_to(project_path))
+                        relative_path = str(
+                            file_content.path.relative_to(project_path)
+                        )
                         file_key = f"{project_name}:{relative_path}"
-                        current_hashes[file_key] = file_hash
-
-                        # Read content using existing utility
-                        content = read_file_content(abs_path)
-                        current_content[file_key] = content or ""
+                        current_hashes[file_key] = file_content.content_hash
+                        current_content[file_key] = file_content.text or ""
                     except (ValueError, Exception):
                         continue
 
+                console.dim(
+                    f"   • Project '{project_name}': {project_file_count} files"
+                )
+
             console.dim(f"   • Total files discovered: {len(current_hashes)}")
             return current_hashes, current_content
 
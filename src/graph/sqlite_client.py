@@ -5,8 +5,20 @@ Stores files, code blocks, and relationships from code parsing.
 
 import json
 import threading
+from collections import namedtuple
+from contextlib import contextmanager
+from functools import lru_cache
 from pathlib import Path
-from typing import TYPE_CHECKING, Any, Dict, List, Optional, Union
+from typing import (
+    TYPE_CHECKING,
+    Any,
+    Dict,
+    Iterator,
+    List,
+    Optional,
+    Tuple,
+    Union,
+)
 
 # This block is only read by type checkers, not at runtime
 if TYPE_CHECKING:
@@ -18,12 +30,74 @@ else:
 from loguru import logger
 
 from config import config
+from graph.content_store import (
+    CONTENT_STORAGE_MODES,
+    compact_rows,
+    register_content_functions,
+)
 from models import CodeBlock, File, Project, Relationship
-from queries.creation_queries import CREATE_INDEXES, CREATE_TABLES
+from queries.creation_queries import (
+    ADDED_COLUMNS,
+    CREATE_CODE_BLOCKS_TEXT_VIEW,
+    CREATE_FTS_TABLES,
+    CREATE_FTS_TRIGGERS,
+    CREATE_GRAPH_INDEXES,
+    CREATE_INDEXES,
+    CREATE_TABLES,
+    FTS_TRIGGER_NAMES,
+    REBUILD_FTS_TABLES,
+)
+from utils.line_index import build_line_offsets, line_byte_range
+
+INSERT_FILE = "INSERT OR REPLACE INTO files (id, project_id, file_path, language, content, content_hash, content_key) VALUES (?, ?, ?, ?, ?, ?, ?)"
+
+INSERT_FILE_LINES = "INSERT OR REPLACE INTO file_lines (file_id, line_offsets) VALUES (?, ?)"
+
+INSERT_CODE_BLOCK = "INSERT OR REPLACE INTO code_blocks (id, type, name, content, start_line, end_line, start_col, end_col, file_id, parent_block_id, content_key, start_byte, end_byte) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+
+# Prepared statements kept per connection; the agent, indexing and enrichment
+# queries together use well over sqlite3's default of 128
+STATEMENT_CACHE_SIZE = 512
+
+# Statements execute_query runs on the thread's read connection
+READ_STATEMENT_PREFIXES = ("SELECT", "WITH")
+
+DELETE_UNUSED_CONTENT = "DELETE FROM content_store WHERE content_key NOT IN (SELECT content_key FROM files WHERE content_key IS NOT NULL)"
+
+INSERT_RELATIONSHIP = "INSERT OR IGNORE INTO relationships (source_id, target_id, import_content, symbols, type) VALUES (?, ?, ?, ?, ?)"
+
+DELETE_SOURCE_RELATIONSHIPS = "DELETE FROM relationships WHERE source_id = ?"
+
+
+@lru_cache(maxsize=256)
+def _record_type(columns: Tuple[str, ...]) -> type:
+    """Namedtuple class for a result's column names, shared by every query
+    returning the same columns."""
+    return namedtuple("Record", columns, rename=True)
 
 
 class SQLiteConnection:
-    """Manages SQLite database connections and operations."""
+    """Manages SQLite database connections and operations.
+
+    Holds one writer connection (self.connection) and, with
+    database.read_pool, a read-only connection per thread. WAL lets the
+    readers run concurrently with each other and with the writer:
+      - read_transaction(): the calling thread's reader, holding one snapshot
+        for the whole block
+      - write_transaction(): the writer, exclusive to the calling thread,
+        committed on success and rolled back on error
+    execute_query() sends SELECT statements to the thread's reader and
+    everything else to the writer. While the calling thread has uncommitted
+    changes on the writer, its reads go to the writer too, so they see those
+    changes; other threads keep reading committed data from their readers.
+
+    Exclusivity only holds for writes made through write_transaction() or
+    execute_query(). Code using self.connection directly (for example the
+    connection and checkpoint writes in GraphOperations and
+    CrossProjectIndexer) is not serialized against them, and since the owner
+    of such a transaction is unknown, reads made while it is open go to the
+    writer, under its lock, as they did before readers existed.
+    """
 
     _instance: Optional["SQLiteConnection"] = None
     _lock = threading.Lock()
@@ -32,8 +106,26 @@ class SQLiteConnection:
         """Initialize the connection - only called once due to singleton pattern."""
         if not hasattr(self, "initialized"):
             self.database_path = config.sqlite.knowledge_graph_db
+            self.content_storage = config.sqlite.content_storage
+            if self.content_storage not in CONTENT_STORAGE_MODES:
+                raise ValueError(
+                    f"Unknown content_storage '{self.content_storage}', expected "
+                    f"one of {CONTENT_STORAGE_MODES}"
+                )
             self.connection = self._connect()
             self._create_tables()
+            self.read_pool = (
+                config.sqlite.read_pool and self.database_path != ":memory:"
+            )
+            # Serializes use of the writer connection across threads
+            self._write_lock = threading.RLock()
+            # Thread holding uncommitted changes on the writer, if known
+            self._writer_thread: Optional[int] = None
+            # Thread ident -> that thread's read-only connection
+            self._readers: Dict[int, sqlite3.Connection] = {}
+            self._readers_lock = threading.Lock()
+            # Bumped on writes to files/relationships; see graph.import_graph
+            self.graph_generation = 0
             self.initialized = True
             logger.debug("✅ SQLiteConnection initialized")
 
@@ -45,20 +137,31 @@ class SQLiteConnection:
                     cls._instance = super(SQLiteConnection, cls).__new__(cls)
         return cls._instance
 
-    def _connect(self) -> sqlite3.Connection:
+    def _connect(self, read_only: bool = False) -> sqlite3.Connection:
         """Establish connection to SQLite database."""
         try:
             db_path = Path(self.database_path)
             db_path.parent.mkdir(parents=True, exist_ok=True)
 
-            connection = sqlite3.connect(
-                self.database_path,
-                timeout=config.sqlite.connection_timeout,
-                check_same_thread=False,
-            )
+            if read_only:
+                # Readers are closed from other threads in close()
+                connection = sqlite3.connect(
+                    f"{db_path.absolute().as_uri()}?mode=ro",
+                    timeout=config.sqlite.connection_timeout,
+                    check_same_thread=False,
+                    cached_statements=STATEMENT_CACHE_SIZE,
+                    uri=True,
+                )
+            else:
+                connection = sqlite3.connect(
+                    self.database_path,
+                    timeout=config.sqlite.connection_timeout,
+                    check_same_thread=False,
+                    cached_statements=STATEMENT_CACHE_SIZE,
+                )
 
-            # Enable WAL mode for better concurrency
-            connection.execute("PRAGMA journal_mode=WAL")
+                # Enable WAL mode for better concurrency
+                connection.execute("PRAGMA journal_mode=WAL")
 
             # Set busy timeout to handle concurrent access
             connection.execute(
@@ -68,15 +171,22 @@ class SQLiteConnection:
             # Enable foreign key constraints
             connection.execute("PRAGMA foreign_keys=ON")
 
+            # Fire delete triggers for INSERT OR REPLACE so FTS stays in sync
+            connection.execute("PRAGMA recursive_triggers=ON")
+
             # Optimize for concurrent reads
             connection.execute("PRAGMA synchronous=NORMAL")
             connection.execute("PRAGMA cache_size=10000")
             connection.execute("PRAGMA temp_store=memory")
 
+            # Reads content stored compressed by content_storage="compressed"
+            register_content_functions(connection)
+
             connection.execute("SELECT 1")
 
             logger.debug(
                 f"Successfully connected to SQLite database: {self.database_path}"
+                + (" (read-only)" if read_only else "")
             )
             return connection
 
@@ -89,10 +199,59 @@ class SQLiteConnection:
         try:
             for query in CREATE_TABLES:
                 self.connection.execute(query)
+            self._add_missing_columns()
 
             for query in CREATE_INDEXES:
                 self.connection.execute(query)
 
+            # The FTS view and triggers only call stored_content() once the
+            # database holds compressed rows
+            has_stored_content = self.connection.execute(
+                "SELECT 1 FROM content_store LIMIT 1"
+            ).fetchone()
+            self.fts_content_storage = (
+                "compressed"
+                if self.content_storage == "compressed" or has_stored_content
+                else "plain"
+            )
+            installed = self.connection.execute(
+                "SELECT sql FROM sqlite_master "
+                "WHERE name IN ('code_blocks_text', 'code_blocks_fts_insert')"
+            ).fetchall()
+            if any(
+                ("stored_content" in row[0])
+                != (self.fts_content_storage == "compressed")
+                for row in installed
+            ):
+                # Created for the other mode; both read the same text
+                self.connection.execute("DROP VIEW IF EXISTS code_blocks_text")
+                for trigger_name in FTS_TRIGGER_NAMES:
+                    self.connection.execute(f"DROP TRIGGER IF EXISTS {trigger_name}")
+
+            fts_row = self.connection.execute(
+                "SELECT sql FROM sqlite_master WHERE name = 'code_blocks_fts'"
+            ).fetchone()
+            if fts_row and "code_blocks_text" not in fts_row[0]:
+                # Index created over code_blocks before compressed content
+                # existed; recreate it over code_blocks_text
+                self.connection.execute("DROP TABLE code_blocks_fts")
+                for trigger_name in FTS_TRIGGER_NAMES:
+                    if trigger_name.startswith("code_blocks_fts"):
+                        self.connection.execute(f"DROP TRIGGER IF EXISTS {trigger_name}")
+                fts_row = None
+
+            self.connection.execute(
+                CREATE_CODE_BLOCKS_TEXT_VIEW[self.fts_content_storage]
+            )
+            for query in (
+                CREATE_FTS_TABLES + CREATE_FTS_TRIGGERS[self.fts_content_storage]
+            ):
+                self.connection.execute(query)
+            if not fts_row:
+                # Index rows stored before the index (re)created above existed
+                for query in REBUILD_FTS_TABLES:
+                    self.connection.execute(query)
+
             self.connection.commit()
             logger.debug("Database tables and indexes created/verified")
         except Exception as e:
@@ -100,22 +259,132 @@ class SQLiteConnection:
             logger.error(f"Failed to create tables: {e}")
             raise
 
+    def _add_missing_columns(self) -> None:
+        """Add columns introduced after a database was created."""
+        for table, column, definition in ADDED_COLUMNS:
+            columns = {
+                row[1]
+                for row in self.connection.execute(f"PRAGMA table_info({table})")
+            }
+            if column not in columns:
+                self.connection.execute(
+                    f"ALTER TABLE {table} ADD COLUMN {column} {definition}"
+                )
+                logger.debug(f"Added column {table}.{column}")
+
     def close(self) -> None:
         """Close the database connection."""
+        if hasattr(self, "_readers"):
+            self._close_readers()
         if hasattr(self, "connection") and self.connection:
             self.connection.close()
             logger.debug("Database connection closed")
 
+    def _close_readers(self) -> None:
+        """Close every thread's read-only connection."""
+        with self._readers_lock:
+            for reader in self._readers.values():
+                reader.close()
+            self._readers.clear()
+
+    def _thread_reader(self) -> sqlite3.Connection:
+        """The calling thread's read-only connection, opened on first use."""
+        thread_id = threading.get_ident()
+        reader = self._readers.get(thread_id)
+        if reader is None:
+            reader = self._connect(read_only=True)
+            with self._readers_lock:
+                if not self.read_pool:
+                    # The pool was suspended (fast_load) while connecting
+                    reader.close()
+                    return self.connection
+                # Close readers of threads that have exited
+                alive = {thread.ident for thread in threading.enumerate()}
+                for ident in [i for i in self._readers if i not in alive]:
+                    self._readers.pop(ident).close()
+                self._readers[thread_id] = reader
+        return reader
+
+    def _read_connection(self) -> sqlite3.Connection:
+        """Connection for a read: the thread's reader unless the calling
+        thread has uncommitted changes on the writer the read must see."""
+        if not self.read_pool:
+            return self.connection
+        thread_id = threading.get_ident()
+        writer_thread = self._writer_thread
+        if self.connection.in_transaction:
+            # Unknown owner: a direct self.connection user (see class docs)
+            if writer_thread is None or writer_thread == thread_id:
+                return self.connection
+        elif writer_thread not in (None, thread_id) and self._write_lock.acquire(
+            blocking=False
+        ):
+            # The owner committed outside write_transaction; forget it
+            try:
+                if not self.connection.in_transaction:
+                    self._writer_thread = None
+            finally:
+                self._write_lock.release()
+        return self._thread_reader()
+
+    def invalidate_graph(self) -> None:
+        """Mark caches derived from files/relationships (the import graph) stale."""
+        self.graph_generation += 1
+
+    def data_version(self) -> int:
+        """The writer's PRAGMA data_version, which changes whenever another
+        connection (or process) commits to the database."""
+        with self._write_lock:
+            return int(self.connection.execute("PRAGMA data_version").fetchone()[0])
+
+    @contextmanager
+    def read_transaction(self) -> Iterator[sqlite3.Connection]:
+        """Run reads against one consistent snapshot on the thread's reader.
+
+        execute_query() and the other read methods called inside the block use
+        the same snapshot. Nested blocks share the outer transaction.
+        """
+        connection = self._read_connection()
+        if connection is self.connection or connection.in_transaction:
+            yield connection
+            return
+
+        connection.execute("BEGIN")
+        try:
+            yield connection
+        finally:
+            connection.execute("COMMIT")
+
+    @contextmanager
+    def write_transaction(self) -> Iterator[sqlite3.Connection]:
+        """Hold the writer for the calling thread and commit the block's changes.
+
+        Rolls back and re-raises if the block raises.
+        """
+        with self._write_lock:
+            outer_thread = self._writer_thread
+            self._writer_thread = threading.get_ident()
+            try:
+                yield self.connection
+                self.connection.commit()
+            except Exception:
+                self.connection.rollback()
+                raise
+            finally:
+                self._writer_thread = outer_thread
+
     def execute_query(
         self, query: str, parameters: tuple | None = None
     ) -> List[Dict[str, Any]]:
-        """Execute a simple query and return results."""
+        """Execute a simple query and return results.
+
+        SELECT/WITH statements run on the thread's reader; other statements
+        run on the writer and, as before, are left for the caller to commit.
+        Callers that only read columns should prefer fetch_rows or
+        fetch_records, which skip building a dict per row.
+        """
         try:
-            cursor = self.connection.cursor()
-            if parameters:
-                cursor.execute(query, parameters)
-            else:
-                cursor.execute(query)
+            cursor = self._run(query, parameters)
 
             # Get column names
             columns = (
@@ -132,6 +401,77 @@ class SQLiteConnection:
             logger.error(f"Failed to execute query: {e}")
             raise
 
+    def fetch_rows(
+        self, query: str, parameters: tuple | None = None
+    ) -> List[Tuple]:
+        """Execute a query and return its rows as plain tuples in column order."""
+        try:
+            return self._run(query, parameters).fetchall()
+        except Exception as e:
+            logger.error(f"Failed to execute query: {e}")
+            raise
+
+    def fetch_records(
+        self, query: str, parameters: tuple | None = None
+    ) -> List[Tuple]:
+        """Execute a query and return namedtuple rows with the column names as
+        fields (record.name, record._asdict())."""
+        try:
+            cursor = self._run(query, parameters)
+            if not cursor.description:
+                return []
+            record_type = _record_type(tuple(d[0] for d in cursor.description))
+            return list(map(record_type._make, cursor.fetchall()))
+        except Exception as e:
+            logger.error(f"Failed to execute query: {e}")
+            raise
+
+    def iter_rows(
+        self,
+        query: str,
+        parameters: tuple | None = None,
+        records: bool = False,
+        batch_size: int = 512,
+    ) -> Iterator[Tuple]:
+        """Lazily yield a query's rows, fetching batch_size rows at a time.
+
+        Yields tuples, or namedtuples with records=True. Rows are read while
+        the caller iterates, so large results are never held in memory at
+        once; finish or close the iterator before writing from this thread.
+        """
+        try:
+            cursor = self._run(query, parameters)
+            make = (
+                _record_type(tuple(d[0] for d in cursor.description))._make
+                if records and cursor.description
+                else None
+            )
+            while True:
+                rows = cursor.fetchmany(batch_size)
+                if not rows:
+                    return
+                yield from (map(make, rows) if make else rows)
+        except Exception as e:
+            logger.error(f"Failed to execute query: {e}")
+            raise
+
+    def _run(self, query: str, parameters: tuple | None) -> sqlite3.Cursor:
+        """Execute a statement on the connection it belongs to (statements
+        are prepared once per connection and reused from its cache)."""
+        if query.lstrip()[:6].upper().startswith(READ_STATEMENT_PREFIXES):
+            connection = self._read_connection()
+            if connection is not self.connection:
+                return connection.cursor().execute(query, parameters or ())
+            with self._write_lock:
+                return connection.cursor().execute(query, parameters or ())
+
+        with self._write_lock:
+            cursor = self.connection.cursor().execute(query, parameters or ())
+            if self.connection.in_transaction:
+                # Left for the caller to commit; its reads must see it
+                self._writer_thread = threading.get_ident()
+            return cursor
+
     def project_exists(self, project_name: str) -> bool:
         """Check if a project exists in the database."""
         try:
@@ -169,39 +509,42 @@ class SQLiteConnection:
     def delete_project(self, project_name: str) -> None:
         """Delete a project and all associated data."""
         try:
-            self.connection.execute(
-                "DELETE FROM projects WHERE name = ?", (project_name,)
-            )
-            self.connection.commit()
+            with self.write_transaction() as connection:
+                connection.execute(
+                    "DELETE FROM projects WHERE name = ?", (project_name,)
+                )
+            self.invalidate_graph()
+            self.collect_content_garbage()
             logger.debug(f"Deleted project '{project_name}' and associated data")
         except Exception as e:
-            self.connection.rollback()
             logger.error(f"Failed to delete project '{project_name}': {e}")
             raise
 
     def insert_project(self, project: Project) -> int:
         """Insert or replace a project. Returns project ID."""
         try:
-            cursor = self.connection.cursor()
-            cursor.execute(
-                """INSERT OR REPLACE INTO projects
-                   (name, path, created_at, updated_at, cross_indexing_done)
-                   VALUES (?, ?, ?, ?, ?)""",
-                (
-                    project.name,
-                    project.path,
-                    project.created_at,
-                    project.updated_at,
-                    project.cross_indexing_done,
-                ),
-            )
+            with self.write_transaction() as connection:
+                cursor = connection.cursor()
+                cursor.execute(
+                    """INSERT OR REPLACE INTO projects
+                       (name, path, created_at, updated_at, cross_indexing_done)
+                       VALUES (?, ?, ?, ?, ?)""",
+                    (
+                        project.name,
+                        project.path,
+                        project.created_at,
+                        project.updated_at,
+                        project.cross_indexing_done,
+                    ),
+                )
 
-            # Get the project ID
-            cursor.execute("SELECT id FROM projects WHERE name = ?", (project.name,))
-            result = cursor.fetchone()
-            project_id = result[0] if result else cursor.lastrowid
+                # Get the project ID
+                cursor.execute(
+                    "SELECT id FROM projects WHERE name = ?", (project.name,)
+                )
+                result = cursor.fetchone()
+                project_id = result[0] if result else cursor.lastrowid
 
-            self.connection.commit()
             logger.debug(f"Inserted project '{project.name}' with ID: {project_id}")
 
             if not project_id:
@@ -211,82 +554,90 @@ class SQLiteConnection:
             return project_id
 
         except Exception as e:
-            self.connection.rollback()
             logger.error(f"Failed to insert project: {e}")
             raise
 
     def insert_file(self, file: File) -> int:
         """Insert a new file. Returns file ID."""
         try:
-            cursor = self.connection.cursor()
-            cursor.execute(
-                "INSERT OR REPLACE INTO files (id, project_id, file_path, language, content, content_hash) VALUES (?, ?, ?, ?, ?, ?)",
-                (
-                    file.id,
-                    file.project_id,
-                    file.file_path,
-                    file.language,
-                    file.content,
-                    file.content_hash,
-                ),
-            )
-            self.connection.commit()
+            line_row = (file.id, build_line_offsets(file.content))
+            with self.write_transaction() as connection:
+                file_rows, _ = self._storage_rows(
+                    [
+                        (
+                            file.id,
+                            file.project_id,
+                            file.file_path,
+                            file.language,
+                            file.content,
+                            file.content_hash,
+                        )
+                    ],
+                    [],
+                    [line_row],
+                )
+                cursor = connection.cursor()
+                cursor.execute(INSERT_FILE, file_rows[0])
+                cursor.execute(INSERT_FILE_LINES, line_row)
+            self.invalidate_graph()
             logger.debug(f"Inserted file '{file.file_path}' with ID: {file.id}")
             return file.id
 
         except Exception as e:
-            self.connection.rollback()
             logger.error(f"Failed to insert file: {e}")
             raise
 
     def insert_code_block(self, block: CodeBlock) -> int:
         """Insert a new code block. Returns block ID."""
         try:
-            cursor = self.connection.cursor()
-            cursor.execute(
-                "INSERT OR REPLACE INTO code_blocks (id, type, name, content, start_line, end_line, start_col, end_col, file_id, parent_block_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
-                (
-                    block.id,
-                    block.type.value,
-                    block.name,
-                    block.content,
-                    block.start_line,
-                    block.end_line,
-                    block.start_col,
-                    block.end_col,
-                    block.file_id,
-                    block.parent_block_id,
-                ),
+            # A block inserted on its own keeps its text inline
+            _, block_rows = self._storage_rows(
+                [],
+                [
+                    (
+                        block.id,
+                        block.type.value,
+                        block.name,
+                        block.content,
+                        block.start_line,
+                        block.end_line,
+                        block.start_col,
+                        block.end_col,
+                        block.file_id,
+                        block.parent_block_id,
+                    )
+                ],
+                [],
             )
-            self.connection.commit()
+            with self.write_transaction() as connection:
+                connection.execute(INSERT_CODE_BLOCK, block_rows[0])
             # logger.debug(
             #     f"Inserted code block '{block.name}' with ID: {block.id}, file_id: {block.file_id}, parent_id: {block.parent_block_id}"
             # )
             return block.id
 
         except Exception as e:
-            self.connection.rollback()
             logger.error(f"Failed to insert code block: {e}")
             raise
 
     def insert_relationship(self, relationship: Relationship) -> int:
         """Insert a new relationship. Returns relationship ID."""
         try:
-            cursor = self.connection.cursor()
             # Convert symbols list to JSON string for storage
             symbols_json = json.dumps(relationship.symbols)
 
-            cursor.execute(
-                "INSERT OR IGNORE INTO relationships (source_id, target_id, import_content, symbols, type) VALUES (?, ?, ?, ?, ?)",
-                (
-                    relationship.source_id,
-                    relationship.target_id,
-                    relationship.import_content,
-                    symbols_json,
-                    relationship.type,
-                ),
-            )
-            self.connection.commit()
+            with self.write_transaction() as connection:
+                cursor = connection.execute(
+                    INSERT_RELATIONSHIP,
+                    (
+                        relationship.source_id,
+                        relationship.target_id,
+                        relationship.import_content,
+                        symbols_json,
+                        relationship.type,
+                    ),
+                )
+            self.invalidate_graph()
             relationship_id = cursor.lastrowid
             # logger.debug(f"Inserted relationship with ID: {relationship_id}")
 
@@ -297,28 +648,212 @@ class SQLiteConnection:
             return relationship_id
 
         except Exception as e:
-            self.connection.rollback()
             logger.error(f"Failed to insert relationship: {e}")
             raise
 
+    def insert_graph_batch(
+        self,
+        file_rows: List[Tuple],
+        block_rows: List[Tuple],
+        relationship_rows: List[Tuple],
+    ) -> None:
+        """Insert pre-flattened file, code block and relationship rows in one transaction.
+
+        Rows use the column order of insert_file, insert_code_block and
+        insert_relationship. Parent blocks must precede their children. With
+        compressed content storage, blocks are stored as byte ranges of their
+        file when it is in the same batch.
+        """
+        line_rows = [(row[0], build_line_offsets(row[4])) for row in file_rows]
+        try:
+            with self.write_transaction() as connection:
+                file_rows, block_rows = self._storage_rows(
+                    file_rows, block_rows, line_rows
+                )
+                cursor = connection.cursor()
+                cursor.executemany(INSERT_FILE, file_rows)
+                cursor.executemany(INSERT_FILE_LINES, line_rows)
+                cursor.executemany(INSERT_CODE_BLOCK, block_rows)
+                cursor.executemany(INSERT_RELATIONSHIP, relationship_rows)
+            if file_rows or relationship_rows:
+                self.invalidate_graph()
+
+        except Exception as e:
+            logger.error(f"Failed to insert graph batch: {e}")
+            raise
+
+    def replace_relationships(
+        self, source_ids: List[int], relationship_rows: List[Tuple]
+    ) -> None:
+        """Replace the relationships of the given source files in one transaction.
+
+        Rows use the column order of insert_relationship.
+        """
+        try:
+            with self.write_transaction() as connection:
+                connection.executemany(
+                    DELETE_SOURCE_RELATIONSHIPS, [(file_id,) for file_id in source_ids]
+                )
+                connection.executemany(INSERT_RELATIONSHIP, relationship_rows)
+            self.invalidate_graph()
+
+        except Exception as e:
+            logger.error(f"Failed to replace relationships: {e}")
+            raise
+
+    def _storage_rows(
+        self,
+        file_rows: List[Tuple],
+        block_rows: List[Tuple],
+        line_rows: List[Tuple],
+    ) -> Tuple[List[Tuple], List[Tuple]]:
+        """Add the content reference columns to plain file and block rows."""
+        if self.content_storage == "compressed":
+            return compact_rows(self.connection, file_rows, block_rows, line_rows)
+        return (
+            [(*row, None) for row in file_rows],
+            [(*row, None, None, None) for row in block_rows],
+        )
+
+    def collect_content_garbage(self) -> int:
+        """Delete content_store rows no file references. Returns rows deleted."""
+        try:
+            with self.write_transaction() as connection:
+                cursor = connection.execute(DELETE_UNUSED_CONTENT)
+            if cursor.rowcount:
+                logger.debug(f"🧹 Removed {cursor.rowcount} unused stored contents")
+            return cursor.rowcount
+
+        except Exception as e:
+            logger.error(f"Failed to collect unused content: {e}")
+            return 0
+
+    @contextmanager
+    def fast_load(self) -> Iterator[None]:
+        """Relax durability and defer graph indexes for the duration of a bulk load.
+
+        Sets synchronous=OFF and journal_mode=MEMORY, drops the file, code block
+        and relationship indexes and the full-text search triggers, and restores
+        all of them on exit, rebuilding the full-text indexes once. A crash while
+        loading can corrupt the database, so only use this for loads that can be
+        redone from the extraction results.
+
+        SQLite cannot leave WAL mode while another connection has the database
+        open, so every thread's reader is closed and reads go to the writer
+        until the load finishes.
+        """
+        index_names = [
+            query.split(" ON ")[0].split()[-1] for query in CREATE_GRAPH_INDEXES
+        ]
+        read_pool = self.read_pool
+        self.read_pool = False
+        self._close_readers()
+
+        try:
+            self.connection.execute("PRAGMA synchronous=OFF")
+            self.connection.execute("PRAGMA journal_mode=MEMORY")
+            for index_name in index_names:
+                self.connection.execute(f"DROP INDEX IF EXISTS {index_name}")
+            for trigger_name in FTS_TRIGGER_NAMES:
+                self.connection.execute(f"DROP TRIGGER IF EXISTS {trigger_name}")
+            self.connection.commit()
+            logger.debug(f"⚡ Fast load enabled, deferred {len(index_names)} indexes")
+
+            yield
+
+        finally:
+            for query in CREATE_GRAPH_INDEXES:
+                self.connection.execute(query)
+            for query in (
+                REBUILD_FTS_TABLES + CREATE_FTS_TRIGGERS[self.fts_content_storage]
+            ):
+                self.connection.execute(query)
+            self.connection.commit()
+            try:
+                self.connection.execute("PRAGMA journal_mode=WAL")
+                self.connection.execute("PRAGMA synchronous=NORMAL")
+            finally:
+                self.read_pool = read_pool
+            logger.debug("⚡ Fast load finished, indexes rebuilt")
+
+    def read_file_lines(
+        self, file_id: int, start_line: Optional[int], end_line: Optional[int]
+    ) -> Optional[Tuple[str, int]]:
+        """Read a line range of a file's content without loading the whole file.
+
+        Bounds are clamped like slicing content.split("\n"). Uses incremental
+        blob I/O when available, otherwise substr() of the stored bytes;
+        compressed content is sliced by stored_content(), which keeps recently
+        decompressed files per connection, so paging through a file
+        decompresses it once.
+
+        Returns:
+            (text of the lines, total line count), or None if the file has no
+            line index (stored before it existed) or does not exist
+        """
+        try:
+            with self.read_transaction() as connection:
+                row = connection.execute(
+                    """SELECT fl.line_offsets, f.content_key FROM file_lines fl
+                       JOIN files f ON f.id = fl.file_id WHERE fl.file_id = ?""",
+                    (file_id,),
+                ).fetchone()
+                if row is None:
+                    return None
+
+                start, end, total_lines = line_byte_range(
+                    row[0], start_line, end_line
+                )
+                if end <= start:
+                    return "", total_lines
+
+                if row[1] is not None:
+                    text = connection.execute(
+                        """SELECT stored_content(NULL, content_key, data, ?, ?)
+                           FROM content_store WHERE content_key = ?""",
+                        (start, end, row[1]),
+                    ).fetchone()
+                    return (text[0], total_lines) if text else None
+
+                if hasattr(connection, "blobopen"):
+                    with connection.blobopen(
+                        "files", "content", file_id, readonly=True
+                    ) as blob:
+                        blob.seek(start)
+                        data = blob.read(end - start)
+                else:
+                    data = connection.execute(
+                        "SELECT substr(CAST(content AS BLOB), ?, ?) FROM files WHERE id = ?",
+                        (start + 1, end - start, file_id),
+                    ).fetchone()[0]
+
+                return data.decode("utf-8", errors="replace"), total_lines
+
+        except Exception as e:
+            logger.debug(f"Line range read failed for file {file_id}: {e}")
+            return None
+
     def get_file_blocks(
         self, file_path: str, project_name: Optional[str] = None
     ) -> List[CodeBlock]:
         """Get all code blocks from a specific file with proper nested structure."""
         try:
             query = """
-                SELECT cb.id, cb.type, cb.name, cb.content,
+                SELECT cb.id, cb.type, cb.name,
+                       stored_content(cb.content, cb.content_key, cs.data,
+                                      cb.start_byte, cb.end_byte) AS content,
                        cb.start_line, cb.end_line, cb.start_col, cb.end_col,
                        cb.file_id, cb.parent_block_id
                 FROM code_blocks cb
                 JOIN files f ON cb.file_id = f.id
+                LEFT JOIN content_store cs ON cs.content_key = cb.content_key
                 LEFT JOIN projects p ON f.project_id = p.id
                 WHERE f.file_path = ? AND (? IS NULL OR p.name = ?)
                 ORDER BY cb.start_line
             """
             params = (file_path, project_name, project_name)
 
-            results = self.execute_query(query, params)
+            results = self.fetch_rows(query, params)
 
             # Convert to CodeBlock objects and build nested structure
             from models.schema import BlockType
@@ -327,18 +862,29 @@ class SQLiteConnection:
             blocks_by_id = {}
             top_level_blocks = []
 
-            for row in results:
+            for (
+                block_id,
+                block_type,
+                name,
+                content,
+                start_line,
+                end_line,
+                start_col,
+                end_col,
+                file_id,
+                parent_block_id,
+            ) in results:
                 block = CodeBlock(
-                    id=row["id"],
-                    type=BlockType(row["type"]),
-                    name=row["name"],
-                    content=row["content"],
-                    start_line=row["start_line"],
-                    end_line=row["end_line"],
-                    start_col=row["start_col"],
-                    end_col=row["end_col"],
-                    file_id=row["file_id"],
-                    parent_block_id=row["parent_block_id"],
+                    id=block_id,
+                    type=BlockType(block_type),
+                    name=name,
+                    content=content,
+                    start_line=start_line,
+                    end_line=end_line,
+                    start_col=start_col,
+                    end_col=end_col,
+                    file_id=file_id,
+                    parent_block_id=parent_block_id,
                     children=[],
                 )
                 blocks_by_id[block.id] = block
@@ -387,15 +933,27 @@ class SQLiteConnection:
         try:
             # Drop all tables
             tables_to_drop = [
+                "code_blocks_fts",
+                "files_fts",
                 "connection_mappings",
                 "outgoing_connections",
                 "incoming_connections",
                 "relationships",
                 "code_blocks",
+                "file_stats",
+                "module_registry",
+                "import_name_keys",
+                "file_lines",
                 "files",
+                "content_store",
                 "projects",
             ]
 
+            # Triggers first, so dropping the tables runs none against the
+            # already dropped full-text indexes
+            for trigger_name in FTS_TRIGGER_NAMES:
+                self.connection.execute(f"DROP TRIGGER IF EXISTS {trigger_name}")
+            self.connection.execute("DROP VIEW IF EXISTS code_blocks_text")
             for table in tables_to_drop:
                 self.connection.execute(f"DROP TABLE IF EXISTS {table}")
 
@@ -403,6 +961,7 @@ class SQLiteConnection:
 
             # Recreate tables
             self._create_tables()
+            self.invalidate_graph()
 
             logger.debug("Database cleared and tables recreated")
 
@@ -433,10 +992,12 @@ class SQLiteConnection:
                 return 0
 
             # Delete project data (cascading deletes will handle related data)
-            cursor = self.connection.cursor()
-            cursor.execute("DELETE FROM projects WHERE name = ?", (project_name,))
-
-            self.connection.commit()
+            with self.write_transaction() as connection:
+                connection.execute(
+                    "DELETE FROM projects WHERE name = ?", (project_name,)
+                )
+            self.invalidate_graph()
+            self.collect_content_garbage()
 
             # logger.debug(
             #     f"Deleted {block_count} code blocks for project '{project_name}'"
@@ -444,7 +1005,6 @@ class SQLiteConnection:
             return block_count
 
         except Exception as e:
-            self.connection.rollback()
             logger.error(f"Failed to delete project data: {e}")
             raise
 
@@ -20,6 +20,11 @@ from utils.json_serializer import make_json_serializable
 
 from .ast_parser import ASTParser
 from .export_ast_to_json import main as export_ast_to_json
+from .extraction_stream import (
+    is_extraction_stream,
+    iter_extraction_records,
+    write_extraction_stream,
+)
 
 
 def extract_from_directory(dir_path: Union[str, Path]) -> Dict[str, Dict[str, Any]]:
@@ -85,15 +90,62 @@ def export_to_json(
         return False
 
 
+def export_to_stream(
+    extraction_results: Dict[str, Dict[str, Any]],
+    output_file: Union[str, Path],
+) -> bool:
+    """
+    Export extraction results to a streaming (NDJSON) extraction file.
+
+    Args:
+        extraction_results: Results from extract_from_directory method
+        output_file: Path to the output file
+
+    Returns:
+        True if export was successful, False otherwise
+    """
+    try:
+        file_count = write_extraction_stream(extraction_results.items(), output_file)
+        console.print(f"📊 Total files exported: {file_count}")
+        return True
+
+    except (OSError, IOError, PermissionError, ValueError, TypeError) as e:
+        console.print(f"Error exporting extraction stream: {e}")
+        return False
+
+
+def export_results(
+    extraction_results: Dict[str, Dict[str, Any]],
+    output_file: Union[str, Path],
+    indent: int = 2,
+) -> bool:
+    """
+    Export extraction results in the format given by the output file suffix.
+
+    ".ndjson" files are written as a stream, anything else as a JSON document.
+
+    Args:
+        extraction_results: Results from extract_from_directory method
+        output_file: Path to the output file
+        indent: JSON indentation level for JSON documents (default: 2)
+
+    Returns:
+        True if export was successful, False otherwise
+    """
+    if is_extraction_stream(output_file):
+        return export_to_stream(extraction_results, output_file)
+    return export_to_json(extraction_results, output_file, indent)
+
+
 def extract_and_export_directory(
     dir_path: Union[str, Path], output_file: Union[str, Path], indent: int = 2
 ) -> bool:
     """
-    Extract from directory and directly export to JSON file.
+    Extract from directory and directly export to an extraction file.
 
     Args:
         dir_path: Path to the directory to extract from
-        output_file: Path to the output JSON file
+        output_file: Path to the output file (".ndjson" streams, ".json" is one document)
         indent: JSON indentation level (default: 2)
 
     Returns:
@@ -106,15 +158,15 @@ def extract_and_export_directory(
         console.print("No results to export")
         return False
 
-    return export_to_json(results, output_file, indent)
+    return export_results(results, output_file, indent)
 
 
 def load_previous_results(json_file: Union[str, Path]) -> Dict[str, Dict[str, Any]]:
     """
-    Load previous extraction results from JSON file.
+    Load previous extraction results from a JSON or streaming extraction file.
 
     Args:
-        json_file: Path to the JSON file
+        json_file: Path to the extraction file
 
     Returns:
         Dictionary of previous extraction results
@@ -124,9 +176,7 @@ def load_previous_results(json_file: Union[str, Path]) -> Dict[str, Dict[str, An
         if not json_path.exists():
             return {}
 
-        with open(json_path, "r", encoding="utf-8") as f:
-            data = json.load(f)
-            return data.get("files", {})
+        return dict(iter_extraction_records(json_path))
     except (OSError, IOError, PermissionError, ValueError, KeyError) as e:
         console.print(f"Error loading previous results: {e}")
         return {}
@@ -259,7 +309,8 @@ def incremental_parse(
 
             # The relationship extractor needs all files to resolve imports, but we only want
             # to extract relationships FROM the changed files TO any other files
-            # So we pass all files but only process relationships for changed files
+            # So only the changed files' imports are parsed, resolved against a
+            # module registry of all files
 
             # Create ID to path mapping for all files (needed for import resolution)
             all_id_to_path = {}
@@ -271,12 +322,14 @@ def incremental_parse(
                 f"🗂️  Created ID mapping for {len(all_id_to_path)} total files"
             )
 
-            # Extract relationships from ALL files (needed for import resolution)
+            # Resolve the changed files' imports against a registry of ALL files
             console.print(
-                "🔍 Extracting relationships from ALL files for import resolution..."
+                "🔍 Extracting relationships from changed files against all modules..."
             )
-            relationships = parser._relationship_extractor.extract_relationships(
-                updated_results
+            relationship_extractor = parser._relationship_extractor
+            relationships = relationship_extractor.extract_relationships(
+                changed_results,
+                relationship_extractor.build_module_registry(updated_results),
             )
             console.print(f"📈 Total relationships extracted: {len(relationships)}")
 
@@ -336,7 +389,7 @@ def incremental_parse(
             console.print("✅ Relationship processing complete!")
 
     # Save complete updated results
-    export_success = export_to_json(updated_results, output_json_file, indent)
+    export_success = export_results(updated_results, output_json_file, indent)
     if export_success:
         console.print(f"Saved complete results to: {output_json_file}")
     else:
@@ -359,6 +412,8 @@ __all__ = [
     # Main extraction and export functions
     "extract_from_directory",
     "export_to_json",
+    "export_to_stream",
+    "export_results",
     "extract_and_export_directory",
     "incremental_parse",
     # Utility functions
@@ -7,24 +7,81 @@ relationships between files based on import statements.
 
 import os
 import zlib
+from collections import deque
+from concurrent.futures import ProcessPoolExecutor
 from pathlib import Path
-from typing import Any, Dict, Optional, Union, cast
+from typing import Any, Dict, Iterator, Optional, Tuple, Union, cast
 
 from loguru import logger
 from tree_sitter import Parser
 from tree_sitter_language_pack import SupportedLanguage, get_parser
 
+from utils.directory_scanner import DirectoryListing, iter_scan
 from utils.file_utils import (
+    FileContent,
     get_language_from_extension,
-    is_text_file,
-    read_file_content,
-    should_ignore_directory,
     should_ignore_file,
 )
-from utils.hash_utils import compute_file_hash
+from utils.hash_utils import ingest_file
+from utils.ignore_matcher import get_ignore_matcher
 
 from .extractors import Extractor
-from .relationship_extractors import RelationshipExtractor
+from .relationship_extractors import ModuleRegistry, RelationshipExtractor
+
+# Per-process parser used by the parse worker pool (each worker keeps its own
+# tree-sitter parser cache)
+_worker_parser: Optional["ASTParser"] = None
+
+
+def _init_parse_worker() -> None:
+    """Initialize the AST parser of a parse worker process."""
+    global _worker_parser
+    _worker_parser = ASTParser()
+
+
+def _parse_in_worker(file_path: str) -> Tuple[bool, Dict[str, Any]]:
+    """
+    Parse and extract a single file inside a parse worker process.
+
+    Tree-sitter trees cannot cross process boundaries, so the AST is dropped
+    here. Relationship extraction only needs the extracted blocks, and their
+    import statements are parsed here too, so that work is spread across the
+    pool as well.
+
+    Returns:
+        Tuple of (whether an AST was produced, extraction result without AST)
+    """
+    if _worker_parser is None:
+        _init_parse_worker()
+    parser = cast("ASTParser", _worker_parser)
+    result = parser.parse_and_extract(file_path)
+    has_ast = result.pop("ast", None) is not None
+    result["imports"] = parser._relationship_extractor.parse_imports(result)
+    return has_ast, result
+
+
+def _resolve_parse_workers(parse_workers: Optional[int] = None) -> int:
+    """
+    Resolve the number of parse worker processes.
+
+    Args:
+        parse_workers: Explicit worker count, falls back to config.indexing.parse_workers
+
+    Returns:
+        Worker count, 1 meaning in-process parsing
+    """
+    if parse_workers is None:
+        try:
+            from config import config
+
+            parse_workers = config.indexing.parse_workers
+        except (ValueError, AttributeError):
+            parse_workers = 1
+
+    if parse_workers <= 0:
+        parse_workers = os.cpu_count() or 1
+
+    return parse_workers
 
 
 class ASTParser:
@@ -61,12 +118,17 @@ class ASTParser:
         except (ImportError, AttributeError, RuntimeError):
             return None
 
-    def parse_file(self, file_path: Union[str, Path]) -> Optional[Any]:
+    def parse_file(
+        self,
+        file_path: Union[str, Path],
+        file_content: Optional[FileContent] = None,
+    ) -> Optional[Any]:
         """
         Parse a single file and return its AST.
 
         Args:
             file_path: Path to the file to parse
+            file_content: Already-ingested file content; the file is read if not provided
 
         Returns:
             AST tree if successful, None if parsing failed or unsupported
@@ -74,7 +136,7 @@ class ASTParser:
         file_path = Path(file_path)
 
         # Check if file exists
-        if not file_path.exists() or not file_path.is_file():
+        if file_content is None and not file_path.is_file():
             logger.debug(f"File not found: {file_path}")
             return None
 
@@ -83,8 +145,14 @@ class ASTParser:
             logger.debug(f"Ignoring file: {file_path}")
             return None
 
+        if file_content is None:
+            file_content = ingest_file(file_path)
+            if file_content is None:
+                logger.debug(f"Failed to read file: {file_path}")
+                return None
+
         # Check if file is text
-        if not is_text_file(file_path):
+        if not file_content.is_text:
             logger.debug(f"Skipping binary file: {file_path}")
             return None
 
@@ -101,14 +169,12 @@ class ASTParser:
             return None
 
         try:
-            # Read file content
-            content = read_file_content(file_path)
-            if content is None:
+            if file_content.text is None:
                 logger.debug(f"Failed to read file: {file_path}")
                 return None
 
-            # Parse the content
-            tree = parser.parse(content.encode("utf-8"))
+            # Parse the bytes already read for this file
+            tree = parser.parse(file_content.source_bytes)
             logger.debug(f"Successfully parsed: {file_path}")
             return tree
 
@@ -120,6 +186,9 @@ class ASTParser:
         """
         Parse a file and extract code blocks with hierarchical structure.
 
+        The file is read once; hashing, binary detection, decoding and parsing
+        all use that single buffer.
+
         Args:
             file_path: Path to the file to parse
 
@@ -133,11 +202,13 @@ class ASTParser:
         crc_result = zlib.crc32(str(file_path).encode())
         file_id = crc_result if crc_result >= 0 else crc_result + (2**32)
 
-        # Read file content once to preserve original formatting
-        file_content = read_file_content(file_path) or ""
+        # Read file once to preserve original formatting and compute its hash
+        ingested = ingest_file(file_path)
+        file_content = (ingested.text if ingested else None) or ""
+        content_hash = ingested.content_hash if ingested else ""
 
         # Parse the file first
-        ast_tree = self.parse_file(file_path)
+        ast_tree = self.parse_file(file_path, ingested) if ingested else None
         if not ast_tree:
             # Return a complete object with all required fields for failed parsing
             return {
@@ -147,7 +218,7 @@ class ASTParser:
                 "id": file_id,
                 "file_path": str(file_path),
                 "content": file_content,
-                "content_hash": compute_file_hash(file_path) or "",
+                "content_hash": content_hash,
                 "relationships": [],
                 "unsupported": True,
                 "error": "Failed to parse file",
@@ -164,7 +235,7 @@ class ASTParser:
                 "id": file_id,
                 "file_path": str(file_path),
                 "content": file_content,
-                "content_hash": compute_file_hash(file_path) or "",
+                "content_hash": content_hash,
                 "relationships": [],
                 "unsupported": True,  # Mark as unsupported file type
                 "error": f"Unsupported file type: {file_path}",
@@ -181,7 +252,7 @@ class ASTParser:
                 "id": file_id,
                 "file_path": str(file_path),
                 "content": file_content,
-                "content_hash": compute_file_hash(file_path) or "",
+                "content_hash": content_hash,
                 "relationships": [],
                 "unsupported": True,  # Mark as unsupported - no extractor available
                 "error": f"No extractor available for language '{language}': {file_path}",
@@ -197,13 +268,16 @@ class ASTParser:
             "id": file_id,
             "file_path": str(file_path),
             "content": file_content,
-            "content_hash": compute_file_hash(file_path) or "",
+            "content_hash": content_hash,
             "relationships": [],  # Initialize empty relationships list
             "unsupported": False,  # Mark as supported file type
         }
 
     def process_relationships(
-        self, results: Dict[str, Dict[str, Any]], id_to_path: Dict[int, str]
+        self,
+        results: Dict[str, Dict[str, Any]],
+        id_to_path: Dict[int, str],
+        module_registry: Optional[ModuleRegistry] = None,
     ) -> None:
         """
         Extract and process relationships between files based on import statements.
@@ -211,18 +285,22 @@ class ASTParser:
         Args:
             results: Dictionary with file paths as keys and extraction results as values
             id_to_path: Mapping from file IDs to file paths for efficient lookup
+            module_registry: Registry to resolve imports against (e.g. a project's
+                persisted one), instead of one built from results
         """
         if not results:
             return
 
         logger.debug("Extracting relationships between files...")
-        relationships = self._relationship_extractor.extract_relationships(results)
+        relationships = self._relationship_extractor.extract_relationships(
+            results, module_registry
+        )
 
-        # Remove AST trees after relationship extraction to save memory
-        # (relationships only need the extracted blocks, not the AST)
+        # Remove AST trees and parsed imports after relationship extraction to
+        # save memory (relationships only need the extracted blocks, not the AST)
         for result in results.values():
-            if "ast" in result:
-                del result["ast"]
+            result.pop("ast", None)
+            result.pop("imports", None)
 
         # Add relationships to the results using efficient ID mapping
         for relationship in relationships:
@@ -246,60 +324,150 @@ class ASTParser:
                     }
                 )
 
-    def extract_from_directory(
-        self, dir_path: Union[str, Path]
-    ) -> Dict[str, Dict[str, Any]]:
+    def _iter_directory_files(
+        self, dir_path: Path, listing: Optional[DirectoryListing] = None
+    ) -> Iterator[Path]:
         """
-        Parse all files in a directory and extract code blocks with hierarchical structure.
-        Also extracts relationships between files based on import statements.
+        Discover parseable files in a directory, skipping ignored directories and files.
 
         Args:
             dir_path: Path to the directory
+            listing: Listing of dir_path shared with other consumers of the run
+                (the directory is scanned here if None)
 
-        Returns:
-            Dictionary with file paths as keys and extraction results as values,
-            each result following the same format as parse_and_extract with added relationships
+        Yields:
+            Paths of files to parse, in os.walk order
+        """
+        if listing is None:
+            entries = iter_scan(dir_path, get_ignore_matcher(dir_path))
+        else:
+            entries = iter(listing)
+
+        base = str(dir_path)
+        for entry in entries:
+            yield Path(os.path.join(base, entry.relative_path))
+
+    def _parse_files_sequential(
+        self, file_paths: Iterator[Path]
+    ) -> Iterator[Tuple[Path, bool, Dict[str, Any]]]:
+        """Parse files one at a time in the current process."""
+        for file_path in file_paths:
+            result = self.parse_and_extract(file_path)
+            yield file_path, result.get("ast") is not None, result
+
+    def _parse_files_parallel(
+        self, file_paths: Iterator[Path], workers: int, queue_size: int
+    ) -> Iterator[Tuple[Path, bool, Dict[str, Any]]]:
+        """
+        Parse files in a pool of worker processes.
+
+        Discovery feeds at most queue_size pending files to the pool, and results
+        are yielded in discovery order so the output matches sequential parsing.
+        Results do not carry the tree-sitter AST.
+        """
+        pending = deque()
+
+        with ProcessPoolExecutor(
+            max_workers=workers, initializer=_init_parse_worker
+        ) as executor:
+            for file_path in file_paths:
+                pending.append(
+                    (file_path, executor.submit(_parse_in_worker, str(file_path)))
+                )
+
+                # Apply backpressure on discovery once the queue is full
+                if len(pending) >= queue_size:
+                    done_path, future = pending.popleft()
+                    has_ast, result = future.result()
+                    yield done_path, has_ast, result
+
+            while pending:
+                done_path, future = pending.popleft()
+                has_ast, result = future.result()
+                yield done_path, has_ast, result
+
+    def iter_parsed_files(
+        self,
+        dir_path: Union[str, Path],
+        parse_workers: Optional[int] = None,
+        listing: Optional[DirectoryListing] = None,
+    ) -> Iterator[Tuple[str, Dict[str, Any]]]:
+        """
+        Parse all files in a directory, yielding each extraction result as it is ready.
+
+        Results are yielded in discovery order and only for files that produced
+        an AST or an error. Relationships are not extracted; callers that need
+        them pass the collected results to process_relationships.
+
+        Args:
+            dir_path: Path to the directory
+            parse_workers: Number of parse worker processes (defaults to
+                config.indexing.parse_workers, 0 = one per CPU core, 1 = in-process)
+            listing: Listing of dir_path to discover files from, filled by this
+                scan if not yet complete, so later consumers can reuse it
+
+        Yields:
+            (file path, extraction result) pairs in the parse_and_extract format
         """
         dir_path = Path(dir_path)
-        results = {}
 
         if not dir_path.exists() or not dir_path.is_dir():
             logger.debug(f"Directory not found: {dir_path}")
-            return results
+            return
 
         logger.debug(f"Parsing and extracting from directory: {dir_path}")
 
-        # Create ID to path mapping for efficient relationship lookup
-        id_to_path = {}
+        workers = _resolve_parse_workers(parse_workers)
+        file_paths = self._iter_directory_files(dir_path, listing)
+
+        if workers > 1:
+            try:
+                from config import config
+
+                queue_size = max(config.indexing.parse_queue_size, workers)
+            except (ValueError, AttributeError):
+                queue_size = workers * 4
 
-        for root, dirs, files in os.walk(dir_path):
-            root_path = Path(root)
+            logger.debug(f"Parsing with {workers} worker processes")
+            parsed_files = self._parse_files_parallel(file_paths, workers, queue_size)
+        else:
+            parsed_files = self._parse_files_sequential(file_paths)
 
-            # Filter out ignored directories
-            original_dirs = dirs[:]
-            dirs[:] = [d for d in dirs if not should_ignore_directory(root_path / d)]
+        for file_path, has_ast, result in parsed_files:
+            if has_ast or result.get("error"):
+                yield str(file_path), result
 
-            ignored_dirs = set(original_dirs) - set(dirs)
-            for ignored_dir in ignored_dirs:
-                logger.debug(f"Ignoring directory: {root_path / ignored_dir}")
+    def extract_from_directory(
+        self, dir_path: Union[str, Path], parse_workers: Optional[int] = None
+    ) -> Dict[str, Dict[str, Any]]:
+        """
+        Parse all files in a directory and extract code blocks with hierarchical structure.
+        Also extracts relationships between files based on import statements.
+
+        Files are parsed by a pool of worker processes when more than one parse
+        worker is configured; relationship extraction runs after the pool drains.
+
+        Args:
+            dir_path: Path to the directory
+            parse_workers: Number of parse worker processes (defaults to
+                config.indexing.parse_workers, 0 = one per CPU core, 1 = in-process)
 
-            # Parse and extract from files in current directory
-            for file in files:
-                file_path = root_path / file
+        Returns:
+            Dictionary with file paths as keys and extraction results as values,
+            each result following the same format as parse_and_extract with added relationships
+        """
+        results = {}
 
-                # Skip ignored files
-                if should_ignore_file(file_path):
-                    continue
+        # Create ID to path mapping for efficient relationship lookup
+        id_to_path = {}
 
-                result = self.parse_and_extract(file_path)
-                if result.get("ast") or result.get("error"):
-                    file_path_str = str(file_path)
-                    results[file_path_str] = result
+        for file_path_str, result in self.iter_parsed_files(dir_path, parse_workers):
+            results[file_path_str] = result
 
-                    # Build ID to path mapping for efficient lookup
-                    file_id = result.get("id")
-                    if file_id:
-                        id_to_path[file_id] = file_path_str
+            # Build ID to path mapping for efficient lookup
+            file_id = result.get("id")
+            if file_id:
+                id_to_path[file_id] = file_path_str
 
         # Process relationships between files
         self.process_relationships(results, id_to_path)
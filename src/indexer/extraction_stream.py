@@ -0,0 +1,188 @@
+"""
+Streaming extraction results format.
+
+Extraction results are stored as newline-delimited JSON (NDJSON): a header
+record with the export metadata followed by one record per file. Writers emit
+a file at a time and readers yield a file at a time, so parse, database load
+and embedding stages never need the whole project in memory at once.
+
+    {"record": "metadata", "metadata": {...}}
+    {"record": "file", "file_path": "...", "data": {...}}
+
+The monolithic JSON export (".json") is still read and written for projects
+configured with indexing.extraction_format = "json".
+"""
+
+import json
+import re
+from datetime import datetime
+from pathlib import Path
+from typing import Any, Dict, Iterable, Iterator, Optional, Tuple, Union
+
+from loguru import logger
+
+from models.schema import FileData
+from utils.json_serializer import make_json_serializable
+
+EXTRACTOR_VERSION = "1.0.0"
+STREAM_FORMAT = "ndjson"
+
+# A record line starting with its "record" key, as ExtractionStreamWriter writes it
+_RECORD_KEY = re.compile(r'\s*\{\s*"record"\s*:\s*')
+_decoder = json.JSONDecoder()
+
+
+def is_extraction_stream(path: Union[str, Path]) -> bool:
+    """Check whether an extraction file uses the streaming format."""
+    return Path(path).suffix == f".{STREAM_FORMAT}"
+
+
+class ExtractionStreamWriter:
+    """
+    Writes a streaming extraction file one file record at a time.
+
+    Usable as a context manager; the file is complete once closed.
+    """
+
+    def __init__(self, output_file: Union[str, Path]):
+        self.output_path = Path(output_file)
+        self.output_path.parent.mkdir(parents=True, exist_ok=True)
+        self.file_count = 0
+
+        header = {
+            "record": "metadata",
+            "metadata": {
+                "export_timestamp": datetime.now().isoformat(),
+                "extractor_version": EXTRACTOR_VERSION,
+                "format": STREAM_FORMAT,
+            },
+        }
+        self._file = open(self.output_path, "w", encoding="utf-8")
+        self._file.write(json.dumps(header, ensure_ascii=False) + "\n")
+
+    def write(self, file_path: Union[str, Path], result: Any) -> None:
+        """Append one file's extraction result dict or FileData."""
+        if hasattr(result, "model_dump"):
+            data = result.model_dump(mode="json")
+        else:
+            data = make_json_serializable(result)
+
+        record = {"record": "file", "file_path": str(file_path), "data": data}
+        self._file.write(json.dumps(record, ensure_ascii=False) + "\n")
+        self.file_count += 1
+
+    def close(self) -> None:
+        if not self._file.closed:
+            self._file.close()
+            logger.debug(
+                f"💾 Wrote {self.file_count} file records to {self.output_path}"
+            )
+
+    def __enter__(self) -> "ExtractionStreamWriter":
+        return self
+
+    def __exit__(self, *exc_info: Any) -> None:
+        self.close()
+
+
+def write_extraction_stream(
+    results: Iterable[Tuple[str, Any]], output_file: Union[str, Path]
+) -> int:
+    """
+    Write extraction results to a streaming extraction file.
+
+    Args:
+        results: (file path, extraction result dict or FileData) pairs
+        output_file: Path to the output file
+
+    Returns:
+        Number of file records written
+    """
+    with ExtractionStreamWriter(output_file) as writer:
+        for file_path, result in results:
+            writer.write(file_path, result)
+    return writer.file_count
+
+
+def iter_extraction_records(
+    extraction_file: Union[str, Path],
+) -> Iterator[Tuple[str, Dict[str, Any]]]:
+    """
+    Iterate raw (file path, result dict) pairs from an extraction file.
+
+    Streaming files are read one line at a time; monolithic JSON files are
+    loaded whole and then iterated.
+
+    Args:
+        extraction_file: Path to a ".ndjson" or ".json" extraction file
+
+    Yields:
+        (file path, raw file result dict) pairs
+    """
+    path = Path(extraction_file)
+    if not path.exists():
+        raise FileNotFoundError(f"File not found: {extraction_file}")
+
+    if not is_extraction_stream(path):
+        with open(path, "r", encoding="utf-8") as f:
+            files = json.load(f).get("files", {})
+        yield from files.items()
+        return
+
+    with open(path, "r", encoding="utf-8") as f:
+        for line in f:
+            if not line.strip():
+                continue
+
+            record = json.loads(line)
+            if record.get("record") == "file":
+                yield record["file_path"], record["data"]
+
+
+def iter_extraction_files(
+    extraction_file: Union[str, Path],
+    file_paths: Optional[Iterable[Union[str, Path]]] = None,
+) -> Iterator[Tuple[str, FileData]]:
+    """
+    Iterate (file path, FileData) pairs from an extraction file.
+
+    Args:
+        extraction_file: Path to a ".ndjson" or ".json" extraction file
+        file_paths: Only yield these files (all files when None)
+
+    Yields:
+        (file path, FileData) pairs
+    """
+    wanted = {str(p) for p in file_paths} if file_paths is not None else None
+
+    for file_path, data in iter_extraction_records(extraction_file):
+        if wanted is not None and file_path not in wanted:
+            continue
+        yield file_path, FileData(**data)
+
+
+def count_extraction_files(extraction_file: Union[str, Path]) -> int:
+    """Count file records in an extraction file without building models."""
+    path = Path(extraction_file)
+
+    if not is_extraction_stream(path):
+        return sum(1 for _ in iter_extraction_records(path))
+
+    with open(path, "r", encoding="utf-8") as f:
+        return sum(1 for line in f if _record_type(line) == "file")
+
+
+def _record_type(line: str) -> Optional[str]:
+    """
+    The "record" value of a stream line.
+
+    Only that value is decoded when the key comes first, so counting does not
+    parse the file data; other lines are parsed whole.
+    """
+    if not line.strip():
+        return None
+
+    match = _RECORD_KEY.match(line)
+    if match:
+        return _decoder.raw_decode(line, match.end())[0]
+    return json.loads(line).get("record")
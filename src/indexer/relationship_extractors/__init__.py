@@ -6,20 +6,32 @@ Supports TypeScript and Python initially, with extensible design for other langu
 """
 
 from abc import ABC, abstractmethod
-from typing import Any, Dict, List, Optional
+from pathlib import Path
+from typing import Any, Dict, Iterable, List, Optional, Set, Tuple
 
-from tree_sitter_language_pack import SupportedLanguage
+from tree_sitter_language_pack import SupportedLanguage, get_parser
 
-from models.schema import Relationship
+from models.schema import BlockType, Relationship
+
+from .module_registry import InMemoryModuleRegistry, ModuleRegistry, name_key
 
 
 class BaseRelationshipExtractor(ABC):
     """Base class for language-specific relationship extractors."""
 
+    # Tree-sitter grammar used to parse import statements
+    import_language: SupportedLanguage
+
     def __init__(self):
         """Initialize the relationship extractor."""
         # Note: Auto-registration removed - extractors are now registered explicitly
-        pass
+        self._import_parser = None
+
+    def _get_import_parser(self):
+        """Tree-sitter parser for import statements, created once per extractor."""
+        if self._import_parser is None:
+            self._import_parser = get_parser(self.import_language)
+        return self._import_parser
 
     def _safe_text_extract(self, node) -> str:
         """Safely extract text from a tree-sitter node, handling both bytes and string cases."""
@@ -33,11 +45,87 @@ class BaseRelationshipExtractor(ABC):
 
     @abstractmethod
     def extract_relationships(
-        self, extraction_results: Dict[str, Dict[str, Any]]
+        self,
+        extraction_results: Dict[str, Dict[str, Any]],
+        module_registry: Optional[ModuleRegistry] = None,
     ) -> List[Relationship]:
-        """Extract relationships between files based on import statements."""
+        """
+        Extract relationships between files based on import statements.
+
+        Imports resolve against module_registry when given, otherwise against
+        a registry of the extraction results themselves.
+        """
+        pass
+
+    @abstractmethod
+    def _parse_import_statement(self, import_content: str) -> Optional[Dict[str, Any]]:
+        """Parse an import statement into module name, symbols and flags."""
         pass
 
+    @abstractmethod
+    def _get_potential_module_names(self, file_path: Path) -> List[str]:
+        """Get the module names a file can be imported by."""
+        pass
+
+    def parse_imports(self, result: Dict[str, Any]) -> List[Tuple[str, Dict[str, Any]]]:
+        """(import content, parsed import) of each parseable import block of a file."""
+        return self.parse_import_contents(
+            getattr(block, "content", "")
+            for block in result.get("blocks", [])
+            if getattr(block, "type", None) == BlockType.IMPORT
+        )
+
+    def parse_import_contents(
+        self, contents: Iterable[str]
+    ) -> List[Tuple[str, Dict[str, Any]]]:
+        """(import content, parsed import) of each parseable import statement."""
+        imports = []
+        for content in contents:
+            import_info = self._parse_import_statement(content)
+            if import_info:
+                imports.append((content, import_info))
+        return imports
+
+    def import_name_keys(
+        self, imports: Iterable[Tuple[str, Dict[str, Any]]]
+    ) -> Set[str]:
+        """
+        Keys (see name_key) of the module names parsed imports resolve through.
+
+        A file registering a name with one of these keys may change where the
+        imports resolve.
+        """
+        keys = {name_key(import_info["module_name"]) for _, import_info in imports}
+        keys.discard("")
+        return keys
+
+    def _get_imports(self, result: Dict[str, Any]) -> List[Tuple[str, Dict[str, Any]]]:
+        """Parsed imports of a file, as parse workers left them or parsed now."""
+        imports = result.get("imports")
+        if imports is None:
+            imports = self.parse_imports(result)
+        return imports
+
+    def _build_module_registry(
+        self, extraction_results: Dict[str, Dict[str, Any]]
+    ) -> InMemoryModuleRegistry:
+        """Build a registry mapping module paths to file IDs from extraction results."""
+        registry = InMemoryModuleRegistry()
+
+        for file_path, result in extraction_results.items():
+            file_id = result.get("id")
+            if not file_id:
+                continue
+
+            registry.add(
+                result.get("language"),
+                self._get_potential_module_names(Path(file_path)),
+                file_id,
+                file_path,
+            )
+
+        return registry
+
 
 class RelationshipExtractor:
     """Main extractor that uses language-specific relationship extractors."""
@@ -45,6 +133,8 @@ class RelationshipExtractor:
     def __init__(self):
         """Initialize the extractor."""
         self._extractors = {}
+        # language -> extractor instance, reused so import parsers are cached
+        self._instances: Dict[str, BaseRelationshipExtractor] = {}
         self._setup_extractors()
 
     def _setup_extractors(self):
@@ -61,15 +151,81 @@ class RelationshipExtractor:
     ) -> None:
         """Register an extractor for a specific language."""
         self._extractors[language] = extractor_class
+        self._instances.pop(language, None)
+
+    def _get_extractor(
+        self, language: Optional[str]
+    ) -> Optional[BaseRelationshipExtractor]:
+        """The extractor instance for a language, if supported."""
+        if language not in self._extractors:
+            return None
+        if language not in self._instances:
+            self._instances[language] = self._extractors[language]()
+        return self._instances[language]
 
     def get_supported_languages(self) -> List[str]:
         """Get list of supported languages."""
         return list(self._extractors.keys())
 
-    def extract_relationships(
+    def get_module_names(self, language: Optional[str], file_path: str) -> List[str]:
+        """Module names a file registers in a module registry (none if unsupported)."""
+        extractor = self._get_extractor(language)
+        if extractor is None:
+            return []
+        return extractor._get_potential_module_names(Path(file_path))
+
+    def build_module_registry(
         self, extraction_results: Dict[str, Dict[str, Any]]
+    ) -> InMemoryModuleRegistry:
+        """Registry of every supported file in extraction_results."""
+        registry = InMemoryModuleRegistry()
+        for file_path, result in extraction_results.items():
+            file_id = result.get("id")
+            language = result.get("language")
+            if file_id:
+                registry.add(
+                    language,
+                    self.get_module_names(language, file_path),
+                    file_id,
+                    file_path,
+                )
+        return registry
+
+    def parse_imports(self, result: Dict[str, Any]) -> List[Tuple[str, Dict[str, Any]]]:
+        """Parsed import blocks of an extraction result, for extract_relationships."""
+        extractor = self._get_extractor(result.get("language"))
+        if extractor is None:
+            return []
+        return extractor.parse_imports(result)
+
+    def import_name_keys(self, result: Dict[str, Any]) -> Set[str]:
+        """Name keys of an extraction result's imports (none if unsupported)."""
+        extractor = self._get_extractor(result.get("language"))
+        if extractor is None:
+            return set()
+        return extractor.import_name_keys(extractor._get_imports(result))
+
+    def parse_import_contents(
+        self, language: str, contents: Iterable[str]
+    ) -> List[Tuple[str, Dict[str, Any]]]:
+        """Parsed import statements of a language, e.g. stored import blocks."""
+        extractor = self._get_extractor(language)
+        if extractor is None:
+            return []
+        return extractor.parse_import_contents(contents)
+
+    def extract_relationships(
+        self,
+        extraction_results: Dict[str, Dict[str, Any]],
+        module_registry: Optional[ModuleRegistry] = None,
     ) -> List[Relationship]:
-        """Extract relationships between files based on import statements."""
+        """
+        Extract relationships between files based on import statements.
+
+        Without a module_registry, imports resolve among extraction_results
+        only; with one (e.g. a project's persisted registry), extraction_results
+        can be just the files whose imports need resolving.
+        """
         relationships = []
 
         # Group files by language
@@ -83,10 +239,10 @@ class RelationshipExtractor:
 
         # Process each language with its specific extractor
         for language, language_results in files_by_language.items():
-            if language in self._extractors:
-                extractor = self._extractors[language]()
+            extractor = self._get_extractor(language)
+            if extractor is not None:
                 language_relationships = extractor.extract_relationships(
-                    language_results
+                    language_results, module_registry
                 )
                 relationships.extend(language_relationships)
 
@@ -97,4 +253,6 @@ __all__ = [
     "Relationship",
     "BaseRelationshipExtractor",
     "RelationshipExtractor",
+    "ModuleRegistry",
+    "InMemoryModuleRegistry",
 ]
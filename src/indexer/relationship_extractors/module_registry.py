@@ -0,0 +1,107 @@
+"""
+Registry of importable module names.
+
+Each file registers, for its language, every name it can be imported by (see
+the extractors' _get_potential_module_names). Imports resolve by exact name
+first, then by partial match:
+  - a registered name ending with the imported name, else
+  - the longest registered name the imported name ends with
+
+When several files register the same name, the file with the shortest path
+wins (ties broken by path), so resolution does not depend on file order.
+
+InMemoryModuleRegistry serves a batch of extraction results; the graph package
+persists the same registry per project, so incremental indexing resolves a
+changed file's imports without loading the whole project.
+"""
+
+import re
+from abc import ABC, abstractmethod
+from bisect import bisect_left
+from typing import Dict, Iterable, List, Optional, Sequence, Tuple
+
+_NAME_SEPARATORS = re.compile(r"[./\\]")
+
+
+def reversed_name(module_name: str) -> str:
+    """Module name reversed, so suffix matches become prefix ranges."""
+    return module_name[::-1]
+
+
+def name_key(module_name: str) -> str:
+    """Last component of a module name, e.g. "util" for "pkg.util" or "../lib/util"."""
+    return _NAME_SEPARATORS.split(module_name.rstrip("./\\"))[-1]
+
+
+def prefix_range(prefix: str) -> Tuple[str, str]:
+    """[low, high) bounds of the strings starting with prefix, in code point order."""
+    return prefix, prefix[:-1] + chr(ord(prefix[-1]) + 1)
+
+
+def name_suffixes(module_name: str) -> List[str]:
+    """Proper suffixes of a module name, longest first."""
+    return [module_name[i:] for i in range(1, len(module_name))]
+
+
+class ModuleRegistry(ABC):
+    """Module name -> file id lookups for relationship extraction."""
+
+    @abstractmethod
+    def resolve(self, language: str, names: Sequence[str]) -> Optional[int]:
+        """File id of the first of names that is registered."""
+        pass
+
+    @abstractmethod
+    def resolve_partial(self, language: str, module_name: str) -> Optional[int]:
+        """File id of a registered name partially matching module_name."""
+        pass
+
+
+class InMemoryModuleRegistry(ModuleRegistry):
+    """Module registry held in dictionaries, built from extraction results."""
+
+    def __init__(self):
+        # language -> module name -> ((path length, path), file id)
+        self._names: Dict[str, Dict[str, Tuple[Tuple[int, str], int]]] = {}
+        # language -> sorted reversed names, built on first partial lookup
+        self._reversed: Dict[str, List[str]] = {}
+
+    def add(
+        self, language: str, module_names: Iterable[str], file_id: int, file_path: str
+    ) -> None:
+        """Register a file under its module names."""
+        names = self._names.setdefault(language, {})
+        rank = (len(file_path), file_path)
+        for module_name in module_names:
+            current = names.get(module_name)
+            if current is None or rank < current[0]:
+                names[module_name] = (rank, file_id)
+        self._reversed.pop(language, None)
+
+    def resolve(self, language: str, names: Sequence[str]) -> Optional[int]:
+        registered = self._names.get(language, {})
+        for module_name in names:
+            entry = registered.get(module_name)
+            if entry is not None:
+                return entry[1]
+        return None
+
+    def resolve_partial(self, language: str, module_name: str) -> Optional[int]:
+        registered = self._names.get(language, {})
+        if not module_name or not registered:
+            return None
+
+        reversed_names = self._reversed.get(language)
+        if reversed_names is None:
+            reversed_names = sorted(reversed_name(name) for name in registered)
+            self._reversed[language] = reversed_names
+
+        low, high = prefix_range(reversed_name(module_name))
+        start = bisect_left(reversed_names, low)
+        end = bisect_left(reversed_names, high, start)
+        if start < end:
+            return min(
+                registered[reversed_name(name)] for name in reversed_names[start:end]
+            )[1]
+
+        return self.resolve(language, name_suffixes(module_name))
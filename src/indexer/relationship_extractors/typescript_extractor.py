@@ -7,25 +7,31 @@ without file system lookups.
 
 import os
 from pathlib import Path
-from typing import Any, Dict, List, Optional, Set, Union
+from typing import Any, Dict, Iterable, List, Optional, Set, Tuple, Union
 
-from tree_sitter_language_pack import get_language, get_parser
-
-from indexer.extractors import BlockType
-from indexer.relationship_extractors import BaseRelationshipExtractor, Relationship
+from indexer.relationship_extractors import (
+    BaseRelationshipExtractor,
+    ModuleRegistry,
+    Relationship,
+)
 
 
 class TypeScriptRelationshipExtractor(BaseRelationshipExtractor):
     """Extractor for relationships between TypeScript/JavaScript files using only extraction results data."""
 
+    import_language = "typescript"
+
     def extract_relationships(
-        self, extraction_results: Dict[str, Dict[str, Any]]
+        self,
+        extraction_results: Dict[str, Dict[str, Any]],
+        module_registry: Optional[ModuleRegistry] = None,
     ) -> List[Relationship]:
         """Extract relationships between TypeScript files based on import statements."""
         relationships = []
 
         # Build a registry of available modules from extraction results
-        module_registry = self._build_module_registry(extraction_results)
+        if module_registry is None:
+            module_registry = self._build_module_registry(extraction_results)
 
         # Process each file's extraction results
         for source_file_path, result in extraction_results.items():
@@ -33,29 +39,13 @@ class TypeScriptRelationshipExtractor(BaseRelationshipExtractor):
             source_file_id = result.get("id")
             if not source_file_id:
                 continue
+            language = result.get("language", self.import_language)
 
-            # Get all import blocks from this file
-            blocks = result.get("blocks", [])
-            import_blocks = [
-                block
-                for block in blocks
-                if hasattr(block, "type") and block.type == BlockType.IMPORT
-            ]
-
-            # Process each import block
-            for import_block in import_blocks:
-                content = (
-                    import_block.content if hasattr(import_block, "content") else ""
-                )
-
-                # Parse the import statement to extract detailed information
-                import_info = self._parse_import_statement(content)
-                if not import_info:
-                    continue
-
+            # Process each parsed import block
+            for content, import_info in self._get_imports(result):
                 # Resolve the import to a target file using our module registry
                 target_file_id = self._resolve_import_from_registry(
-                    source_file_path, import_info, module_registry
+                    source_file_path, import_info, module_registry, language
                 )
 
                 if target_file_id:
@@ -70,27 +60,21 @@ class TypeScriptRelationshipExtractor(BaseRelationshipExtractor):
 
         return relationships
 
-    def _build_module_registry(
-        self, extraction_results: Dict[str, Dict[str, Any]]
-    ) -> Dict[str, str]:
-        """Build a registry mapping module paths to file IDs from extraction results."""
-        registry = {}
-
-        for file_path, result in extraction_results.items():
-            file_id = result.get("id")
-            if not file_id:
-                continue
-
-            # Convert file path to potential module names
-            path_obj = Path(file_path)
-
-            # Get the module path relative to different possible roots
-            module_names = self._get_potential_module_names(path_obj)
-
-            for module_name in module_names:
-                registry[module_name] = file_id
-
-        return registry
+    def import_name_keys(
+        self, imports: Iterable[Tuple[str, Dict[str, Any]]]
+    ) -> Set[str]:
+        """Name keys of the imports, with file names also keyed without extension.
+
+        "./util.js" and "./user.service" resolve through the names of util.ts
+        and user.ts (see _resolve_relative_import).
+        """
+        imports = list(imports)
+        keys = super().import_name_keys(imports)
+        for _, import_info in imports:
+            file_name = import_info["module_name"].rstrip("/").rsplit("/", 1)[-1]
+            if file_name and not file_name.startswith("."):
+                keys.add(file_name.split(".")[0])
+        return keys
 
     def _get_potential_module_names(self, file_path: Path) -> List[str]:
         """Get potential module names for a TypeScript/JavaScript file path."""
@@ -137,7 +121,7 @@ class TypeScriptRelationshipExtractor(BaseRelationshipExtractor):
         """Parse a TypeScript import statement using manual AST traversal to extract detailed information."""
         try:
             # Get the TypeScript parser
-            parser = get_parser("typescript")
+            parser = self._get_import_parser()
             tree = parser.parse(bytes(import_content.strip(), "utf-8"))
 
             # Extract information using manual traversal
@@ -341,22 +325,29 @@ class TypeScriptRelationshipExtractor(BaseRelationshipExtractor):
         self,
         source_file_path: str,
         import_info: Dict[str, Any],
-        module_registry: Dict[str, str],
-    ) -> Optional[str]:
+        module_registry: ModuleRegistry,
+        language: str,
+    ) -> Optional[int]:
         """Resolve an import to a file ID using the module registry."""
         module_name = import_info["module_name"]
         is_relative = import_info["is_relative"]
 
         if is_relative:
             return self._resolve_relative_import(
-                source_file_path, module_name, module_registry
+                source_file_path, module_name, module_registry, language
             )
         else:
-            return self._resolve_absolute_import(module_name, module_registry)
+            return self._resolve_absolute_import(
+                module_name, module_registry, language
+            )
 
     def _resolve_relative_import(
-        self, source_file_path: str, module_name: str, module_registry: Dict[str, str]
-    ) -> Optional[str]:
+        self,
+        source_file_path: str,
+        module_name: str,
+        module_registry: ModuleRegistry,
+        language: str,
+    ) -> Optional[int]:
         """Resolve a relative import using the module registry."""
         source_path = Path(source_file_path)
         source_dir = source_path.parent
@@ -400,11 +391,7 @@ class TypeScriptRelationshipExtractor(BaseRelationshipExtractor):
             possible_names.extend(self._get_potential_module_names(index_path))
 
         # Look for matches in registry
-        for name in possible_names:
-            if name in module_registry:
-                return module_registry[name]
-
-        return None
+        return module_registry.resolve(language, possible_names)
 
     def _is_dynamic_import_call_node(self, node) -> bool:
         """Check if a call_expression node is a dynamic import call."""
@@ -450,28 +437,19 @@ class TypeScriptRelationshipExtractor(BaseRelationshipExtractor):
         return None
 
     def _resolve_absolute_import(
-        self, module_name: str, module_registry: Dict[str, str]
-    ) -> Optional[str]:
+        self, module_name: str, module_registry: ModuleRegistry, language: str
+    ) -> Optional[int]:
         """Resolve an absolute import using the module registry."""
         # For absolute imports that aren't relative paths, try to find matches
         # in the registry by checking if any registered names end with the module name
 
-        # Direct lookup first
-        if module_name in module_registry:
-            return module_registry[module_name]
-
-        # Try with common path prefixes
-        common_prefixes = ["src/", "lib/", "dist/", ""]
-        for prefix in common_prefixes:
-            prefixed_name = prefix + module_name
-            if prefixed_name in module_registry:
-                return module_registry[prefixed_name]
+        # Direct lookup first, then with common path prefixes
+        common_prefixes = ["", "src/", "lib/", "dist/"]
+        file_id = module_registry.resolve(
+            language, [prefix + module_name for prefix in common_prefixes]
+        )
+        if file_id is not None:
+            return file_id
 
         # Try looking for partial matches
-        for registered_name, file_id in module_registry.items():
-            if registered_name.endswith(module_name):
-                return file_id
-            if module_name.endswith(registered_name):
-                return file_id
-
-        return None
+        return module_registry.resolve_partial(language, module_name)
@@ -8,15 +8,22 @@ Architecture: Agent gets actionable data, never sees raw IDs or database complex
 # BACKGROUND QUERIES - Auto-Conversion (Never Exposed to Agent)
 # ============================================================================
 
+# Content columns go through stored_content() (see graph.content_store), which
+# returns inline content as is and decompresses content_storage="compressed"
+# rows
+
 GET_CODE_BLOCK_BY_ID = """
 SELECT
-    cb.id, cb.type, cb.name, cb.content, cb.start_line, cb.end_line,
+    cb.id, cb.type, cb.name,
+    stored_content(cb.content, cb.content_key, cs.data, cb.start_byte, cb.end_byte) as content,
+    cb.start_line, cb.end_line,
     cb.start_col, cb.end_col, cb.parent_block_id,
     f.file_path, f.language, f.id as file_id,
     p.name as project_name, p.id as project_id
 FROM code_blocks cb
 JOIN files f ON cb.file_id = f.id
 JOIN projects p ON f.project_id = p.id
+LEFT JOIN content_store cs ON cs.content_key = cb.content_key
 WHERE cb.id = ?
 """
 
@@ -32,22 +39,61 @@ WHERE cb.file_id = ?
 ORDER BY cb.start_line
 """
 
+# Lexical search over the FTS5 indexes; bm25() is lower for better matches and
+# weighs block names ten times their content
+SEARCH_CODE_BLOCKS_FTS = """
+SELECT
+    cb.id, cb.start_line, cb.end_line,
+    bm25(code_blocks_fts, 10.0, 1.0) as rank
+FROM code_blocks_fts
+JOIN code_blocks cb ON cb.id = code_blocks_fts.rowid
+JOIN files f ON cb.file_id = f.id
+WHERE code_blocks_fts MATCH ? AND (? IS NULL OR f.project_id = ?)
+ORDER BY rank
+LIMIT ?
+"""
+
+SEARCH_FILES_FTS = """
+SELECT
+    f.id, bm25(files_fts) as rank
+FROM files_fts
+JOIN files f ON f.id = files_fts.rowid
+WHERE files_fts MATCH ? AND (? IS NULL OR f.project_id = ?)
+ORDER BY rank
+LIMIT ?
+"""
+
 # ============================================================================
 # EXPOSED QUERIES
 # ============================================================================
 
 GET_FILE_BY_ID = """
 SELECT
-    f.id, f.file_path, f.language, f.content, f.content_hash,
+    f.id, f.file_path, f.language,
+    stored_content(f.content, f.content_key, cs.data, NULL, NULL) as content,
+    f.content_hash,
     p.name as project_name, p.id as project_id,
     COUNT(cb.id) as block_count
 FROM files f
 JOIN projects p ON f.project_id = p.id
+LEFT JOIN content_store cs ON cs.content_key = f.content_key
 LEFT JOIN code_blocks cb ON f.id = cb.file_id
 WHERE f.id = ?
 GROUP BY f.id
 """
 
+# Same columns as GET_FILE_BY_ID, with empty content, for line range reads
+GET_FILE_METADATA_BY_ID = """
+SELECT
+    f.id, f.file_path, f.language, '' as content, f.content_hash,
+    p.name as project_name, p.id as project_id,
+    COUNT(cb.id) as block_count
+FROM files f
+JOIN projects p ON f.project_id = p.id
+LEFT JOIN code_blocks cb ON f.id = cb.file_id
+WHERE f.id = ?
+GROUP BY f.id
+"""
 
 GET_FILE_BLOCK_SUMMARY = """
 SELECT
@@ -117,6 +163,40 @@ ORDER BY depth, file_path
 LIMIT 25
 """
 
+# ============================================================================
+# IMPORT GRAPH - whole-database reads behind graph.import_graph
+# ============================================================================
+
+# Changes with any insert or delete in the tables the import graph reads,
+# including raw writes that do not bump graph_generation
+GET_IMPORT_GRAPH_FINGERPRINT = """
+SELECT (SELECT MAX(rowid) FROM files), (SELECT COUNT(*) FROM files),
+       (SELECT MAX(rowid) FROM relationships), (SELECT COUNT(*) FROM relationships),
+       (SELECT MAX(rowid) FROM connection_mappings),
+       (SELECT COUNT(*) FROM connection_mappings)
+"""
+
+GET_IMPORT_GRAPH_FILES = """
+SELECT id, file_path, project_id FROM files ORDER BY id
+"""
+
+GET_IMPORT_GRAPH_EDGES = """
+SELECT DISTINCT source_id, target_id FROM relationships
+ORDER BY source_id, target_id
+"""
+
+# File-level links of mapped connections: the file making a call and the file
+# receiving it, with the best confidence among their mappings
+GET_IMPORT_GRAPH_LINKS = """
+SELECT oc.file_id as sender_file_id, ic.file_id as receiver_file_id,
+       MAX(cm.match_confidence) as match_confidence
+FROM connection_mappings cm
+JOIN outgoing_connections oc ON cm.sender_id = oc.id
+JOIN incoming_connections ic ON cm.receiver_id = ic.id
+WHERE oc.file_id != ic.file_id
+GROUP BY oc.file_id, ic.file_id
+"""
+
 # ============================================================================
 # Others
 # ============================================================================
@@ -201,7 +281,11 @@ ORDER BY f.file_path, direction
 LIMIT 25
 """
 
-GET_CONNECTION_IMPACT = """
+# Connection mappings count toward a file's impact above this match_confidence,
+# here and in the transitive impact walk (graph.import_graph)
+CONNECTION_IMPACT_MIN_CONFIDENCE = 0.5
+
+GET_CONNECTION_IMPACT = f"""
 SELECT
     COALESCE(oc.technology_name, ic.technology_name) as technology_name, cm.description, cm.match_confidence,
     CASE
@@ -228,7 +312,174 @@ LEFT JOIN files if2 ON ic2.file_id = if2.id
 LEFT JOIN files of2 ON oc2.file_id = of2.id
 LEFT JOIN projects ip2 ON if2.project_id = ip2.id
 LEFT JOIN projects op2 ON of2.project_id = op2.id
-WHERE (ic.file_id = ? OR oc.file_id = ?) AND cm.match_confidence > 0.5
+WHERE (ic.file_id = ? OR oc.file_id = ?) AND cm.match_confidence > {CONNECTION_IMPACT_MIN_CONFIDENCE}
 ORDER BY cm.match_confidence DESC
 LIMIT 15
 """
+
+# ============================================================================
+# BATCHED ENRICHMENT QUERIES - one query per kind for a set of search hits,
+# {ids} is replaced with a "?,?,..." placeholder list
+# ============================================================================
+
+GET_CODE_BLOCKS_BY_IDS = """
+SELECT
+    cb.id, cb.type, cb.name,
+    stored_content(cb.content, cb.content_key, cs.data, cb.start_byte, cb.end_byte) as content,
+    cb.start_line, cb.end_line,
+    cb.start_col, cb.end_col, cb.parent_block_id,
+    f.file_path, f.language, f.id as file_id,
+    p.name as project_name, p.id as project_id
+FROM code_blocks cb
+JOIN files f ON cb.file_id = f.id
+JOIN projects p ON f.project_id = p.id
+LEFT JOIN content_store cs ON cs.content_key = cb.content_key
+WHERE cb.id IN ({ids})
+"""
+
+GET_CHILD_BLOCKS_BY_PARENT_IDS = """
+SELECT
+    cb.parent_block_id, cb.id, cb.type, cb.name, cb.start_line, cb.end_line
+FROM code_blocks cb
+WHERE cb.parent_block_id IN ({ids})
+ORDER BY cb.start_line
+"""
+
+GET_FILES_BY_IDS = """
+SELECT
+    f.id, f.file_path, f.language,
+    stored_content(f.content, f.content_key, cs.data, NULL, NULL) as content,
+    f.content_hash,
+    p.name as project_name, p.id as project_id,
+    COUNT(cb.id) as block_count
+FROM files f
+JOIN projects p ON f.project_id = p.id
+LEFT JOIN content_store cs ON cs.content_key = f.content_key
+LEFT JOIN code_blocks cb ON f.id = cb.file_id
+WHERE f.id IN ({ids})
+GROUP BY f.id
+"""
+
+# Same columns as GET_FILES_BY_IDS, with empty content
+GET_FILE_METADATA_BY_IDS = """
+SELECT
+    f.id, f.file_path, f.language, '' as content, f.content_hash,
+    p.name as project_name, p.id as project_id,
+    COUNT(cb.id) as block_count
+FROM files f
+JOIN projects p ON f.project_id = p.id
+LEFT JOIN code_blocks cb ON f.id = cb.file_id
+WHERE f.id IN ({ids})
+GROUP BY f.id
+"""
+
+GET_CONNECTION_MAPPINGS_FOR_FILES = """
+SELECT
+    oc.file_id as sender_file_id,
+    ic.file_id as receiver_file_id,
+    cm.id as mapping_id,
+    COALESCE(oc.technology_name, ic.technology_name) as technology_name,
+    cm.description as mapping_description,
+    cm.match_confidence,
+    oc.id as sender_id,
+    oc.description as sender_description,
+    oc.code_snippet as sender_code_snippet,
+    oc.technology_name as sender_technology,
+    oc.start_line as sender_start_line,
+    oc.end_line as sender_end_line,
+    sender_file.file_path as sender_file_path,
+    sender_file.language as sender_language,
+    sender_project.name as sender_project,
+    ic.id as receiver_id,
+    ic.description as receiver_description,
+    ic.code_snippet as receiver_code_snippet,
+    ic.technology_name as receiver_technology,
+    ic.start_line as receiver_start_line,
+    ic.end_line as receiver_end_line,
+    receiver_file.file_path as receiver_file_path,
+    receiver_file.language as receiver_language,
+    receiver_project.name as receiver_project
+FROM connection_mappings cm
+JOIN outgoing_connections oc ON cm.sender_id = oc.id
+JOIN incoming_connections ic ON cm.receiver_id = ic.id
+LEFT JOIN files sender_file ON oc.file_id = sender_file.id
+LEFT JOIN files receiver_file ON ic.file_id = receiver_file.id
+LEFT JOIN projects sender_project ON sender_file.project_id = sender_project.id
+LEFT JOIN projects receiver_project ON receiver_file.project_id = receiver_project.id
+WHERE (oc.file_id IN ({ids}) OR ic.file_id IN ({ids}))
+ORDER BY cm.match_confidence DESC, cm.created_at DESC
+"""
+
+GET_INCOMING_CONNECTIONS_FOR_FILES = """
+SELECT
+    ic.file_id as anchor_file_id,
+    ic.id, ic.description, ic.start_line, ic.end_line, ic.technology_name,
+    ic.code_snippet, ic.created_at,
+    f.file_path as target_file_path, f.language as target_language,
+    p.name as target_project_name, p.id as target_project_id,
+    oc.technology_name as source_technology_name, cm.match_confidence,
+    oc.description as source_description,
+    sf.file_path as source_file_path, sf.language as source_language,
+    sp.name as source_project_name, sp.id as source_project_id,
+    'incoming' as direction
+FROM incoming_connections ic
+JOIN files f ON ic.file_id = f.id
+JOIN projects p ON f.project_id = p.id
+LEFT JOIN connection_mappings cm ON ic.id = cm.receiver_id
+LEFT JOIN outgoing_connections oc ON cm.sender_id = oc.id
+LEFT JOIN files sf ON oc.file_id = sf.id
+LEFT JOIN projects sp ON sf.project_id = sp.id
+WHERE ic.file_id IN ({ids})
+ORDER BY ic.created_at DESC, cm.match_confidence DESC
+"""
+
+GET_OUTGOING_CONNECTIONS_FOR_FILES = """
+SELECT
+    oc.file_id as anchor_file_id,
+    oc.id, oc.description, oc.start_line, oc.end_line, oc.technology_name,
+    oc.code_snippet, oc.created_at,
+    f.file_path as source_file_path, f.language as source_language,
+    p.name as source_project_name, p.id as source_project_id,
+    ic.technology_name as target_technology_name, cm.match_confidence,
+    ic.description as target_description,
+    tf.file_path as target_file_path, tf.language as target_language,
+    tp.name as target_project_name, tp.id as target_project_id,
+    'outgoing' as direction
+FROM outgoing_connections oc
+JOIN files f ON oc.file_id = f.id
+JOIN projects p ON f.project_id = p.id
+LEFT JOIN connection_mappings cm ON oc.id = cm.sender_id
+LEFT JOIN incoming_connections ic ON cm.receiver_id = ic.id
+LEFT JOIN files tf ON ic.file_id = tf.id
+LEFT JOIN projects tp ON tf.project_id = tp.id
+WHERE oc.file_id IN ({ids})
+ORDER BY oc.created_at DESC, cm.match_confidence DESC
+"""
+
+GET_MAPPED_OUTGOING_FOR_INCOMING_IDS = """
+SELECT cm.receiver_id as anchor_connection_id,
+       cm.id as mapping_id, oc.technology_name, cm.description as mapping_description,
+       cm.match_confidence, cm.created_at as mapping_created_at,
+       oc.id as outgoing_id, oc.description as outgoing_description,
+       oc.code_snippet as outgoing_code_snippet, oc.technology_name as outgoing_technology,
+       files.file_path as outgoing_file_path, files.language as outgoing_language
+FROM connection_mappings cm
+JOIN outgoing_connections oc ON cm.sender_id = oc.id
+LEFT JOIN files ON oc.file_id = files.id
+WHERE cm.receiver_id IN ({ids})
+ORDER BY cm.match_confidence DESC, cm.created_at DESC
+"""
+
+GET_MAPPED_INCOMING_FOR_OUTGOING_IDS = """
+SELECT cm.sender_id as anchor_connection_id,
+       cm.id as mapping_id, ic.technology_name, cm.description as mapping_description,
+       cm.match_confidence, cm.created_at as mapping_created_at,
+       ic.id as incoming_id, ic.description as incoming_description,
+       ic.code_snippet as incoming_code_snippet, ic.technology_name as incoming_technology,
+       files.file_path as incoming_file_path, files.language as incoming_language
+FROM connection_mappings cm
+JOIN incoming_connections ic ON cm.receiver_id = ic.id
+LEFT JOIN files ON ic.file_id = files.id
+WHERE cm.sender_id IN ({ids})
+ORDER BY cm.match_confidence DESC, cm.created_at DESC
+"""
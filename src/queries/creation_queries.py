@@ -28,11 +28,57 @@ CREATE TABLE IF NOT EXISTS files (
     language TEXT NOT NULL,
     content TEXT NOT NULL,
     content_hash TEXT NOT NULL,
+    content_key TEXT, -- content_store row holding the content when compressed (content is then empty)
     FOREIGN KEY (project_id) REFERENCES projects(id) ON DELETE CASCADE,
     UNIQUE(project_id, file_path)
 )
 """
 
+CREATE_FILE_LINES_TABLE = """
+CREATE TABLE IF NOT EXISTS file_lines (
+    file_id INTEGER PRIMARY KEY,
+    line_offsets BLOB NOT NULL, -- Packed UTF-8 byte offset of each line start, see utils.line_index
+    FOREIGN KEY (file_id) REFERENCES files(id) ON DELETE CASCADE
+)
+"""
+
+CREATE_FILE_STATS_TABLE = """
+CREATE TABLE IF NOT EXISTS file_stats (
+    project_id INTEGER NOT NULL,
+    file_path TEXT NOT NULL,
+    size INTEGER NOT NULL,
+    mtime_ns INTEGER NOT NULL,
+    inode INTEGER NOT NULL,
+    content_hash TEXT NOT NULL, -- SHA256 of the file when it had this stat
+    PRIMARY KEY (project_id, file_path),
+    FOREIGN KEY (project_id) REFERENCES projects(id) ON DELETE CASCADE
+)
+"""
+
+CREATE_MODULE_REGISTRY_TABLE = """
+CREATE TABLE IF NOT EXISTS module_registry (
+    project_id INTEGER NOT NULL,
+    language TEXT NOT NULL,
+    module_name TEXT NOT NULL, -- A name the file can be imported by, see indexer.relationship_extractors
+    reversed_name TEXT NOT NULL, -- module_name reversed, for suffix lookups
+    file_id INTEGER NOT NULL,
+    file_path TEXT NOT NULL,
+    PRIMARY KEY (project_id, language, module_name, file_id),
+    FOREIGN KEY (project_id) REFERENCES projects(id) ON DELETE CASCADE
+)
+"""
+
+CREATE_IMPORT_NAME_KEYS_TABLE = """
+CREATE TABLE IF NOT EXISTS import_name_keys (
+    project_id INTEGER NOT NULL,
+    name_key TEXT NOT NULL, -- Last component of a module name the file's imports resolve through
+    file_id INTEGER NOT NULL,
+    file_path TEXT NOT NULL,
+    PRIMARY KEY (project_id, name_key, file_id),
+    FOREIGN KEY (project_id) REFERENCES projects(id) ON DELETE CASCADE
+)
+"""
+
 CREATE_CODE_BLOCKS_TABLE = """
 CREATE TABLE IF NOT EXISTS code_blocks (
     id INTEGER PRIMARY KEY, -- Use the incremental ID from JSON
@@ -45,6 +91,9 @@ CREATE TABLE IF NOT EXISTS code_blocks (
     end_col INTEGER NOT NULL,
     file_id INTEGER NOT NULL, -- ID of the file this block belongs to
     parent_block_id INTEGER, -- ID of the parent block for nested blocks (NULL for top-level blocks)
+    content_key TEXT, -- content_store row of the file text this block is a slice of (content is then empty)
+    start_byte INTEGER, -- UTF-8 byte range of the block in that text
+    end_byte INTEGER,
     FOREIGN KEY (file_id) REFERENCES files(id) ON DELETE CASCADE,
     FOREIGN KEY (parent_block_id) REFERENCES code_blocks(id) ON DELETE CASCADE
 )
@@ -119,9 +168,48 @@ CREATE TABLE IF NOT EXISTS checkpoints (
 )
 """
 
+CREATE_CONTENT_STORE_TABLE = """
+CREATE TABLE IF NOT EXISTS content_store (
+    content_key TEXT PRIMARY KEY, -- SHA256 of the UTF-8 text
+    data BLOB NOT NULL -- zlib-compressed UTF-8 text, see graph.content_store
+)
+"""
+
+# Columns added to existing tables after their first release, added to older
+# databases on connect: (table, column, definition)
+ADDED_COLUMNS = [
+    ("files", "content_key", "TEXT"),
+    ("code_blocks", "content_key", "TEXT"),
+    ("code_blocks", "start_byte", "INTEGER"),
+    ("code_blocks", "end_byte", "INTEGER"),
+]
+
+# Code block text, read by the code_blocks_fts index. Per content_storage mode:
+# only a database holding compressed rows needs stored_content(), which
+# graph.content_store registers on SQLiteConnection connections only, so
+# plain databases stay writable from other SQLite clients.
+CREATE_CODE_BLOCKS_TEXT_VIEW = {
+    "plain": """
+CREATE VIEW IF NOT EXISTS code_blocks_text AS
+SELECT id, name, content FROM code_blocks
+""",
+    "compressed": """
+CREATE VIEW IF NOT EXISTS code_blocks_text AS
+SELECT cb.id, cb.name,
+       stored_content(cb.content, cb.content_key, cs.data, cb.start_byte, cb.end_byte) AS content
+FROM code_blocks cb
+LEFT JOIN content_store cs ON cs.content_key = cb.content_key
+""",
+}
+
 CREATE_TABLES = [
     CREATE_PROJECTS_TABLE,
     CREATE_FILES_TABLE,
+    CREATE_FILE_LINES_TABLE,
+    CREATE_CONTENT_STORE_TABLE,
+    CREATE_FILE_STATS_TABLE,
+    CREATE_MODULE_REGISTRY_TABLE,
+    CREATE_IMPORT_NAME_KEYS_TABLE,
     CREATE_CODE_BLOCKS_TABLE,
     CREATE_RELATIONSHIPS_TABLE,
     CREATE_INCOMING_CONNECTIONS_TABLE,
@@ -130,16 +218,128 @@ CREATE_TABLES = [
     CREATE_CHECKPOINTS_TABLE,
 ]
 
+# ============================================================================
+# FULL-TEXT SEARCH QUERIES
+# ============================================================================
+
+# External-content FTS5 indexes for lexical search: they store only the index,
+# reading column values from code_blocks_text/files. '_' is a token character
+# so snake_case identifiers stay whole.
+CREATE_FTS_TABLES = [
+    """
+CREATE VIRTUAL TABLE IF NOT EXISTS code_blocks_fts USING fts5(
+    name, content,
+    content='code_blocks_text', content_rowid='id',
+    tokenize="unicode61 tokenchars '_'"
+)
+""",
+    """
+CREATE VIRTUAL TABLE IF NOT EXISTS files_fts USING fts5(
+    file_path,
+    content='files', content_rowid='id',
+    tokenize="unicode61 tokenchars '_'"
+)
+""",
+]
+
+# Keep the FTS indexes in step with their tables. INSERT OR REPLACE only fires
+# the delete triggers with PRAGMA recursive_triggers=ON, which the connection
+# sets. Dropped during a fast load and replaced by a rebuild. A 'delete' must
+# give the indexed text, so content_store rows are only collected once no row
+# references them.
+FTS_TRIGGER_NAMES = [
+    "code_blocks_fts_insert",
+    "code_blocks_fts_delete",
+    "code_blocks_fts_update",
+    "files_fts_insert",
+    "files_fts_delete",
+    "files_fts_update",
+]
+
+# Text of the code block row "{row}" (new or old), per content_storage mode
+_CODE_BLOCK_TEXT = {
+    "plain": "{row}.content",
+    "compressed": """stored_content(
+        {row}.content, {row}.content_key,
+        (SELECT data FROM content_store WHERE content_key = {row}.content_key),
+        {row}.start_byte, {row}.end_byte
+    )""",
+}
+
+_CODE_BLOCKS_FTS_TRIGGERS = [
+    """
+CREATE TRIGGER IF NOT EXISTS code_blocks_fts_insert AFTER INSERT ON code_blocks BEGIN
+    INSERT INTO code_blocks_fts (rowid, name, content)
+    VALUES (new.id, new.name, {new_text});
+END
+""",
+    """
+CREATE TRIGGER IF NOT EXISTS code_blocks_fts_delete AFTER DELETE ON code_blocks BEGIN
+    INSERT INTO code_blocks_fts (code_blocks_fts, rowid, name, content)
+    VALUES ('delete', old.id, old.name, {old_text});
+END
+""",
+    """
+CREATE TRIGGER IF NOT EXISTS code_blocks_fts_update AFTER UPDATE ON code_blocks BEGIN
+    INSERT INTO code_blocks_fts (code_blocks_fts, rowid, name, content)
+    VALUES ('delete', old.id, old.name, {old_text});
+    INSERT INTO code_blocks_fts (rowid, name, content)
+    VALUES (new.id, new.name, {new_text});
+END
+""",
+]
+
+_FILES_FTS_TRIGGERS = [
+    """
+CREATE TRIGGER IF NOT EXISTS files_fts_insert AFTER INSERT ON files BEGIN
+    INSERT INTO files_fts (rowid, file_path) VALUES (new.id, new.file_path);
+END
+""",
+    """
+CREATE TRIGGER IF NOT EXISTS files_fts_delete AFTER DELETE ON files BEGIN
+    INSERT INTO files_fts (files_fts, rowid, file_path)
+    VALUES ('delete', old.id, old.file_path);
+END
+""",
+    """
+CREATE TRIGGER IF NOT EXISTS files_fts_update AFTER UPDATE OF file_path ON files BEGIN
+    INSERT INTO files_fts (files_fts, rowid, file_path)
+    VALUES ('delete', old.id, old.file_path);
+    INSERT INTO files_fts (rowid, file_path) VALUES (new.id, new.file_path);
+END
+""",
+]
+
+# Triggers named in FTS_TRIGGER_NAMES, per content_storage mode
+CREATE_FTS_TRIGGERS = {
+    mode: [
+        trigger.format(
+            new_text=text.format(row="new"), old_text=text.format(row="old")
+        )
+        for trigger in _CODE_BLOCKS_FTS_TRIGGERS
+    ]
+    + _FILES_FTS_TRIGGERS
+    for mode, text in _CODE_BLOCK_TEXT.items()
+}
+
+REBUILD_FTS_TABLES = [
+    "INSERT INTO code_blocks_fts (code_blocks_fts) VALUES ('rebuild')",
+    "INSERT INTO files_fts (files_fts) VALUES ('rebuild')",
+]
+
 # ============================================================================
 # INDEX CREATION QUERIES
 # ============================================================================
 
-CREATE_INDEXES = [
+# Indexes on the tables written by a graph bulk load; these are dropped during a
+# fast load and rebuilt once the rows are in
+CREATE_GRAPH_INDEXES = [
     # File indexes
     "CREATE INDEX IF NOT EXISTS idx_files_project_id ON files(project_id)",
     "CREATE INDEX IF NOT EXISTS idx_files_language ON files(language)",
     "CREATE INDEX IF NOT EXISTS idx_files_path ON files(file_path)",
     "CREATE INDEX IF NOT EXISTS idx_files_hash ON files(content_hash)",
+    "CREATE INDEX IF NOT EXISTS idx_files_content_key ON files(content_key)",
     # Code block indexes
     "CREATE INDEX IF NOT EXISTS idx_blocks_file_id ON code_blocks(file_id)",
     "CREATE INDEX IF NOT EXISTS idx_blocks_parent_id ON code_blocks(parent_block_id)",
@@ -151,6 +351,9 @@ CREATE_INDEXES = [
     "CREATE INDEX IF NOT EXISTS idx_relationships_target ON relationships(target_id)",
     "CREATE INDEX IF NOT EXISTS idx_relationships_type ON relationships(type)",
     "CREATE INDEX IF NOT EXISTS idx_relationships_source_target ON relationships(source_id, target_id, type)",
+]
+
+CREATE_INDEXES = CREATE_GRAPH_INDEXES + [
     # Incoming connections indexes
     "CREATE INDEX IF NOT EXISTS idx_incoming_connections_file_id ON incoming_connections(file_id)",
     "CREATE INDEX IF NOT EXISTS idx_incoming_connections_technology ON incoming_connections(technology_name)",
@@ -161,6 +364,10 @@ CREATE_INDEXES = [
     "CREATE INDEX IF NOT EXISTS idx_connection_mappings_sender ON connection_mappings(sender_id)",
     "CREATE INDEX IF NOT EXISTS idx_connection_mappings_receiver ON connection_mappings(receiver_id)",
     "CREATE INDEX IF NOT EXISTS idx_connection_mappings_confidence ON connection_mappings(match_confidence)",
+    # Module registry indexes
+    "CREATE INDEX IF NOT EXISTS idx_module_registry_reversed ON module_registry(project_id, language, reversed_name)",
+    "CREATE INDEX IF NOT EXISTS idx_module_registry_file ON module_registry(project_id, file_path)",
+    "CREATE INDEX IF NOT EXISTS idx_import_name_keys_file ON import_name_keys(project_id, file_path)",
     # Checkpoint indexes
     "CREATE INDEX IF NOT EXISTS idx_checkpoints_project_file ON checkpoints(project_id, file_path)",
     "CREATE INDEX IF NOT EXISTS idx_checkpoints_change_type ON checkpoints(change_type)",
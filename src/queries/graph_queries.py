@@ -122,3 +122,100 @@ UPDATE {table_name}
 SET code_snippet = ?, start_line = ?, end_line = ?
 WHERE id = ?
 """
+
+# ============================================================================
+# MODULE REGISTRY QUERIES - see graph.module_registry
+# ============================================================================
+
+INSERT_MODULE_NAME = """
+INSERT OR REPLACE INTO module_registry
+    (project_id, language, module_name, reversed_name, file_id, file_path)
+VALUES (?, ?, ?, ?, ?, ?)
+"""
+
+DELETE_MODULE_REGISTRY_FILE = """
+DELETE FROM module_registry WHERE project_id = ? AND file_path = ?
+"""
+
+DELETE_PROJECT_MODULE_REGISTRY = """
+DELETE FROM module_registry WHERE project_id = ?
+"""
+
+HAS_MODULE_REGISTRY = """
+SELECT 1 FROM module_registry WHERE project_id = ? LIMIT 1
+"""
+
+# {names} is replaced with a "?,?,..." placeholder list; when several files
+# register a name, the shortest path comes first
+RESOLVE_MODULE_NAMES = """
+SELECT module_name, file_id FROM module_registry
+WHERE project_id = ? AND language = ? AND module_name IN ({names})
+ORDER BY length(file_path), file_path
+"""
+
+# Registered names starting, reversed, with the reversed imported name
+RESOLVE_MODULE_SUFFIX = """
+SELECT file_id FROM module_registry
+WHERE project_id = ? AND language = ? AND reversed_name >= ? AND reversed_name < ?
+ORDER BY length(file_path), file_path
+LIMIT 1
+"""
+
+GET_PROJECT_REGISTRY_FILES = """
+SELECT id, file_path, language FROM files WHERE project_id = ?
+"""
+
+INSERT_IMPORT_NAME_KEY = """
+INSERT OR IGNORE INTO import_name_keys (project_id, name_key, file_id, file_path)
+VALUES (?, ?, ?, ?)
+"""
+
+DELETE_IMPORT_NAME_KEYS_FILE = """
+DELETE FROM import_name_keys WHERE project_id = ? AND file_path = ?
+"""
+
+DELETE_PROJECT_IMPORT_NAME_KEYS = """
+DELETE FROM import_name_keys WHERE project_id = ?
+"""
+
+# Files whose imports resolve through a name key; {keys} is replaced with a
+# "?,?,..." placeholder list
+GET_IMPORTERS_OF_NAME_KEYS = """
+SELECT DISTINCT k.file_id, k.file_path, f.language
+FROM import_name_keys k
+JOIN files f ON f.id = k.file_id
+WHERE k.project_id = ? AND k.name_key IN ({keys})
+"""
+
+# Files importing the given files; {paths} is replaced with a "?,?,..."
+# placeholder list
+GET_IMPORTERS_OF_PATHS = """
+SELECT DISTINCT s.id, s.file_path, s.language
+FROM files t
+JOIN relationships r ON r.target_id = t.id AND r.type = 'import'
+JOIN files s ON s.id = r.source_id
+WHERE t.project_id = ? AND t.file_path IN ({paths})
+"""
+
+# Import statements of the given files, grouped by file; {ids} is replaced
+# with a "?,?,..." placeholder list
+GET_IMPORT_BLOCKS_FOR_FILES = """
+SELECT f.id, f.file_path, f.language,
+       stored_content(cb.content, cb.content_key, cs.data, cb.start_byte, cb.end_byte)
+FROM code_blocks cb
+JOIN files f ON cb.file_id = f.id
+LEFT JOIN content_store cs ON cs.content_key = cb.content_key
+WHERE cb.file_id IN ({ids}) AND cb.type = 'import'
+ORDER BY f.id, cb.start_line
+"""
+
+# Import statements of a project's files, grouped by file
+GET_PROJECT_IMPORT_BLOCKS = """
+SELECT f.id, f.file_path, f.language,
+       stored_content(cb.content, cb.content_key, cs.data, cb.start_byte, cb.end_byte)
+FROM code_blocks cb
+JOIN files f ON cb.file_id = f.id
+LEFT JOIN content_store cs ON cs.content_key = cb.content_key
+WHERE f.project_id = ? AND cb.type = 'import'
+ORDER BY f.id, cb.start_line
+"""
@@ -12,6 +12,7 @@ from queries.agent_queries import (
     GET_DEPENDENCY_CHAIN,
     GET_FILE_BLOCK_SUMMARY,
     GET_FILE_BY_ID,
+    GET_FILE_METADATA_BY_ID,
 )
 from tools.delivery_actions import (
     check_pending_delivery,
@@ -216,14 +217,47 @@ def execute_structured_database_query(
                         FileNotFoundError,
                     )
 
-                results = graph_ops.connection.execute_query(sql_query, (file_id,))
+                start_line = final_params.get("start_line")
+                end_line = final_params.get("end_line")
+
+                # Read just the requested lines through the file's line index
+                line_range = None
+                if start_line is not None or end_line is not None:
+                    line_range = graph_ops.connection.read_file_lines(
+                        file_id, start_line, end_line
+                    )
+
+                if line_range is not None:
+                    content, total_lines = line_range
+                    results = graph_ops.connection.execute_query(
+                        GET_FILE_METADATA_BY_ID, (file_id,)
+                    )
+                    for result in results:
+                        result["content"] = content
+                        result["start_line"] = (
+                            start_line if start_line is not None else 1
+                        )
+                        result["end_line"] = (
+                            end_line if end_line is not None else total_lines
+                        )
+                        result["lines"] = [result["start_line"], result["end_line"]]
+                        # Remove block-related fields for GET_FILE_BY_PATH
+                        result.pop("id", None)
+                        result.pop("block_id", None)
+                else:
+                    results = graph_ops.connection.execute_query(
+                        sql_query, (file_id,)
+                    )
                 logger.debug(
                     f"TRACE: Database query returned {len(results) if results else 0} results"
                 )
                 # Apply line range filtering if start_line and end_line are provided
-                start_line = final_params.get("start_line")
-                end_line = final_params.get("end_line")
-                if results and (start_line is not None or end_line is not None):
+                # and the file has no line index
+                if (
+                    results
+                    and line_range is None
+                    and (start_line is not None or end_line is not None)
+                ):
                     for i, result in enumerate(results):
                         result_dict = (
                             dict(result) if hasattr(result, "keys") else result
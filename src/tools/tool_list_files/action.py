@@ -10,7 +10,8 @@ from tools.utils.project_utils import (
     auto_detect_project_from_paths,
     resolve_project_base_path,
 )
-from utils.file_utils import should_ignore_directory, should_ignore_file
+from utils.directory_scanner import iter_scan
+from utils.ignore_matcher import get_ignore_matcher
 
 
 def chunk_content(content: str, chunk_size: int = 600) -> List[Dict[str, Any]]:
@@ -70,7 +71,10 @@ def chunk_content(content: str, chunk_size: int = 600) -> List[Dict[str, Any]]:
 
 def filter_ignored_paths(files_list: list, directory_path: str) -> list:
     """
-    Filter out ignored files and directories from the list using file_utils.
+    Filter out ignored files and directories from the list.
+
+    Uses the shared ignore matcher of the listed directory, so the default
+    patterns and its .gitignore/.sutraignore apply as they do when indexing.
 
     Args:
         files_list: List of file/directory paths (now absolute paths)
@@ -79,36 +83,13 @@ def filter_ignored_paths(files_list: list, directory_path: str) -> list:
     Returns:
         Filtered list with ignored paths removed
     """
-    filtered_list = []
-    base_path = Path(directory_path).resolve()
-
-    for item in files_list:
-        is_directory = item.endswith("/")
-        item_path = Path(item.rstrip("/"))
-
-        # Skip if the item should be ignored
-        if is_directory:
-            if should_ignore_directory(item_path):
-                continue
-        else:
-            if should_ignore_file(item_path):
-                continue
-
-        # Check if any parent directory in the path should be ignored
-        should_skip = False
-        current_path = item_path.parent if not is_directory else item_path
-
-        # Walk up the directory tree checking each parent
-        while current_path != current_path.parent and current_path != base_path:
-            if should_ignore_directory(current_path):
-                should_skip = True
-                break
-            current_path = current_path.parent
-
-        if not should_skip:
-            filtered_list.append(item)
+    matcher = get_ignore_matcher(directory_path)
 
-    return filtered_list
+    return [
+        item
+        for item in files_list
+        if not matcher.ignores_path(item.rstrip("/"), item.endswith("/"))
+    ]
 
 
 def execute_list_files_action(action: AgentAction) -> Iterator[Dict[str, Any]]:
@@ -149,15 +130,26 @@ def execute_list_files_action(action: AgentAction) -> Iterator[Dict[str, Any]]:
 
         files_list = []
 
+        # Let rg skip ignored directories instead of listing and filtering them
+        ignore_matcher = get_ignore_matcher(directory_path)
+        ignore_args = ignore_matcher.ripgrep_args() if ignore_patterns else []
+
         if recursive == "true" or recursive == "True" or recursive is True:
             # Recursive listing using rg
             try:
                 # First, get normal files (respects .gitignore)
+                # rg reads .sutraignore rules relative to its working directory
                 result = subprocess.run(
-                    ["rg", "--files", directory_path],
+                    [
+                        "rg",
+                        "--files",
+                        *ignore_args,
+                        *ignore_matcher.ripgrep_paths([directory_path]),
+                    ],
                     capture_output=True,
                     text=True,
                     check=True,
+                    cwd=ignore_matcher.root,
                 )
 
                 # Get absolute paths for normal files
@@ -201,14 +193,11 @@ def execute_list_files_action(action: AgentAction) -> Iterator[Dict[str, Any]]:
                 files_list.extend(sorted(dirs_set))
 
             except subprocess.CalledProcessError:
-                # Fallback to os.walk if rg fails
-                for root, dirs, files in os.walk(directory_path):
-                    for file in files:
-                        abs_path = os.path.abspath(os.path.join(root, file))
-                        files_list.append(abs_path)
-                    for dir in dirs:
-                        abs_path = os.path.abspath(os.path.join(root, dir)) + "/"
-                        files_list.append(abs_path)
+                # Fallback to a directory scan if rg fails
+                abs_directory = os.path.abspath(directory_path)
+                for entry in iter_scan(abs_directory, include_directories=True):
+                    abs_path = os.path.join(abs_directory, entry.relative_path)
+                    files_list.append(abs_path + "/" if entry.is_directory else abs_path)
         else:
             # Top-level only - use rg with max-depth
             try:
@@ -11,7 +11,7 @@ from tools.utils.project_utils import (
     auto_detect_project_from_paths,
     resolve_project_base_path,
 )
-from utils.ignore_patterns import IGNORE_DIRECTORY_PATTERNS, IGNORE_FILE_PATTERNS
+from utils.ignore_matcher import get_ignore_matcher
 
 
 def group_matches_by_file(ripgrep_output: str) -> str:
@@ -368,6 +368,11 @@ def execute_search_keyword_action(action: AgentAction) -> Iterator[Dict[str, Any
             except re.error as e:
                 raise Exception(f"Invalid regex pattern: {str(e)}")
 
+        # Same ignore patterns as indexing, as one ignore file instead of --globs
+        ignore_matcher = get_ignore_matcher(project_base_path or ".")
+        # rg reads .sutraignore rules relative to its working directory
+        rg_cwd = ignore_matcher.root or "."
+
         def build_base_cmd():
             """Build base ripgrep command with common options."""
             cmd = ["rg"]
@@ -387,11 +392,7 @@ def execute_search_keyword_action(action: AgentAction) -> Iterator[Dict[str, Any
             cmd.append("--hidden")
 
             # Add ignore patterns for files and directories
-            for pattern in IGNORE_FILE_PATTERNS:
-                cmd.extend(["--glob", f"!{pattern}"])
-
-            for pattern in IGNORE_DIRECTORY_PATTERNS:
-                cmd.extend(["--glob", f"!{pattern}/**"])
+            cmd.extend(ignore_matcher.ripgrep_args())
 
             # Add keyword
             if use_regex:
@@ -408,13 +409,13 @@ def execute_search_keyword_action(action: AgentAction) -> Iterator[Dict[str, Any
         cmd1 = build_base_cmd()
         if file_paths:
             # Add each file path to the command
-            cmd1.extend(file_paths)
+            cmd1.extend(ignore_matcher.ripgrep_paths(file_paths))
 
         # Debug: Log the command being executed
         cmd1_str = " ".join(cmd1)
         logger.debug(f"🔍 Executing ripgrep command: {cmd1_str}")
 
-        result1 = subprocess.run(cmd1, capture_output=True, text=True, cwd=".")
+        result1 = subprocess.run(cmd1, capture_output=True, text=True, cwd=rg_cwd)
 
         # Debug: Log command result
         logger.debug(f"🔍 Command exit code: {result1.returncode}")
@@ -442,7 +443,7 @@ def execute_search_keyword_action(action: AgentAction) -> Iterator[Dict[str, Any
             cmd2_str = " ".join(cmd2)
             logger.debug(f"🔍 Executing .env search command: {cmd2_str}")
 
-            result2 = subprocess.run(cmd2, capture_output=True, text=True, cwd=".")
+            result2 = subprocess.run(cmd2, capture_output=True, text=True, cwd=rg_cwd)
 
             logger.debug(f"🔍 .env search exit code: {result2.returncode}")
             if result2.stderr:
@@ -33,23 +33,98 @@ def _perform_vector_search(
     )
 
 
-def _get_enriched_context(
-    graph_ops: GraphOperations, node_id: str
-) -> Optional[Dict[str, Any]]:
-    """Get enriched context for a node using graph operations."""
-    try:
-        if node_id.startswith("block_"):
-            block_id = int(node_id.split("_")[1])
-            return graph_ops.get_enriched_block_context(block_id)
-        elif node_id.startswith("file_"):
-            file_id = int(node_id.split("_")[1])
-            return graph_ops.get_enriched_file_context(file_id)
-        else:
-            logger.warning(f"Unknown node_id format: {node_id}")
-            return None
-    except (ValueError, IndexError) as e:
-        logger.error(f"Error parsing node_id {node_id}: {e}")
-        return None
+def _perform_lexical_search(
+    graph_ops: GraphOperations, query: str, project_id: Optional[int] = None
+) -> List[List[Dict[str, Any]]]:
+    """Perform BM25 full-text search, limited to a chunk-sized window per hit.
+
+    Returns one ranked list per full-text index (blocks, file paths).
+    """
+    config = SEMANTIC_SEARCH_CONFIG
+    window = config["block_chunk_threshold"]
+
+    ranked_lists = graph_ops.search_lexical(
+        query, config["lexical_limit"], project_id
+    )
+    for results in ranked_lists:
+        for result in results:
+            # Show the first lines (signature) of large blocks and files, not all of it
+            start_line = result["chunk_start_line"] or 1
+            end_line = result["chunk_end_line"] or start_line + window - 1
+            result["chunk_start_line"] = start_line
+            result["chunk_end_line"] = min(end_line, start_line + window - 1)
+            result["similarity"] = 0.0
+
+    return ranked_lists
+
+
+def _fuse_results(
+    vector_results: List[Dict[str, Any]],
+    lexical_lists: List[List[Dict[str, Any]]],
+) -> List[Dict[str, Any]]:
+    """
+    Merge vector and lexical hits with reciprocal rank fusion.
+
+    Each result scores 1 / (rrf_k + rank) per list it appears in, the lexical
+    lists (blocks, file paths) ranked separately since their BM25 scores are
+    not comparable; a node found by both vector and lexical search gets every
+    term on its best vector chunk. Results carry the fused value as "score",
+    best first, limited to total_nodes_limit.
+    """
+    config = SEMANTIC_SEARCH_CONFIG
+    rrf_k = config["rrf_k"]
+
+    lexical_scores: Dict[str, float] = {}
+    lexical_hits: Dict[str, Dict[str, Any]] = {}
+    for results in lexical_lists:
+        ranked = set()
+        for rank, result in enumerate(results, 1):
+            node_id = result["node_id"]
+            if node_id in ranked:
+                continue
+            ranked.add(node_id)
+            lexical_scores[node_id] = lexical_scores.get(node_id, 0.0) + 1.0 / (
+                rrf_k + rank
+            )
+            lexical_hits.setdefault(node_id, result)
+
+    fused = []
+    for rank, result in enumerate(vector_results, 1):
+        score = 1.0 / (rrf_k + rank)
+        score += lexical_scores.pop(result["node_id"], 0.0)
+        fused.append({**result, "score": score})
+
+    for node_id, result in lexical_hits.items():
+        lexical_score = lexical_scores.pop(node_id, None)
+        if lexical_score is not None:
+            fused.append({**result, "score": lexical_score})
+
+    fused.sort(key=lambda x: x["score"], reverse=True)
+    return fused[: config["total_nodes_limit"]]
+
+
+def _perform_search(
+    vector_store: VectorStore,
+    graph_ops: GraphOperations,
+    query: str,
+    project_id: Optional[int] = None,
+) -> List[Dict[str, Any]]:
+    """Perform vector search, fused with lexical search when enabled."""
+    vector_results = _perform_vector_search(vector_store, query, project_id)
+    if not SEMANTIC_SEARCH_CONFIG["hybrid_search"]:
+        return vector_results
+
+    lexical_lists = _perform_lexical_search(graph_ops, query, project_id)
+    logger.debug(
+        f"Hybrid search: {len(vector_results)} vector hits, "
+        f"{sum(len(results) for results in lexical_lists)} lexical hits"
+    )
+    return _fuse_results(vector_results, lexical_lists)
+
+
+def _result_score(result: Dict[str, Any]) -> float:
+    """Ranking score of a result: fused score if present, else similarity."""
+    return result.get("score", result.get("similarity", 0.0))
 
 
 def _get_block_total_lines(enriched_context: Dict[str, Any]) -> int:
@@ -65,7 +140,21 @@ def _get_block_total_lines(enriched_context: Dict[str, Any]) -> int:
     return len(content.split("\n"))
 
 
+def _load_file_content(
+    graph_ops: GraphOperations, enriched_context: Dict[str, Any]
+) -> None:
+    """Fill in the full content of a file context enriched without it."""
+    file_data = enriched_context.get("file")
+    if not file_data or file_data.get("content"):
+        return
+
+    resolved = graph_ops.resolve_file(file_data["id"])
+    if resolved:
+        file_data["content"] = resolved["content"]
+
+
 def _extract_chunk_specific_code(
+    graph_ops: GraphOperations,
     enriched_context: Dict[str, Any],
     chunk_start_line: Optional[int],
     chunk_end_line: Optional[int],
@@ -76,6 +165,16 @@ def _extract_chunk_specific_code(
         return ""
 
     file_data = enriched_context["file"]
+    if chunk_start_line and chunk_end_line:
+        # Read just the chunk's lines through the file's line index
+        line_range = graph_ops.connection.read_file_lines(
+            file_data["id"], chunk_start_line, chunk_end_line
+        )
+        if line_range is not None:
+            return line_range[0]
+
+    # Files stored without a line index: slice the full content
+    _load_file_content(graph_ops, enriched_context)
     content = file_data.get("content", "")
     node_start_line = 1
 
@@ -114,7 +213,7 @@ def _deduplicate_block_results(
 ) -> List[Dict[str, Any]]:
     """
     Deduplicate multiple chunks from the same block, keeping the highest
-    similarity result. Files are not deduplicated since they represent
+    ranked result. Files are not deduplicated since they represent
     different content chunks.
     """
     # Separate blocks and files
@@ -128,12 +227,12 @@ def _deduplicate_block_results(
         if node_id.startswith("block_"):
             # Extract base block_id (could be block_123 or block_123_chunk_0)
             block_id = node_id.split("_")[1] if "_" in node_id else node_id
-            similarity = result.get("similarity", 0.0)
+            score = _result_score(result)
 
             # Keep only the best result for each block
-            if block_id not in block_results or similarity > block_results[
-                block_id
-            ].get("similarity", 0.0):
+            if block_id not in block_results or score > _result_score(
+                block_results[block_id]
+            ):
                 block_results[block_id] = result
         elif node_id.startswith("file_"):
             # Keep all file results (different chunks are meaningful)
@@ -145,8 +244,8 @@ def _deduplicate_block_results(
     # Combine deduplicated results
     deduplicated = list(block_results.values()) + file_results + other_results
 
-    # Sort by similarity to maintain quality order
-    deduplicated.sort(key=lambda x: x.get("similarity", 0.0), reverse=True)
+    # Sort by score to maintain quality order
+    deduplicated.sort(key=_result_score, reverse=True)
 
     return deduplicated
 
@@ -164,12 +263,15 @@ def _process_sequential_chunk_results(
     deduplicated_results = _deduplicate_block_results(vector_results)
     total_nodes = len(deduplicated_results)
 
-    # Process results for delivery
+    # Enrich all results up front with a few set-based queries
     graph_ops = GraphOperations()
+    # File contents are read per chunk, not loaded whole
+    enriched_contexts = graph_ops.get_enriched_contexts(
+        [result["node_id"] for result in deduplicated_results], file_content=False
+    )
 
     for i, result in enumerate(deduplicated_results, 1):
-        # Get enriched context using graph operations
-        enriched_context = _get_enriched_context(graph_ops, result["node_id"])
+        enriched_context = enriched_contexts.get(result["node_id"])
 
         if enriched_context:
             # Extract chunk information
@@ -256,7 +358,7 @@ def _process_sequential_chunk_results(
             ):
                 # For unsupported files: Use chunking since we have no logical structure
                 chunk_code = _extract_chunk_specific_code(
-                    enriched_context, chunk_start_line, chunk_end_line
+                    graph_ops, enriched_context, chunk_start_line, chunk_end_line
                 )
 
                 if chunk_code:
@@ -272,6 +374,7 @@ def _process_sequential_chunk_results(
                     )
                 else:
                     # No chunk code available, use full context
+                    _load_file_content(graph_ops, enriched_context)
                     beautified_result = beautify_enriched_context_auto(
                         enriched_context,
                         i,
@@ -281,6 +384,7 @@ def _process_sequential_chunk_results(
                     )
             else:
                 # No chunk boundaries or unknown type, use full context
+                _load_file_content(graph_ops, enriched_context)
                 beautified_result = beautify_enriched_context_auto(
                     enriched_context,
                     i,
@@ -375,7 +479,9 @@ def execute_semantic_search_action(action: AgentAction) -> Iterator[Dict[str, An
         vector_store = get_vector_store()
 
         # Perform search using helper function
-        vector_results = _perform_vector_search(vector_store, query, project_id)
+        vector_results = _perform_search(
+            vector_store, GraphOperations(), query, project_id
+        )
         total_nodes = len(vector_results)
 
         # Handle empty results
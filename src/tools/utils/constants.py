@@ -14,6 +14,9 @@ SEMANTIC_SEARCH_CONFIG = {
     "similarity_threshold": 0.0,
     "delivery_batch_size": 15,  # Serve 15 nodes at a time via delivery queue
     "block_chunk_threshold": 50,
+    "hybrid_search": True,  # Fuse BM25 full-text hits with vector hits
+    "lexical_limit": 30,  # Per full-text index (blocks, file paths)
+    "rrf_k": 60,  # Reciprocal rank fusion constant
     **SEARCH_CONFIG,
 }
 
@@ -265,6 +265,7 @@ def beautify_node_result_metadata_only(node, idx=None, total_nodes=None):
         importers = scope.get("importers", []) or []
         chains = scope.get("dependency_chain", []) or []
         impacts = scope.get("connection_impacts", []) or []
+        impact = scope.get("impact") or {}
         max_depth = scope.get("max_depth")
 
         out = []
@@ -310,6 +311,25 @@ def beautify_node_result_metadata_only(node, idx=None, total_nodes=None):
                 path = row.get("path") or ""
                 out.append(f"{i}) {path}")
 
+        impacted = impact.get("impacted", []) or []
+        if impacted:
+            out.append("")
+            reached = impact.get("reached", len(impacted))
+            out.append(f"Transitive Impact (files={len(impacted)} of {reached})")
+            for i, row in enumerate(impacted, 1):
+                depth = row.get("depth", "?")
+                via = row.get("via", "?")
+                proj = row.get("project_name", "?")
+                path = row.get("path") or ""
+                out.append(f"{i}) [depth={depth}; via={via}; proj={proj}] {path}")
+            truncated = impact.get("truncated", []) or []
+            if truncated:
+                capped = ", ".join(
+                    f"{row.get('file_path', '?')} (+{row.get('skipped', 0)})"
+                    for row in truncated
+                )
+                out.append(f"   fan-out capped at: {capped}")
+
         if impacts:
             out.append("")
             out.append(f"Connection Impact ({len(impacts)})")
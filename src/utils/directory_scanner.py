@@ -0,0 +1,235 @@
+"""
+Parallel directory scanning.
+
+iter_scan walks a tree with os.scandir, listing directories on a thread pool
+(scandir and stat release the GIL) while yielding entries in os.walk order:
+a directory's files first, then each subdirectory's, depth first. Ignored
+directories are pruned with the shared IgnoreMatcher before they are listed,
+and file stats come from the DirEntry instead of a second stat per path.
+
+DirectoryListing records one scan, with (size, mtime_ns, inode) per file, so
+the consumers of one indexing run (discovery, hashing, the stat manifest)
+share a single traversal.
+"""
+
+import os
+import threading
+from concurrent.futures import Future, ThreadPoolExecutor
+from pathlib import Path
+from typing import Iterator, List, NamedTuple, Optional, Tuple, Union
+
+from loguru import logger
+
+from .ignore_matcher import IgnoreMatcher, get_ignore_matcher
+
+
+class ScannedEntry(NamedTuple):
+    """A file (or directory) found by a scan."""
+
+    relative_path: str  # Path below the scanned root, os.sep separated
+    is_directory: bool
+    is_symlink: bool
+    stat: Optional[Tuple[int, int, int]]  # (size, mtime_ns, inode), files only
+
+
+def _resolve_scan_workers(scan_workers: Optional[int] = None) -> int:
+    """
+    Resolve the number of directory scanning threads.
+
+    Args:
+        scan_workers: Explicit thread count, falls back to config.indexing.scan_workers
+
+    Returns:
+        Thread count, 1 meaning the scan runs in the calling thread
+    """
+    if scan_workers is None:
+        try:
+            from config import config
+
+            scan_workers = config.indexing.scan_workers
+        except (ValueError, AttributeError, ImportError):
+            scan_workers = 1
+
+    if scan_workers <= 0:
+        # Matching runs under the GIL, so threads beyond the cores only add
+        # contention once directory listings are cached
+        scan_workers = min(8, os.cpu_count() or 1)
+
+    return scan_workers
+
+
+def _scan_one(
+    root: str,
+    relative_dir: str,
+    matcher: Optional[IgnoreMatcher],
+    with_stats: bool,
+    include_directories: bool,
+) -> Tuple[List[ScannedEntry], List[str]]:
+    """
+    List one directory.
+
+    Returns:
+        Tuple of (entries to yield, relative paths of subdirectories to descend)
+    """
+    directory = os.path.join(root, relative_dir) if relative_dir else root
+    try:
+        with os.scandir(directory) as iterator:
+            dir_entries = list(iterator)
+    except OSError:
+        # Unreadable directories are skipped, as os.walk does
+        return [], []
+
+    entries: List[ScannedEntry] = []
+    subdirs: List[str] = []
+    for dir_entry in dir_entries:
+        relative_path = (
+            os.path.join(relative_dir, dir_entry.name)
+            if relative_dir
+            else dir_entry.name
+        )
+        try:
+            is_directory = dir_entry.is_dir()
+        except OSError:
+            is_directory = False
+
+        if is_directory:
+            if matcher is not None and matcher.ignores_directory(dir_entry.path):
+                logger.debug(f"Ignoring directory: {dir_entry.path}")
+                continue
+            is_symlink = dir_entry.is_symlink()
+            if include_directories:
+                entries.append(ScannedEntry(relative_path, True, is_symlink, None))
+            # Symlinked directories are not followed, as with os.walk
+            if not is_symlink:
+                subdirs.append(relative_path)
+            continue
+
+        if matcher is not None and matcher.ignores_file(dir_entry.path):
+            continue
+
+        file_stat = None
+        if with_stats:
+            try:
+                stat_result = dir_entry.stat()
+            except OSError:
+                # Broken symlinks and files removed while scanning
+                continue
+            file_stat = (
+                stat_result.st_size,
+                stat_result.st_mtime_ns,
+                stat_result.st_ino,
+            )
+        entries.append(
+            ScannedEntry(relative_path, False, dir_entry.is_symlink(), file_stat)
+        )
+
+    return entries, subdirs
+
+
+def iter_scan(
+    root: Union[str, Path],
+    matcher: Optional[IgnoreMatcher] = None,
+    with_stats: bool = False,
+    include_directories: bool = False,
+    scan_workers: Optional[int] = None,
+) -> Iterator[ScannedEntry]:
+    """
+    Scan a directory tree, yielding entries in os.walk (top-down) order.
+
+    Args:
+        root: Directory to scan
+        matcher: Ignore matcher pruning files and directories (None keeps everything)
+        with_stats: Record each file's (size, mtime_ns, inode), skipping files
+            that cannot be stat'ed
+        include_directories: Also yield directories
+        scan_workers: Number of scanning threads (defaults to
+            config.indexing.scan_workers, 0 = automatic, 1 = calling thread)
+
+    Yields:
+        ScannedEntry for every file (and directory) not ignored
+    """
+    root = os.path.abspath(root)
+    workers = _resolve_scan_workers(scan_workers)
+
+    if workers <= 1:
+        stack = [""]
+        while stack:
+            entries, subdirs = _scan_one(
+                root, stack.pop(), matcher, with_stats, include_directories
+            )
+            yield from entries
+            stack.extend(reversed(subdirs))
+        return
+
+    stopped = threading.Event()
+
+    with ThreadPoolExecutor(workers, thread_name_prefix="scan") as executor:
+
+        def scan(relative_dir: str) -> Tuple[List[ScannedEntry], List[Future]]:
+            if stopped.is_set():
+                return [], []
+            entries, subdirs = _scan_one(
+                root, relative_dir, matcher, with_stats, include_directories
+            )
+            # Subdirectories are listed ahead of the consumer, in parallel
+            return entries, [executor.submit(scan, subdir) for subdir in subdirs]
+
+        pending = [executor.submit(scan, "")]
+        try:
+            while pending:
+                entries, children = pending.pop().result()
+                yield from entries
+                pending.extend(reversed(children))
+        finally:
+            # Stop queued directories if the consumer stops early
+            stopped.set()
+
+
+class DirectoryListing:
+    """
+    Files under a root, scanned on first iteration and replayed afterwards.
+
+    Uses the root's shared ignore matcher and records every file's stat, so
+    one listing can feed discovery, hashing and the stat manifest of an
+    indexing run.
+    """
+
+    def __init__(self, root: Union[str, Path], scan_workers: Optional[int] = None):
+        self.root = os.path.abspath(root)
+        self.scan_workers = scan_workers
+        self.files: List[ScannedEntry] = []
+        self.complete = False
+        self._real_root: Optional[str] = None
+
+    def __iter__(self) -> Iterator[ScannedEntry]:
+        if self.complete:
+            yield from self.files
+            return
+
+        files = []
+        for entry in iter_scan(
+            self.root,
+            get_ignore_matcher(self.root),
+            with_stats=True,
+            scan_workers=self.scan_workers,
+        ):
+            files.append(entry)
+            yield entry
+        self.files = files
+        self.complete = True
+
+    def path(self, entry: ScannedEntry, base: Union[str, Path, None] = None) -> str:
+        """Path of an entry joined to base (the root if not given)."""
+        return os.path.join(
+            self.root if base is None else base, entry.relative_path
+        )
+
+    def resolved_path(self, entry: ScannedEntry) -> Path:
+        """Absolute path of an entry with symlinks resolved, as Path.resolve()."""
+        if self._real_root is None:
+            self._real_root = os.path.realpath(self.root)
+        path = os.path.join(self._real_root, entry.relative_path)
+        # Directories below the root are never symlinks, the scan does not follow them
+        if entry.is_symlink:
+            path = os.path.realpath(path)
+        return Path(path)
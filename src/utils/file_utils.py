@@ -5,15 +5,22 @@ This module provides utility functions for file operations, language detection,
 and ignore pattern matching.
 """
 
-import fnmatch
+from dataclasses import dataclass
+from functools import cached_property
 from pathlib import Path
-from typing import Dict, List, Optional, Union
+from typing import Dict, List, Optional, Tuple, Union
 
 from tree_sitter_language_pack import SupportedLanguage
 
-from .ignore_patterns import IGNORE_DIRECTORY_PATTERNS, IGNORE_FILE_PATTERNS
+from .ignore_matcher import get_ignore_matcher
 from .langauge_extension_map import LANGUAGE_EXTENSION_MAP
 
+# Encodings tried, in order, when decoding file content
+TEXT_ENCODINGS: List[str] = ["utf-8", "utf-8-sig", "latin-1", "cp1252"]
+
+# Number of leading bytes sniffed for binary detection
+TEXT_SNIFF_BYTES = 512
+
 
 def get_language_from_extension(
     file_path: Union[str, Path],
@@ -54,15 +61,7 @@ def should_ignore_file(file_path: Union[str, Path]) -> bool:
     Returns:
         True if file should be ignored, False otherwise
     """
-    file_path = Path(file_path)
-    filename = file_path.name
-
-    # Check against ignore patterns
-    for pattern in IGNORE_FILE_PATTERNS:
-        if fnmatch.fnmatch(filename, pattern):
-            return True
-
-    return False
+    return get_ignore_matcher().ignores_file(file_path)
 
 
 def should_ignore_directory(dir_path: Union[str, Path]) -> bool:
@@ -75,17 +74,121 @@ def should_ignore_directory(dir_path: Union[str, Path]) -> bool:
     Returns:
         True if directory should be ignored, False otherwise
     """
-    dir_path = Path(dir_path)
-    dirname = dir_path.name
+    return get_ignore_matcher().ignores_directory(dir_path)
+
+
+@dataclass
+class FileContent:
+    """
+    File bytes read once, with everything else derived lazily from that buffer.
+    """
+
+    path: Path
+    data: bytes  # Raw file bytes
+    content_hash: str  # SHA256 of the raw bytes
+
+    @cached_property
+    def is_text(self) -> bool:
+        """False if the leading bytes look binary."""
+        return is_text_bytes(self.data)
+
+    @cached_property
+    def _decoded(self) -> Tuple[Optional[str], Optional[str]]:
+        return decode_file_bytes(self.data)
+
+    @property
+    def text(self) -> Optional[str]:
+        """Decoded content with universal newlines, None if undecodable."""
+        return self._decoded[0]
+
+    @property
+    def encoding(self) -> Optional[str]:
+        """Encoding used to decode the text."""
+        return self._decoded[1]
+
+    @property
+    def source_bytes(self) -> bytes:
+        """UTF-8 bytes of the decoded text, as handed to tree-sitter."""
+        if self.text is None:
+            return b""
+        # Reuse the raw buffer when decoding did not change the byte layout
+        if self.encoding == "utf-8" and b"\r" not in self.data:
+            return self.data
+        return self.text.encode("utf-8")
+
+
+def read_file_bytes(file_path: Union[str, Path]) -> Optional[bytes]:
+    """
+    Read the raw bytes of a file in a single read.
+
+    Args:
+        file_path: Path to the file
+
+    Returns:
+        File bytes, None if the file cannot be read
+    """
+    try:
+        with open(file_path, "rb") as f:
+            return f.read()
+    except (OSError, ValueError):
+        return None
+
+
+def is_text_bytes(data: bytes, chunk_size: int = TEXT_SNIFF_BYTES) -> bool:
+    """
+    Check if file bytes are likely text by analyzing the leading chunk.
+
+    Args:
+        data: Raw file bytes
+        chunk_size: Number of bytes to analyze (default: 512)
+
+    Returns:
+        True if the bytes appear to be text, False otherwise
+    """
+    chunk = data[:chunk_size]
+
+    # Empty files are considered text
+    if not chunk:
+        return True
+
+    # Check for null bytes which strongly indicate binary content
+    if b"\x00" in chunk:
+        return False
 
-    # Check against ignore patterns
-    for pattern in IGNORE_DIRECTORY_PATTERNS:
-        if fnmatch.fnmatch(dirname, pattern):
+    # Try to decode using common encodings
+    for encoding in ["utf-8", "latin-1", "cp1252", "ascii"]:
+        try:
+            chunk.decode(encoding)
             return True
+        except UnicodeDecodeError:
+            continue
 
     return False
 
 
+def decode_file_bytes(data: bytes) -> Tuple[Optional[str], Optional[str]]:
+    """
+    Decode file bytes the same way read_file_content reads a file in text mode.
+
+    Args:
+        data: Raw file bytes
+
+    Returns:
+        Tuple of (decoded text with universal newlines, encoding), (None, None) if undecodable
+    """
+    for encoding in TEXT_ENCODINGS:
+        try:
+            text = data.decode(encoding)
+        except UnicodeDecodeError:
+            continue
+        # Match text-mode reads, which translate \r\n and \r to \n
+        if "\r" in text:
+            text = text.replace("\r\n", "\n").replace("\r", "\n")
+        return text, encoding
+
+    return None, None
+
+
 def is_text_file(file_path: Union[str, Path], chunk_size: int = 512) -> bool:
     """
     Check if a file is likely a text file by analyzing its content.
@@ -106,24 +209,7 @@ def is_text_file(file_path: Union[str, Path], chunk_size: int = 512) -> bool:
         with open(file_path, "rb") as f:
             chunk = f.read(chunk_size)
 
-        # Empty files are considered text
-        if not chunk:
-            return True
-
-        # Check for null bytes which strongly indicate binary content
-        if b"\x00" in chunk:
-            return False
-
-        # Try to decode using common encodings
-        encodings = ["utf-8", "latin-1", "cp1252", "ascii"]
-        for encoding in encodings:
-            try:
-                chunk.decode(encoding)
-                return True
-            except UnicodeDecodeError:
-                continue
-
-        return False
+        return is_text_bytes(chunk, chunk_size)
 
     except Exception:
         return False
@@ -144,19 +230,12 @@ def read_file_content(file_path: Union[str, Path]) -> Optional[str]:
     if not file_path.exists() or not file_path.is_file():
         return None
 
-    # Try different encodings
-    encodings = ["utf-8", "utf-8-sig", "latin-1", "cp1252"]
-
-    for encoding in encodings:
-        try:
-            with open(file_path, "r", encoding=encoding) as f:
-                return f.read()
-        except UnicodeDecodeError:
-            continue
-        except Exception:
-            return None
+    data = read_file_bytes(file_path)
+    if data is None:
+        return None
 
-    return None
+    text, _ = decode_file_bytes(data)
+    return text
 
 
 def get_extraction_file_path(project_name: str) -> Path:
@@ -179,9 +258,26 @@ def get_extraction_file_path(project_name: str) -> Path:
 
     base_path = config.storage.parser_results_dir
     timestamp = time.strftime("%Y%m%d_%H%M%S")
+    suffix = get_extraction_file_suffix()
 
     # Ensure we return an absolute path
-    return Path(base_path).resolve() / f"{project_name}_extraction_{timestamp}.json"
+    return (
+        Path(base_path).resolve() / f"{project_name}_extraction_{timestamp}{suffix}"
+    )
+
+
+def get_extraction_file_suffix() -> str:
+    """
+    Get the extraction file suffix for the configured extraction format.
+
+    Returns:
+        ".json" for the single-document format, ".ndjson" otherwise
+    """
+    from config import config
+
+    if config.indexing.extraction_format == "json":
+        return ".json"
+    return ".ndjson"
 
 
 def get_last_extraction_file_path(project_name: str) -> Union[Path, None]:
@@ -202,7 +298,11 @@ def get_last_extraction_file_path(project_name: str) -> Union[Path, None]:
         return None
 
     base_path = config.storage.parser_results_dir
-    pattern = f"{base_path}/{project_name}_extraction_*.json"
-    files = sorted(glob.glob(pattern), reverse=True)
+    pattern = f"{base_path}/{project_name}_extraction_*"
+    files = [
+        f for f in glob.glob(pattern) if f.endswith(".json") or f.endswith(".ndjson")
+    ]
+    # Names differ only in timestamp and suffix, so sort on the stem
+    files.sort(key=lambda f: Path(f).stem, reverse=True)
 
     return Path(files[0]) if files else None
@@ -7,10 +7,36 @@ used primarily for change detection in incremental indexing.
 
 import hashlib
 from pathlib import Path
-from typing import Dict, Optional, Union
+from typing import Dict, Iterator, Optional, Tuple, Union
 
 from src.utils.console import console
-from utils.file_utils import is_text_file, should_ignore_directory, should_ignore_file
+from utils.file_utils import (
+    FileContent,
+    read_file_bytes,
+)
+from utils.directory_scanner import DirectoryListing
+
+# (size, mtime_ns, inode) of a file, used to detect unchanged files without hashing
+FileStat = Tuple[int, int, int]
+
+# Absolute file path -> (stat when last hashed, content hash)
+StatManifest = Dict[Path, Tuple[FileStat, str]]
+
+# Manifest hash of binary files; not a hex digest, so it never matches content
+BINARY_FILE_HASH = "binary"
+
+
+def compute_content_hash(data: bytes) -> str:
+    """
+    Compute SHA256 hash of raw file bytes.
+
+    Args:
+        data: Raw file bytes
+
+    Returns:
+        SHA256 hex digest
+    """
+    return hashlib.sha256(data).hexdigest()
 
 
 def compute_file_hash(file_path: Union[str, Path]) -> Optional[str]:
@@ -23,66 +49,172 @@ def compute_file_hash(file_path: Union[str, Path]) -> Optional[str]:
     Returns:
         SHA256 hash of file content or None if file cannot be read
     """
+    file_path = Path(file_path)
+    if not file_path.exists() or not file_path.is_file():
+        return None
+
+    data = read_file_bytes(file_path)
+    if data is None:
+        return None
+
+    return compute_content_hash(data)
+
+
+def ingest_file(file_path: Union[str, Path]) -> Optional[FileContent]:
+    """
+    Read a file once and derive its hash, binary/text status and decoded text.
+
+    Args:
+        file_path: Path to the file
+
+    Returns:
+        FileContent for the file or None if file cannot be read
+    """
+    file_path = Path(file_path)
+    if not file_path.is_file():
+        return None
+
+    data = read_file_bytes(file_path)
+    if data is None:
+        return None
+
+    return FileContent(
+        path=file_path, data=data, content_hash=compute_content_hash(data)
+    )
+
+
+def get_file_stat(file_path: Union[str, Path]) -> Optional[FileStat]:
+    """
+    Get the stat tuple used for change detection.
+
+    Args:
+        file_path: Path to the file
+
+    Returns:
+        Tuple of (size, mtime_ns, inode) or None if the file cannot be stat'ed
+    """
     try:
-        file_path = Path(file_path)
-        if not file_path.exists() or not file_path.is_file():
-            return None
-
-        with open(file_path, "rb") as f:
-            content = f.read()
-            return hashlib.sha256(content).hexdigest()
-    except (OSError, IOError, PermissionError):
+        stat_result = Path(file_path).stat()
+        return stat_result.st_size, stat_result.st_mtime_ns, stat_result.st_ino
+    except OSError:
         return None
 
 
-def compute_directory_hashes(dir_path: Union[str, Path]) -> Dict[Path, str]:
+def _iter_directory_paths(
+    dir_path: Union[str, Path], listing: Optional[DirectoryListing] = None
+) -> Iterator[Tuple[Path, FileStat]]:
     """
-    Compute SHA256 hashes for all relevant files in a directory.
+    Scan a directory with the same filters as ASTParser.extract_from_directory.
 
     Args:
         dir_path: Path to the directory
+        listing: Listing of dir_path shared with other consumers (scanned here if None)
 
-    Returns:
-        Dictionary mapping absolute file Path objects to their content hashes
+    Yields:
+        (absolute path, stat) of files that are not ignored
+    """
+    if listing is None:
+        listing = DirectoryListing(dir_path)
+
+    for entry in listing:
+        yield listing.resolved_path(entry), entry.stat
+
+
+def iter_directory_files(dir_path: Union[str, Path]) -> Iterator[FileContent]:
     """
-    import os
+    Read every relevant text file in a directory once.
+
+    Uses the same directory and file filters as ASTParser.extract_from_directory
+    and skips binary files.
+
+    Args:
+        dir_path: Path to the directory
+
+    Yields:
+        FileContent for each text file, with an absolute path
+    """
+    for file_path, _ in _iter_directory_paths(dir_path):
+        file_content = ingest_file(file_path)
+
+        # Skip unreadable and non-text files
+        if file_content is None or not file_content.is_text:
+            continue
+
+        yield file_content
+
+
+def compute_directory_hashes_with_manifest(
+    dir_path: Union[str, Path],
+    manifest: Optional[StatManifest] = None,
+    listing: Optional[DirectoryListing] = None,
+) -> Tuple[Dict[Path, str], StatManifest]:
+    """
+    Compute SHA256 hashes for all relevant files, skipping files whose stat is unchanged.
+
+    A file whose (size, mtime_ns, inode) matches its manifest entry reuses the
+    recorded hash without being read. All other files are read and hashed.
+    Binary files are recorded in the manifest with BINARY_FILE_HASH, so they
+    are skipped without being read while their stat is unchanged, but are
+    left out of the returned hashes.
 
+    Args:
+        dir_path: Path to the directory
+        manifest: Previously recorded stat manifest (empty or None hashes every file)
+        listing: Listing of dir_path shared with other consumers (scanned here if None)
+
+    Returns:
+        Tuple of (absolute Path -> content hash of each text file, updated
+        manifest for the files found)
+    """
     dir_path = Path(dir_path)
-    file_hashes = {}
+    manifest = manifest or {}
+    file_hashes: Dict[Path, str] = {}
+    updated_manifest: StatManifest = {}
 
     if not dir_path.exists() or not dir_path.is_dir():
         console.print(f"Directory not found: {dir_path}")
-        return file_hashes
+        return file_hashes, updated_manifest
 
     try:
-        # Walk through directory using the same logic as ASTParser.extract_from_directory
-        for root, dirs, files in os.walk(dir_path):
-            root_path = Path(root)
+        # Files are stat'ed while scanning, before reading, so a concurrent
+        # edit forces a re-hash next time
+        for file_path, file_stat in _iter_directory_paths(dir_path, listing):
+            cached = manifest.get(file_path)
+            if cached and cached[0] == file_stat:
+                if cached[1] != BINARY_FILE_HASH:
+                    file_hashes[file_path] = cached[1]
+                updated_manifest[file_path] = cached
+                continue
 
-            # Filter out ignored directories (modifies dirs in-place to skip them)
-            dirs[:] = [d for d in dirs if not should_ignore_directory(root_path / d)]
+            file_content = ingest_file(file_path)
 
-            # Process files in current directory
-            for file in files:
-                file_path = root_path / file
+            # Skip unreadable files; they are retried next time
+            if file_content is None:
+                continue
 
-                # Skip ignored files
-                if should_ignore_file(file_path):
-                    continue
+            if not file_content.is_text:
+                updated_manifest[file_path] = (file_stat, BINARY_FILE_HASH)
+                continue
 
-                # Skip non-text files
-                if not is_text_file(file_path):
-                    continue
+            file_hashes[file_path] = file_content.content_hash
+            updated_manifest[file_path] = (file_stat, file_content.content_hash)
 
-                # Compute hash for this file
-                file_hash = compute_file_hash(file_path)
-                if file_hash:
-                    # Store absolute Path object
-                    absolute_path = file_path.resolve()
-                    file_hashes[absolute_path] = file_hash
-
-        return file_hashes
+        return file_hashes, updated_manifest
 
     except Exception as e:
         console.print(f"Error computing directory hashes: {e}")
-        return {}
+        return {}, {}
+
+
+def compute_directory_hashes(dir_path: Union[str, Path]) -> Dict[Path, str]:
+    """
+    Compute SHA256 hashes for all relevant files in a directory.
+
+    Args:
+        dir_path: Path to the directory
+
+    Returns:
+        Dictionary mapping absolute file Path objects to their content hashes
+    """
+    file_hashes, _ = compute_directory_hashes_with_manifest(dir_path)
+    return file_hashes
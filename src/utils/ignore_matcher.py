@@ -0,0 +1,429 @@
+"""
+Compiled ignore pattern matching.
+
+IgnoreMatcher compiles IGNORE_FILE_PATTERNS and IGNORE_DIRECTORY_PATTERNS once:
+literal names go into hash sets, "*.ext" patterns into one suffix tuple and
+every other glob into a single combined regex, so a path is checked with a
+couple of lookups instead of one fnmatch call per pattern.
+
+Rooted matchers also apply the root's .gitignore and .sutraignore files, with
+gitignore semantics (negation, trailing "/" for directories only, patterns
+containing "/" anchored to the root, "**"). Rules are matched against paths
+relative to the root; nested ignore files are not read.
+
+Discovery, directory hashing, list_files and search_keyword all share the
+matcher returned by get_ignore_matcher, so they agree on what is ignored.
+"""
+
+import fnmatch
+import hashlib
+import os
+import re
+import tempfile
+import threading
+from pathlib import Path
+from typing import Dict, List, Optional, Pattern, Sequence, Tuple, Union
+
+from .ignore_patterns import IGNORE_DIRECTORY_PATTERNS, IGNORE_FILE_PATTERNS
+
+# Ignore files read from a matcher's root, in order (later files win)
+IGNORE_FILE_NAMES: List[str] = [".gitignore", ".sutraignore"]
+
+_GLOB_CHARS = re.compile(r"[*?\[]")
+
+
+def _match_name(name: str) -> str:
+    # fnmatch compares normcased names (case-insensitive on Windows)
+    return os.path.normcase(name)
+
+
+class _NamePatterns:
+    """fnmatch patterns over a single path name, compiled into lookups."""
+
+    def __init__(self, patterns: Sequence[str]):
+        names = set()
+        suffixes = set()
+        globs = []
+        paths = []
+        for pattern in dict.fromkeys(patterns):
+            pattern = _match_name(pattern)
+            if "/" in pattern:
+                # Matched against the trailing components of a path
+                paths.append(pattern.strip("/"))
+            elif not _GLOB_CHARS.search(pattern):
+                names.add(pattern)
+            elif pattern.startswith("*") and not _GLOB_CHARS.search(pattern[1:]):
+                suffixes.add(pattern[1:])
+            else:
+                globs.append(pattern)
+
+        self.names = frozenset(names)
+        self.suffixes = tuple(sorted(suffixes))
+        self.glob: Optional[Pattern] = (
+            re.compile("|".join(fnmatch.translate(glob) for glob in globs))
+            if globs
+            else None
+        )
+        self.path: Optional[Pattern] = (
+            re.compile(
+                r"(?:^|/)(?:"
+                + "|".join(_translate_segments(path) for path in paths)
+                + r")\Z"
+            )
+            if paths
+            else None
+        )
+
+    def matches(self, name: str, posix_path: Optional[str] = None) -> bool:
+        name = _match_name(name)
+        if name in self.names or name.endswith(self.suffixes):
+            return True
+        if self.glob is not None and self.glob.match(name):
+            return True
+        if self.path is not None and posix_path is not None:
+            return self.path.search(_match_name(posix_path)) is not None
+        return False
+
+
+def _translate_segments(pattern: str) -> str:
+    """Regex for a "/"-separated glob where "*" and "?" stay within a segment."""
+    parts = []
+    i = 0
+    length = len(pattern)
+    while i < length:
+        char = pattern[i]
+        if pattern.startswith("**", i):
+            at_start = i == 0 or pattern[i - 1] == "/"
+            at_end = i + 2 == length or pattern[i + 2] == "/"
+            if at_start and at_end:
+                if i + 2 == length:
+                    # Trailing "**": everything below
+                    parts.append(".*")
+                    i += 2
+                else:
+                    # Leading or inner "**/": zero or more directories
+                    parts.append("(?:.*/)?")
+                    i += 3
+                continue
+            parts.append("[^/]*")
+            i += 2
+            continue
+        if char == "*":
+            parts.append("[^/]*")
+        elif char == "?":
+            parts.append("[^/]")
+        elif char == "[":
+            # A "]" right after "[" or "[!" is part of the set
+            first = i + 2 if pattern[i + 1 : i + 2] in ("!", "]") else i + 1
+            end = pattern.find("]", first)
+            if end == -1:
+                parts.append(re.escape(char))
+            else:
+                body = pattern[i + 1 : end]
+                if body.startswith("!"):
+                    body = "^" + body[1:]
+                parts.append("[" + body.replace("\\", "\\\\") + "]")
+                i = end
+        elif char == "\\" and i + 1 < length:
+            i += 1
+            parts.append(re.escape(pattern[i]))
+        else:
+            parts.append(re.escape(char))
+        i += 1
+    return "".join(parts)
+
+
+class _IgnoreRule:
+    """One line of a .gitignore style file."""
+
+    __slots__ = ("regex", "negated", "directory_only")
+
+    def __init__(self, regex: Pattern, negated: bool, directory_only: bool):
+        self.regex = regex
+        self.negated = negated
+        self.directory_only = directory_only
+
+
+def parse_ignore_lines(lines: Sequence[str]) -> List[_IgnoreRule]:
+    """
+    Compile gitignore style lines into rules matched against root-relative paths.
+
+    Args:
+        lines: Lines of an ignore file
+
+    Returns:
+        Rules in file order
+    """
+    rules = []
+    for line in lines:
+        line = line.rstrip("\n").rstrip("\r")
+        # Trailing spaces are ignored unless escaped
+        if not line.endswith("\\ "):
+            line = line.rstrip(" ")
+        if not line or line.startswith("#"):
+            continue
+
+        negated = line.startswith("!")
+        if negated:
+            line = line[1:]
+        elif line.startswith("\\"):
+            line = line[1:]
+
+        directory_only = line.endswith("/")
+        line = line.rstrip("/")
+        if not line:
+            continue
+
+        # A "/" anywhere but the end anchors the pattern to the root
+        anchored = "/" in line
+        line = line.lstrip("/")
+        pattern = _translate_segments(line)
+        if not anchored:
+            pattern = "(?:.*/)?" + pattern
+        rules.append(
+            _IgnoreRule(
+                re.compile(pattern + r"\Z", re.IGNORECASE if os.name == "nt" else 0),
+                negated,
+                directory_only,
+            )
+        )
+    return rules
+
+
+class IgnoreMatcher:
+    """Default ignore patterns, plus the ignore files of a root directory."""
+
+    def __init__(
+        self,
+        root: Optional[Union[str, Path]] = None,
+        file_patterns: Sequence[str] = IGNORE_FILE_PATTERNS,
+        directory_patterns: Sequence[str] = IGNORE_DIRECTORY_PATTERNS,
+        rules: Sequence[_IgnoreRule] = (),
+    ):
+        self.root = os.path.abspath(root) if root is not None else None
+        self._root_prefix = (
+            self.root.rstrip(os.sep) + os.sep if self.root is not None else None
+        )
+        self._files = _NamePatterns(file_patterns)
+        self._directories = _NamePatterns(directory_patterns)
+        self.rules = list(rules)
+        # Without negations, any matching rule ignores the path
+        self._file_rules: Optional[Pattern] = None
+        self._directory_rules: Optional[Pattern] = None
+        if self.rules and not any(rule.negated for rule in self.rules):
+            self._file_rules = self._combine(
+                [rule for rule in self.rules if not rule.directory_only]
+            )
+            self._directory_rules = self._combine(self.rules)
+
+    @staticmethod
+    def _combine(rules: Sequence[_IgnoreRule]) -> Optional[Pattern]:
+        if not rules:
+            return None
+        return re.compile(
+            "|".join(f"(?:{rule.regex.pattern})" for rule in rules),
+            rules[0].regex.flags,
+        )
+
+    @classmethod
+    def for_root(cls, root: Union[str, Path]) -> "IgnoreMatcher":
+        """Matcher for a directory, with its .gitignore and .sutraignore rules."""
+        lines: List[str] = []
+        for ignore_file in IGNORE_FILE_NAMES:
+            try:
+                with open(
+                    os.path.join(root, ignore_file), "r", encoding="utf-8"
+                ) as f:
+                    lines.extend(f.readlines())
+            except (OSError, UnicodeDecodeError):
+                continue
+        return cls(root, rules=parse_ignore_lines(lines))
+
+    def relative_path(self, path: Union[str, Path]) -> Optional[str]:
+        """POSIX path relative to the root, None if path is outside it."""
+        path = os.fspath(path)
+        if self._root_prefix is None:
+            return None
+        if not os.path.isabs(path):
+            path = os.path.abspath(path)
+        if not path.startswith(self._root_prefix):
+            return None
+        relative = path[len(self._root_prefix) :]
+        return relative.replace(os.sep, "/") if os.sep != "/" else relative
+
+    def _ignored_by_rules(self, relative: str, is_directory: bool) -> bool:
+        if self._directory_rules is not None or self._file_rules is not None:
+            combined = self._directory_rules if is_directory else self._file_rules
+            return combined is not None and combined.match(relative) is not None
+
+        # Last matching rule wins
+        for rule in reversed(self.rules):
+            if rule.directory_only and not is_directory:
+                continue
+            if rule.regex.match(relative):
+                return not rule.negated
+        return False
+
+    def ignores_file(self, path: Union[str, Path]) -> bool:
+        """True if a file should be ignored."""
+        path = os.fspath(path)
+        name = os.path.basename(path)
+        if self._files.matches(name):
+            return True
+        if self.rules:
+            relative = self.relative_path(path)
+            if relative:
+                return self._ignored_by_rules(relative, False)
+        return False
+
+    def ignores_directory(self, path: Union[str, Path]) -> bool:
+        """True if a directory (and so everything below it) should be ignored."""
+        path = os.fspath(path).rstrip("/\\") or os.fspath(path)
+        name = os.path.basename(path)
+        relative = self.relative_path(path)
+        posix_path = relative if relative is not None else path.replace(os.sep, "/")
+        if self._directories.matches(name, posix_path):
+            return True
+        if self.rules and relative:
+            return self._ignored_by_rules(relative, True)
+        return False
+
+    def ignores_path(self, path: Union[str, Path], is_directory: bool) -> bool:
+        """True if the path, or any directory between the root and it, is ignored."""
+        if is_directory and self.ignores_directory(path):
+            return True
+        if not is_directory and self.ignores_file(path):
+            return True
+        if self._root_prefix is None:
+            return False
+
+        parent = os.path.dirname(os.path.abspath(path))
+        while parent.startswith(self._root_prefix):
+            if self.ignores_directory(parent):
+                return True
+            parent = os.path.dirname(parent)
+        return False
+
+    def ripgrep_args(self) -> List[str]:
+        """
+        ripgrep options applying the same default patterns.
+
+        The default patterns are written once as a gitignore style file, so
+        a search passes one --ignore-file instead of a --glob per pattern.
+        The root's .gitignore is read by ripgrep itself; .sutraignore is passed
+        along when present. ripgrep matches --ignore-file rules against paths
+        relative to its working directory, so run it with cwd=self.root and
+        absolute search paths (see ripgrep_paths).
+        """
+        args = ["--ignore-file", default_ripgrep_ignore_file()]
+        if self.root is not None:
+            sutraignore = os.path.join(self.root, ".sutraignore")
+            if os.path.isfile(sutraignore):
+                args.extend(["--ignore-file", sutraignore])
+        return args
+
+    def ripgrep_paths(self, paths: Sequence[str]) -> List[str]:
+        """Search paths made absolute, for ripgrep running with cwd=self.root."""
+        if self.root is None or self.root == os.getcwd():
+            return list(paths)
+        return [os.path.abspath(path) for path in paths]
+
+
+def default_ripgrep_ignore_lines() -> List[str]:
+    """IGNORE_FILE_PATTERNS and IGNORE_DIRECTORY_PATTERNS as gitignore lines."""
+    lines = list(dict.fromkeys(IGNORE_FILE_PATTERNS))
+    for pattern in dict.fromkeys(IGNORE_DIRECTORY_PATTERNS):
+        pattern = pattern.strip("/")
+        # Directory patterns match by name at any depth, as in IgnoreMatcher
+        lines.append(f"**/{pattern}/" if "/" in pattern else f"{pattern}/")
+    return lines
+
+
+_ripgrep_ignore_lock = threading.Lock()
+_ripgrep_ignore_file: Optional[str] = None
+
+
+def _ripgrep_ignore_dir() -> str:
+    """Directory for the default patterns' ignore file: the data directory,
+    falling back to the temp directory when the config is not loaded."""
+    try:
+        from config import config
+
+        data_dir = os.path.expanduser(config.storage.data_dir)
+        os.makedirs(data_dir, exist_ok=True)
+        return data_dir
+    except (ValueError, AttributeError, ImportError, OSError):
+        return tempfile.gettempdir()
+
+
+def _read_text(path: str) -> Optional[str]:
+    try:
+        with open(path, "r", encoding="utf-8") as f:
+            return f.read()
+    except (OSError, UnicodeDecodeError):
+        return None
+
+
+def default_ripgrep_ignore_file() -> str:
+    """Path of the default patterns' ignore file, written on first use.
+
+    An existing file is only reused when its content matches the current
+    patterns, so a stale or foreign file at that path is rewritten.
+    """
+    global _ripgrep_ignore_file
+
+    with _ripgrep_ignore_lock:
+        if _ripgrep_ignore_file is not None and os.path.isfile(_ripgrep_ignore_file):
+            return _ripgrep_ignore_file
+
+        content = "\n".join(default_ripgrep_ignore_lines()) + "\n"
+        digest = hashlib.sha256(content.encode("utf-8")).hexdigest()[:12]
+        directory = _ripgrep_ignore_dir()
+        path = os.path.join(directory, f"sutra-ignore-{digest}")
+        if _read_text(path) != content:
+            # Written aside and renamed so concurrent searches never read a partial file
+            fd, temp_path = tempfile.mkstemp(dir=directory)
+            with os.fdopen(fd, "w", encoding="utf-8") as f:
+                f.write(content)
+            os.replace(temp_path, path)
+        _ripgrep_ignore_file = path
+        return path
+
+
+_DEFAULT_MATCHER = IgnoreMatcher()
+_matcher_lock = threading.Lock()
+# Root -> (mtimes of its ignore files, matcher)
+_root_matchers: Dict[str, Tuple[Tuple[Optional[int], ...], IgnoreMatcher]] = {}
+
+
+def _ignore_file_mtimes(root: str) -> Tuple[Optional[int], ...]:
+    mtimes = []
+    for ignore_file in IGNORE_FILE_NAMES:
+        try:
+            mtimes.append(os.stat(os.path.join(root, ignore_file)).st_mtime_ns)
+        except OSError:
+            mtimes.append(None)
+    return tuple(mtimes)
+
+
+def get_ignore_matcher(root: Optional[Union[str, Path]] = None) -> IgnoreMatcher:
+    """
+    Shared matcher for a root directory, or the default patterns alone.
+
+    Matchers are cached per root and rebuilt when its ignore files change.
+    """
+    if root is None:
+        return _DEFAULT_MATCHER
+
+    root = os.path.abspath(root)
+    mtimes = _ignore_file_mtimes(root)
+    cached = _root_matchers.get(root)
+    if cached is not None and cached[0] == mtimes:
+        return cached[1]
+
+    with _matcher_lock:
+        cached = _root_matchers.get(root)
+        if cached is None or cached[0] != mtimes:
+            cached = (mtimes, IgnoreMatcher.for_root(root))
+            _root_matchers[root] = cached
+        return cached[1]
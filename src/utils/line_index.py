@@ -0,0 +1,59 @@
+"""
+Line offset index for stored file content.
+
+A file's line offsets are the UTF-8 byte positions where each of its lines
+starts, plus one past the end, packed as little-endian uint32. With them a
+line range maps to a byte range of the stored content, so it can be read
+without loading and splitting the whole file.
+
+Lines are numbered like content.split("\\n"): a trailing newline starts an
+empty last line.
+"""
+
+import sys
+from array import array
+from itertools import accumulate
+from typing import Optional, Tuple
+
+
+def build_line_offsets(content: str) -> bytes:
+    """Pack the byte offset of every line start of content."""
+    line_lengths = (len(line) + 1 for line in content.encode("utf-8").split(b"\n"))
+    offsets = array("I", accumulate(line_lengths, initial=0))
+    if sys.byteorder == "big":
+        offsets.byteswap()
+    return offsets.tobytes()
+
+
+def unpack_line_offsets(line_offsets: bytes) -> array:
+    """Line start offsets packed by build_line_offsets."""
+    offsets = array("I")
+    offsets.frombytes(line_offsets)
+    if sys.byteorder == "big":
+        offsets.byteswap()
+    return offsets
+
+
+def line_byte_range(
+    line_offsets: bytes, start_line: Optional[int], end_line: Optional[int]
+) -> Tuple[int, int, int]:
+    """
+    Byte range of lines start_line..end_line (1-based, inclusive).
+
+    Missing bounds default to the first/last line and out-of-range bounds are
+    clamped, always covering at least one line.
+
+    Returns:
+        (start byte, end byte exclusive, total line count)
+    """
+    offsets = unpack_line_offsets(line_offsets)
+
+    total_lines = len(offsets) - 1
+    start_index = (start_line - 1) if start_line is not None else 0
+    end_index = end_line if end_line is not None else total_lines
+
+    start_index = max(0, min(start_index, total_lines - 1))
+    end_index = max(start_index + 1, min(end_index, total_lines))
+
+    # The last offset is one past the end, so every line ends with its "\n"
+    return offsets[start_index], offsets[end_index] - 1, total_lines